@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "2.1.0"
     id("org.jetbrains.intellij.platform") version "2.5.0"
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 group = "icu.spider007"
@@ -15,6 +16,8 @@ repositories {
 }
 
 dependencies {
+    implementation(project(":core"))
+
     intellijPlatform {
         create("IC", "2022.3")
         testFramework(org.jetbrains.intellij.platform.gradle.TestFrameworkType.Platform)
@@ -0,0 +1,168 @@
+// 不依赖 IntelliJ 平台的计算核心, 插件和批量计算共用
+plugins {
+    id("java-library")
+    id("application")
+    id("me.champeau.jmh")
+}
+
+group = "icu.spider007"
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+// 批量计算: ./gradlew :core:run --args="employees.csv result.csv"
+application {
+    mainClass = "icu.spider007.core.batch.BatchCalculator"
+}
+
+// 节拍回放: ./gradlew :core:simulate --args="--from=2026-01-01 --calendar --trace=trace.csv"
+tasks.register<JavaExec>("simulate") {
+    group = "verification"
+    description = "Replays plugin ticks on a virtual clock and checks the earnings trace"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass = "icu.spider007.core.sim.TickSimulator"
+}
+
+// 基准测试: ./gradlew :core:jmh 运行, :core:jmhCheck 与基线比较, :core:jmhBaseline 更新基线.
+// 每次调用分配的字节数与硬件无关, 按提交的基线绝对比较; ns/op 只在基线是本机记录的时候才比较,
+// 检查改动前先在基线提交上运行 jmhBaseline
+val jmhResults = layout.buildDirectory.file("results/jmh/results.json")
+val jmhBaselineFile = layout.projectDirectory.file("src/jmh/baseline.json")
+val jmhSettings = mapOf(
+    "jmhVersion" to "1.37",
+    "mode" to "avgt",
+    "timeUnit" to "ns",
+    "warmupIterations" to 3,
+    "warmup" to "2s",
+    "iterations" to 5,
+    "timeOnIteration" to "2s",
+    "fork" to 1
+)
+
+jmh {
+    jmhVersion = jmhSettings["jmhVersion"] as String
+    benchmarkMode = listOf(jmhSettings["mode"] as String)
+    timeUnit = jmhSettings["timeUnit"] as String
+    warmupIterations = jmhSettings["warmupIterations"] as Int
+    warmup = jmhSettings["warmup"] as String
+    iterations = jmhSettings["iterations"] as Int
+    timeOnIteration = jmhSettings["timeOnIteration"] as String
+    fork = jmhSettings["fork"] as Int
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    resultsFile = jmhResults
+}
+
+// 运行基准测试的机器, ns/op 只在同一台机器上比较
+fun machineId(): String {
+    val cpuInfo = File("/proc/cpuinfo")
+    val cpu = System.getenv("PROCESSOR_IDENTIFIER")
+        ?: (if (cpuInfo.canRead()) cpuInfo.useLines { lines ->
+            lines.firstOrNull { it.startsWith("model name") }?.substringAfter(":")?.trim()
+        } else null)
+        ?: "unknown cpu"
+    return "$cpu, ${Runtime.getRuntime().availableProcessors()} cpus, " +
+            "${System.getProperty("os.name")} ${System.getProperty("os.arch")}, " +
+            "${System.getProperty("java.vm.name")} ${System.getProperty("java.version")}"
+}
+
+// 从 JMH 结果中取出 ns/op 和每次调用分配的字节数
+fun readJmhResults(file: File): Map<String, Pair<Double, Double>> {
+    @Suppress("UNCHECKED_CAST")
+    val entries = groovy.json.JsonSlurper().parse(file) as List<Map<String, Any?>>
+    return entries.associate { entry ->
+        val params = (entry["params"] as Map<*, *>?)
+            ?.entries?.joinToString(",", "[", "]") { "${it.key}=${it.value}" } ?: ""
+        val primary = entry["primaryMetric"] as Map<*, *>
+        val secondary = entry["secondaryMetrics"] as Map<*, *>
+        // JMH 1.37 之前的版本指标名带有 "·" 前缀
+        val alloc = (secondary["gc.alloc.rate.norm"] ?: secondary["·gc.alloc.rate.norm"]) as Map<*, *>?
+        (entry["benchmark"] as String) + params to
+                Pair((primary["score"] as Number).toDouble(), (alloc?.get("score") as Number?)?.toDouble() ?: 0.0)
+    }
+}
+
+tasks.register("jmhCheck") {
+    group = "verification"
+    description = "Fails when a benchmark allocates more than the baseline, or is slower than a baseline from this machine"
+    dependsOn("jmh")
+    inputs.file(jmhBaselineFile)
+    notCompatibleWithConfigurationCache("reads JMH results with script helpers")
+    doLast {
+        @Suppress("UNCHECKED_CAST")
+        val baseline = groovy.json.JsonSlurper().parse(jmhBaselineFile.asFile) as Map<String, Any?>
+        val tolerance = (baseline["tolerance"] as Number).toDouble()
+        val allocSlack = (baseline["allocSlackBytes"] as Number).toDouble()
+        val limits = baseline["benchmarks"] as Map<*, *>
+        val sameMachine = baseline["machine"] == machineId() && baseline["settings"] == jmhSettings
+        if (!sameMachine) {
+            logger.warn("Baseline was recorded on \"${baseline["machine"]}\" or with other JMH settings, " +
+                    "only allocations are checked; run jmhBaseline on the base commit to compare ns/op")
+        }
+        val failures = mutableListOf<String>()
+        readJmhResults(jmhResults.get().asFile).forEach { (name, result) ->
+            val limit = limits[name] as Map<*, *>?
+            if (limit == null) {
+                logger.warn("No baseline for $name, run jmhBaseline to record it")
+                return@forEach
+            }
+            val maxNs = (limit["nsPerOp"] as Number).toDouble() * (1 + tolerance)
+            val maxAlloc = (limit["allocBytesPerOp"] as Number).toDouble() * (1 + tolerance) + allocSlack
+            if (sameMachine && result.first > maxNs) {
+                failures += "$name: %.1f ns/op > %.1f".format(result.first, maxNs)
+            }
+            if (result.second > maxAlloc) {
+                failures += "$name: %.1f B/op > %.1f".format(result.second, maxAlloc)
+            }
+        }
+        if (failures.isNotEmpty()) {
+            throw GradleException("Benchmark regression:\n" + failures.joinToString("\n"))
+        }
+    }
+}
+
+tasks.register("jmhBaseline") {
+    group = "verification"
+    description = "Records the latest JMH results, the JMH settings and this machine as the regression baseline"
+    dependsOn("jmh")
+    notCompatibleWithConfigurationCache("reads JMH results with script helpers")
+    doLast {
+        val file = jmhBaselineFile.asFile
+        @Suppress("UNCHECKED_CAST")
+        val old = groovy.json.JsonSlurper().parse(file) as Map<String, Any?>
+        // 记录测得的值, 保留一位小数
+        val benchmarks = readJmhResults(jmhResults.get().asFile).mapValues { (_, result) ->
+            mapOf("nsPerOp" to Math.round(result.first * 10) / 10.0,
+                "allocBytesPerOp" to Math.round(result.second * 10) / 10.0)
+        }.toSortedMap()
+        val updated = mapOf(
+            "tolerance" to old["tolerance"],
+            "allocSlackBytes" to old["allocSlackBytes"],
+            "machine" to machineId(),
+            "settings" to jmhSettings,
+            "benchmarks" to benchmarks
+        )
+        file.writeText(groovy.json.JsonOutput.prettyPrint(groovy.json.JsonOutput.toJson(updated)) + "\n")
+    }
+}
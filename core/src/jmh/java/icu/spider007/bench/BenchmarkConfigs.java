@@ -0,0 +1,53 @@
+package icu.spider007.bench;
+
+import icu.spider007.core.ScheduleForm;
+
+import java.time.LocalDateTime;
+
+/**
+ * 基准测试使用的典型配置
+ */
+final class BenchmarkConfigs {
+    // 周一上班时间, 所有配置都在工作时段内
+    static final LocalDateTime MONDAY_MORNING = LocalDateTime.of(2026, 10, 19, 10, 0);
+
+    private BenchmarkConfigs() {
+    }
+
+    static ScheduleForm form(String name) {
+        switch (name) {
+            case "standard":
+                // 默认配置: 9:00-18:00, 午休 12:00-13:30
+                return new ScheduleForm(new String[]{
+                        "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", ""}, "人民币");
+            case "overlapLunch":
+                // 午休与上下午间隔部分重叠, 时段被切成 3 段
+                return new ScheduleForm(new String[]{
+                        "35000", "21", "08:30", "12:30", "13:00", "21:00", "12:00", "14:00", ""}, "美元");
+            case "zeroDecimals":
+                // 无小数位的货币
+                return new ScheduleForm(new String[]{
+                        "450000", "20", "10:00", "13:00", "14:00", "19:00", "13:00", "14:00", ""}, "日元");
+            case "nightRoster":
+                // 倒班: 傍晚一段加跨零点的夜班, 夜里扣除一次休息, 周末休息
+                return new ScheduleForm(new String[]{
+                        "18000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30",
+                        "MON-FRI 16:00-19:00,20:00-04:00,!00:30-01:00"}, "人民币");
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /**
+     * 覆盖一整天的采样时刻 (毫秒), 长度为 2 的幂, 便于用掩码循环取值
+     */
+    static long[] sampleMillis(int count) {
+        long[] millis = new long[count];
+        long step = 24L * 3600 * 1000 / count;
+        for (int i = 0; i < count; i++) {
+            // 错开整秒, 避免总是落在时段边界上
+            millis[i] = i * step + (i * 7919L) % 1000;
+        }
+        return millis;
+    }
+}
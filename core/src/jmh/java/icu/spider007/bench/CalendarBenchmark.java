@@ -0,0 +1,56 @@
+package icu.spider007.bench;
+
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.calendar.HolidayRules;
+import icu.spider007.core.calendar.WorkCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+
+/**
+ * 工作日历查询, 每个节拍都会经过 scheduleFor
+ */
+@State(Scope.Thread)
+public class CalendarBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private WorkCalendar calendar;
+    private WorkRoster roster;
+    private LocalDate[] dates;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        calendar = new WorkCalendar(HolidayRules.bundled(), WorkCalendar.weekdays());
+        roster = BenchmarkConfigs.form("standard").compile().withCalendar(HolidayRules.bundled(), true);
+        dates = new LocalDate[SAMPLES];
+        LocalDate first = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < SAMPLES; i++) {
+            // 两年内的日期, 跨月时会重新换算自动工作天数
+            dates[i] = first.plusDays(i * 730L / SAMPLES);
+        }
+    }
+
+    private LocalDate nextDate() {
+        return dates[cursor++ & (SAMPLES - 1)];
+    }
+
+    @Benchmark
+    public boolean isWorkday() {
+        return calendar.isWorkday(nextDate());
+    }
+
+    @Benchmark
+    public int workdaysRemaining() {
+        return calendar.workdaysRemaining(nextDate());
+    }
+
+    @Benchmark
+    public WorkSchedule scheduleFor() {
+        return roster.scheduleFor(nextDate());
+    }
+}
@@ -0,0 +1,56 @@
+package icu.spider007.bench;
+
+import icu.spider007.core.CountdownMessages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * 倒计时/加班提示文案, 工具窗口每分钟生成一次
+ */
+@State(Scope.Thread)
+public class CountdownBenchmark {
+    private static final int SAMPLES = 256;
+
+    private final LocalTime morningEnd = LocalTime.of(12, 0);
+    private final LocalTime endTime = LocalTime.of(18, 0);
+    private CountdownMessages messages;
+    private LocalTime[] mornings;
+    private LocalTime[] afternoons;
+    private Duration[] overtimes;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        messages = new CountdownMessages(new Random(42));
+        mornings = new LocalTime[SAMPLES];
+        afternoons = new LocalTime[SAMPLES];
+        overtimes = new Duration[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // 覆盖每个文案分支
+            mornings[i] = morningEnd.minusMinutes(1 + i % 180);
+            afternoons[i] = endTime.minusMinutes(1 + i % 270);
+            overtimes[i] = Duration.ofMinutes(i % 240);
+        }
+    }
+
+    @Benchmark
+    public String funCountdownMorning() {
+        return messages.getFunCountdownMessage(mornings[cursor++ & (SAMPLES - 1)], morningEnd, true);
+    }
+
+    @Benchmark
+    public String funCountdownAfternoon() {
+        return messages.getFunCountdownMessage(afternoons[cursor++ & (SAMPLES - 1)], endTime, false);
+    }
+
+    @Benchmark
+    public String warmOvertime() {
+        return messages.getWarmOvertimeMessage(overtimes[cursor++ & (SAMPLES - 1)], false);
+    }
+}
@@ -0,0 +1,82 @@
+package icu.spider007.bench;
+
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.OdometerText;
+import icu.spider007.core.StatusText;
+import icu.spider007.core.WorkSchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.DayOfWeek;
+
+/**
+ * 每个节拍的文本生成路径
+ * <p>
+ * widgetText 与 EarningsStatusWidget.getText() 的非跳动分支相同, labelUpdate 与工具窗口
+ * 标签更新相同, odometerFrame 是工具窗口实时跳动标签的单帧, statusFrame 是状态栏实时跳动模式的单帧
+ * (与 EarningsStatusWidget 的帧回调相同, 按 30 帧/秒推进, 大部分帧金额不变)
+ */
+@State(Scope.Thread)
+public class RenderBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"standard", "zeroDecimals"})
+    public String config;
+
+    private WorkSchedule schedule;
+    private MoneyFormat format;
+    private OdometerText odometer;
+    private StatusText status;
+    private long statusMillis;
+    private long[] millis;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        schedule = BenchmarkConfigs.form(config).compile().getSchedule(DayOfWeek.MONDAY);
+        format = schedule.getMoneyFormat();
+        odometer = new OdometerText(4);
+        odometer.setPrefix(schedule.getCurrency().getSymbol());
+        millis = BenchmarkConfigs.sampleMillis(SAMPLES);
+        status = new StatusText();
+        status.reset(BenchmarkConfigs.form(config).compile().resolve(BenchmarkConfigs.MONDAY_MORNING), null, "");
+        statusMillis = BenchmarkConfigs.MONDAY_MORNING.toLocalTime().toSecondOfDay() * 1000L;
+    }
+
+    private long nextMillis() {
+        return millis[cursor++ & (SAMPLES - 1)];
+    }
+
+    @Benchmark
+    public String widgetText() {
+        long todayEarnings = schedule.earnedMicros((int) (nextMillis() / 1000));
+        return "今日: " + format.format(todayEarnings);
+    }
+
+    @Benchmark
+    public void labelUpdate(Blackhole blackhole) {
+        int now = (int) (nextMillis() / 1000);
+        int workedSeconds = schedule.workedSeconds(now);
+        blackhole.consume("今日已赚: " + format.format(schedule.earnedMicros(now)));
+        blackhole.consume(String.format("有效工作时间: %d小时%d分钟", workedSeconds / 3600, workedSeconds % 3600 / 60));
+    }
+
+    @Benchmark
+    public boolean odometerFrame() {
+        odometer.setPrefix(schedule.getCurrency().getSymbol());
+        return odometer.set(schedule.earningsScaled(nextMillis(), 4));
+    }
+
+    @Benchmark
+    public boolean statusFrame() {
+        statusMillis += 33;
+        if (statusMillis >= 18 * 3600_000L) {
+            statusMillis = BenchmarkConfigs.MONDAY_MORNING.toLocalTime().toSecondOfDay() * 1000L;
+        }
+        return status.frame(statusMillis);
+    }
+}
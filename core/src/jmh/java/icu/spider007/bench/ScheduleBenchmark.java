@@ -0,0 +1,90 @@
+package icu.spider007.bench;
+
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.overtime.PayCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 工作时长与收入计算路径
+ * <p>
+ * totalWorkDuration 对应原来每次刷新都重新解析配置的 calculateTotalWorkDuration,
+ * completedWorkDuration 对应 calculateCompletedWorkDuration, overtimeEarnedMicros 是带加班规则的收入曲线
+ */
+@State(Scope.Thread)
+public class ScheduleBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"standard", "overlapLunch", "zeroDecimals", "nightRoster"})
+    public String config;
+
+    private ScheduleForm form;
+    private WorkRoster roster;
+    private WorkSchedule schedule;
+    private PayCurve curve;
+    private LocalDateTime[] instants;
+    private long[] millis;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        form = BenchmarkConfigs.form(config);
+        roster = form.compile();
+        schedule = roster.getSchedule(DayOfWeek.MONDAY);
+        WorkRoster overtime = roster.withOvertime(OvertimeRules.parse("weekday 1.5; weekend 2; holiday 3; cap 4h"));
+        // IDE 一直开着, 加班时段都计薪
+        curve = overtime.observe(overtime.resolve(LocalDate.of(2026, 10, 19).atStartOfDay()), 0, 0).getCurve();
+        millis = BenchmarkConfigs.sampleMillis(SAMPLES);
+        instants = new LocalDateTime[SAMPLES];
+        LocalDateTime monday = LocalDateTime.of(2026, 10, 19, 0, 0);
+        for (int i = 0; i < SAMPLES; i++) {
+            // 覆盖一整周
+            instants[i] = monday.plusSeconds(i * 7L * 24 * 3600 / SAMPLES);
+        }
+    }
+
+    private long nextMillis() {
+        return millis[cursor++ & (SAMPLES - 1)];
+    }
+
+    @Benchmark
+    public int totalWorkDuration() {
+        return form.compile().getSchedule(DayOfWeek.MONDAY).getTotalSeconds();
+    }
+
+    @Benchmark
+    public WorkDay resolveDay() {
+        return roster.resolve(instants[cursor++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int completedWorkDuration() {
+        return schedule.workedSeconds((int) (nextMillis() / 1000));
+    }
+
+    @Benchmark
+    public long earnedMicros() {
+        return schedule.earnedMicrosAtMillis(nextMillis());
+    }
+
+    @Benchmark
+    public long overtimeEarnedMicros() {
+        return curve.earnedMicrosAtMillis(nextMillis());
+    }
+
+    @Benchmark
+    public int nextEarningsChange() {
+        return schedule.nextEarningsChange((int) (nextMillis() / 1000));
+    }
+}
@@ -0,0 +1,151 @@
+package icu.spider007.core;
+
+import icu.spider007.core.message.MessageCatalog;
+import icu.spider007.core.message.MessageTemplate;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 工具窗口倒计时/加班提示文案
+ * <p>
+ * 文案来自 {@link MessageCatalog}, 模板在构造时取出并编译好, 每次生成只做参数拼接.
+ * 不依赖 IDE, 随机数源由调用方传入, 便于基准测试使用固定种子
+ */
+public final class CountdownMessages {
+    private static final String[] PARAMS = {"emoji", "hours", "minutes"};
+
+    private final Random random;
+    private final String[] emojis;
+    private final String[] warmEmojis;
+    private final MessageTemplate breakHours;
+    private final MessageTemplate breakMinutes30;
+    private final MessageTemplate breakMinutes10;
+    private final MessageTemplate breakLast;
+    private final MessageTemplate endHours2;
+    private final MessageTemplate endHours1;
+    private final MessageTemplate endMinutes30;
+    private final MessageTemplate endMinutes10;
+    private final MessageTemplate endLast;
+    private final MessageTemplate overtimeBreakHours;
+    private final MessageTemplate overtimeBreakMinutes;
+    private final MessageTemplate overtimeEndHours3;
+    private final MessageTemplate overtimeEndHours2;
+    private final MessageTemplate overtimeEndHours1;
+    private final MessageTemplate overtimeEndMinutes;
+
+    /**
+     * 使用系统语言的自带文案
+     */
+    public CountdownMessages(Random random) {
+        this(MessageCatalog.bundled(Locale.getDefault()), random);
+    }
+
+    public CountdownMessages(MessageCatalog catalog, Random random) {
+        this.random = random;
+        emojis = catalog.list("countdown.emojis");
+        warmEmojis = catalog.list("overtime.emojis");
+        breakHours = catalog.template("countdown.break.hours", PARAMS);
+        breakMinutes30 = catalog.template("countdown.break.minutes30", PARAMS);
+        breakMinutes10 = catalog.template("countdown.break.minutes10", PARAMS);
+        breakLast = catalog.template("countdown.break.last", PARAMS);
+        endHours2 = catalog.template("countdown.end.hours2", PARAMS);
+        endHours1 = catalog.template("countdown.end.hours1", PARAMS);
+        endMinutes30 = catalog.template("countdown.end.minutes30", PARAMS);
+        endMinutes10 = catalog.template("countdown.end.minutes10", PARAMS);
+        endLast = catalog.template("countdown.end.last", PARAMS);
+        overtimeBreakHours = catalog.template("overtime.break.hours", PARAMS);
+        overtimeBreakMinutes = catalog.template("overtime.break.minutes", PARAMS);
+        overtimeEndHours3 = catalog.template("overtime.end.hours3", PARAMS);
+        overtimeEndHours2 = catalog.template("overtime.end.hours2", PARAMS);
+        overtimeEndHours1 = catalog.template("overtime.end.hours1", PARAMS);
+        overtimeEndMinutes = catalog.template("overtime.end.minutes", PARAMS);
+    }
+
+    /**
+     * 距离 endTime 的倒计时提示
+     */
+    public String getFunCountdownMessage(LocalTime now, LocalTime endTime, boolean isMorning) {
+        return getFunCountdownMessage(Duration.between(now, endTime), isMorning);
+    }
+
+    /**
+     * 剩余 duration 时长的倒计时提示, isMorning 为 true 时是休息前的倒计时
+     */
+    public String getFunCountdownMessage(Duration duration, boolean isMorning) {
+        StringBuilder out = new StringBuilder(64);
+        appendCountdown(out, duration.getSeconds(), isMorning, false);
+        return out.toString();
+    }
+
+    /**
+     * 已加班 overtime 时长的提示
+     */
+    public String getWarmOvertimeMessage(Duration overtime, boolean isMorning) {
+        StringBuilder out = new StringBuilder(96);
+        appendOvertime(out, overtime.getSeconds(), isMorning, false);
+        return out.toString();
+    }
+
+    /**
+     * 把剩余 seconds 秒的倒计时提示写入 out, html 为 true 时换行写成 &lt;br&gt;
+     */
+    public void appendCountdown(StringBuilder out, long seconds, boolean beforeBreak, boolean html) {
+        long hours = seconds / 3600;
+        long minutes = seconds % 3600 / 60;
+        MessageTemplate template;
+        if (beforeBreak) {
+            // 上午下班倒计时提示
+            if (hours >= 1) {
+                template = breakHours;
+            } else if (minutes >= 30) {
+                template = breakMinutes30;
+            } else if (minutes >= 10) {
+                template = breakMinutes10;
+            } else {
+                template = breakLast;
+            }
+        } else {
+            // 下午下班倒计时提示
+            if (hours >= 2) {
+                template = endHours2;
+            } else if (hours >= 1) {
+                template = endHours1;
+            } else if (minutes >= 30) {
+                template = endMinutes30;
+            } else if (minutes >= 10) {
+                template = endMinutes10;
+            } else {
+                template = endLast;
+            }
+        }
+        template.appendTo(out, html, emojis[random.nextInt(emojis.length)], hours, minutes);
+    }
+
+    /**
+     * 把已加班 seconds 秒的提示写入 out, html 为 true 时换行写成 &lt;br&gt;
+     */
+    public void appendOvertime(StringBuilder out, long seconds, boolean beforeBreak, boolean html) {
+        long hours = seconds / 3600;
+        long minutes = seconds % 3600 / 60;
+        MessageTemplate template;
+        if (beforeBreak) {
+            // 上午加班提醒
+            template = hours >= 1 ? overtimeBreakHours : overtimeBreakMinutes;
+        } else {
+            // 下午/晚上加班提醒
+            if (hours >= 3) {
+                template = overtimeEndHours3;
+            } else if (hours >= 2) {
+                template = overtimeEndHours2;
+            } else if (hours >= 1) {
+                template = overtimeEndHours1;
+            } else {
+                template = overtimeEndMinutes;
+            }
+        }
+        template.appendTo(out, html, warmEmojis[random.nextInt(warmEmojis.length)], hours, minutes);
+    }
+}
@@ -0,0 +1,58 @@
+package icu.spider007.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 定点金额运算, 金额统一用 long 表示, 单位为百万分之一元 (微单位)
+ * <p>
+ * 舍入规则:
+ * <ul>
+ *     <li>月薪解析和日薪 (月薪 / 天数) 按 HALF_EVEN 舍入到微单位</li>
+ *     <li>当日累计收入 = floor(日薪 * 已工作时长 / 总工作时长), 下班时恰好等于日薪</li>
+ *     <li>显示时按 HALF_UP 舍入到货币的最小单位, 日薪和累计收入使用同一规则</li>
+ * </ul>
+ */
+public final class Money {
+    public static final long MICROS_PER_UNIT = 1_000_000L;
+
+    private Money() {
+    }
+
+    /**
+     * 解析金额字符串为微单位
+     *
+     * @throws NumberFormatException 格式错误或超出范围
+     */
+    public static long parseMicros(String text) {
+        try {
+            return new BigDecimal(text.trim())
+                    .movePointRight(6)
+                    .setScale(0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(text);
+        }
+    }
+
+    /**
+     * 微单位金额除以整数, HALF_EVEN 舍入
+     */
+    public static long divide(long micros, int divisor) {
+        return BigDecimal.valueOf(micros)
+                .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+
+    /**
+     * 按 HALF_UP 把微单位金额舍入到 unitMicros 的整数倍, 返回倍数
+     */
+    public static long roundToUnits(long micros, long unitMicros) {
+        long half = unitMicros / 2;
+        return micros >= 0 ? (micros + half) / unitMicros : -((-micros + half) / unitMicros);
+    }
+
+    public static double toDouble(long micros) {
+        return micros / (double) MICROS_PER_UNIT;
+    }
+}
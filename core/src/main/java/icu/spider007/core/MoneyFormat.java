@@ -0,0 +1,70 @@
+package icu.spider007.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 按货币预先构建的金额格式化器, 不可变且线程安全, 每种货币只有一个实例
+ */
+public final class MoneyFormat {
+    private static final Map<PayCurrency, MoneyFormat> FORMATS = new EnumMap<>(PayCurrency.class);
+
+    static {
+        for (PayCurrency currency : PayCurrency.values()) {
+            FORMATS.put(currency, new MoneyFormat(currency));
+        }
+    }
+
+    private final PayCurrency currency;
+    private final long unitMicros;
+    private final long fractionScale;
+
+    private MoneyFormat(PayCurrency currency) {
+        this.currency = currency;
+        this.unitMicros = currency.getDisplayUnitMicros();
+        this.fractionScale = Money.MICROS_PER_UNIT / unitMicros;
+    }
+
+    public static MoneyFormat of(PayCurrency currency) {
+        return FORMATS.get(currency);
+    }
+
+    public PayCurrency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * 带货币符号的金额, 如 "¥454.55"
+     */
+    public String format(long micros) {
+        StringBuilder sb = new StringBuilder(16);
+        sb.append(currency.getSymbol());
+        appendAmount(sb, micros);
+        return sb.toString();
+    }
+
+    /**
+     * 不带货币符号的金额, 如 "454.55"
+     */
+    public String formatAmount(long micros) {
+        StringBuilder sb = new StringBuilder(16);
+        appendAmount(sb, micros);
+        return sb.toString();
+    }
+
+    public void appendAmount(StringBuilder sb, long micros) {
+        long units = Money.roundToUnits(micros, unitMicros);
+        if (units < 0) {
+            sb.append('-');
+            units = -units;
+        }
+        sb.append(units / fractionScale);
+        if (fractionScale > 1) {
+            sb.append('.');
+            long fraction = units % fractionScale;
+            for (long scale = fractionScale / 10; scale > 0; scale /= 10) {
+                sb.append((char) ('0' + fraction / scale % 10));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package icu.spider007.core;
+
+/**
+ * 实时跳动模式的金额文本缓冲区
+ * <p>
+ * 金额以整数 (10^-fractionDigits 为单位) 传入, 直接逐位写入复用的 char 数组,
+ * 数值不变时什么也不做, 稳定运行时不产生任何对象分配
+ */
+public final class OdometerText {
+    private static final int MAX_PREFIX = 20;
+    // long 最多 19 位数字; 小数位不超过 18 位时补零后也不超过 19 位
+    private static final int MAX_DIGITS = 19;
+    private static final int MAX_FRACTION_DIGITS = MAX_DIGITS - 1;
+    // 前缀、负号、全部数字和小数点
+    private static final int CAPACITY = MAX_PREFIX + 1 + MAX_DIGITS + 1;
+
+    private final int fractionDigits;
+    private final char[] chars = new char[CAPACITY];
+    private final char[] digits = new char[MAX_DIGITS];
+    private char[] prefix = new char[0];
+    private int length;
+    private long value;
+    // 缓冲区是否对应当前的前缀和 value
+    private boolean written;
+
+    public OdometerText(int fractionDigits) {
+        if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+            throw new IllegalArgumentException("fractionDigits: " + fractionDigits);
+        }
+        this.fractionDigits = fractionDigits;
+    }
+
+    /**
+     * 设置金额前缀 (如 "今日已赚: ¥"), 超过 20 个字符的部分不显示; 会强制下一次 {@link #set(long)} 重写缓冲区
+     */
+    public void setPrefix(String text) {
+        if (samePrefix(text)) {
+            return;
+        }
+        prefix = text.substring(0, Math.min(text.length(), MAX_PREFIX)).toCharArray();
+        written = false;
+    }
+
+    private boolean samePrefix(String text) {
+        if (Math.min(text.length(), MAX_PREFIX) != prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (prefix[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写入新的金额, 返回显示内容是否变化
+     */
+    public boolean set(long scaledValue) {
+        if (written && scaledValue == value) {
+            return false;
+        }
+        value = scaledValue;
+        written = true;
+
+        int pos = prefix.length;
+        System.arraycopy(prefix, 0, chars, 0, pos);
+        if (scaledValue < 0) {
+            chars[pos++] = '-';
+        }
+        // 按非正数取位, Long.MIN_VALUE 取反会溢出
+        long remaining = scaledValue < 0 ? scaledValue : -scaledValue;
+
+        // 先逆序取出所有数字, 至少补足一位整数
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining < 0 || count <= fractionDigits);
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (i == fractionDigits - 1) {
+                chars[pos++] = '.';
+            }
+            chars[pos++] = digits[i];
+        }
+        length = pos;
+        return true;
+    }
+
+    public char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+}
@@ -0,0 +1,69 @@
+package icu.spider007.core;
+
+/**
+ * 支持的货币, label 与工具窗口下拉框和配置中保存的名称一致
+ */
+public enum PayCurrency {
+    CNY("人民币", "¥", 2),
+    USD("美元", "$", 2),
+    EUR("欧元", "€", 2),
+    JPY("日元", "¥", 0);
+
+    private final String label;
+    private final String symbol;
+    private final int fractionDigits;
+
+    PayCurrency(String label, String symbol, int fractionDigits) {
+        this.label = label;
+        this.symbol = symbol;
+        this.fractionDigits = fractionDigits;
+    }
+
+    /**
+     * 按显示名称查找, 未知名称按人民币处理 (与旧版 getCurrencySymbol 的默认分支一致)
+     */
+    public static PayCurrency fromLabel(String label) {
+        for (PayCurrency currency : values()) {
+            if (currency.label.equals(label)) {
+                return currency;
+            }
+        }
+        return CNY;
+    }
+
+    /**
+     * 按 ISO 代码 (如 USD) 或显示名称查找, 未知时返回 null
+     */
+    public static PayCurrency find(String text) {
+        String trimmed = text.trim();
+        for (PayCurrency currency : values()) {
+            if (currency.name().equalsIgnoreCase(trimmed) || currency.label.equals(trimmed)) {
+                return currency;
+            }
+        }
+        return null;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    /**
+     * 最小显示单位对应的微单位数, 如人民币的一分钱 = 10000
+     */
+    public long getDisplayUnitMicros() {
+        long unit = Money.MICROS_PER_UNIT;
+        for (int i = 0; i < fractionDigits; i++) {
+            unit /= 10;
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,32 @@
+package icu.spider007.core;
+
+/**
+ * 薪资配置无法编译成工作时间表时抛出, message 可直接展示给用户
+ */
+public class ScheduleException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        // 月薪/天数等数字错误
+        SALARY,
+        // 时间格式或顺序错误
+        TIME,
+        // 节假日文件错误
+        CALENDAR,
+        // 汇率文件错误或缺少汇率
+        RATE,
+        // 加班规则错误
+        OVERTIME
+    }
+
+    private final Kind kind;
+
+    public ScheduleException(Kind kind, String message) {
+        super(message);
+        this.kind = kind;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+}
@@ -0,0 +1,170 @@
+package icu.spider007.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 工具窗口表单的一次输入快照, 不可变
+ * <p>
+ * 一次遍历校验全部字段并给出逐字段的错误信息, 校验通过后才能编译成 {@link WorkRoster}.
+ * 排班字段为空时每天都使用上午/下午/午休字段描述的时间表. 校验和编译使用 {@link WorkSchedule} 的同一组解析方法,
+ * 校验通过的表单一定能编译
+ */
+public final class ScheduleForm {
+
+    public enum Field {
+        MONTHLY_SALARY,
+        MONTHLY_WORK_DAYS,
+        START_TIME,
+        MORNING_END_TIME,
+        AFTERNOON_START_TIME,
+        END_TIME,
+        LUNCH_START,
+        LUNCH_END,
+        ROSTER
+    }
+
+    private final String[] values;
+    private final String currency;
+
+    /**
+     * @param values 按 {@link Field} 顺序排列的字段文本
+     */
+    public ScheduleForm(String[] values, String currency) {
+        if (values.length != Field.values().length) {
+            throw new IllegalArgumentException("expected " + Field.values().length + " values");
+        }
+        this.values = values.clone();
+        this.currency = currency;
+    }
+
+    public String get(Field field) {
+        return values[field.ordinal()];
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * 校验全部字段, 返回字段到错误信息的映射, 全部合法时返回空映射
+     */
+    public Map<Field, String> validate() {
+        Map<Field, String> errors = new EnumMap<>(Field.class);
+        try {
+            WorkSchedule.parseSalary(get(Field.MONTHLY_SALARY));
+        } catch (ScheduleException e) {
+            errors.put(Field.MONTHLY_SALARY, e.getMessage());
+        }
+        try {
+            WorkSchedule.parseWorkDays(get(Field.MONTHLY_WORK_DAYS));
+        } catch (ScheduleException e) {
+            errors.put(Field.MONTHLY_WORK_DAYS, e.getMessage());
+        }
+
+        // 当天第几秒, 无法解析的字段为 -1
+        int[] times = new int[values.length];
+        Arrays.fill(times, -1);
+        for (Field field : Field.values()) {
+            if (field.ordinal() < Field.START_TIME.ordinal() || field == Field.ROSTER) {
+                continue;
+            }
+            try {
+                times[field.ordinal()] = WorkSchedule.parseTime(get(field));
+            } catch (ScheduleException e) {
+                errors.put(field, e.getMessage());
+            }
+        }
+
+        // 时间顺序, 只在相关字段都能解析时检查
+        checkOrder(times, Field.START_TIME, Field.MORNING_END_TIME, "不能早于上午上班", errors);
+        checkOrder(times, Field.MORNING_END_TIME, Field.AFTERNOON_START_TIME, "不能早于上午下班", errors);
+        checkOrder(times, Field.AFTERNOON_START_TIME, Field.END_TIME, "不能早于下午上班", errors);
+
+        // 排班与金额无关, 用占位金额解析即可检查格式
+        if (!get(Field.ROSTER).trim().isEmpty()) {
+            try {
+                WorkRoster.parse(get(Field.ROSTER), 1, 1, PayCurrency.fromLabel(currency));
+            } catch (ScheduleException e) {
+                errors.put(Field.ROSTER, e.getMessage());
+            }
+        }
+        return errors.isEmpty() ? Collections.emptyMap() : errors;
+    }
+
+    private static void checkOrder(int[] times, Field earlier, Field later, String message,
+                                   Map<Field, String> errors) {
+        int from = times[earlier.ordinal()];
+        int to = times[later.ordinal()];
+        if (from >= 0 && to >= 0 && to < from) {
+            errors.putIfAbsent(later, message);
+        }
+    }
+
+    /**
+     * 编译成排班表
+     *
+     * @throws ScheduleException 表单不合法
+     */
+    public WorkRoster compile() {
+        WorkSchedule schedule = WorkSchedule.compile(
+                get(Field.MONTHLY_SALARY), get(Field.MONTHLY_WORK_DAYS),
+                get(Field.START_TIME), get(Field.MORNING_END_TIME),
+                get(Field.AFTERNOON_START_TIME), get(Field.END_TIME),
+                get(Field.LUNCH_START), get(Field.LUNCH_END), currency);
+        String roster = get(Field.ROSTER);
+        if (roster.trim().isEmpty()) {
+            return WorkRoster.uniform(schedule);
+        }
+        return WorkRoster.parse(roster, schedule.getMonthlySalaryMicros(), schedule.getMonthlyWorkDays(),
+                schedule.getCurrency());
+    }
+
+    /**
+     * 表单内容的摘要, 取 SHA-256 的前 4 字节; 内容相同的表单摘要相同, 重启后也不变.
+     * 账本用它标识当天生效的时间表
+     */
+    public int digest() {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // 每个字段前写入长度, 不同的字段划分不会得到相同的输入
+        for (String value : values) {
+            updateField(sha, value);
+        }
+        updateField(sha, currency);
+        return ByteBuffer.wrap(sha.digest()).getInt();
+    }
+
+    private static void updateField(MessageDigest sha, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        sha.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        sha.update(bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScheduleForm)) {
+            return false;
+        }
+        ScheduleForm other = (ScheduleForm) o;
+        return Arrays.equals(values, other.values) && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(values) + currency.hashCode();
+    }
+}
@@ -0,0 +1,85 @@
+package icu.spider007.core;
+
+import icu.spider007.core.overtime.PayCurve;
+
+/**
+ * 状态栏的今日收入文本, 节拍和实时跳动模式的帧回调共用同一个格式
+ * <p>
+ * 每个节拍用 {@link #reset} 换上最新的排班日和附加文本, 之后每帧调用 {@link #frame(long)}:
+ * 收入和加班费按货币最小单位都没有变化时不分配任何对象, 变化时才生成新字符串.
+ * 本类不是线程安全的
+ */
+public final class StatusText {
+    private WorkDay day;
+    private String holiday;
+    private String suffix = "";
+    private long unitMicros;
+    // 最近一次生成文本时的金额 (货币最小单位), 重置后为 -1
+    private long earnedUnits = -1;
+    private long overtimeUnits = -1;
+    private String text;
+
+    /**
+     * 换上新的排班日, 下一次 {@link #frame(long)} 一定重新生成文本
+     *
+     * @param holiday 节假日名称, 不是节假日时为 null
+     * @param suffix  附加在金额之后的文本, 如本项目收入
+     */
+    public void reset(WorkDay day, String holiday, String suffix) {
+        this.day = day;
+        this.holiday = holiday;
+        this.suffix = suffix;
+        unitMicros = day.getSchedule().getCurrency().getDisplayUnitMicros();
+        earnedUnits = -1;
+        overtimeUnits = -1;
+    }
+
+    /**
+     * 按今天第 millisOfDay 毫秒更新文本
+     *
+     * @return 文本是否变化; 还没有 {@link #reset} 时返回 false
+     */
+    public boolean frame(long millisOfDay) {
+        WorkDay day = this.day;
+        if (day == null) {
+            return false;
+        }
+        PayCurve curve = day.getCurve();
+        long millis = day.millisOf(millisOfDay);
+        long earned = Money.roundToUnits(curve.earnedMicrosAtMillis(millis), unitMicros);
+        long overtime = Money.roundToUnits(curve.overtimeMicrosAt((int) (millis / 1000)), unitMicros);
+        if (earned == earnedUnits && overtime == overtimeUnits) {
+            return false;
+        }
+        earnedUnits = earned;
+        overtimeUnits = overtime;
+        WorkSchedule schedule = day.getSchedule();
+        text = format(schedule.getMoneyFormat(), schedule.isRestDay(), holiday,
+                earned * unitMicros, overtime * unitMicros, suffix);
+        return true;
+    }
+
+    /**
+     * 最近一次 {@link #frame(long)} 生成的文本
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * 状态栏文本格式: 工作日为 "今日: 金额 (加班 金额)", 休息日为 "今日加班: 金额" 或 "今日休息 (节日)"
+     *
+     * @param holiday 节假日名称, 没有时为 null
+     */
+    public static String format(MoneyFormat format, boolean restDay, String holiday,
+                                long earnedMicros, long overtimeMicros, String suffix) {
+        if (restDay) {
+            if (overtimeMicros > 0) {
+                return "今日加班: " + format.format(overtimeMicros) + suffix;
+            }
+            return (holiday == null ? "今日休息" : "今日休息 (" + holiday + ")") + suffix;
+        }
+        String earned = "今日: " + format.format(earnedMicros);
+        return (overtimeMicros > 0 ? earned + " (加班 " + format.format(overtimeMicros) + ")" : earned) + suffix;
+    }
+}
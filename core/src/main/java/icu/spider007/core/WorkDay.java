@@ -0,0 +1,65 @@
+package icu.spider007.core;
+
+import icu.spider007.core.overtime.PayCurve;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * 某一时刻所属的排班日, 不可变
+ * <p>
+ * 夜班跨过零点后仍属于开始那一天, 此时 offsetSeconds 为 24 小时,
+ * 调用方把当前时刻加上偏移再交给 {@link WorkSchedule} 查询. 收入 (包括加班费) 从 {@link #getCurve()} 读取
+ */
+public final class WorkDay {
+    private final LocalDate date;
+    private final WorkSchedule schedule;
+    private final int offsetSeconds;
+    private final PayCurve curve;
+
+    WorkDay(LocalDate date, WorkSchedule schedule, int offsetSeconds, PayCurve curve) {
+        this.date = date;
+        this.schedule = schedule;
+        this.offsetSeconds = offsetSeconds;
+        this.curve = curve;
+    }
+
+    /**
+     * 排班所属的日期, 夜班跨零点后是前一天
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public WorkSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * 当天的收入曲线, 已包含加班规则
+     */
+    public PayCurve getCurve() {
+        return curve;
+    }
+
+    /**
+     * 排班日零点到今天零点的秒数, 0 或 24 小时
+     */
+    public int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    /**
+     * 当前时刻在排班日中的秒数
+     */
+    public int secondOf(LocalTime now) {
+        return offsetSeconds + now.toSecondOfDay();
+    }
+
+    /**
+     * 今天第 millisOfDay 毫秒在排班日中的毫秒数
+     */
+    public long millisOf(long millisOfDay) {
+        return offsetSeconds * 1000L + millisOfDay;
+    }
+}
@@ -0,0 +1,401 @@
+package icu.spider007.core;
+
+import icu.spider007.core.calendar.HolidayRules;
+import icu.spider007.core.calendar.WorkCalendar;
+import icu.spider007.core.overtime.OvertimeObserver;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.overtime.PayCurve;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按星期排列的排班表, 不可变
+ * <p>
+ * 排班文本每行 (或用分号分隔) 一条规则: 星期 时段列表, 例如
+ * <pre>
+ * MON-FRI 09:00-12:00,13:30-18:00
+ * SAT 22:00-06:00,!02:00-02:30
+ * </pre>
+ * 星期可以写成 MON,WED 或 FRI-MON 这样的范围, 时段结束早于开始表示跨零点,
+ * 以 ! 开头的是从工作时段中扣除的休息, 没有列出的星期为休息日.
+ * 内容相同的日程共享同一个 {@link WorkSchedule}
+ * <p>
+ * 附加 {@link WorkCalendar} 后, 法定节假日休息, 调休上班日使用第一个工作日的时间表;
+ * 开启自动工作天数时, 日薪按当月日历中的工作日数计算, 每月只换算一次
+ * <p>
+ * 附加 {@link OvertimeRules} 后, 每个排班日带有编译好的 {@link PayCurve}, 同一时间表和日子类型只编译一次;
+ * 这条曲线还不计加班, 节拍时由 {@link OvertimeObserver} 经 {@link #observe} 计入 IDE 观察到的加班
+ */
+public final class WorkRoster {
+    private static final String[] DAY_NAMES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+    // 收入曲线缓存的上限, 自动工作天数每月换一批时间表, 超过时清空重来
+    private static final int MAX_CACHED_CURVES = 64;
+    // 按月缓存换算后的时间表的槽数, 任意连续 16 个月互不冲突
+    private static final int MONTH_SLOTS = 16;
+
+    // 下标为 DayOfWeek.getValue() - 1
+    private final WorkSchedule[] schedules;
+    // 没有填写排班, 每天使用同一份时间表
+    private final boolean uniform;
+    private final WorkCalendar calendar;
+    private final boolean autoWorkDays;
+    private final OvertimeRules overtime;
+    private final WorkSchedule restSchedule;
+    private final WorkSchedule standardSchedule;
+    // 按日历换算过工作天数的时间表, 下标为 monthKey % MONTH_SLOTS; 元素的字段都是 final 的, 不加锁发布
+    private final MonthSchedules[] monthSchedules = new MonthSchedules[MONTH_SLOTS];
+    // 时间表 (按引用比较) 到各类型日子的收入曲线, 下标为 DayType.ordinal()
+    private final Map<WorkSchedule, PayCurve[]> curves = new ConcurrentHashMap<>();
+
+    private WorkRoster(WorkSchedule[] schedules, boolean uniform, WorkCalendar calendar, boolean autoWorkDays,
+                       OvertimeRules overtime) {
+        this.schedules = schedules;
+        this.uniform = uniform;
+        this.calendar = calendar;
+        this.autoWorkDays = autoWorkDays;
+        this.overtime = overtime;
+        WorkSchedule standard = null;
+        for (WorkSchedule schedule : schedules) {
+            if (!schedule.isRestDay()) {
+                standard = schedule;
+                break;
+            }
+        }
+        WorkSchedule any = schedules[0];
+        this.restSchedule = WorkSchedule.of(any.getMonthlySalaryMicros(), any.getMonthlyWorkDays(), any.getCurrency(),
+                new int[0], new int[0]);
+        this.standardSchedule = standard == null ? restSchedule : standard;
+    }
+
+    /**
+     * 每天都使用同一份时间表
+     */
+    public static WorkRoster uniform(WorkSchedule schedule) {
+        WorkSchedule[] schedules = new WorkSchedule[7];
+        Arrays.fill(schedules, schedule);
+        return new WorkRoster(schedules, true, null, false, null);
+    }
+
+    /**
+     * 解析排班文本
+     *
+     * @throws ScheduleException 排班文本不合法
+     */
+    public static WorkRoster parse(String text, long monthlySalaryMicros, int monthlyWorkDays, PayCurrency currency) {
+        String[] dayRules = new String[7];
+        for (String line : text.split("[;\\n]")) {
+            String rule = line.trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            String[] parts = rule.split("\\s+", 2);
+            if (parts.length < 2) {
+                throw new ScheduleException(ScheduleException.Kind.TIME, "排班格式应为: 星期 时段列表");
+            }
+            for (int day : parseDays(parts[0])) {
+                if (dayRules[day] != null) {
+                    throw new ScheduleException(ScheduleException.Kind.TIME, "重复设置了 " + DAY_NAMES[day]);
+                }
+                dayRules[day] = parts[1].replaceAll("\\s+", "");
+            }
+        }
+
+        Map<String, WorkSchedule> compiled = new HashMap<>();
+        WorkSchedule rest = WorkSchedule.of(monthlySalaryMicros, monthlyWorkDays, currency, new int[0], new int[0]);
+        WorkSchedule[] schedules = new WorkSchedule[7];
+        for (int day = 0; day < 7; day++) {
+            String segments = dayRules[day];
+            if (segments == null) {
+                schedules[day] = rest;
+                continue;
+            }
+            WorkSchedule schedule = compiled.get(segments);
+            if (schedule == null) {
+                schedule = parseSegments(segments, monthlySalaryMicros, monthlyWorkDays, currency);
+                compiled.put(segments, schedule);
+            }
+            schedules[day] = schedule;
+        }
+
+        // 跨零点的夜班不能与次日的第一个时段重叠
+        for (int day = 0; day < 7; day++) {
+            WorkSchedule next = schedules[(day + 1) % 7];
+            int overflow = schedules[day].getShiftEnd() - WorkSchedule.DAY_SECONDS;
+            if (overflow > 0 && !next.isRestDay() && next.getShiftStart() < overflow) {
+                throw new ScheduleException(ScheduleException.Kind.TIME,
+                        DAY_NAMES[day] + " 的夜班与次日时段重叠");
+            }
+        }
+        return new WorkRoster(schedules, false, null, false, null);
+    }
+
+    /**
+     * 附加节假日日历, 没有填写排班时周一至周五为工作日, 否则以排班中有时段的星期为工作日
+     *
+     * @param autoWorkDays 按当月日历中的工作日数计算日薪, 而不是配置的每月工作天数
+     */
+    public WorkRoster withCalendar(HolidayRules rules, boolean autoWorkDays) {
+        boolean[] workdays = uniform ? WorkCalendar.weekdays() : new boolean[7];
+        if (!uniform) {
+            for (int day = 0; day < 7; day++) {
+                workdays[day] = !schedules[day].isRestDay();
+            }
+        }
+        return new WorkRoster(schedules, uniform, rules.calendar(workdays), autoWorkDays, overtime);
+    }
+
+    /**
+     * 附加加班计薪规则, null 表示不计加班
+     */
+    public WorkRoster withOvertime(OvertimeRules rules) {
+        return new WorkRoster(schedules, uniform, calendar, autoWorkDays, rules);
+    }
+
+    /**
+     * 相同排班、不同薪资的排班表, 保留日历设置, 批量计算时复用解析结果
+     */
+    public WorkRoster withPay(long monthlySalaryMicros, int monthlyWorkDays, PayCurrency currency) {
+        Map<WorkSchedule, WorkSchedule> repriced = new IdentityHashMap<>();
+        WorkSchedule[] updated = new WorkSchedule[7];
+        for (int day = 0; day < 7; day++) {
+            WorkSchedule schedule = schedules[day];
+            WorkSchedule copy = repriced.get(schedule);
+            if (copy == null) {
+                copy = schedule.withPay(monthlySalaryMicros, monthlyWorkDays, currency);
+                repriced.put(schedule, copy);
+            }
+            updated[day] = copy;
+        }
+        return new WorkRoster(updated, uniform, calendar, autoWorkDays, overtime);
+    }
+
+    // MON / MON,WED / MON-FRI / FRI-MON, 返回 0-6
+    private static List<Integer> parseDays(String text) {
+        List<Integer> days = new ArrayList<>();
+        for (String item : text.split(",")) {
+            String[] range = item.split("-", 2);
+            int from = dayIndex(range[0]);
+            int to = range.length == 2 ? dayIndex(range[1]) : from;
+            for (int day = from; ; day = (day + 1) % 7) {
+                days.add(day);
+                if (day == to) {
+                    break;
+                }
+            }
+        }
+        return days;
+    }
+
+    private static int dayIndex(String name) {
+        String upper = name.trim().toUpperCase(Locale.ROOT);
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (DAY_NAMES[i].equals(upper)) {
+                return i;
+            }
+        }
+        throw new ScheduleException(ScheduleException.Kind.TIME, "无法识别的星期: " + name);
+    }
+
+    // 09:00-12:00,13:30-18:00,!12:00-12:30
+    private static WorkSchedule parseSegments(String text, long monthlySalaryMicros, int monthlyWorkDays,
+                                              PayCurrency currency) {
+        List<int[]> work = new ArrayList<>();
+        List<int[]> breaks = new ArrayList<>();
+        for (String item : text.split(",")) {
+            boolean isBreak = item.startsWith("!");
+            String[] range = (isBreak ? item.substring(1) : item).split("-", 2);
+            if (range.length < 2) {
+                throw new ScheduleException(ScheduleException.Kind.TIME, "时段格式应为 HH:mm-HH:mm");
+            }
+            int from = WorkSchedule.parseTime(range[0]);
+            int to = WorkSchedule.parseTime(range[1]);
+            if (to <= from) {
+                // 跨零点
+                to += WorkSchedule.DAY_SECONDS;
+            }
+            (isBreak ? breaks : work).add(new int[]{from, to});
+        }
+        if (work.isEmpty()) {
+            throw new ScheduleException(ScheduleException.Kind.TIME, "至少需要一个工作时段");
+        }
+        work.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int shiftStart = work.get(0)[0];
+        for (int[] range : breaks) {
+            if (range[0] < shiftStart) {
+                // 夜班零点之后的休息
+                range[0] += WorkSchedule.DAY_SECONDS;
+                range[1] += WorkSchedule.DAY_SECONDS;
+            }
+        }
+        breaks.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        int[][] segments = WorkSchedule.subtract(column(work, 0), column(work, 1), column(breaks, 0), column(breaks, 1));
+        return WorkSchedule.of(monthlySalaryMicros, monthlyWorkDays, currency, segments[0], segments[1]);
+    }
+
+    private static int[] column(List<int[]> ranges, int index) {
+        int[] values = new int[ranges.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ranges.get(i)[index];
+        }
+        return values;
+    }
+
+    public WorkSchedule getSchedule(DayOfWeek day) {
+        return schedules[day.getValue() - 1];
+    }
+
+    /**
+     * 某一天实际使用的时间表, 已考虑节假日、调休和自动工作天数
+     */
+    public WorkSchedule scheduleFor(LocalDate date) {
+        WorkSchedule schedule = schedules[date.getDayOfWeek().getValue() - 1];
+        if (calendar == null) {
+            return schedule;
+        }
+        if (!calendar.isWorkday(date)) {
+            schedule = restSchedule;
+        } else if (schedule.isRestDay()) {
+            // 调休上班
+            schedule = standardSchedule;
+        }
+        return adjustForMonth(date, schedule);
+    }
+
+    // 开启自动工作天数时换成按当月工作日数计算日薪的时间表
+    private WorkSchedule adjustForMonth(LocalDate date, WorkSchedule schedule) {
+        if (!autoWorkDays) {
+            return schedule;
+        }
+        // 跨月时前一天和今天分属两个月, 后台按年计算也会经过其他月份, 各月分开缓存, 查找时不分配对象
+        int monthKey = date.getYear() * 12 + date.getMonthValue();
+        int slot = Math.floorMod(monthKey, MONTH_SLOTS);
+        MonthSchedules month = monthSchedules[slot];
+        if (month == null || month.monthKey != monthKey) {
+            month = new MonthSchedules(monthKey, calendar.workdaysInMonth(date));
+            monthSchedules[slot] = month;
+        }
+        return month.adjust(schedule);
+    }
+
+    /**
+     * 某一天的类型: 工作日、普通休息日或法定节假日
+     */
+    public OvertimeRules.DayType dayType(LocalDate date) {
+        if (calendar == null) {
+            return schedules[date.getDayOfWeek().getValue() - 1].isRestDay()
+                    ? OvertimeRules.DayType.WEEKEND : OvertimeRules.DayType.WORKDAY;
+        }
+        if (calendar.isWorkday(date)) {
+            return OvertimeRules.DayType.WORKDAY;
+        }
+        // 只有法定节假日按节假日计, 长假中调休来的休息日和没有名称的放假日都按休息日计
+        return calendar.isStatutoryHoliday(date) ? OvertimeRules.DayType.HOLIDAY : OvertimeRules.DayType.WEEKEND;
+    }
+
+    /**
+     * 某一天的收入曲线, 还不计加班, 与时间表的结果一致
+     */
+    public PayCurve curveFor(LocalDate date) {
+        return curveFor(date, scheduleFor(date));
+    }
+
+    private PayCurve curveFor(LocalDate date, WorkSchedule schedule) {
+        OvertimeRules.DayType type = overtime == null ? OvertimeRules.DayType.WORKDAY : dayType(date);
+        PayCurve[] compiled = curves.get(schedule);
+        if (compiled == null) {
+            if (curves.size() >= MAX_CACHED_CURVES) {
+                curves.clear();
+            }
+            compiled = curves.computeIfAbsent(schedule, key -> new PayCurve[OvertimeRules.DayType.values().length]);
+        }
+        PayCurve curve = compiled[type.ordinal()];
+        if (curve == null) {
+            // 并发时可能重复编译, 结果相同, 曲线的字段都是 final 的, 可以安全发布
+            curve = overtime == null ? PayCurve.regular(schedule)
+                    : overtime.compile(schedule, adjustForMonth(date, standardSchedule), type);
+            compiled[type.ordinal()] = curve;
+        }
+        return curve;
+    }
+
+    /**
+     * now 所属的排班日: 前一天的夜班还没结束时属于前一天, 否则属于今天
+     */
+    public WorkDay resolve(LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        LocalDate yesterday = today.minusDays(1);
+        WorkSchedule previous = scheduleFor(yesterday);
+        int secondOfDay = now.toLocalTime().toSecondOfDay();
+        if (secondOfDay + WorkSchedule.DAY_SECONDS < previous.getShiftEnd()) {
+            return new WorkDay(yesterday, previous, WorkSchedule.DAY_SECONDS, curveFor(yesterday, previous));
+        }
+        WorkSchedule schedule = scheduleFor(today);
+        return new WorkDay(today, schedule, 0, curveFor(today, schedule));
+    }
+
+    /**
+     * 计入观察到的加班后的排班日: 从 fromSecond 起一直在观察, 此前另外观察到 observedSeconds 秒可计加班的时间.
+     * 每次调用都重新编译曲线; 当天不计加班时返回 day 本身
+     *
+     * @param day 本排班表 {@link #resolve} 的结果
+     */
+    public WorkDay observe(WorkDay day, int fromSecond, int observedSeconds) {
+        PayCurve curve = day.getCurve();
+        if (overtime == null || curve.getOvertimeMicrosPerHour() == 0) {
+            return day;
+        }
+        LocalDate date = day.getDate();
+        return new WorkDay(date, day.getSchedule(), day.getOffsetSeconds(), overtime.compile(day.getSchedule(),
+                adjustForMonth(date, standardSchedule), curve.getType(), fromSecond, observedSeconds));
+    }
+
+    /**
+     * 附加的节假日日历, 没有时返回 null
+     */
+    public WorkCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * 附加的加班计薪规则, 没有时返回 null
+     */
+    public OvertimeRules getOvertime() {
+        return overtime;
+    }
+
+    /**
+     * 任意一天的时间表, 用于读取月薪、货币等公共设置
+     */
+    public WorkSchedule any() {
+        return schedules[0];
+    }
+
+    // 某个月按日历工作天数换算后的时间表, 与原时间表一一对应
+    private final class MonthSchedules {
+        final int monthKey;
+        final Map<WorkSchedule, WorkSchedule> adjusted = new IdentityHashMap<>();
+
+        MonthSchedules(int monthKey, int workDays) {
+            this.monthKey = monthKey;
+            for (WorkSchedule schedule : schedules) {
+                adjusted.put(schedule, schedule.withMonthlyWorkDays(workDays));
+            }
+            adjusted.put(restSchedule, restSchedule.withMonthlyWorkDays(workDays));
+        }
+
+        WorkSchedule adjust(WorkSchedule schedule) {
+            return adjusted.get(schedule);
+        }
+    }
+}
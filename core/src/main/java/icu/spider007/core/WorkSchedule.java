@@ -0,0 +1,388 @@
+package icu.spider007.core;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * 编译后的单日工作时间表, 不可变
+ * <p>
+ * 任意数量的工作时段扣掉休息后, 以"距当天零点第几秒"的有序数组保存, 并预先算好每毫秒工资,
+ * 查询已工作时长只需一次二分查找, 与时段数量无关. 跨零点的夜班时段结束时刻可以超过 24 小时,
+ * 由 {@link WorkRoster} 决定某一时刻属于哪一天的排班.
+ * 金额均为 {@link Money} 定义的微单位, 舍入规则见该类说明
+ */
+public final class WorkSchedule {
+    static final int DAY_SECONDS = 24 * 3600;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private final long monthlySalaryMicros;
+    private final int monthlyWorkDays;
+    private final long dailySalaryMicros;
+    private final PayCurrency currency;
+    // 日薪 = perMilliQuotient * 总工作毫秒 + perMilliRemainder, 用于无溢出地精确计算累计收入
+    private final long perMilliQuotient;
+    private final long perMilliRemainder;
+
+    // 工作时段 [segmentStarts[i], segmentEnds[i]), 单位: 距当天零点第几秒
+    private final int[] segmentStarts;
+    private final int[] segmentEnds;
+    // workedBefore[i] = 第i个时段开始前已完成的工作秒数
+    private final int[] workedBefore;
+    private final int totalSeconds;
+
+    private WorkSchedule(long monthlySalaryMicros, int monthlyWorkDays, PayCurrency currency,
+                         int[] segmentStarts, int[] segmentEnds) {
+        this.monthlySalaryMicros = monthlySalaryMicros;
+        this.monthlyWorkDays = monthlyWorkDays;
+        this.dailySalaryMicros = Money.divide(monthlySalaryMicros, monthlyWorkDays);
+        this.currency = currency;
+        this.segmentStarts = segmentStarts;
+        this.segmentEnds = segmentEnds;
+
+        this.workedBefore = new int[segmentStarts.length];
+        int sum = 0;
+        for (int i = 0; i < segmentStarts.length; i++) {
+            workedBefore[i] = sum;
+            sum += segmentEnds[i] - segmentStarts[i];
+        }
+        this.totalSeconds = sum;
+        long totalMillis = sum * 1000L;
+        this.perMilliQuotient = totalMillis == 0 ? 0 : dailySalaryMicros / totalMillis;
+        this.perMilliRemainder = totalMillis == 0 ? 0 : dailySalaryMicros % totalMillis;
+    }
+
+    /**
+     * 由已排序、互不重叠的时段创建时间表, 没有时段表示休息日
+     *
+     * @throws ScheduleException 时段无序、重叠或超出范围
+     */
+    public static WorkSchedule of(long monthlySalaryMicros, int monthlyWorkDays, PayCurrency currency,
+                                  int[] segmentStarts, int[] segmentEnds) {
+        if (segmentStarts.length != segmentEnds.length) {
+            throw new IllegalArgumentException("segment arrays differ in length");
+        }
+        for (int i = 0; i < segmentStarts.length; i++) {
+            if (segmentStarts[i] < 0 || segmentStarts[i] >= segmentEnds[i] || segmentEnds[i] > 2 * DAY_SECONDS
+                    || i > 0 && segmentStarts[i] < segmentEnds[i - 1]) {
+                throw new ScheduleException(ScheduleException.Kind.TIME, "工作时段重叠或顺序不正确");
+            }
+        }
+        return new WorkSchedule(monthlySalaryMicros, monthlyWorkDays, currency,
+                segmentStarts.clone(), segmentEnds.clone());
+    }
+
+    /**
+     * 相同时段、不同月工作天数的时间表, 按日历自动计算日薪时使用
+     */
+    public WorkSchedule withMonthlyWorkDays(int workDays) {
+        return withPay(monthlySalaryMicros, Math.max(workDays, 1), currency);
+    }
+
+    /**
+     * 相同时段、不同薪资的时间表, 共享时段数组, 不需要重新解析
+     */
+    public WorkSchedule withPay(long monthlySalaryMicros, int monthlyWorkDays, PayCurrency currency) {
+        if (monthlySalaryMicros == this.monthlySalaryMicros && monthlyWorkDays == this.monthlyWorkDays
+                && currency == this.currency) {
+            return this;
+        }
+        return new WorkSchedule(monthlySalaryMicros, monthlyWorkDays, currency, segmentStarts, segmentEnds);
+    }
+
+    /**
+     * 把上午/下午/午休配置编译成工作时间表
+     *
+     * @throws ScheduleException 配置不合法
+     */
+    public static WorkSchedule compile(String monthlySalary, String monthlyWorkDays,
+                                       String startTime, String morningEndTime,
+                                       String afternoonStartTime, String endTime,
+                                       String lunchStart, String lunchEnd, String currency) {
+        long salary = parseSalary(monthlySalary);
+        int workDays = parseWorkDays(monthlyWorkDays);
+
+        int start = parseTime(startTime);
+        int morningEnd = parseTime(morningEndTime);
+        int afternoonStart = parseTime(afternoonStartTime);
+        int end = parseTime(endTime);
+        int lunchFrom = parseTime(lunchStart);
+        int lunchTo = parseTime(lunchEnd);
+
+        // 验证时间合理性
+        if (morningEnd < start || afternoonStart < morningEnd || end < afternoonStart) {
+            throw new ScheduleException(ScheduleException.Kind.TIME, "时间顺序不正确");
+        }
+
+        // 上午、下午两个时段分别扣除午休区间, 午休与上下午间隔重叠的部分不会被重复扣除
+        int[][] segments = subtract(
+                new int[]{start, afternoonStart}, new int[]{morningEnd, end},
+                lunchFrom < lunchTo ? new int[]{lunchFrom} : new int[0],
+                lunchFrom < lunchTo ? new int[]{lunchTo} : new int[0]);
+        return new WorkSchedule(salary, workDays, PayCurrency.fromLabel(currency), segments[0], segments[1]);
+    }
+
+    /**
+     * 解析月薪, 返回微单位
+     *
+     * @throws ScheduleException 不是正数
+     */
+    public static long parseSalary(String monthlySalary) {
+        long salary;
+        try {
+            salary = Money.parseMicros(monthlySalary);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new ScheduleException(ScheduleException.Kind.SALARY, "请输入有效数字");
+        }
+        if (salary <= 0) {
+            throw new ScheduleException(ScheduleException.Kind.SALARY, "请输入正数");
+        }
+        return salary;
+    }
+
+    /**
+     * 解析每月工作天数
+     *
+     * @throws ScheduleException 不是正整数
+     */
+    public static int parseWorkDays(String monthlyWorkDays) {
+        int workDays;
+        try {
+            workDays = Integer.parseInt(monthlyWorkDays.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new ScheduleException(ScheduleException.Kind.SALARY, "请输入有效数字");
+        }
+        if (workDays <= 0) {
+            throw new ScheduleException(ScheduleException.Kind.SALARY, "请输入正数");
+        }
+        return workDays;
+    }
+
+    // HH:mm 转成当天第几秒
+    static int parseTime(String text) {
+        try {
+            return LocalTime.parse(text.trim(), TIME_FORMATTER).toSecondOfDay();
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new ScheduleException(ScheduleException.Kind.TIME, "时间格式应为 HH:mm");
+        }
+    }
+
+    /**
+     * 从工作区间中扣除全部休息区间, 两组区间都按开始时间排序, 返回 {starts, ends}
+     */
+    static int[][] subtract(int[] starts, int[] ends, int[] cutStarts, int[] cutEnds) {
+        int[] resultStarts = new int[starts.length + cutStarts.length];
+        int[] resultEnds = new int[resultStarts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            int from = starts[i];
+            for (int j = 0; j < cutStarts.length && from < ends[i]; j++) {
+                if (cutEnds[j] <= from || cutStarts[j] >= ends[i]) {
+                    continue;
+                }
+                count = append(from, cutStarts[j], resultStarts, resultEnds, count);
+                from = Math.max(from, cutEnds[j]);
+            }
+            count = append(from, ends[i], resultStarts, resultEnds, count);
+        }
+        return new int[][]{Arrays.copyOf(resultStarts, count), Arrays.copyOf(resultEnds, count)};
+    }
+
+    private static int append(int from, int to, int[] starts, int[] ends, int count) {
+        if (from >= to) {
+            return count;
+        }
+        starts[count] = from;
+        ends[count] = to;
+        return count + 1;
+    }
+
+    /**
+     * 截止到当天第 secondOfDay 秒已完成的有效工作秒数
+     */
+    public int workedSeconds(int secondOfDay) {
+        int index = segmentIndex(secondOfDay);
+        if (index < 0) {
+            return 0;
+        }
+        return workedBefore[index] + Math.min(secondOfDay, segmentEnds[index]) - segmentStarts[index];
+    }
+
+    /**
+     * 截止到当天第 millisOfDay 毫秒已完成的有效工作毫秒数
+     */
+    public long workedMillis(long millisOfDay) {
+        int index = segmentIndex((int) (millisOfDay / 1000));
+        if (index < 0) {
+            return 0;
+        }
+        long end = segmentEnds[index] * 1000L;
+        return workedBefore[index] * 1000L + Math.min(millisOfDay, end) - segmentStarts[index] * 1000L;
+    }
+
+    /**
+     * 截止到当天第 millisOfDay 毫秒的收入 (微单位)
+     */
+    public long earnedMicrosAtMillis(long millisOfDay) {
+        return earnedMicrosForWorkedMillis(workedMillis(millisOfDay));
+    }
+
+    /**
+     * 有效工作 workedMillis 毫秒对应的收入 (微单位)
+     * floor(日薪 * worked / 总时长), 拆成商和余数两部分计算, 不会溢出
+     */
+    public long earnedMicrosForWorkedMillis(long workedMillis) {
+        long totalMillis = totalSeconds * 1000L;
+        if (totalMillis == 0) {
+            // 休息日没有工作时段
+            return 0;
+        }
+        return perMilliQuotient * workedMillis + perMilliRemainder * workedMillis / totalMillis;
+    }
+
+    /**
+     * 截止到当天第 millisOfDay 毫秒的收入, 以 10^-fractionDigits 为单位向下取整, 实时跳动模式使用
+     */
+    public long earningsScaled(long millisOfDay, int fractionDigits) {
+        return earnedMicrosAtMillis(millisOfDay) / POWERS_OF_TEN[6 - fractionDigits];
+    }
+
+    /**
+     * 当天第 secondOfDay 秒是否处于工作时段内
+     */
+    public boolean isWorking(int secondOfDay) {
+        int index = segmentIndex(secondOfDay);
+        return index >= 0 && secondOfDay < segmentEnds[index];
+    }
+
+    /**
+     * secondOfDay 之后的下一个时段边界 (上班/午休/下班), 当天没有更多边界时返回 -1
+     */
+    public int nextBoundary(int secondOfDay) {
+        for (int i = 0; i < segmentStarts.length; i++) {
+            if (segmentStarts[i] > secondOfDay) {
+                return segmentStarts[i];
+            }
+            if (segmentEnds[i] > secondOfDay) {
+                return segmentEnds[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 工作时段内, 显示的收入 (按货币最小单位 HALF_UP 舍入) 下一次发生变化的时刻 (当天第几秒)
+     * 不在工作时段内时返回 -1, 此时收入不会变化
+     */
+    public int nextEarningsChange(int secondOfDay) {
+        int index = segmentIndex(secondOfDay);
+        if (index < 0 || secondOfDay >= segmentEnds[index] || dailySalaryMicros <= 0) {
+            return -1;
+        }
+        int worked = workedBefore[index] + secondOfDay - segmentStarts[index];
+        long unit = currency.getDisplayUnitMicros();
+        // 下一个进位阈值: 当前显示值 + 半个最小单位
+        long threshold = Money.roundToUnits(earnedMicrosForWorkedMillis(worked * 1000L), unit) * unit + unit / 2;
+
+        // 先用浮点估算, 再用精确的整数计算修正
+        long target = (long) Math.ceil((double) threshold * totalSeconds / dailySalaryMicros);
+        target = Math.max(worked + 1, Math.min(target, totalSeconds));
+        while (target > worked + 1 && earnedMicrosForWorkedMillis((target - 1) * 1000L) >= threshold) {
+            target--;
+        }
+        while (target < totalSeconds && earnedMicrosForWorkedMillis(target * 1000L) < threshold) {
+            target++;
+        }
+        long second = segmentStarts[index] + target - workedBefore[index];
+        return (int) Math.min(second, segmentEnds[index]);
+    }
+
+    /**
+     * secondOfDay 所在或之前最近的时段下标, 在第一个时段之前返回 -1
+     */
+    public int segmentIndex(int secondOfDay) {
+        int index = Arrays.binarySearch(segmentStarts, secondOfDay);
+        return index < 0 ? -index - 2 : index;
+    }
+
+    /**
+     * 当日工作进度 (0.0 - 1.0)
+     */
+    public double progress(int secondOfDay) {
+        return totalSeconds == 0 ? 1.0 : (double) workedSeconds(secondOfDay) / totalSeconds;
+    }
+
+    /**
+     * 截止到当天第 secondOfDay 秒的收入 (微单位)
+     */
+    public long earnedMicros(int secondOfDay) {
+        return earnedMicrosForWorkedMillis(workedSeconds(secondOfDay) * 1000L);
+    }
+
+    public long getMonthlySalaryMicros() {
+        return monthlySalaryMicros;
+    }
+
+    public int getMonthlyWorkDays() {
+        return monthlyWorkDays;
+    }
+
+    public long getDailySalaryMicros() {
+        return dailySalaryMicros;
+    }
+
+    public PayCurrency getCurrency() {
+        return currency;
+    }
+
+    public MoneyFormat getMoneyFormat() {
+        return MoneyFormat.of(currency);
+    }
+
+    public int getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public int getSegmentCount() {
+        return segmentStarts.length;
+    }
+
+    public int getSegmentStart(int index) {
+        return segmentStarts[index];
+    }
+
+    public int getSegmentEnd(int index) {
+        return segmentEnds[index];
+    }
+
+    /**
+     * 没有任何工作时段
+     */
+    public boolean isRestDay() {
+        return segmentStarts.length == 0;
+    }
+
+    /**
+     * 第一个时段的开始时刻, 休息日返回 0
+     */
+    public int getShiftStart() {
+        return segmentStarts.length == 0 ? 0 : segmentStarts[0];
+    }
+
+    /**
+     * 最后一个时段的结束时刻, 夜班可能超过 24 小时, 休息日返回 0
+     */
+    public int getShiftEnd() {
+        return segmentEnds.length == 0 ? 0 : segmentEnds[segmentEnds.length - 1];
+    }
+
+    /**
+     * 把距当天零点的秒数格式化为 HH:mm, 跨零点时加 "次日" 前缀
+     */
+    public static String formatTime(int secondOfDay) {
+        String text = LocalTime.ofSecondOfDay(secondOfDay % DAY_SECONDS).format(TIME_FORMATTER);
+        return secondOfDay >= DAY_SECONDS ? "次日 " + text : text;
+    }
+}
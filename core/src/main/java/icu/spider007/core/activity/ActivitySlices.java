@@ -0,0 +1,75 @@
+package icu.spider007.core.activity;
+
+import java.util.Arrays;
+
+/**
+ * 按时间片记录编辑器活动, 用于统计"真正在写代码"的时间
+ * <p>
+ * 打字路径上的 {@link #mark(long)} 只比较一个 long, 同一时间片内的重复事件直接返回, 不加锁也不分配对象.
+ * 聚合在节拍时进行: 有事件的时间片算作活跃, 活跃之后的 {@code idleSlices} 个时间片内
+ * (如看代码、思考) 也算作活跃, 超过后视为离开.
+ * <p>
+ * 本类不是线程安全的, mark 和 aggregate 都应在 EDT 上调用
+ */
+public final class ActivitySlices {
+    public static final long SLICE_MILLIS = 15_000;
+    // 环形缓冲区覆盖约一小时, 远大于节拍间隔
+    private static final int RING_SIZE = 256;
+
+    /**
+     * 接收一段活跃时间 [fromMillis, toMillis), 单位为 epoch 毫秒
+     */
+    public interface SpanConsumer {
+        void accept(long fromMillis, long toMillis);
+    }
+
+    private final int idleSlices;
+    private final long[] ring = new long[RING_SIZE];
+    private long lastMarked = -1;
+    private long lastActiveSlice = Long.MIN_VALUE / 2;
+    private long aggregatedUntil = -1;
+
+    public ActivitySlices(int idleSlices) {
+        this.idleSlices = idleSlices;
+        Arrays.fill(ring, -1);
+    }
+
+    /**
+     * 记录一次活动
+     */
+    public void mark(long nowMillis) {
+        long slice = nowMillis / SLICE_MILLIS;
+        if (slice != lastMarked) {
+            lastMarked = slice;
+            ring[(int) (slice % RING_SIZE)] = slice;
+        }
+    }
+
+    /**
+     * 聚合上次调用以来已经结束的时间片, 连续的活跃时间片合并成一段交给 consumer
+     */
+    public void aggregate(long nowMillis, SpanConsumer consumer) {
+        long current = nowMillis / SLICE_MILLIS;
+        if (aggregatedUntil < 0) {
+            aggregatedUntil = current;
+            return;
+        }
+        long spanStart = -1;
+        for (long slice = Math.max(aggregatedUntil, current - RING_SIZE + 1); slice < current; slice++) {
+            if (ring[(int) (slice % RING_SIZE)] == slice) {
+                lastActiveSlice = slice;
+            }
+            boolean active = slice - lastActiveSlice < idleSlices;
+            if (active && spanStart < 0) {
+                spanStart = slice;
+            } else if (!active && spanStart >= 0) {
+                consumer.accept(spanStart * SLICE_MILLIS, slice * SLICE_MILLIS);
+                spanStart = -1;
+            }
+        }
+        if (spanStart >= 0) {
+            consumer.accept(spanStart * SLICE_MILLIS, current * SLICE_MILLIS);
+        }
+        aggregatedUntil = Math.max(aggregatedUntil, current);
+    }
+}
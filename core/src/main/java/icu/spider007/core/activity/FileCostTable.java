@@ -0,0 +1,223 @@
+package icu.spider007.core.activity;
+
+import icu.spider007.core.ledger.CostMap;
+
+import java.util.Arrays;
+
+/**
+ * 按文件 (以及顶层声明) 累计的编码收入
+ * <p>
+ * 打字路径上的 {@link #mark} 只在一个很小的数组里查找本周期编辑过的文件, 不访问哈希表也不分配对象.
+ * 节拍时 {@link #settle} 把这段时间的收入按各文件活跃的时间片数拆分;
+ * 没有编辑活动时, 最后编辑的文件在 {@link #IDLE_MILLIS} 内 (看代码、思考) 仍分得全部收入, 超过后不再归属任何文件.
+ * 每个文件分到的份额在下一次 settle 之前可以通过 {@link #getShareCount()} 等读取, 用于再细分到声明.
+ * <p>
+ * 累计值和变化过的键分别存放在两个 {@link CostMap} 里, 落盘时只取出变化过的部分.
+ * 本类不是线程安全的, 应在 EDT 上调用
+ */
+public final class FileCostTable {
+    // 最后一次编辑后 2 分钟内仍算作在写这个文件, 与活跃时间的判定一致
+    public static final long IDLE_MILLIS = 120_000;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final CostMap totals = new CostMap(1024);
+    private final CostMap dirty = new CostMap(64);
+
+    // 本结算周期内编辑过的文件: 键、最后标记的时间片、时间片数
+    private long[] touchedKeys = new long[8];
+    private long[] touchedSlice = new long[8];
+    private int[] touchedSlices = new int[8];
+    private int touchedCount;
+    private long lastKey;
+    private long lastMarkMillis = Long.MIN_VALUE;
+
+    // 最近一次 settle 的拆分结果
+    private long[] shareKeys = new long[8];
+    private long[] shareMicros = new long[8];
+    private int[] shareSeconds = new int[8];
+    private int shareCount;
+
+    /**
+     * 文件的键: 路径的 64 位哈希, 跨会话稳定
+     */
+    public static long fileKey(CharSequence path) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < path.length(); i++) {
+            h = (h ^ path.charAt(i)) * FNV_PRIME;
+        }
+        return CostMap.mix(h);
+    }
+
+    /**
+     * 文件中某个顶层声明的键
+     */
+    public static long declarationKey(long fileKey, CharSequence name) {
+        long h = fileKey;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * FNV_PRIME;
+        }
+        return CostMap.mix(h ^ 0x5DEECE66DL);
+    }
+
+    /**
+     * 记录一次对文件的编辑
+     */
+    public void mark(long key, long nowMillis) {
+        long slice = nowMillis / ActivitySlices.SLICE_MILLIS;
+        lastKey = key;
+        lastMarkMillis = nowMillis;
+        for (int i = 0; i < touchedCount; i++) {
+            if (touchedKeys[i] == key) {
+                if (touchedSlice[i] != slice) {
+                    touchedSlice[i] = slice;
+                    touchedSlices[i]++;
+                }
+                return;
+            }
+        }
+        if (touchedCount == touchedKeys.length) {
+            int capacity = touchedCount * 2;
+            touchedKeys = Arrays.copyOf(touchedKeys, capacity);
+            touchedSlice = Arrays.copyOf(touchedSlice, capacity);
+            touchedSlices = Arrays.copyOf(touchedSlices, capacity);
+        }
+        touchedKeys[touchedCount] = key;
+        touchedSlice[touchedCount] = slice;
+        touchedSlices[touchedCount] = 1;
+        touchedCount++;
+    }
+
+    /**
+     * 把上次结算以来的收入拆分到编辑过的文件, 并开始新的结算周期
+     *
+     * @return 是否有文件分到了这段收入
+     */
+    public boolean settle(long deltaMicros, int deltaSeconds, long nowMillis) {
+        shareCount = 0;
+        if (touchedCount == 0) {
+            if (lastKey == 0 || nowMillis - lastMarkMillis > IDLE_MILLIS || deltaMicros == 0 && deltaSeconds == 0) {
+                return false;
+            }
+            share(lastKey, deltaMicros, deltaSeconds);
+            return true;
+        }
+
+        long total = 0;
+        int top = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            total += touchedSlices[i];
+            if (touchedSlices[i] > touchedSlices[top]) {
+                top = i;
+            }
+        }
+        long restMicros = deltaMicros;
+        int restSeconds = deltaSeconds;
+        for (int i = 0; i < touchedCount; i++) {
+            if (i != top) {
+                long micros = deltaMicros * touchedSlices[i] / total;
+                int seconds = (int) (deltaSeconds * (long) touchedSlices[i] / total);
+                share(touchedKeys[i], micros, seconds);
+                restMicros -= micros;
+                restSeconds -= seconds;
+            }
+        }
+        share(touchedKeys[top], restMicros, restSeconds);
+        touchedCount = 0;
+        return true;
+    }
+
+    private void share(long key, long micros, int seconds) {
+        if (micros == 0 && seconds == 0) {
+            return;
+        }
+        add(key, micros, seconds);
+        if (shareCount == shareKeys.length) {
+            int capacity = shareCount * 2;
+            shareKeys = Arrays.copyOf(shareKeys, capacity);
+            shareMicros = Arrays.copyOf(shareMicros, capacity);
+            shareSeconds = Arrays.copyOf(shareSeconds, capacity);
+        }
+        shareKeys[shareCount] = key;
+        shareMicros[shareCount] = micros;
+        shareSeconds[shareCount] = seconds;
+        shareCount++;
+    }
+
+    /**
+     * 直接累加到某个键, 如细分到声明
+     */
+    public void add(long key, long micros, int seconds) {
+        totals.add(key, micros, seconds);
+        dirty.put(key, 0, 0);
+    }
+
+    /**
+     * 合并从索引读取的历史累计值, 不标记为变化
+     */
+    public void merge(CostMap stored) {
+        for (int slot = 0; slot < stored.capacity(); slot++) {
+            long key = stored.keyAt(slot);
+            if (key != 0) {
+                totals.add(key, stored.microsAt(slot), stored.secondsAt(slot));
+            }
+        }
+    }
+
+    /**
+     * 最近一次 settle 分到收入的文件数
+     */
+    public int getShareCount() {
+        return shareCount;
+    }
+
+    public long getShareKey(int index) {
+        return shareKeys[index];
+    }
+
+    public long getShareMicros(int index) {
+        return shareMicros[index];
+    }
+
+    public int getShareSeconds(int index) {
+        return shareSeconds[index];
+    }
+
+    /**
+     * 键的累计收入 (微单位), 没有记录时返回 0
+     */
+    public long getMicros(long key) {
+        return totals.getMicros(key);
+    }
+
+    /**
+     * 键的累计秒数, 没有记录时返回 0
+     */
+    public int getSeconds(long key) {
+        return totals.getSeconds(key);
+    }
+
+    public int size() {
+        return totals.size();
+    }
+
+    /**
+     * 取出上次以来变化过的键及其当前累计值, 并清空变化记录
+     *
+     * @return 变化过的键和累计值, 没有变化时返回 null
+     */
+    public CostMap drainDirty() {
+        if (dirty.size() == 0) {
+            return null;
+        }
+        CostMap changed = new CostMap(dirty.size());
+        for (int slot = 0; slot < dirty.capacity(); slot++) {
+            long key = dirty.keyAt(slot);
+            if (key != 0) {
+                changed.put(key, totals.getMicros(key), totals.getSeconds(key));
+            }
+        }
+        dirty.clear();
+        return changed;
+    }
+}
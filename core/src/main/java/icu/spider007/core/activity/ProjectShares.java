@@ -0,0 +1,140 @@
+package icu.spider007.core.activity;
+
+import java.util.Arrays;
+
+/**
+ * 把收入拆分到各个项目的累加器
+ * <p>
+ * 每个打开的项目占一个槽位. 两次节拍之间在某个项目里有编辑活动时, 这段时间的收入按各项目活跃的时间片数拆分;
+ * 没有任何编辑活动 (看代码、开会) 时全部记给最后获得焦点的项目. 拆分后各项目之和严格等于总额,
+ * 余数记给活跃时间片最多的项目.
+ * <p>
+ * 所有状态都是基本类型数组, {@link #mark} 和 {@link #settle} 不分配对象.
+ * 本类不是线程安全的, 应在 EDT 上调用
+ */
+public final class ProjectShares {
+    private boolean[] used = new boolean[4];
+    // 本次结算周期内最后一次标记的时间片, 以及标记过的时间片数
+    private long[] lastSlice = new long[4];
+    private int[] slices = new int[4];
+    // 当天累计拆分到的收入 (微单位) 和工作秒数
+    private long[] micros = new long[4];
+    private int[] seconds = new int[4];
+
+    /**
+     * 分配一个槽位
+     */
+    public int register() {
+        int slot = 0;
+        while (slot < used.length && used[slot]) {
+            slot++;
+        }
+        if (slot == used.length) {
+            int capacity = used.length * 2;
+            used = Arrays.copyOf(used, capacity);
+            lastSlice = Arrays.copyOf(lastSlice, capacity);
+            slices = Arrays.copyOf(slices, capacity);
+            micros = Arrays.copyOf(micros, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+        }
+        used[slot] = true;
+        clear(slot);
+        return slot;
+    }
+
+    /**
+     * 释放槽位, 之后可以重新分配
+     */
+    public void release(int slot) {
+        used[slot] = false;
+        clear(slot);
+    }
+
+    private void clear(int slot) {
+        lastSlice[slot] = -1;
+        slices[slot] = 0;
+        micros[slot] = 0;
+        seconds[slot] = 0;
+    }
+
+    /**
+     * 记录一次编辑活动, 同一时间片内的重复活动直接返回
+     */
+    public void mark(int slot, long nowMillis) {
+        long slice = nowMillis / ActivitySlices.SLICE_MILLIS;
+        if (slice != lastSlice[slot]) {
+            lastSlice[slot] = slice;
+            slices[slot]++;
+        }
+    }
+
+    /**
+     * 把上次结算以来的收入拆分到各项目, 并开始新的结算周期
+     *
+     * @param focusedSlot 没有编辑活动时的归属, -1 表示没有打开的项目
+     * @return 是否有项目分到了这段收入
+     */
+    public boolean settle(long deltaMicros, int deltaSeconds, int focusedSlot) {
+        long total = 0;
+        int top = -1;
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot] && slices[slot] > 0) {
+                total += slices[slot];
+                if (top < 0 || slices[slot] > slices[top]) {
+                    top = slot;
+                }
+            }
+        }
+        if (total == 0) {
+            if (focusedSlot < 0 || !used[focusedSlot]) {
+                return false;
+            }
+            micros[focusedSlot] += deltaMicros;
+            seconds[focusedSlot] += deltaSeconds;
+            return true;
+        }
+
+        long restMicros = deltaMicros;
+        int restSeconds = deltaSeconds;
+        for (int slot = 0; slot < used.length; slot++) {
+            if (slot != top && used[slot] && slices[slot] > 0) {
+                long shareMicros = deltaMicros * slices[slot] / total;
+                int shareSeconds = (int) (deltaSeconds * (long) slices[slot] / total);
+                micros[slot] += shareMicros;
+                seconds[slot] += shareSeconds;
+                restMicros -= shareMicros;
+                restSeconds -= shareSeconds;
+            }
+            slices[slot] = 0;
+            lastSlice[slot] = -1;
+        }
+        micros[top] += restMicros;
+        seconds[top] += restSeconds;
+        return true;
+    }
+
+    /**
+     * 新的一天, 清零所有项目的累计值和本周期的活动
+     */
+    public void resetDay() {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                clear(slot);
+            }
+        }
+    }
+
+    /**
+     * 当天累计拆分到的收入 (微单位)
+     */
+    public long getMicros(int slot) {
+        return micros[slot];
+    }
+
+    /**
+     * 当天累计拆分到的工作秒数
+     */
+    public int getSeconds(int slot) {
+        return seconds[slot];
+    }
+}
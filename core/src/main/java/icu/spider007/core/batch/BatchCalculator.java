@@ -0,0 +1,214 @@
+package icu.spider007.core.batch;
+
+import icu.spider007.core.calendar.HolidayRules;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量计算员工收入
+ * <p>
+ * 按行流式读取 CSV, 每 {@link #CHUNK_ROWS} 行作为一个任务交给线程池并行计算,
+ * 同时在途的任务数有上限, 结果按输入顺序写出, 内存占用与文件大小无关.
+ * 输入输出列见 {@link RowCalculator}
+ * <pre>
+ * BatchCalculator input.csv output.csv [--threads=N] [--calendar] [--holidays=file] [--auto-work-days]
+ * </pre>
+ * 文件名为 - 时使用标准输入/输出
+ */
+public final class BatchCalculator {
+    static final int CHUNK_ROWS = 2048;
+
+    private final int threads;
+    private final HolidayRules holidays;
+    private final boolean autoWorkDays;
+
+    /**
+     * @param holidays 节假日, 为 null 时不使用日历
+     */
+    public BatchCalculator(int threads, HolidayRules holidays, boolean autoWorkDays) {
+        this.threads = Math.max(1, threads);
+        this.holidays = holidays;
+        this.autoWorkDays = autoWorkDays;
+    }
+
+    /**
+     * 计算结果
+     */
+    public static final class Summary {
+        private final long rows;
+        private final long errors;
+
+        Summary(long rows, long errors) {
+            this.rows = rows;
+            this.errors = errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+
+    public Summary run(BufferedReader in, Writer out) throws IOException {
+        String headerLine = in.readLine();
+        if (headerLine == null) {
+            throw new IOException("empty input");
+        }
+        RowCalculator calculator = new RowCalculator(Csv.parse(stripBom(headerLine)), holidays, autoWorkDays);
+        out.write(RowCalculator.OUTPUT_HEADER);
+        out.write('\n');
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PayPerTick Batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 在途任务上限: 每个线程两个, 读取速度超过计算速度时在这里等待
+        int maxInFlight = threads * 2;
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long rows = 0;
+        long errors = 0;
+        try {
+            String[] lines = new String[CHUNK_ROWS];
+            int count = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lines[count++] = line;
+                if (count == CHUNK_ROWS) {
+                    inFlight.add(submit(pool, calculator, lines, count));
+                    lines = new String[CHUNK_ROWS];
+                    count = 0;
+                }
+                while (inFlight.size() >= maxInFlight) {
+                    Chunk chunk = await(inFlight.poll());
+                    out.write(chunk.text);
+                    rows += chunk.rows;
+                    errors += chunk.errors;
+                }
+            }
+            if (count > 0) {
+                inFlight.add(submit(pool, calculator, lines, count));
+            }
+            while (!inFlight.isEmpty()) {
+                Chunk chunk = await(inFlight.poll());
+                out.write(chunk.text);
+                rows += chunk.rows;
+                errors += chunk.errors;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        return new Summary(rows, errors);
+    }
+
+    private static Future<Chunk> submit(ExecutorService pool, RowCalculator calculator, String[] lines, int count) {
+        return pool.submit(() -> {
+            StringBuilder text = new StringBuilder(count * 96);
+            int errors = 0;
+            for (int i = 0; i < count; i++) {
+                if (!calculator.calculate(lines[i], text)) {
+                    errors++;
+                }
+            }
+            return new Chunk(text.toString(), count, errors);
+        });
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("batch chunk failed", e.getCause());
+        }
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    private static final class Chunk {
+        final String text;
+        final int rows;
+        final int errors;
+
+        Chunk(String text, int rows, int errors) {
+            this.text = text;
+            this.rows = rows;
+            this.errors = errors;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String input = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        HolidayRules holidays = null;
+        boolean autoWorkDays = false;
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--calendar")) {
+                holidays = HolidayRules.bundled();
+            } else if (arg.startsWith("--holidays=")) {
+                holidays = HolidayRules.load(Paths.get(arg.substring("--holidays=".length())));
+            } else if (arg.equals("--auto-work-days")) {
+                autoWorkDays = true;
+            } else if (input == null) {
+                input = arg;
+            } else if (output == null) {
+                output = arg;
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (input == null || output == null) {
+            usage();
+            return;
+        }
+
+        BatchCalculator calculator = new BatchCalculator(threads, holidays, autoWorkDays);
+        long started = System.nanoTime();
+        Summary summary;
+        try (BufferedReader in = "-".equals(input)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             Writer out = "-".equals(output)
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            summary = calculator.run(in, out);
+        }
+        System.err.printf("%d rows, %d errors, %d ms%n",
+                summary.getRows(), summary.getErrors(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void usage() {
+        System.err.println("usage: BatchCalculator input.csv output.csv "
+                + "[--threads=N] [--calendar] [--holidays=file] [--auto-work-days]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,137 @@
+package icu.spider007.core.batch;
+
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.PayCurrency;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.calendar.HolidayRules;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量计算中的单行计算, 线程安全
+ * <p>
+ * 输入列 (按表头名称查找, 顺序不限): employee_id, monthly_salary, monthly_work_days, currency, roster, at.
+ * roster 使用 {@link WorkRoster} 的排班语法, 为空时按周一至周五 9:00-18:00 午休 12:00-13:30 计算;
+ * at 为计算时刻, 如 2026-10-19T20:30.
+ * 输出当天收入、已工作秒数、加班秒数和本月截至该时刻的收入
+ */
+public final class RowCalculator {
+    static final String[] INPUT_COLUMNS = {
+            "employee_id", "monthly_salary", "monthly_work_days", "currency", "roster", "at"
+    };
+    static final String OUTPUT_HEADER =
+            "employee_id,date,earned_today,worked_seconds,overtime_seconds,month_to_date,currency,error";
+    private static final String DEFAULT_ROSTER = "MON-FRI 09:00-12:00,13:30-18:00";
+    // 解析后的排班按排班文本缓存, 每行只按薪资重新定价; 超过上限时整体清空, 保证内存有界
+    private static final int CACHE_LIMIT = 4096;
+
+    private final int[] columnIndex;
+    private final HolidayRules holidays;
+    private final boolean autoWorkDays;
+    private final Map<String, WorkRoster> rosters = new ConcurrentHashMap<>();
+
+    /**
+     * @param header   输入文件的表头
+     * @param holidays 节假日, 为 null 时不使用日历
+     * @throws IllegalArgumentException 表头缺少必需的列
+     */
+    public RowCalculator(List<String> header, HolidayRules holidays, boolean autoWorkDays) {
+        List<String> names = new ArrayList<>(header.size());
+        for (String name : header) {
+            names.add(name.trim().toLowerCase(Locale.ROOT));
+        }
+        this.columnIndex = new int[INPUT_COLUMNS.length];
+        for (int i = 0; i < INPUT_COLUMNS.length; i++) {
+            columnIndex[i] = names.indexOf(INPUT_COLUMNS[i]);
+            // roster 列可以省略
+            if (columnIndex[i] < 0 && i != 4) {
+                throw new IllegalArgumentException("missing column: " + INPUT_COLUMNS[i]);
+            }
+        }
+        this.holidays = holidays;
+        this.autoWorkDays = autoWorkDays;
+    }
+
+    /**
+     * 计算一行并把结果 (含换行) 追加到 out, 行内错误写入 error 列而不中断整个批次
+     *
+     * @return 该行是否计算成功
+     */
+    public boolean calculate(String line, StringBuilder out) {
+        List<String> fields = Csv.parse(line);
+        String id = column(fields, 0);
+        Csv.append(out, id);
+        try {
+            PayCurrency currency = PayCurrency.find(column(fields, 3));
+            if (currency == null) {
+                throw new ScheduleException(ScheduleException.Kind.SALARY, "unknown currency: " + column(fields, 3));
+            }
+            WorkRoster roster = roster(column(fields, 1), column(fields, 2), currency, column(fields, 4));
+            LocalDateTime at = LocalDateTime.parse(column(fields, 5).trim());
+            appendFigures(roster, at, out);
+            out.append(",\n");
+            return true;
+        } catch (ScheduleException | DateTimeParseException e) {
+            out.append(",,,,,,,");
+            Csv.append(out, e.getMessage());
+            out.append('\n');
+            return false;
+        }
+    }
+
+    private void appendFigures(WorkRoster roster, LocalDateTime at, StringBuilder out) {
+        WorkDay day = roster.resolve(at);
+        WorkSchedule schedule = day.getSchedule();
+        int second = day.secondOf(at.toLocalTime());
+        long earned = schedule.earnedMicros(second);
+        int overtime = schedule.isRestDay() ? 0 : Math.max(0, second - schedule.getShiftEnd());
+
+        // 本月之前各天按整天计算
+        long monthToDate = earned;
+        for (LocalDate date = day.getDate().withDayOfMonth(1); date.isBefore(day.getDate()); date = date.plusDays(1)) {
+            WorkSchedule past = roster.scheduleFor(date);
+            monthToDate += past.earnedMicrosForWorkedMillis(past.getTotalSeconds() * 1000L);
+        }
+
+        MoneyFormat format = schedule.getMoneyFormat();
+        out.append(',').append(day.getDate()).append(',');
+        format.appendAmount(out, earned);
+        out.append(',').append(schedule.workedSeconds(second))
+                .append(',').append(overtime).append(',');
+        format.appendAmount(out, monthToDate);
+        out.append(',').append(schedule.getCurrency().name());
+    }
+
+    private WorkRoster roster(String salary, String workDays, PayCurrency currency, String rosterText) {
+        long salaryMicros = WorkSchedule.parseSalary(salary);
+        int days = WorkSchedule.parseWorkDays(workDays.trim());
+        String text = rosterText.trim().isEmpty() ? DEFAULT_ROSTER : rosterText;
+        WorkRoster template = rosters.get(text);
+        if (template == null) {
+            template = WorkRoster.parse(text, salaryMicros, days, currency);
+            if (holidays != null) {
+                template = template.withCalendar(holidays, autoWorkDays);
+            }
+            if (rosters.size() >= CACHE_LIMIT) {
+                rosters.clear();
+            }
+            rosters.put(text, template);
+        }
+        return template.withPay(salaryMicros, days, currency);
+    }
+
+    private String column(List<String> fields, int column) {
+        int index = columnIndex[column];
+        return index >= 0 && index < fields.size() ? fields.get(index) : "";
+    }
+}
@@ -0,0 +1,245 @@
+package icu.spider007.core.calendar;
+
+import icu.spider007.core.ScheduleException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 节假日定义: 哪些日期放假、哪些日期调休上班, 不可变
+ * <p>
+ * 文件每行一条, # 之后为注释:
+ * <pre>
+ * 2025-01-28..2025-01-31 holiday 春节
+ * 2025-02-01..2025-02-04 off 春节
+ * 2025-01-26 work 春节调休
+ * </pre>
+ * 类型 holiday (或 法定) 表示法定节假日, off (或 休) 表示其余放假日 (周末和调休来的休息日),
+ * work (或 班) 表示调休上班, 名称可省略. 法定节假日和其余放假日都是 {@link Type#OFF}, 只有法定节假日按节假日倍数计加班;
+ * 文件中没有 holiday 时, 所有放假日都算法定节假日
+ */
+public final class HolidayRules {
+    private static final String BUNDLED_RESOURCE = "/holidays/cn.txt";
+
+    public enum Type {
+        OFF,
+        WORK
+    }
+
+    public static final HolidayRules NONE = new HolidayRules(new HashMap<>(), new HashSet<>(), new HashMap<>(), new TreeSet<>());
+
+    private static volatile HolidayRules bundled;
+    // 用户文件按路径缓存, 文件修改后重新解析
+    private static final Map<Path, Cached> LOADED = new ConcurrentHashMap<>();
+
+    private final Map<LocalDate, Type> types;
+    private final Set<LocalDate> statutory;
+    private final Map<LocalDate, String> names;
+    private final Set<Integer> years;
+    // 按"哪些星期是工作日"缓存的日历, 下标为 7 位掩码
+    private final AtomicReferenceArray<WorkCalendar> calendars = new AtomicReferenceArray<>(128);
+
+    private HolidayRules(Map<LocalDate, Type> types, Set<LocalDate> statutory, Map<LocalDate, String> names,
+                         TreeSet<Integer> years) {
+        this.types = types;
+        this.statutory = statutory;
+        this.names = names;
+        this.years = Collections.unmodifiableSet(years);
+    }
+
+    /**
+     * 插件自带的中国法定节假日
+     */
+    public static HolidayRules bundled() {
+        HolidayRules rules = bundled;
+        if (rules == null) {
+            try (InputStream in = HolidayRules.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("missing " + BUNDLED_RESOURCE);
+                }
+                rules = parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), "内置节假日");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bundled = rules;
+        }
+        return rules;
+    }
+
+    /**
+     * 读取用户提供的节假日文件, 文件未修改时复用上次的解析结果
+     *
+     * @throws ScheduleException 文件不存在或格式不正确
+     */
+    public static HolidayRules load(Path path) {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            Cached cached = LOADED.get(path);
+            if (cached != null && cached.modified == modified) {
+                return cached.rules;
+            }
+            HolidayRules rules;
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                rules = parse(reader, path.getFileName().toString());
+            }
+            LOADED.put(path, new Cached(modified, rules));
+            return rules;
+        } catch (IOException e) {
+            throw new ScheduleException(ScheduleException.Kind.CALENDAR, "无法读取节假日文件: " + path);
+        }
+    }
+
+    static HolidayRules parse(BufferedReader reader, String source) throws IOException {
+        Map<LocalDate, Type> types = new HashMap<>();
+        Set<LocalDate> statutory = new HashSet<>();
+        Map<LocalDate, String> names = new HashMap<>();
+        TreeSet<Integer> years = new TreeSet<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            String[] parts = text.split("\\s+", 3);
+            if (parts.length < 2) {
+                throw invalidLine(source, lineNumber);
+            }
+            String keyword = parts[1].toLowerCase(Locale.ROOT);
+            boolean isStatutory = keyword.equals("holiday") || keyword.equals("法定");
+            Type type = isStatutory ? Type.OFF : parseType(keyword);
+            if (type == null) {
+                throw invalidLine(source, lineNumber);
+            }
+            LocalDate from;
+            LocalDate to;
+            try {
+                String[] range = parts[0].split("\\.\\.", 2);
+                from = LocalDate.parse(range[0]);
+                to = range.length == 2 ? LocalDate.parse(range[1]) : from;
+            } catch (DateTimeParseException e) {
+                throw invalidLine(source, lineNumber);
+            }
+            if (to.isBefore(from)) {
+                throw invalidLine(source, lineNumber);
+            }
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                types.put(date, type);
+                // 后面的行覆盖前面的行, 法定标记随类型一起覆盖
+                if (isStatutory) {
+                    statutory.add(date);
+                } else {
+                    statutory.remove(date);
+                }
+                if (parts.length == 3) {
+                    names.put(date, parts[2]);
+                }
+                years.add(date.getYear());
+            }
+        }
+        // 没有用 holiday 标记的旧格式文件: 放假日都按法定节假日计
+        if (statutory.isEmpty()) {
+            types.forEach((date, type) -> {
+                if (type == Type.OFF) {
+                    statutory.add(date);
+                }
+            });
+        }
+        return new HolidayRules(types, statutory, names, years);
+    }
+
+    private static Type parseType(String text) {
+        switch (text) {
+            case "off":
+            case "休":
+                return Type.OFF;
+            case "work":
+            case "班":
+                return Type.WORK;
+            default:
+                return null;
+        }
+    }
+
+    private static ScheduleException invalidLine(String source, int lineNumber) {
+        return new ScheduleException(ScheduleException.Kind.CALENDAR,
+                source + " 第 " + lineNumber + " 行格式不正确");
+    }
+
+    /**
+     * 某一天的特殊安排, 普通日期返回 null
+     */
+    public Type typeOf(LocalDate date) {
+        return types.get(date);
+    }
+
+    /**
+     * 是否法定节假日; 调休来的休息日和周末不是
+     */
+    public boolean isStatutory(LocalDate date) {
+        return statutory.contains(date);
+    }
+
+    /**
+     * 节假日或调休的名称, 没有时返回 null
+     */
+    public String nameOf(LocalDate date) {
+        return names.get(date);
+    }
+
+    /**
+     * 以 workdays (下标为 DayOfWeek.getValue() - 1) 为平日工作日的日历, 相同星期规则共享同一实例
+     */
+    public WorkCalendar calendar(boolean[] workdays) {
+        int mask = 0;
+        for (int i = 0; i < workdays.length; i++) {
+            if (workdays[i]) {
+                mask |= 1 << i;
+            }
+        }
+        WorkCalendar calendar = calendars.get(mask);
+        if (calendar == null) {
+            calendar = new WorkCalendar(this, workdays);
+            if (!calendars.compareAndSet(mask, null, calendar)) {
+                calendar = calendars.get(mask);
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * 文件中出现过的年份
+     */
+    public Set<Integer> getYears() {
+        return years;
+    }
+
+    private static final class Cached {
+        final long modified;
+        final HolidayRules rules;
+
+        Cached(long modified, HolidayRules rules) {
+            this.modified = modified;
+            this.rules = rules;
+        }
+    }
+}
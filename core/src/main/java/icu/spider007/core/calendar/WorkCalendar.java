@@ -0,0 +1,147 @@
+package icu.spider007.core.calendar;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作日历, 不可变
+ * <p>
+ * 每年预先算好一张按"一年中第几天"排列的工作日位图和每月的累计工作日数,
+ * "是否工作日"是一次位运算, "本月工作日数/剩余工作日"是前缀数之差加上至多 6 个字的 bitCount.
+ * 节假日文件覆盖的年份在创建时计算, 其它年份在第一次查询时按星期规则补上
+ */
+public final class WorkCalendar {
+    private final HolidayRules rules;
+    // 下标为 DayOfWeek.getValue() - 1, 没有节假日安排时的工作日
+    private final boolean[] baseWorkdays;
+    private final Map<Integer, YearTable> years = new ConcurrentHashMap<>();
+    // 最近一次查询的年份, 同一年内查询不必装箱年份去查表; 字段都是 final 的, 可以不加锁发布
+    private YearTable recent;
+
+    public WorkCalendar(HolidayRules rules, boolean[] baseWorkdays) {
+        if (baseWorkdays.length != 7) {
+            throw new IllegalArgumentException("expected 7 weekdays");
+        }
+        this.rules = rules;
+        this.baseWorkdays = baseWorkdays.clone();
+        for (int year : rules.getYears()) {
+            years.put(year, new YearTable(year));
+        }
+    }
+
+    public boolean isWorkday(LocalDate date) {
+        return table(date.getYear()).isWorkday(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * date 所在月份的工作日总数
+     */
+    public int workdaysInMonth(LocalDate date) {
+        YearTable table = table(date.getYear());
+        int month = date.getMonthValue() - 1;
+        return table.monthPrefix[month + 1] - table.monthPrefix[month];
+    }
+
+    /**
+     * 本月 date 之后 (不含当天) 还剩的工作日数
+     */
+    public int workdaysRemaining(LocalDate date) {
+        YearTable table = table(date.getYear());
+        return table.monthPrefix[date.getMonthValue()] - table.rank(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * 本月截至 date (含当天) 的工作日数
+     */
+    public int workdaysElapsed(LocalDate date) {
+        YearTable table = table(date.getYear());
+        return table.rank(date.getDayOfYear() - 1) - table.monthPrefix[date.getMonthValue() - 1];
+    }
+
+    /**
+     * 是否法定节假日, 调休来的休息日不是
+     */
+    public boolean isStatutoryHoliday(LocalDate date) {
+        return rules.isStatutory(date);
+    }
+
+    /**
+     * 节假日或调休的名称, 普通日期返回 null
+     */
+    public String holidayName(LocalDate date) {
+        return rules.nameOf(date);
+    }
+
+    private YearTable table(int year) {
+        YearTable table = recent;
+        if (table != null && table.year == year) {
+            return table;
+        }
+        table = years.get(year);
+        if (table == null) {
+            table = years.computeIfAbsent(year, YearTable::new);
+        }
+        recent = table;
+        return table;
+    }
+
+    private final class YearTable {
+        private final int year;
+        // 第 i 位为 1 表示一年中第 i 天 (从 0 开始) 是工作日
+        private final long[] bits = new long[6];
+        // monthPrefix[m] = 前 m 个月的工作日数, monthPrefix[12] 为全年
+        private final int[] monthPrefix = new int[13];
+
+        YearTable(int year) {
+            this.year = year;
+            LocalDate date = LocalDate.of(year, 1, 1);
+            int dayOfWeek = date.getDayOfWeek().getValue() - 1;
+            int index = 0;
+            int count = 0;
+            for (int month = 1; month <= 12; month++) {
+                monthPrefix[month - 1] = count;
+                int length = date.withMonth(month).lengthOfMonth();
+                for (int day = 1; day <= length; day++, index++, dayOfWeek = (dayOfWeek + 1) % 7) {
+                    boolean workday = baseWorkdays[dayOfWeek];
+                    HolidayRules.Type type = rules.typeOf(LocalDate.of(year, month, day));
+                    if (type != null) {
+                        workday = type == HolidayRules.Type.WORK;
+                    }
+                    if (workday) {
+                        bits[index >>> 6] |= 1L << index;
+                        count++;
+                    }
+                }
+            }
+            monthPrefix[12] = count;
+        }
+
+        boolean isWorkday(int dayIndex) {
+            return (bits[dayIndex >>> 6] & 1L << dayIndex) != 0;
+        }
+
+        // 第 0 天到第 dayIndex 天 (含) 的工作日数
+        int rank(int dayIndex) {
+            int word = dayIndex >>> 6;
+            int count = 0;
+            for (int i = 0; i < word; i++) {
+                count += Long.bitCount(bits[i]);
+            }
+            long mask = -1L >>> (63 - (dayIndex & 63));
+            return count + Long.bitCount(bits[word] & mask);
+        }
+    }
+
+    /**
+     * 周一至周五为工作日
+     */
+    public static boolean[] weekdays() {
+        boolean[] workdays = new boolean[7];
+        for (DayOfWeek day : DayOfWeek.values()) {
+            workdays[day.getValue() - 1] = day.getValue() <= DayOfWeek.FRIDAY.getValue();
+        }
+        return workdays;
+    }
+}
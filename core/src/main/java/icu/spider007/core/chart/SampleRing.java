@@ -0,0 +1,79 @@
+package icu.spider007.core.chart;
+
+/**
+ * 固定容量的 (秒, 金额) 采样环形缓冲区, 用原始类型数组保存, 写入时不装箱也不分配对象
+ * <p>
+ * 同一秒内的重复采样只保留第一个, 按秒采样时容量覆盖两天 (夜班的排班日最长 48 小时).
+ * 写满后覆盖最旧的采样. {@link #getSequence()} 单调递增, 绘制方用它判断有哪些新采样.
+ * <p>
+ * 本类不是线程安全的, 应只在 EDT 上读写
+ */
+public final class SampleRing {
+    public static final int DEFAULT_CAPACITY = 2 * 24 * 60 * 60;
+
+    private final int[] seconds;
+    private final long[] values;
+    private int head;
+    private int size;
+    // 至今写入的采样总数, 清空时不归零
+    private long sequence;
+
+    public SampleRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SampleRing(int capacity) {
+        seconds = new int[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * 追加一个采样, second 与上一个采样相同或更早时忽略, 返回是否写入
+     */
+    public boolean add(int second, long value) {
+        if (size > 0 && second <= secondAt(size - 1)) {
+            return false;
+        }
+        int index = (head + size) % seconds.length;
+        seconds[index] = second;
+        values[index] = value;
+        if (size < seconds.length) {
+            size++;
+        } else {
+            head = (head + 1) % seconds.length;
+        }
+        sequence++;
+        return true;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return seconds.length;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 第 i 个采样的时刻, 0 为最旧的采样
+     */
+    public int secondAt(int i) {
+        return seconds[(head + i) % seconds.length];
+    }
+
+    /**
+     * 第 i 个采样的金额, 0 为最旧的采样
+     */
+    public long valueAt(int i) {
+        return values[(head + i) % values.length];
+    }
+}
@@ -0,0 +1,66 @@
+package icu.spider007.core.clock;
+
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.overtime.PayCurve;
+
+/**
+ * 计算下一次节拍的时刻: 显示的内容下一次会变化的时候
+ * <p>
+ * 工作或加班计薪时是收入的下一分钱, 有倒计时视图时是下一个整分钟, 另外还有各时段的起止和零点等边界.
+ * 后台 (节能模式或 IDE 不在前台) 时只保留边界和低频刷新; 计加班时长时至少保留低频刷新.
+ * 插件的定时器和 {@code TickSimulator} 共用这里的逻辑, 模拟结果与实际运行一致
+ */
+public final class TickPlanner {
+    public static final long MINUTE_MILLIS = 60_000;
+    public static final long DAY_MILLIS = 24 * 60 * MINUTE_MILLIS;
+    // 后台/节能模式下的最低刷新间隔
+    public static final long BACKGROUND_TICK_MILLIS = 5 * MINUTE_MILLIS;
+
+    private TickPlanner() {
+    }
+
+    /**
+     * 距离显示内容下一次变化的毫秒数, 至少为 1
+     *
+     * @param day         当前时刻所属的排班日, 配置不合法时为 null
+     * @param millisOfDay 今天零点起的毫秒数
+     * @param countdown   是否有需要分钟级倒计时的视图
+     * @param background  是否处于后台或节能模式
+     */
+    public static long delayMillis(WorkDay day, long millisOfDay, boolean countdown, boolean background) {
+        long untilMinute = MINUTE_MILLIS - millisOfDay % MINUTE_MILLIS;
+        if (day == null) {
+            return untilMinute;
+        }
+        long untilBackgroundTick = BACKGROUND_TICK_MILLIS - millisOfDay % BACKGROUND_TICK_MILLIS;
+        // 以下在排班日的时间轴上计算, 夜班跨零点后比当天时刻多 24 小时
+        PayCurve curve = day.getCurve();
+        long shiftMillis = day.millisOf(millisOfDay);
+        int secondOfDay = (int) (shiftMillis / 1000);
+
+        // 下一个时段边界 (含加班开始、达到上限和取整跳变), 最晚在零点重置
+        int boundary = curve.nextBreakpoint(secondOfDay);
+        long delay = DAY_MILLIS - millisOfDay;
+        if (boundary >= 0) {
+            delay = Math.min(delay, boundary * 1000L - shiftMillis);
+        }
+
+        if (countdown) {
+            delay = Math.min(delay, background ? untilBackgroundTick : untilMinute);
+        }
+        if (curve.isAccruing(secondOfDay)) {
+            if (background) {
+                delay = Math.min(delay, untilBackgroundTick);
+            } else {
+                int change = curve.nextEarningsChange(secondOfDay);
+                if (change >= 0) {
+                    delay = Math.min(delay, change * 1000L - shiftMillis);
+                }
+            }
+        } else if (curve.isCountingOvertime(secondOfDay)) {
+            // 取整规则下加班费暂时不变, 仍按低频刷新记下 IDE 在运行, 见 OvertimeObserver
+            delay = Math.min(delay, untilBackgroundTick);
+        }
+        return Math.max(delay, 1);
+    }
+}
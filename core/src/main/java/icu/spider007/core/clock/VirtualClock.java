@@ -0,0 +1,61 @@
+package icu.spider007.core.clock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * 手动推进的时钟, 模拟器和测试用它代替系统时钟, 一天的节拍可以在几毫秒内回放完
+ * <p>
+ * 读写都是 volatile 的, 可以在一个线程推进、另一个线程读取
+ */
+public final class VirtualClock extends Clock {
+    private final ZoneId zone;
+    private volatile long millis;
+
+    public VirtualClock(Instant start, ZoneId zone) {
+        this(start.toEpochMilli(), zone);
+    }
+
+    private VirtualClock(long millis, ZoneId zone) {
+        this.millis = millis;
+        this.zone = zone;
+    }
+
+    /**
+     * 向前推进 deltaMillis 毫秒
+     */
+    public void advance(long deltaMillis) {
+        if (deltaMillis < 0) {
+            throw new IllegalArgumentException("clock cannot go backwards: " + deltaMillis);
+        }
+        millis += deltaMillis;
+    }
+
+    public void set(Instant instant) {
+        millis = instant.toEpochMilli();
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * 当前时刻、不同时区的独立副本
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(millis, zone);
+    }
+}
@@ -0,0 +1,170 @@
+package icu.spider007.core.forecast;
+
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.ledger.LedgerRecord;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 本月、本年的收入和预测, 以及距离发薪日的天数
+ * <p>
+ * 建立时为全年每一天算好两张前缀和表: 按排班应得的日薪 (休息日为 0), 以及今天之前每天的实际收入
+ * (账本有记录时用记录, 没有记录的日子, 如 IDE 没有打开, 按排班应得计算). 之后每个节拍只更新今天的收入,
+ * 跨到下一天时把今天的最终收入追加到实际收入的前缀和, 都是常数时间, 不再逐日遍历日历.
+ * 所有查询也都是常数时间.
+ * <p>
+ * 金额是薪资货币的微单位. 本类不是线程安全的
+ */
+public final class ForecastTable {
+    private final LocalDate firstDay;
+    private final int length;
+    // planned[i] 是第 0..i-1 天应得日薪之和, actual[i] 是第 0..i-1 天实际收入之和 (只在 i <= today 时有效)
+    private final long[] planned;
+    private final long[] actual;
+    // 每月第一天的下标, 第 13 个元素是全年天数
+    private final int[] monthStart = new int[13];
+    // 每月发薪日 (自 1970-01-01 起的天数), 第 13 个元素是次年一月
+    private final long[] paydays = new long[13];
+    private int today;
+    private int month;
+    private long todayEarned;
+
+    /**
+     * @param roster      按薪资货币编译的排班
+     * @param date        今天 (排班日)
+     * @param paydayOfMonth 每月发薪日, 超过当月天数时为月末, 遇到休息日提前到之前最近的工作日
+     * @param records     今年今天之前的账本记录
+     */
+    public ForecastTable(WorkRoster roster, LocalDate date, int paydayOfMonth, List<LedgerRecord> records) {
+        firstDay = date.withDayOfYear(1);
+        length = date.lengthOfYear();
+        today = date.getDayOfYear() - 1;
+        month = date.getMonthValue() - 1;
+        planned = new long[length + 1];
+        actual = new long[length + 1];
+
+        long[] recorded = new long[today];
+        boolean[] present = new boolean[today];
+        long firstEpoch = firstDay.toEpochDay();
+        for (LedgerRecord record : records) {
+            int index = (int) (record.getEpochDay() - firstEpoch);
+            if (index >= 0 && index < today) {
+                recorded[index] = record.getEarnedMicros();
+                present[index] = true;
+            }
+        }
+        LocalDate day = firstDay;
+        for (int i = 0; i < length; i++, day = day.plusDays(1)) {
+            if (day.getDayOfMonth() == 1) {
+                monthStart[day.getMonthValue() - 1] = i;
+            }
+            long daily = dailySalary(roster.scheduleFor(day));
+            planned[i + 1] = planned[i] + daily;
+            if (i < today) {
+                actual[i + 1] = actual[i] + (present[i] ? recorded[i] : daily);
+            }
+        }
+        monthStart[12] = length;
+        for (int m = 0; m < 13; m++) {
+            paydays[m] = payday(roster, firstDay.plusMonths(m), paydayOfMonth).toEpochDay();
+        }
+    }
+
+    private static long dailySalary(WorkSchedule schedule) {
+        return schedule.isRestDay() ? 0 : schedule.getDailySalaryMicros();
+    }
+
+    // 当月的发薪日, 遇到休息日提前到当月之前最近的工作日, 整月都休息时保持不变
+    private static LocalDate payday(WorkRoster roster, LocalDate monthFirst, int paydayOfMonth) {
+        LocalDate nominal = monthFirst.withDayOfMonth(Math.min(Math.max(paydayOfMonth, 1), monthFirst.lengthOfMonth()));
+        for (LocalDate day = nominal; day.getMonthValue() == nominal.getMonthValue(); day = day.minusDays(1)) {
+            if (!roster.scheduleFor(day).isRestDay()) {
+                return day;
+            }
+        }
+        return nominal;
+    }
+
+    /**
+     * 今天 (排班日)
+     */
+    public LocalDate getDate() {
+        return firstDay.plusDays(today);
+    }
+
+    /**
+     * 更新今天到目前为止的收入, 每个节拍调用
+     */
+    public void setTodayEarned(long earnedMicros) {
+        todayEarned = earnedMicros;
+    }
+
+    /**
+     * 进入下一天: 今天最后一次设置的收入计入实际收入
+     *
+     * @return date 是否正好是同一年的下一天; 否则调用方应重新建立
+     */
+    public boolean advance(LocalDate date) {
+        if (today + 1 >= length || date.toEpochDay() != firstDay.toEpochDay() + today + 1) {
+            return false;
+        }
+        actual[today + 1] = actual[today] + todayEarned;
+        today++;
+        todayEarned = 0;
+        if (today == monthStart[month + 1]) {
+            month++;
+        }
+        return true;
+    }
+
+    /**
+     * 本月到目前为止的收入
+     */
+    public long getMonthToDate() {
+        return actual[today] - actual[monthStart[month]] + todayEarned;
+    }
+
+    /**
+     * 本月预计总收入: 到目前为止的收入加上今天剩余和之后各天应得的日薪
+     */
+    public long getMonthProjected() {
+        return getMonthToDate() + remainingToday() + planned[monthStart[month + 1]] - planned[today + 1];
+    }
+
+    /**
+     * 今年到目前为止的收入
+     */
+    public long getYearToDate() {
+        return actual[today] + todayEarned;
+    }
+
+    /**
+     * 今年预计总收入
+     */
+    public long getYearProjected() {
+        return getYearToDate() + remainingToday() + planned[length] - planned[today + 1];
+    }
+
+    // 今天还没挣到的正常日薪; 已经超过 (加班) 时为 0
+    private long remainingToday() {
+        return Math.max(planned[today + 1] - planned[today] - todayEarned, 0);
+    }
+
+    /**
+     * 距离下一个发薪日的天数, 今天发薪时为 0
+     */
+    public int getDaysUntilPayday() {
+        long epochDay = firstDay.toEpochDay() + today;
+        long next = paydays[month] >= epochDay ? paydays[month] : paydays[month + 1];
+        return (int) (next - epochDay);
+    }
+
+    /**
+     * 下一个发薪日
+     */
+    public LocalDate getNextPayday() {
+        return getDate().plusDays(getDaysUntilPayday());
+    }
+}
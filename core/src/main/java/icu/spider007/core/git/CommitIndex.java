@@ -0,0 +1,274 @@
+package icu.spider007.core.git;
+
+import icu.spider007.core.ledger.CostMap;
+import icu.spider007.core.ledger.RecordFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 本地 git 提交历史的紧凑索引, 只追加写入
+ * <p>
+ * 两个文件: 记录文件是 64 字节文件头 (魔数、格式版本、已提交的记录数和标题字节数、最后索引的 HEAD)
+ * 之后的定长 48 字节记录 (提交时间、作者键、SHA-1、标题位置); 标题按 UTF-8 依次存放在 .msg 文件里.
+ * 追加时先写数据并刷盘, 最后才更新文件头, 打开时按文件头截掉没有提交的部分, 不需要逐条校验;
+ * 打开几十万条的索引只是读文件头和映射文件, 读取通过 {@link CommitView} 完成.
+ * <p>
+ * 同一个提交 (按 SHA-1 前 8 字节) 只记录一次, 切换分支后重新扫描到的旧提交会被跳过;
+ * 查重用的集合只在一批追加期间存在, 提交或回滚后释放.
+ * 本类不是线程安全的, 由调用方保证单线程访问
+ */
+public final class CommitIndex implements Closeable {
+    private static final int MAGIC = 0x50505447; // "PPTG"
+    private static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 48;
+    static final int HASH_SIZE = 20;
+    // 攒够这么多条写一次文件, 内存占用与历史长度无关
+    private static final int BATCH_RECORDS = 4096;
+    private static final int MAX_SUBJECT_CHARS = 300;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path path;
+    private final Path messagePath;
+    private FileChannel records;
+    private FileChannel messages;
+    // 文件头中已提交的部分
+    private long count;
+    private long messageBytes;
+    private byte[] head;
+    // 已写入文件但还没有提交的部分, 以及还在缓冲区里的部分
+    private long writtenCount;
+    private long writtenBytes;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(BATCH_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer messageBuffer = ByteBuffer.allocate(64 * 1024);
+    private int bufferedRecords;
+    // 已提交的提交 (SHA-1 前 8 字节, 有序) 和这一批新追加的提交, 第一次追加时才建立
+    private long[] committed;
+    private CostMap added;
+    private CommitView view;
+
+    private CommitIndex(Path path) {
+        this.path = path;
+        this.messagePath = path.resolveSibling(path.getFileName() + ".msg");
+    }
+
+    /**
+     * 打开 (必要时创建) 索引
+     */
+    public static CommitIndex open(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        CommitIndex index = new CommitIndex(path);
+        index.load();
+        return index;
+    }
+
+    private void load() throws IOException {
+        records = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        messages = FileChannel.open(messagePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (records.size() < HEADER_SIZE) {
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            RecordFile.readFully(records, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a PayPerTick commit index: " + path);
+            }
+            count = header.getLong(8);
+            messageBytes = header.getLong(16);
+            byte[] hash = new byte[HASH_SIZE];
+            header.position(24);
+            header.get(hash);
+            head = count == 0 ? null : hash;
+            if (records.size() < HEADER_SIZE + count * RECORD_SIZE || messages.size() < messageBytes) {
+                throw new IOException("Truncated PayPerTick commit index: " + path);
+            }
+            // 截掉上次没有提交的部分
+            records.truncate(HEADER_SIZE + count * RECORD_SIZE);
+            messages.truncate(messageBytes);
+        }
+        writtenCount = count;
+        writtenBytes = messageBytes;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(count).putLong(messageBytes);
+        header.put(head == null ? new byte[HASH_SIZE] : head);
+        header.position(HEADER_SIZE).flip();
+        records.write(header, 0);
+        records.force(true);
+    }
+
+    /**
+     * 作者邮箱对应的键, 不区分大小写
+     */
+    public static long authorKey(String email) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < email.length(); i++) {
+            h = (h ^ Character.toLowerCase(email.charAt(i))) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * 最后一次提交时的 HEAD, 索引为空时返回 null
+     */
+    public byte[] getHead() {
+        return head == null ? null : head.clone();
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * 追加一个提交, 在 {@link #commit(byte[])} 之前对读取不可见
+     *
+     * @return 是否是新的提交
+     */
+    public boolean add(byte[] hash, long commitSeconds, long authorKey, String subject) throws IOException {
+        long prefix = ByteBuffer.wrap(hash).getLong();
+        if (committed == null) {
+            committed = committedPrefixes();
+            added = new CostMap();
+        }
+        long key = CostMap.mix(prefix);
+        if (Arrays.binarySearch(committed, prefix) >= 0 || added.contains(key)) {
+            return false;
+        }
+        added.put(key, 0, 0);
+
+        byte[] text = (subject.length() > MAX_SUBJECT_CHARS ? subject.substring(0, MAX_SUBJECT_CHARS) : subject)
+                .getBytes(StandardCharsets.UTF_8);
+        if (messageBuffer.remaining() < text.length || recordBuffer.remaining() < RECORD_SIZE) {
+            writeBuffered();
+        }
+        recordBuffer.putLong(commitSeconds).putLong(authorKey).put(hash, 0, HASH_SIZE)
+                .putLong(writtenBytes + messageBuffer.position()).putInt(text.length);
+        messageBuffer.put(text);
+        bufferedRecords++;
+        return true;
+    }
+
+    // 已提交部分的 SHA-1 前缀, 排序后二分查找; 每条 8 字节, 比散列表省得多
+    private long[] committedPrefixes() {
+        CommitView current = view();
+        long[] prefixes = new long[current.size()];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = current.hashPrefix(i);
+        }
+        Arrays.sort(prefixes);
+        return prefixes;
+    }
+
+    private void writeBuffered() throws IOException {
+        recordBuffer.flip();
+        long position = HEADER_SIZE + writtenCount * RECORD_SIZE;
+        while (recordBuffer.hasRemaining()) {
+            position += records.write(recordBuffer, position);
+        }
+        messageBuffer.flip();
+        position = writtenBytes;
+        while (messageBuffer.hasRemaining()) {
+            position += messages.write(messageBuffer, position);
+        }
+        writtenCount += bufferedRecords;
+        writtenBytes = position;
+        bufferedRecords = 0;
+        recordBuffer.clear();
+        messageBuffer.clear();
+    }
+
+    /**
+     * 把追加的提交刷盘后更新文件头, 之后对读取可见
+     *
+     * @param newHead 这批提交对应的 HEAD
+     */
+    public void commit(byte[] newHead) throws IOException {
+        writeBuffered();
+        messages.force(false);
+        records.force(false);
+        count = writtenCount;
+        messageBytes = writtenBytes;
+        head = newHead.clone();
+        writeHeader();
+        committed = null;
+        added = null;
+    }
+
+    /**
+     * 丢弃还没有提交的部分
+     */
+    public void rollback() {
+        writtenCount = count;
+        writtenBytes = messageBytes;
+        bufferedRecords = 0;
+        recordBuffer.clear();
+        messageBuffer.clear();
+        committed = null;
+        added = null;
+    }
+
+    /**
+     * 已提交部分的只读视图; 之后的追加不影响已经取得的视图
+     */
+    public CommitView view() {
+        if (view == null || view.size() != count) {
+            try {
+                ByteBuffer recordMap = records.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + count * RECORD_SIZE);
+                ByteBuffer messageMap = messages.map(FileChannel.MapMode.READ_ONLY, 0, messageBytes);
+                view = new CommitView(recordMap.order(ByteOrder.LITTLE_ENDIAN), messageMap, (int) count);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map commit index: " + path, e);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * 40 位十六进制的 SHA-1 转成 20 字节, 格式不对时返回 null
+     */
+    public static byte[] parseHash(CharSequence hex, int start) {
+        if (hex.length() - start < HASH_SIZE * 2) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_SIZE];
+        for (int i = 0; i < HASH_SIZE; i++) {
+            int high = Character.digit(hex.charAt(start + i * 2), 16);
+            int low = Character.digit(hex.charAt(start + i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            hash[i] = (byte) (high << 4 | low);
+        }
+        return hash;
+    }
+
+    /**
+     * 20 字节的 SHA-1 转成十六进制
+     */
+    public static String formatHash(byte[] hash, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = hash[i / 2] & 0xFF;
+            text[i] = Character.forDigit(i % 2 == 0 ? b >>> 4 : b & 0xF, 16);
+        }
+        return new String(text);
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        messages.close();
+    }
+}
@@ -0,0 +1,50 @@
+package icu.spider007.core.git;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * 解析 {@code git log --format=} {@link #FORMAT} 的输出并追加到 {@link CommitIndex}
+ * <p>
+ * 逐行读取, 不把整段历史读进内存; 格式不对的行直接跳过
+ */
+public final class CommitLog {
+    /**
+     * 每个提交一行: SHA-1、提交时间 (秒)、作者邮箱、说明的第一行, 以 0x1F 分隔
+     */
+    public static final String FORMAT = "%H%x1f%ct%x1f%ae%x1f%s";
+    private static final char SEPARATOR = '\u001f';
+
+    private CommitLog() {
+    }
+
+    /**
+     * 读取到输入结束, 新的提交追加到 index 但不提交
+     *
+     * @return 新追加的提交数
+     */
+    public static int read(BufferedReader in, CommitIndex index) throws IOException {
+        int added = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            int time = line.indexOf(SEPARATOR);
+            int author = time < 0 ? -1 : line.indexOf(SEPARATOR, time + 1);
+            int subject = author < 0 ? -1 : line.indexOf(SEPARATOR, author + 1);
+            byte[] hash = time == 40 ? CommitIndex.parseHash(line, 0) : null;
+            if (subject < 0 || hash == null) {
+                continue;
+            }
+            long seconds;
+            try {
+                seconds = Long.parseLong(line.substring(time + 1, author));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (index.add(hash, seconds, CommitIndex.authorKey(line.substring(author + 1, subject)),
+                    line.substring(subject + 1))) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,132 @@
+package icu.spider007.core.git;
+
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * 给某个作者的提交标价: 一个提交的价格是同一排班日内从上一个提交 (当天第一个提交则从上班) 到它之间的收入.
+ * 提交时 IDE 是否在运行无从得知, 只计正常工资, 不计加班费 (见 {@link WorkRoster#resolve}).
+ * 同一天各提交的价格之和就是当天最后一个提交时按正常工资已经挣到的钱.
+ * <p>
+ * 建立时只扫描一遍视图挑出该作者的提交并按时间排序, 价格在第一次读取时计算并缓存,
+ * 表格只为看得到的行付出计算的代价. 本类不是线程安全的
+ */
+public final class CommitPrices {
+    // 排序键: 提交时间左移后低位放行号
+    private static final int ROW_BITS = 24;
+    private static final long UNPRICED = Long.MIN_VALUE;
+
+    private final CommitView view;
+    private final WorkRoster roster;
+    private final ZoneId zone;
+    // 按提交时间升序的行号
+    private final int[] rows;
+    private final long[] prices;
+
+    public CommitPrices(CommitView view, long authorKey, WorkRoster roster, ZoneId zone) {
+        this.view = view;
+        this.roster = roster;
+        this.zone = zone;
+        long[] keys = new long[Math.min(view.size(), 1 << 16)];
+        int count = 0;
+        for (int row = 0; row < view.size() && row < 1 << ROW_BITS; row++) {
+            if (view.getAuthorKey(row) == authorKey) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = view.getCommitSeconds(row) << ROW_BITS | row;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = (int) (keys[i] & (1 << ROW_BITS) - 1);
+        }
+        prices = new long[count];
+        Arrays.fill(prices, UNPRICED);
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public CommitView getView() {
+        return view;
+    }
+
+    /**
+     * 第 i 个提交 (按时间升序) 在视图中的行号
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    public long getCommitSeconds(int i) {
+        return view.getCommitSeconds(rows[i]);
+    }
+
+    /**
+     * 第 i 个提交的价格 (薪资货币的微单位)
+     */
+    public long getPriceMicros(int i) {
+        if (prices[i] == UNPRICED) {
+            WorkDay day = resolve(i);
+            long earned = earned(day, i);
+            if (i > 0) {
+                WorkDay previous = resolve(i - 1);
+                if (previous.getDate().equals(day.getDate())) {
+                    earned -= earned(previous, i - 1);
+                }
+            }
+            prices[i] = Math.max(earned, 0);
+        }
+        return prices[i];
+    }
+
+    /**
+     * [fromSeconds, toSeconds) 内提交的个数和总价
+     *
+     * @return {个数, 总价}
+     */
+    public long[] total(long fromSeconds, long toSeconds) {
+        int from = search(fromSeconds);
+        int to = search(toSeconds);
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += getPriceMicros(i);
+        }
+        return new long[]{to - from, sum};
+    }
+
+    // 第一个提交时间不早于 seconds 的位置
+    private int search(long seconds) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getCommitSeconds(mid) < seconds) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private LocalDateTime time(int i) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(getCommitSeconds(i)), zone);
+    }
+
+    private WorkDay resolve(int i) {
+        return roster.resolve(time(i));
+    }
+
+    private long earned(WorkDay day, int i) {
+        return day.getCurve().earnedMicros(day.secondOf(time(i).toLocalTime()));
+    }
+}
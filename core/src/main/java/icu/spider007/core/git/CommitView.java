@@ -0,0 +1,78 @@
+package icu.spider007.core.git;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link CommitIndex} 已提交部分的只读视图, 直接从映射的文件读取, 不在内存里展开记录.
+ * 只做绝对位置的读取, 可以在任意线程使用
+ */
+public final class CommitView {
+    private final ByteBuffer records;
+    private final ByteBuffer messages;
+    private final int size;
+
+    CommitView(ByteBuffer records, ByteBuffer messages, int size) {
+        this.records = records;
+        this.messages = messages;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int offset(int index) {
+        return CommitIndex.HEADER_SIZE + index * CommitIndex.RECORD_SIZE;
+    }
+
+    /**
+     * 提交时间, 自 1970-01-01T00:00Z 起的秒数
+     */
+    public long getCommitSeconds(int index) {
+        return records.getLong(offset(index));
+    }
+
+    /**
+     * 作者邮箱的键, 见 {@link CommitIndex#authorKey(String)}
+     */
+    public long getAuthorKey(int index) {
+        return records.getLong(offset(index) + 8);
+    }
+
+    // SHA-1 的前 8 字节, 按大端序, 与 CommitIndex 去重时一致
+    long hashPrefix(int index) {
+        int start = offset(index) + 16;
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = prefix << 8 | records.get(start + i) & 0xFF;
+        }
+        return prefix;
+    }
+
+    /**
+     * SHA-1 的前 length 位十六进制
+     */
+    public String getHash(int index, int length) {
+        byte[] hash = new byte[CommitIndex.HASH_SIZE];
+        int start = offset(index) + 16;
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = records.get(start + i);
+        }
+        return CommitIndex.formatHash(hash, Math.min(length, CommitIndex.HASH_SIZE * 2));
+    }
+
+    /**
+     * 提交说明的第一行
+     */
+    public String getSubject(int index) {
+        int start = offset(index);
+        int position = (int) records.getLong(start + 36);
+        int length = records.getInt(start + 44);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = messages.get(position + i);
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
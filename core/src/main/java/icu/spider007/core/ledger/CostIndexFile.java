@@ -0,0 +1,96 @@
+package icu.spider007.core.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 按键 (文件、声明) 记录累计收入的紧凑二进制索引, 只追加写入
+ * <p>
+ * 文件是定长 24 字节记录 (键、收入、秒数) 的 {@link RecordFile}, 同一个键以最后一条为准.
+ * 最新值同时保存在内存的 {@link CostMap} 里, 冗余记录过多时据此压缩文件.
+ * 本类不是线程安全的, 由调用方保证单线程访问
+ */
+public final class CostIndexFile implements Closeable {
+    private static final int MAGIC = 0x50505443; // "PPTC"
+    private static final int FORMAT_VERSION = 1;
+    static final int RECORD_SIZE = 24;
+    private static final int DATA_SIZE = 20;
+    // 冗余记录超过有效键数的这个倍数时压缩文件
+    private static final int COMPACT_RATIO = 4;
+
+    private final CostMap entries = new CostMap(1024);
+    private final RecordFile file;
+
+    private CostIndexFile(Path path) throws IOException {
+        file = RecordFile.open(path, MAGIC, FORMAT_VERSION, RECORD_SIZE, new RecordFile.Codec() {
+            @Override
+            public int dataSize() {
+                return DATA_SIZE;
+            }
+
+            @Override
+            public void read(ByteBuffer buffer, int offset) {
+                entries.put(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getInt(offset + 16));
+            }
+        });
+    }
+
+    /**
+     * 打开 (必要时创建) 索引文件并加载全部记录
+     */
+    public static CostIndexFile open(Path path) throws IOException {
+        return new CostIndexFile(path);
+    }
+
+    // 写入 map 中的全部键
+    private static void writeAll(RecordFile.Batch batch, CostMap map) {
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            long key = map.keyAt(slot);
+            if (key != 0) {
+                batch.next().putLong(key).putLong(map.microsAt(slot)).putInt(map.secondsAt(slot));
+            }
+        }
+    }
+
+    /**
+     * 全部键的最新累计值, 调用方不应修改
+     */
+    public CostMap getEntries() {
+        return entries;
+    }
+
+    /**
+     * 批量追加变化过的键的累计值并刷盘
+     */
+    public void append(CostMap changed) throws IOException {
+        if (changed.size() == 0) {
+            return;
+        }
+        RecordFile.Batch batch = file.batch(changed.size());
+        writeAll(batch, changed);
+        file.append(batch);
+        for (int slot = 0; slot < changed.capacity(); slot++) {
+            long key = changed.keyAt(slot);
+            if (key != 0) {
+                entries.put(key, changed.microsAt(slot), changed.secondsAt(slot));
+            }
+        }
+        if (file.getRecordCount() > (long) entries.size() * COMPACT_RATIO + 64) {
+            compact();
+        }
+    }
+
+    // 只保留每个键最新的记录
+    private void compact() throws IOException {
+        RecordFile.Batch batch = file.batch(entries.size());
+        writeAll(batch, entries);
+        file.replace(batch);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,185 @@
+package icu.spider007.core.ledger;
+
+import java.util.Arrays;
+
+/**
+ * long 键到 (收入微单位, 秒数) 的开放寻址哈希表, 键和值都存放在基本类型数组里
+ * <p>
+ * 线性探测, 负载超过 1/2 时扩容; 不支持删除. 十万个键约占 4MB, 查找和累加都不分配对象.
+ * 键 0 保留为空槽, 调用方的键需要避开 0 (见 {@link #mix(long)}).
+ * 本类不是线程安全的
+ */
+public final class CostMap {
+    private long[] keys;
+    private long[] micros;
+    private int[] seconds;
+    private int size;
+    private int mask;
+
+    public CostMap() {
+        this(16);
+    }
+
+    public CostMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        keys = new long[capacity];
+        micros = new long[capacity];
+        seconds = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 把任意 64 位值打散成非 0 的键
+     */
+    public static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 在原值上累加, 键不存在时先插入
+     */
+    public void add(long key, long deltaMicros, int deltaSeconds) {
+        int slot = insert(key);
+        micros[slot] += deltaMicros;
+        seconds[slot] += deltaSeconds;
+    }
+
+    /**
+     * 覆盖原值, 键不存在时先插入
+     */
+    public void put(long key, long valueMicros, int valueSeconds) {
+        int slot = insert(key);
+        micros[slot] = valueMicros;
+        seconds[slot] = valueSeconds;
+    }
+
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * 键对应的收入, 不存在时返回 0
+     */
+    public long getMicros(long key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : micros[slot];
+    }
+
+    /**
+     * 键对应的秒数, 不存在时返回 0
+     */
+    public int getSeconds(long key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : seconds[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 独立的副本, 用于把数据交给另一个线程
+     */
+    public CostMap copy() {
+        CostMap copy = new CostMap(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                copy.put(keys[slot], micros[slot], seconds[slot]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * 清空所有键, 保留容量
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(micros, 0);
+        Arrays.fill(seconds, 0);
+        size = 0;
+    }
+
+    /**
+     * 槽位数, 与 {@link #keyAt(int)} 等配合遍历, 空槽的键为 0
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public long microsAt(int slot) {
+        return micros[slot];
+    }
+
+    public int secondsAt(int slot) {
+        return seconds[slot];
+    }
+
+    private int find(long key) {
+        for (int slot = index(key); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int insert(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("key 0 is reserved");
+        }
+        for (int slot = index(key); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    return insert(key);
+                }
+                keys[slot] = key;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    private int index(long key) {
+        return (int) (key ^ key >>> 32) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldMicros = micros;
+        int[] oldSeconds = seconds;
+        int capacity = oldKeys.length * 2;
+        keys = new long[capacity];
+        micros = new long[capacity];
+        seconds = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = index(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                micros[slot] = oldMicros[i];
+                seconds[slot] = oldSeconds[i];
+            }
+        }
+    }
+}
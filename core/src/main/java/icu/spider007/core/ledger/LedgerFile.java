@@ -0,0 +1,152 @@
+package icu.spider007.core.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按天记录收入的紧凑二进制账本, 只追加写入
+ * <p>
+ * 文件是定长 32 字节记录的 {@link RecordFile}, 同一天可以有多条记录, 以最后一条为准.
+ * 打开时扫描一遍建立按天排序的内存索引, 之后的查询都在内存中完成.
+ * 本类不是线程安全的, 由调用方保证单线程访问
+ */
+public final class LedgerFile implements Closeable {
+    private static final int MAGIC = 0x5050544C; // "PPTL"
+    private static final int FORMAT_VERSION = 1;
+    static final int RECORD_SIZE = 32;
+    // 天、工作秒数、收入、加班秒数、时间表
+    private static final int DATA_SIZE = 24;
+    // 冗余记录超过有效天数的这个倍数时压缩文件
+    private static final int COMPACT_RATIO = 4;
+
+    private final RecordFile file;
+
+    // 内存索引: 按天升序, 每天只保留最新一条
+    private int[] days = new int[64];
+    private LedgerRecord[] records = new LedgerRecord[64];
+    private int size;
+
+    private LedgerFile(Path path) throws IOException {
+        file = RecordFile.open(path, MAGIC, FORMAT_VERSION, RECORD_SIZE, new RecordFile.Codec() {
+            @Override
+            public int dataSize() {
+                return DATA_SIZE;
+            }
+
+            @Override
+            public void read(ByteBuffer buffer, int offset) {
+                index(new LedgerRecord(
+                        buffer.getInt(offset),
+                        buffer.getInt(offset + 4),
+                        buffer.getLong(offset + 8),
+                        buffer.getInt(offset + 16),
+                        buffer.getInt(offset + 20)));
+            }
+        });
+    }
+
+    /**
+     * 打开 (必要时创建) 账本文件并加载索引
+     */
+    public static LedgerFile open(Path path) throws IOException {
+        return new LedgerFile(path);
+    }
+
+    private static void write(RecordFile.Batch batch, LedgerRecord record) {
+        batch.next().putInt(record.getEpochDay())
+                .putInt(record.getWorkedSeconds())
+                .putLong(record.getEarnedMicros())
+                .putInt(record.getOvertimeSeconds())
+                .putInt(record.getScheduleId());
+    }
+
+    /**
+     * 批量追加记录并刷盘, 追加完成后同一天以最新记录为准
+     */
+    public void append(List<LedgerRecord> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        RecordFile.Batch written = file.batch(batch.size());
+        for (LedgerRecord record : batch) {
+            write(written, record);
+        }
+        file.append(written);
+
+        for (LedgerRecord record : batch) {
+            index(record);
+        }
+        if (file.getRecordCount() > (long) size * COMPACT_RATIO + 64) {
+            compact();
+        }
+    }
+
+    // 只保留每天最新的记录
+    private void compact() throws IOException {
+        RecordFile.Batch latest = file.batch(size);
+        for (int i = 0; i < size; i++) {
+            write(latest, records[i]);
+        }
+        file.replace(latest);
+    }
+
+    private void index(LedgerRecord record) {
+        int day = record.getEpochDay();
+        // 绝大多数写入都是当天或新的一天, 先检查末尾
+        if (size > 0 && days[size - 1] == day) {
+            records[size - 1] = record;
+            return;
+        }
+        int position = size == 0 || days[size - 1] < day ? -(size + 1) : Arrays.binarySearch(days, 0, size, day);
+        if (position >= 0) {
+            records[position] = record;
+            return;
+        }
+        position = -position - 1;
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            records = Arrays.copyOf(records, size * 2);
+        }
+        System.arraycopy(days, position, days, position + 1, size - position);
+        System.arraycopy(records, position, records, position + 1, size - position);
+        days[position] = day;
+        records[position] = record;
+        size++;
+    }
+
+    /**
+     * 某一天的记录, 不存在时返回 null
+     */
+    public LedgerRecord get(int epochDay) {
+        int position = Arrays.binarySearch(days, 0, size, epochDay);
+        return position >= 0 ? records[position] : null;
+    }
+
+    /**
+     * [fromEpochDay, toEpochDay] 范围内的记录, 按日期升序
+     */
+    public List<LedgerRecord> range(int fromEpochDay, int toEpochDay) {
+        int from = lowerBound(fromEpochDay);
+        int to = lowerBound(toEpochDay + 1);
+        List<LedgerRecord> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(records[i]);
+        }
+        return result;
+    }
+
+    private int lowerBound(int epochDay) {
+        int position = Arrays.binarySearch(days, 0, size, epochDay);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,52 @@
+package icu.spider007.core.ledger;
+
+/**
+ * 账本中一天的记录, 不可变
+ */
+public final class LedgerRecord {
+    private final int epochDay;
+    private final int workedSeconds;
+    private final long earnedMicros;
+    private final int overtimeSeconds;
+    private final int scheduleId;
+
+    public LedgerRecord(int epochDay, int workedSeconds, long earnedMicros, int overtimeSeconds, int scheduleId) {
+        this.epochDay = epochDay;
+        this.workedSeconds = workedSeconds;
+        this.earnedMicros = earnedMicros;
+        this.overtimeSeconds = overtimeSeconds;
+        this.scheduleId = scheduleId;
+    }
+
+    /**
+     * 自 1970-01-01 起的天数, 即 LocalDate.toEpochDay()
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public int getWorkedSeconds() {
+        return workedSeconds;
+    }
+
+    /**
+     * 当日收入, 单位为微单位
+     */
+    public long getEarnedMicros() {
+        return earnedMicros;
+    }
+
+    /**
+     * 下班后 IDE 仍在运行的秒数
+     */
+    public int getOvertimeSeconds() {
+        return overtimeSeconds;
+    }
+
+    /**
+     * 当日生效的工作时间表标识 (配置指纹)
+     */
+    public int getScheduleId() {
+        return scheduleId;
+    }
+}
@@ -0,0 +1,243 @@
+package icu.spider007.core.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加写入的定长记录文件, {@link LedgerFile} 和 {@link CostIndexFile} 共用
+ * <p>
+ * 文件格式: 16 字节文件头 (魔数、格式版本) 之后是定长记录, 每条记录是数据部分、数据的 CRC32, 再补零到记录长度.
+ * 打开时把整个文件读入, 按顺序把校验通过的记录交给 {@link Codec}, 截掉崩溃时写了一半或损坏的尾部.
+ * 同一个键的新记录覆盖旧记录, 冗余记录过多时调用方用 {@link #replace} 写入只含最新记录的文件.
+ * 本类不是线程安全的, 由调用方保证单线程访问
+ */
+public final class RecordFile implements Closeable {
+    private static final int HEADER_SIZE = 16;
+    private static final int CRC_SIZE = 4;
+
+    /**
+     * 记录的数据格式
+     */
+    public interface Codec {
+        /**
+         * 每条记录数据部分的字节数, 不含校验和
+         */
+        int dataSize();
+
+        /**
+         * 打开文件时按顺序读取每条校验通过的记录
+         *
+         * @param offset 记录在 buffer 中的起始位置
+         */
+        void read(ByteBuffer buffer, int offset);
+    }
+
+    private final Path path;
+    private final int magic;
+    private final int formatVersion;
+    private final int recordSize;
+    private final int dataSize;
+    private FileChannel channel;
+    private long recordCount;
+
+    private RecordFile(Path path, int magic, int formatVersion, int recordSize, int dataSize) {
+        this.path = path;
+        this.magic = magic;
+        this.formatVersion = formatVersion;
+        this.recordSize = recordSize;
+        this.dataSize = dataSize;
+    }
+
+    /**
+     * 打开 (必要时创建) 记录文件, 把已有的记录交给 codec
+     *
+     * @param recordSize 每条记录的总字节数, 至少是数据部分加 4 字节校验和
+     * @throws IOException 读写失败, 或文件头与 magic、formatVersion 不符
+     */
+    public static RecordFile open(Path path, int magic, int formatVersion, int recordSize, Codec codec)
+            throws IOException {
+        int dataSize = codec.dataSize();
+        if (dataSize + CRC_SIZE > recordSize) {
+            throw new IllegalArgumentException("record size " + recordSize + " < " + (dataSize + CRC_SIZE));
+        }
+        Files.createDirectories(path.getParent());
+        RecordFile file = new RecordFile(path, magic, formatVersion, recordSize, dataSize);
+        file.load(codec);
+        return file;
+    }
+
+    private void load(Codec codec) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            writeHeader(channel);
+            return;
+        }
+
+        // 记录文件都不大, 一次读入内存; 不使用内存映射, 以便随后可以截断或替换文件
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, 0);
+        if (buffer.getInt(0) != magic || buffer.getInt(4) != formatVersion) {
+            throw new IOException("Not a PayPerTick record file: " + path);
+        }
+
+        long validEnd = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        for (long offset = HEADER_SIZE; offset + recordSize <= fileSize; offset += recordSize) {
+            int position = (int) offset;
+            crc.reset();
+            crc.update(buffer.array(), position, dataSize);
+            if ((int) crc.getValue() != buffer.getInt(position + dataSize)) {
+                break;
+            }
+            codec.read(buffer, position);
+            recordCount++;
+            validEnd = offset + recordSize;
+        }
+        if (validEnd < fileSize) {
+            // 截掉崩溃时写了一半或损坏的尾部
+            channel.truncate(validEnd);
+        }
+    }
+
+    /**
+     * 从 position 开始读满 buffer, 文件提前结束时停在文件末尾
+     */
+    public static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+            // 读满为止
+        }
+    }
+
+    private void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(formatVersion).putLong(0).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    /**
+     * 一批待写入的记录: 每条记录先调用 {@link #next()}, 再往返回的缓冲区里写入数据部分
+     */
+    public final class Batch {
+        private final ByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        private int start = -1;
+        private int count;
+
+        private Batch(int capacity) {
+            buffer = ByteBuffer.allocate(capacity * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * 开始下一条记录, 返回写入数据部分的缓冲区
+         */
+        public ByteBuffer next() {
+            seal();
+            start = buffer.position();
+            count++;
+            return buffer;
+        }
+
+        // 给最后一条记录补上校验和与填充
+        private void seal() {
+            if (start < 0) {
+                return;
+            }
+            if (buffer.position() != start + dataSize) {
+                throw new IllegalStateException("record data is " + (buffer.position() - start)
+                        + " bytes, expected " + dataSize);
+            }
+            crc.reset();
+            crc.update(buffer.array(), start, dataSize);
+            buffer.putInt((int) crc.getValue());
+            buffer.position(start + recordSize);
+            start = -1;
+        }
+
+        private ByteBuffer finish() {
+            seal();
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * 能放下 capacity 条记录的批次
+     */
+    public Batch batch(int capacity) {
+        return new Batch(capacity);
+    }
+
+    /**
+     * 追加一批记录并刷盘; 失败时截掉这批写了一部分的记录, 之后的追加仍与记录边界对齐
+     */
+    public void append(Batch batch) throws IOException {
+        ByteBuffer buffer = batch.finish();
+        // 按已有记录数而不是文件长度定位, 上次失败留下的残余会被覆盖
+        long end = HEADER_SIZE + recordCount * recordSize;
+        long position = end;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(end);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        recordCount += batch.count;
+    }
+
+    /**
+     * 用一批记录替换整个文件: 写入临时文件后原子替换
+     */
+    public void replace(Batch batch) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            ByteBuffer buffer = batch.finish();
+            long position = HEADER_SIZE;
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+            out.force(true);
+        }
+        // Windows 上不能替换仍然打开着的文件
+        channel.close();
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            recordCount = batch.count;
+        } finally {
+            // 替换失败时重新打开原文件, 之后的追加不受影响, 调用方下次追加时再尝试
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * 文件中的记录数, 包括被覆盖的旧记录
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,120 @@
+package icu.spider007.core.message;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 提示文案和样式的目录, 不可变, 线程安全
+ * <p>
+ * 内容来自资源包 messages/CountdownMessages (默认中文, _en 为英文), 可以再叠加一个用户的
+ * properties 文件覆盖其中任意条目, 不需要重新构建插件. 模板和列表在第一次使用时编译并缓存
+ */
+public final class MessageCatalog {
+    private static final String BUNDLE = "messages.CountdownMessages";
+
+    private static final Map<Locale, MessageCatalog> BUNDLED = new ConcurrentHashMap<>();
+    // 用户文件按路径缓存, 文件修改后重新读取
+    private static final Map<Path, Cached> LOADED = new ConcurrentHashMap<>();
+
+    private final Locale locale;
+    private final Map<String, String> values;
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+    private final Map<String, String[]> lists = new ConcurrentHashMap<>();
+
+    private MessageCatalog(Locale locale, Map<String, String> values) {
+        this.locale = locale;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * 插件自带的文案, 没有对应语言时使用中文
+     */
+    public static MessageCatalog bundled(Locale locale) {
+        return BUNDLED.computeIfAbsent(locale, l -> {
+            // 不回退到系统默认语言, 找不到时直接使用基础 (中文) 资源包
+            ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, l, MessageCatalog.class.getClassLoader(),
+                    ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
+            Map<String, String> values = new HashMap<>();
+            for (String key : bundle.keySet()) {
+                values.put(key, bundle.getString(key));
+            }
+            return new MessageCatalog(l, values);
+        });
+    }
+
+    /**
+     * 自带文案叠加用户文件 override, 文件不存在时直接返回自带文案, 文件未修改时复用上次的结果
+     */
+    public static MessageCatalog load(Locale locale, Path override) throws IOException {
+        MessageCatalog base = bundled(locale);
+        if (override == null || !Files.isRegularFile(override)) {
+            return base;
+        }
+        long modified = Files.getLastModifiedTime(override).toMillis();
+        Cached cached = LOADED.get(override);
+        if (cached != null && cached.modified == modified && cached.catalog.locale.equals(locale)) {
+            return cached.catalog;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(override, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, String> values = new HashMap<>(base.values);
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        MessageCatalog catalog = new MessageCatalog(locale, values);
+        LOADED.put(override, new Cached(modified, catalog));
+        return catalog;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * 原始文本, 缺少条目时返回 key 本身, 便于发现遗漏
+     */
+    public String text(String key) {
+        String value = values.get(key);
+        return value == null ? key : value;
+    }
+
+    /**
+     * 以空白分隔的列表, 如随机表情
+     */
+    public String[] list(String key) {
+        return lists.computeIfAbsent(key, k -> {
+            String value = values.get(k);
+            String trimmed = value == null ? "" : value.trim();
+            return trimmed.isEmpty() ? new String[]{""} : trimmed.split("\\s+");
+        });
+    }
+
+    /**
+     * 编译后的模板, 同一个 key 必须始终使用相同的参数名
+     */
+    public MessageTemplate template(String key, String... names) {
+        return templates.computeIfAbsent(key, k -> MessageTemplate.compile(text(k), names));
+    }
+
+    private static final class Cached {
+        final long modified;
+        final MessageCatalog catalog;
+
+        Cached(long modified, MessageCatalog catalog) {
+            this.modified = modified;
+            this.catalog = catalog;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package icu.spider007.core.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的文案模板, 不可变, 线程安全
+ * <p>
+ * 模板中的 {name} 在编译时按参数名换成参数下标, 渲染时只做拼接, 不再解析格式串.
+ * 同时保存纯文本和 HTML 两份常量片段, HTML 版本已转义并把换行换成 &lt;br&gt;.
+ * 未知的 {name} 原样保留
+ */
+public final class MessageTemplate {
+    private final String[] plain;
+    private final String[] html;
+    // slots[i] 是 plain[i] 之后要插入的参数下标
+    private final int[] slots;
+
+    private MessageTemplate(String[] plain, String[] html, int[] slots) {
+        this.plain = plain;
+        this.html = html;
+        this.slots = slots;
+    }
+
+    /**
+     * 编译模板, names 依次对应渲染时传入的参数
+     */
+    public static MessageTemplate compile(String pattern, String... names) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int close = c == '{' ? pattern.indexOf('}', i + 1) : -1;
+            int slot = close < 0 ? -1 : indexOf(names, pattern.substring(i + 1, close));
+            if (slot < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(slot);
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+
+        String[] plain = literals.toArray(new String[0]);
+        String[] html = new String[plain.length];
+        for (int j = 0; j < plain.length; j++) {
+            html[j] = toHtml(plain[j]);
+        }
+        int[] slotArray = new int[slots.size()];
+        for (int j = 0; j < slotArray.length; j++) {
+            slotArray[j] = slots.get(j);
+        }
+        return new MessageTemplate(plain, html, slotArray);
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String toHtml(String text) {
+        StringBuilder out = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '\n':
+                    out.append("<br>");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 渲染为纯文本
+     */
+    public String format(Object... args) {
+        StringBuilder out = new StringBuilder(64);
+        appendTo(out, false, args);
+        return out.toString();
+    }
+
+    /**
+     * 渲染到 out, html 为 true 时常量部分使用 HTML 版本 (参数本身不做转义)
+     */
+    public void appendTo(StringBuilder out, boolean html, Object... args) {
+        String[] literals = html ? this.html : plain;
+        out.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (slot < args.length) {
+                out.append(args[slot]);
+            }
+            out.append(literals[i + 1]);
+        }
+    }
+}
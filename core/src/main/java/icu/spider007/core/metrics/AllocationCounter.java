@@ -0,0 +1,47 @@
+package icu.spider007.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 当前线程累计分配的字节数, 基于 HotSpot 的线程分配计数, 读取时不分配对象
+ */
+public final class AllocationCounter {
+    private static final com.sun.management.ThreadMXBean THREADS = lookup();
+
+    private AllocationCounter() {
+    }
+
+    private static com.sun.management.ThreadMXBean lookup() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (LinkageError | SecurityException e) {
+            // 非 HotSpot 虚拟机, 不统计分配
+        }
+        return null;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * 当前线程至今分配的字节数, 不支持时返回 -1
+     */
+    public static long current() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 从 start (之前 {@link #current()} 的返回值) 到现在分配的字节数, 不支持时返回 -1
+     */
+    public static long since(long start) {
+        return start < 0 ? -1 : Math.max(current() - start, 0);
+    }
+}
@@ -0,0 +1,137 @@
+package icu.spider007.core.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个被测方法的统计: 调用次数、耗时分布、在 EDT 上花费的时间和分配的字节数, 线程安全
+ */
+public final class ProbeStats {
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder edtNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    // 有分配数据的调用次数, 不支持统计分配时为 0
+    private final LongAdder allocationSamples = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public ProbeStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 记录一次调用, allocated 小于 0 表示没有分配数据
+     */
+    public void record(long nanos, long allocated, boolean edt) {
+        histogram.record(nanos);
+        count.increment();
+        totalNanos.add(nanos);
+        if (edt) {
+            edtNanos.add(nanos);
+        }
+        if (allocated >= 0) {
+            allocatedBytes.add(allocated);
+            allocationSamples.increment();
+        }
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public void reset() {
+        histogram.reset();
+        count.reset();
+        totalNanos.reset();
+        edtNanos.reset();
+        allocatedBytes.reset();
+        allocationSamples.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * 当前统计的快照, 与并发记录之间不保证原子
+     */
+    public Snapshot snapshot() {
+        long calls = count.sum();
+        long samples = allocationSamples.sum();
+        return new Snapshot(name, calls,
+                calls == 0 ? 0 : totalNanos.sum() / calls,
+                histogram.percentile(0.5), histogram.percentile(0.9), histogram.percentile(0.99),
+                maxNanos.get(), edtNanos.sum(),
+                samples == 0 ? -1 : allocatedBytes.sum() / samples);
+    }
+
+    /**
+     * 不可变的统计快照, 时间单位为纳秒, 不支持统计分配时 allocatedBytesPerCall 为 -1
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long count;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        private final long edtNanos;
+        private final long allocatedBytesPerCall;
+
+        // 参数名供 JMX 的 MXBean 映射使用
+        @ConstructorProperties({"name", "count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos",
+                "maxNanos", "edtNanos", "allocatedBytesPerCall"})
+        public Snapshot(String name, long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                        long maxNanos, long edtNanos, long allocatedBytesPerCall) {
+            this.name = name;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+            this.edtNanos = edtNanos;
+            this.allocatedBytesPerCall = allocatedBytesPerCall;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getEdtNanos() {
+            return edtNanos;
+        }
+
+        public long getAllocatedBytesPerCall() {
+            return allocatedBytesPerCall;
+        }
+    }
+}
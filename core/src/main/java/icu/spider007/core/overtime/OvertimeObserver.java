@@ -0,0 +1,79 @@
+package icu.spider007.core.overtime;
+
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.clock.TickPlanner;
+
+import java.time.LocalDate;
+
+/**
+ * 按节拍记录 IDE 实际观察到的加班时间
+ * <p>
+ * {@link WorkRoster#resolve} 给出的收入曲线不计加班; 每次节拍把当前排班日交给 {@link #observe},
+ * 从这一段连续观察开始的时刻起才按加班计薪. 两次节拍相隔超过 {@link #MAX_TICK_GAP_SECONDS}
+ * (电脑休眠或 IDE 关闭) 时, 上一段按观察到的可计加班时间结算, 从这次节拍重新开始一段.
+ * 只在换日、换配置或出现间隔时重新编译曲线, 其余节拍不分配对象.
+ * 本类不是线程安全的, 由调用方保证同一时刻只有一个线程访问
+ */
+public final class OvertimeObserver {
+    /**
+     * 计加班时节拍最多每 5 分钟一次, 间隔超过两倍时这段时间不计入加班
+     */
+    public static final int MAX_TICK_GAP_SECONDS = (int) (2 * TickPlanner.BACKGROUND_TICK_MILLIS / 1000);
+
+    private WorkRoster roster;
+    // 最近一次节拍的排班日 (不计加班) 和计入观察到的加班后的结果
+    private WorkDay source;
+    private WorkDay observed;
+    // 本段观察开始和最近一次节拍的时刻, 排班日第几秒
+    private int runStart;
+    private int lastSecond;
+    // 之前各段观察到的可计加班秒数
+    private int priorSeconds;
+    // 上次运行时记下的加班秒数, 重启 IDE 后接着计
+    private LocalDate restoredDate;
+    private int restoredSeconds;
+
+    /**
+     * 节拍时调用, 返回计入观察到的加班后的排班日
+     *
+     * @param day    roster 在当前时刻解析出的排班日
+     * @param second 当前时刻在排班日中的秒数
+     */
+    public WorkDay observe(WorkRoster roster, WorkDay day, int second) {
+        if (source == null || !source.getDate().equals(day.getDate())) {
+            priorSeconds = day.getDate().equals(restoredDate) ? restoredSeconds : 0;
+            start(roster, day, second);
+        } else if (roster != this.roster || day.getCurve() != source.getCurve()
+                || second < lastSecond || second - lastSecond > MAX_TICK_GAP_SECONDS) {
+            // 换了配置或中间没有观察到, 结算上一段
+            priorSeconds += observed.getCurve().overtimeWindowSeconds(runStart, lastSecond);
+            start(roster, day, second);
+        } else if (day.getOffsetSeconds() != observed.getOffsetSeconds()) {
+            // 夜班跨过零点, 同一段观察换成次日的时刻偏移
+            source = day;
+            observed = roster.observe(day, runStart, priorSeconds);
+        }
+        lastSecond = second;
+        return observed;
+    }
+
+    private void start(WorkRoster roster, WorkDay day, int second) {
+        this.roster = roster;
+        source = day;
+        runStart = second;
+        observed = roster.observe(day, second, priorSeconds);
+    }
+
+    /**
+     * 恢复上次运行时 date 这一天已计薪的加班秒数
+     */
+    public void restore(LocalDate date, int overtimeSeconds) {
+        restoredDate = date;
+        restoredSeconds = overtimeSeconds;
+        if (source != null && source.getDate().equals(date)) {
+            priorSeconds += overtimeSeconds;
+            observed = roster.observe(source, runStart, priorSeconds);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package icu.spider007.core.overtime;
+
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.WorkSchedule;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * 加班计薪规则, 不可变
+ * <p>
+ * 规则文本每条 (用分号或换行分隔) 一个关键字和一个数值, 例如
+ * <pre>
+ * weekday 1.5; weekend 2; holiday 3; after 30; cap 4h; round 30
+ * </pre>
+ * weekday/weekend/holiday 分别是工作日下班后、休息日和法定节假日的加班倍数, 0 或不写表示不计;
+ * after 是下班后多久开始计加班, cap 是每天计薪加班时长的上限, round 是按多长的整块计薪 (不足一块不计),
+ * 时长默认以分钟为单位, 也可以写 4h 或 30m.
+ * 工作日从下班 (加上 after) 开始一直计到当天结束; 休息日只在标准工作时段内计加班.
+ * 这些时段里只有 IDE 实际观察到的部分计薪 (见 {@link OvertimeObserver}), 上限和取整按当天观察到的合计计算.
+ * 规则通过 {@link #compile} 编译成每个排班日的 {@link PayCurve}
+ */
+public final class OvertimeRules {
+    private static final BigDecimal THOUSAND = BigDecimal.valueOf(1000);
+    // 排班日时间轴的长度, 夜班跨零点后最多到次日结束
+    private static final int SHIFT_DAY_SECONDS = 48 * 3600;
+
+    public enum DayType {
+        // 工作日 (含调休上班)
+        WORKDAY,
+        // 周末等普通休息日
+        WEEKEND,
+        // 法定节假日
+        HOLIDAY
+    }
+
+    // 倍数的千分值, 下标为 DayType.ordinal()
+    private final int[] multiplierPermille;
+    private final int afterSeconds;
+    private final int capSeconds;
+    private final int roundSeconds;
+
+    private OvertimeRules(int[] multiplierPermille, int afterSeconds, int capSeconds, int roundSeconds) {
+        this.multiplierPermille = multiplierPermille;
+        this.afterSeconds = afterSeconds;
+        this.capSeconds = capSeconds;
+        this.roundSeconds = roundSeconds;
+    }
+
+    /**
+     * 解析规则文本
+     *
+     * @throws ScheduleException 关键字或数值不正确
+     */
+    public static OvertimeRules parse(String text) {
+        int[] multipliers = new int[DayType.values().length];
+        int after = 0;
+        int cap = 0;
+        int round = 0;
+        for (String item : text.split("[;\\n]")) {
+            String trimmed = item.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] parts = trimmed.split("\\s+");
+            if (parts.length != 2) {
+                throw new ScheduleException(ScheduleException.Kind.OVERTIME, "加班规则格式应为 关键字 数值: " + trimmed);
+            }
+            switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "weekday":
+                    multipliers[DayType.WORKDAY.ordinal()] = parseMultiplier(parts[1]);
+                    break;
+                case "weekend":
+                    multipliers[DayType.WEEKEND.ordinal()] = parseMultiplier(parts[1]);
+                    break;
+                case "holiday":
+                    multipliers[DayType.HOLIDAY.ordinal()] = parseMultiplier(parts[1]);
+                    break;
+                case "after":
+                    after = parseDuration(parts[1]);
+                    break;
+                case "cap":
+                    cap = parseDuration(parts[1]);
+                    break;
+                case "round":
+                    round = parseDuration(parts[1]);
+                    break;
+                default:
+                    throw new ScheduleException(ScheduleException.Kind.OVERTIME, "无法识别的加班规则: " + parts[0]);
+            }
+        }
+        return new OvertimeRules(multipliers, after, cap, round);
+    }
+
+    private static int parseMultiplier(String text) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw new ScheduleException(ScheduleException.Kind.OVERTIME, "加班倍数应为数字: " + text);
+        }
+        if (value.signum() < 0 || value.compareTo(BigDecimal.TEN) > 0) {
+            throw new ScheduleException(ScheduleException.Kind.OVERTIME, "加班倍数应在 0 到 10 之间: " + text);
+        }
+        return value.multiply(THOUSAND).setScale(0, RoundingMode.HALF_UP).intValue();
+    }
+
+    // 30 / 30m / 4h, 返回秒数
+    private static int parseDuration(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        int unit = 60;
+        if (lower.endsWith("h")) {
+            unit = 3600;
+            lower = lower.substring(0, lower.length() - 1);
+        } else if (lower.endsWith("m")) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        int value;
+        try {
+            value = Integer.parseInt(lower);
+        } catch (NumberFormatException e) {
+            throw new ScheduleException(ScheduleException.Kind.OVERTIME, "时长应为整数分钟或小时: " + text);
+        }
+        if (value < 0 || value > SHIFT_DAY_SECONDS / unit) {
+            throw new ScheduleException(ScheduleException.Kind.OVERTIME, "时长超出范围: " + text);
+        }
+        return value * unit;
+    }
+
+    /**
+     * 编译某个排班日还没有观察到加班时的收入曲线: 只有正常工资, 但带有当天的加班时薪
+     *
+     * @param schedule 当天实际使用的时间表
+     * @param standard 标准工作日的时间表, 休息日在它的工作时段内计加班, 加班工资也按它的时薪计算
+     * @param type     当天的类型
+     */
+    public PayCurve compile(WorkSchedule schedule, WorkSchedule standard, DayType type) {
+        return compile(schedule, standard, type, SHIFT_DAY_SECONDS, 0);
+    }
+
+    /**
+     * 编译某个排班日的收入曲线, 加班只从 observedFrom 起计
+     *
+     * @param observedFrom    本段连续观察开始的时刻 (排班日第几秒)
+     * @param observedSeconds 之前各段观察到的可计加班秒数, 与本段合计后再按上限和取整计薪
+     */
+    public PayCurve compile(WorkSchedule schedule, WorkSchedule standard, DayType type,
+                            int observedFrom, int observedSeconds) {
+        int permille = multiplierPermille[type.ordinal()];
+        WorkSchedule base = type == DayType.WORKDAY ? schedule : standard;
+        if (permille == 0 || base.getTotalSeconds() == 0 || type == DayType.WORKDAY && schedule.isRestDay()) {
+            return PayCurve.regular(schedule, type);
+        }
+        // 时薪 = 日薪 / 工作小时数 * 倍数, 只在编译时计算一次
+        long perHour = BigDecimal.valueOf(base.getDailySalaryMicros())
+                .multiply(BigDecimal.valueOf(3600L * permille))
+                .divide(BigDecimal.valueOf(base.getTotalSeconds() * 1000L), 0, RoundingMode.HALF_UP)
+                .longValueExact();
+        PayCurve.Builder builder = new PayCurve.Builder(schedule, type, perHour);
+        int limit = capSeconds > 0 ? capSeconds : Integer.MAX_VALUE;
+        int credited = Math.min(observedSeconds, limit);
+        if (credited > 0) {
+            // 之前各段观察到的加班费从下班时起计入, 本段开始前后曲线仍然连续
+            builder.overtime(schedule.getShiftEnd(), paid(credited) * 1000L, false);
+        }
+        if (type == DayType.WORKDAY) {
+            window(builder, Math.max(schedule.getShiftEnd() + afterSeconds, observedFrom), SHIFT_DAY_SECONDS,
+                    credited, limit);
+        } else {
+            for (int i = 0; i < standard.getSegmentCount(); i++) {
+                credited = window(builder, Math.max(standard.getSegmentStart(i), observedFrom),
+                        standard.getSegmentEnd(i), credited, limit);
+            }
+        }
+        return builder.build();
+    }
+
+    // 在 [from, to) 内追加加班段, 返回窗口结束时已计加班的秒数
+    private int window(PayCurve.Builder builder, int from, int to, int credited, int limit) {
+        if (from >= to) {
+            return credited;
+        }
+        int second = from;
+        while (second < to && credited < limit) {
+            int length = Math.min(to - second, limit - credited);
+            if (roundSeconds == 0) {
+                builder.overtime(second, credited * 1000L, true);
+            } else {
+                // 不足一整块时加班费不变, 凑满一块时一次计入
+                int block = credited / roundSeconds * roundSeconds;
+                length = Math.min(length, block + roundSeconds - credited);
+                builder.overtime(second, block * 1000L, false);
+            }
+            second += length;
+            credited += length;
+        }
+        // 达到上限前都在计加班时长, 窗口之后加班费保持不变
+        if (second > from) {
+            builder.window(from, second);
+        }
+        builder.overtime(second, paid(credited) * 1000L, false);
+        return credited;
+    }
+
+    // 取整后计薪的加班秒数
+    private int paid(int credited) {
+        return roundSeconds == 0 ? credited : credited / roundSeconds * roundSeconds;
+    }
+
+    public int getMultiplierPermille(DayType type) {
+        return multiplierPermille[type.ordinal()];
+    }
+
+    /**
+     * 该类型的日子是否计加班
+     */
+    public boolean pays(DayType type) {
+        return multiplierPermille[type.ordinal()] > 0;
+    }
+}
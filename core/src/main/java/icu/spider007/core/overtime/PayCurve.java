@@ -0,0 +1,273 @@
+package icu.spider007.core.overtime;
+
+import icu.spider007.core.Money;
+import icu.spider007.core.WorkSchedule;
+
+import java.util.Arrays;
+
+/**
+ * 一个排班日的收入曲线: 按时刻分段的分段线性函数, 不可变
+ * <p>
+ * 每一段在 [starts[i], starts[i + 1]) 内, 正常工资和加班费各自要么按固定速率增长, 要么保持不变,
+ * 段首记录此前累计的正常工作毫秒数和计薪加班毫秒数. 任意时刻的收入只需一次二分查找加几次整数运算.
+ * 正常工资沿用 {@link WorkSchedule} 的精确算法, 全天结束时正好等于日薪;
+ * 加班费按每小时加班工资 (微单位) 计算, 取整规则产生的阶梯用斜率为 0 的段表示.
+ * 曲线另外记录计加班时长的时段 (观察到的部分, 到达上限为止), 供 {@link OvertimeObserver} 结算
+ */
+public final class PayCurve {
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final WorkSchedule schedule;
+    private final OvertimeRules.DayType type;
+    // 段的开始时刻, 单位: 排班日第几秒, starts[0] = 0
+    private final int[] starts;
+    // 段首之前已完成的正常工作毫秒数, 以及本段内正常工资是否增长
+    private final long[] workedBefore;
+    private final boolean[] working;
+    // 段首之前已计薪的加班毫秒数, 以及本段内加班费是否增长
+    private final long[] creditedBefore;
+    private final boolean[] overtime;
+    // 计加班时长的时段 [windows[2k], windows[2k + 1])
+    private final int[] windows;
+    // 每毫秒加班工资 = quotient + remainder / HOUR_MILLIS (微单位)
+    private final long overtimeMicrosPerHour;
+    private final long overtimeQuotient;
+    private final long overtimeRemainder;
+
+    PayCurve(WorkSchedule schedule, OvertimeRules.DayType type, int[] starts, long[] workedBefore, boolean[] working,
+             long[] creditedBefore, boolean[] overtime, int[] windows, long overtimeMicrosPerHour) {
+        this.schedule = schedule;
+        this.type = type;
+        this.starts = starts;
+        this.workedBefore = workedBefore;
+        this.working = working;
+        this.creditedBefore = creditedBefore;
+        this.overtime = overtime;
+        this.windows = windows;
+        this.overtimeMicrosPerHour = overtimeMicrosPerHour;
+        this.overtimeQuotient = overtimeMicrosPerHour / HOUR_MILLIS;
+        this.overtimeRemainder = overtimeMicrosPerHour % HOUR_MILLIS;
+    }
+
+    /**
+     * 不计加班的收入曲线, 与 {@link WorkSchedule} 的结果完全一致
+     */
+    public static PayCurve regular(WorkSchedule schedule) {
+        return regular(schedule, OvertimeRules.DayType.WORKDAY);
+    }
+
+    static PayCurve regular(WorkSchedule schedule, OvertimeRules.DayType type) {
+        return new Builder(schedule, type, 0).build();
+    }
+
+    /**
+     * 截止到排班日第 millis 毫秒的收入 (微单位), 包括加班费
+     */
+    public long earnedMicrosAtMillis(long millis) {
+        int i = pieceIndex((int) (millis / 1000));
+        long delta = millis - starts[i] * 1000L;
+        return schedule.earnedMicrosForWorkedMillis(workedBefore[i] + (working[i] ? delta : 0))
+                + overtimeMicros(creditedBefore[i] + (overtime[i] ? delta : 0));
+    }
+
+    /**
+     * 截止到排班日第 second 秒的收入 (微单位), 包括加班费
+     */
+    public long earnedMicros(int second) {
+        return earnedMicrosAtMillis(second * 1000L);
+    }
+
+    /**
+     * 截止到排班日第 second 秒的加班费 (微单位)
+     */
+    public long overtimeMicrosAt(int second) {
+        int i = pieceIndex(second);
+        return overtimeMicros(creditedBefore[i] + (overtime[i] ? (second - starts[i]) * 1000L : 0));
+    }
+
+    /**
+     * 截止到排班日第 second 秒已计薪的加班秒数, 取整规则生效时按整块计算
+     */
+    public int creditedOvertimeSeconds(int second) {
+        int i = pieceIndex(second);
+        return (int) (creditedBefore[i] / 1000) + (overtime[i] ? second - starts[i] : 0);
+    }
+
+    /**
+     * 排班日第 second 秒是否在计加班时长; 取整规则下此时加班费可能暂时不变
+     */
+    public boolean isCountingOvertime(int second) {
+        for (int i = 0; i < windows.length; i += 2) {
+            if (second >= windows[i] && second < windows[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * [from, to) 内计加班时长的秒数, 不考虑取整
+     */
+    public int overtimeWindowSeconds(int from, int to) {
+        int seconds = 0;
+        for (int i = 0; i < windows.length; i += 2) {
+            seconds += Math.max(Math.min(to, windows[i + 1]) - Math.max(from, windows[i]), 0);
+        }
+        return seconds;
+    }
+
+    /**
+     * 以 10^-fractionDigits 为单位向下取整的收入, 实时跳动模式使用
+     */
+    public long earningsScaled(long millis, int fractionDigits) {
+        long divisor = 1;
+        for (int i = fractionDigits; i < 6; i++) {
+            divisor *= 10;
+        }
+        return earnedMicrosAtMillis(millis) / divisor;
+    }
+
+    /**
+     * 排班日第 second 秒收入是否在增长 (正常工作或加班计薪中)
+     */
+    public boolean isAccruing(int second) {
+        int i = pieceIndex(second);
+        return working[i] || overtime[i];
+    }
+
+    /**
+     * 排班日第 second 秒是否处于加班计薪中
+     */
+    public boolean isOvertime(int second) {
+        return overtime[pieceIndex(second)];
+    }
+
+    /**
+     * second 之后收入增长方式的下一次变化 (上下班、加班开始、达到上限、取整跳变), 没有时返回 -1
+     */
+    public int nextBreakpoint(int second) {
+        int i = pieceIndex(second) + 1;
+        return i < starts.length ? starts[i] : -1;
+    }
+
+    /**
+     * 显示的收入 (按货币最小单位 HALF_UP 舍入) 下一次变化的时刻, 收入不在增长时返回 -1
+     */
+    public int nextEarningsChange(int second) {
+        int i = pieceIndex(second);
+        if (working[i]) {
+            return schedule.nextEarningsChange(second);
+        }
+        if (!overtime[i] || overtimeMicrosPerHour <= 0) {
+            return -1;
+        }
+        int end = i + 1 < starts.length ? starts[i + 1] : Integer.MAX_VALUE;
+        long fixed = schedule.earnedMicrosForWorkedMillis(workedBefore[i]);
+        long credited = creditedBefore[i] + (second - starts[i]) * 1000L;
+        long unit = schedule.getCurrency().getDisplayUnitMicros();
+        long threshold = Money.roundToUnits(fixed + overtimeMicros(credited), unit) * unit + unit / 2 - fixed;
+
+        // 先用浮点估算还需要多少秒, 再用精确的整数计算修正
+        long target = (long) Math.ceil((threshold - overtimeMicros(credited)) * 3600.0 / overtimeMicrosPerHour);
+        target = Math.max(target, 1);
+        while (target > 1 && overtimeMicros(credited + (target - 1) * 1000) >= threshold) {
+            target--;
+        }
+        while (overtimeMicros(credited + target * 1000) < threshold && second + target < end) {
+            target++;
+        }
+        return (int) Math.min(second + target, end);
+    }
+
+    public OvertimeRules.DayType getType() {
+        return type;
+    }
+
+    /**
+     * 每小时加班工资 (微单位), 不计加班时为 0
+     */
+    public long getOvertimeMicrosPerHour() {
+        return overtimeMicrosPerHour;
+    }
+
+    public WorkSchedule getSchedule() {
+        return schedule;
+    }
+
+    private long overtimeMicros(long creditedMillis) {
+        return overtimeQuotient * creditedMillis + overtimeRemainder * creditedMillis / HOUR_MILLIS;
+    }
+
+    private int pieceIndex(int second) {
+        int index = Arrays.binarySearch(starts, second);
+        return index < 0 ? Math.max(-index - 2, 0) : index;
+    }
+
+    // 按时间顺序追加分段, 同一时刻的后一段覆盖前一段
+    static final class Builder {
+        private final WorkSchedule schedule;
+        private final OvertimeRules.DayType type;
+        private final long overtimeMicrosPerHour;
+        private int size;
+        private int[] starts = new int[8];
+        private long[] workedBefore = new long[8];
+        private boolean[] working = new boolean[8];
+        private long[] creditedBefore = new long[8];
+        private boolean[] overtime = new boolean[8];
+        private int[] windows = new int[0];
+
+        Builder(WorkSchedule schedule, OvertimeRules.DayType type, long overtimeMicrosPerHour) {
+            this.schedule = schedule;
+            this.type = type;
+            this.overtimeMicrosPerHour = overtimeMicrosPerHour;
+            add(0, 0, false, 0, false);
+            int worked = 0;
+            for (int i = 0; i < schedule.getSegmentCount(); i++) {
+                add(schedule.getSegmentStart(i), worked * 1000L, true, 0, false);
+                worked += schedule.getSegmentEnd(i) - schedule.getSegmentStart(i);
+                add(schedule.getSegmentEnd(i), worked * 1000L, false, 0, false);
+            }
+        }
+
+        /**
+         * 从 second 开始的加班段, 正常工作已全部完成
+         */
+        void overtime(int second, long creditedMillis, boolean accruing) {
+            add(second, schedule.getTotalSeconds() * 1000L, false, creditedMillis, accruing);
+        }
+
+        /**
+         * 记下计加班时长的时段 [from, to)
+         */
+        void window(int from, int to) {
+            windows = Arrays.copyOf(windows, windows.length + 2);
+            windows[windows.length - 2] = from;
+            windows[windows.length - 1] = to;
+        }
+
+        private void add(int second, long worked, boolean isWorking, long credited, boolean isOvertime) {
+            if (size > 0 && starts[size - 1] == second) {
+                size--;
+            } else if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                workedBefore = Arrays.copyOf(workedBefore, capacity);
+                working = Arrays.copyOf(working, capacity);
+                creditedBefore = Arrays.copyOf(creditedBefore, capacity);
+                overtime = Arrays.copyOf(overtime, capacity);
+            }
+            starts[size] = second;
+            workedBefore[size] = worked;
+            working[size] = isWorking;
+            creditedBefore[size] = credited;
+            overtime[size] = isOvertime;
+            size++;
+        }
+
+        PayCurve build() {
+            return new PayCurve(schedule, type, Arrays.copyOf(starts, size), Arrays.copyOf(workedBefore, size),
+                    Arrays.copyOf(working, size), Arrays.copyOf(creditedBefore, size), Arrays.copyOf(overtime, size),
+                    windows, overtimeMicrosPerHour);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package icu.spider007.core.rates;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 从本地汇率文件读取, 格式见 {@link RateTable}
+ */
+public final class FileRateProvider implements RateProvider {
+    private final Path path;
+
+    public FileRateProvider(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public RateTable fetch() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return RateTable.parse(reader, path.getFileName().toString());
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
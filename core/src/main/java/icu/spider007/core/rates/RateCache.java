@@ -0,0 +1,119 @@
+package icu.spider007.core.rates;
+
+import icu.spider007.core.ScheduleException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 带有效期的汇率缓存
+ * <p>
+ * {@link #get()} 从不阻塞: 依次返回内存中的汇率、上次成功保存的汇率文件、内置参考汇率.
+ * {@link #refresh(long)} 在后台调用, 过期后才访问 {@link RateProvider}, 成功时把结果保存为上次成功的汇率,
+ * 失败时保留原来的汇率并记下错误, 这样来源暂时不可用也不会影响计算
+ */
+public final class RateCache {
+    private final RateProvider provider;
+    private final Path lastGoodPath;
+    private final long ttlMillis;
+
+    private volatile RateTable table;
+    private volatile String error;
+    // 上次访问来源的时间, 失败也算, 避免来源不可用时反复重试
+    private long fetchedAtMillis = Long.MIN_VALUE;
+
+    public RateCache(RateProvider provider, Path lastGoodPath, long ttlMillis) {
+        this.provider = provider;
+        this.lastGoodPath = lastGoodPath;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 当前可用的汇率, 不访问来源
+     */
+    public RateTable get() {
+        RateTable current = table;
+        if (current == null) {
+            current = readLastGood();
+            table = current;
+        }
+        return current;
+    }
+
+    /**
+     * 缓存过期时从来源读取, 汇率有变化时返回 true
+     */
+    public synchronized boolean refresh(long nowMillis) {
+        if (fetchedAtMillis != Long.MIN_VALUE && nowMillis - fetchedAtMillis < ttlMillis) {
+            return false;
+        }
+        fetchedAtMillis = nowMillis;
+        RateTable previous = get();
+        RateTable fetched;
+        try {
+            fetched = provider.fetch();
+        } catch (NoSuchFileException e) {
+            // 没有汇率文件是正常情况, 继续用上次的或内置汇率
+            error = null;
+            return false;
+        } catch (IOException | ScheduleException e) {
+            error = e.getMessage();
+            return false;
+        }
+        error = null;
+        table = fetched;
+        if (fetched.equals(previous)) {
+            return false;
+        }
+        saveLastGood(fetched);
+        return true;
+    }
+
+    /**
+     * 让下次 {@link #refresh(long)} 立即访问来源, 如用户修改了汇率文件
+     */
+    public synchronized void invalidate() {
+        fetchedAtMillis = Long.MIN_VALUE;
+    }
+
+    /**
+     * 最近一次读取来源失败的原因, 成功后清空
+     */
+    public String getError() {
+        return error;
+    }
+
+    private RateTable readLastGood() {
+        if (lastGoodPath != null && Files.isRegularFile(lastGoodPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(lastGoodPath, StandardCharsets.UTF_8)) {
+                return RateTable.parse(reader, "上次成功的汇率");
+            } catch (IOException | ScheduleException e) {
+                // 文件损坏时退回内置汇率, 下次刷新成功会覆盖它
+            }
+        }
+        return RateTable.bundled();
+    }
+
+    // 先写临时文件再原子替换, 中途退出不会留下半个文件
+    private void saveLastGood(RateTable fetched) {
+        if (lastGoodPath == null) {
+            return;
+        }
+        Path temp = lastGoodPath.resolveSibling(lastGoodPath.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(lastGoodPath.getParent());
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                fetched.write(out);
+            }
+            Files.move(temp, lastGoodPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            error = "无法保存汇率缓存: " + e.getMessage();
+        }
+    }
+}
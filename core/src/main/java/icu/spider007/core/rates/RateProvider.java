@@ -0,0 +1,18 @@
+package icu.spider007.core.rates;
+
+import java.io.IOException;
+
+/**
+ * 汇率来源, 默认实现读取本地文件, 也可以换成远程接口或测试用的替身
+ * <p>
+ * {@link #fetch()} 可能阻塞, 只由 {@link RateCache#refresh(long)} 在后台线程调用
+ */
+public interface RateProvider {
+
+    /**
+     * 读取最新汇率
+     *
+     * @throws IOException 来源暂时不可用, 调用方继续使用上次成功的汇率
+     */
+    RateTable fetch() throws IOException;
+}
@@ -0,0 +1,184 @@
+package icu.spider007.core.rates;
+
+import icu.spider007.core.PayCurrency;
+import icu.spider007.core.ScheduleException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 一组汇率, 不可变, 线程安全
+ * <p>
+ * 文本格式 (# 之后为注释):
+ * <pre>
+ * base CNY
+ * USD 0.1404
+ * JPY 20.85
+ * </pre>
+ * 表示 1 基准货币 = 数值 该货币. 换算只在编译配置时进行, 节拍路径上不查汇率
+ */
+public final class RateTable {
+    private static final String BUNDLED_RESOURCE = "/rates/default.txt";
+    private static volatile RateTable bundled;
+
+    private final PayCurrency base;
+    private final Map<PayCurrency, BigDecimal> rates;
+    private final String source;
+
+    private RateTable(PayCurrency base, Map<PayCurrency, BigDecimal> rates, String source) {
+        this.base = base;
+        this.rates = rates;
+        this.source = source;
+    }
+
+    /**
+     * 插件自带的参考汇率
+     */
+    public static RateTable bundled() {
+        RateTable table = bundled;
+        if (table == null) {
+            try (InputStream in = RateTable.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("missing " + BUNDLED_RESOURCE);
+                }
+                table = parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), "内置汇率");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bundled = table;
+        }
+        return table;
+    }
+
+    /**
+     * 解析汇率文本
+     *
+     * @throws ScheduleException 格式不正确或缺少基准货币
+     */
+    public static RateTable parse(BufferedReader reader, String source) throws IOException {
+        PayCurrency base = null;
+        Map<PayCurrency, BigDecimal> rates = new EnumMap<>(PayCurrency.class);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            String[] parts = text.split("\\s+");
+            if (parts.length != 2) {
+                throw invalidLine(source, lineNumber);
+            }
+            if (parts[0].equalsIgnoreCase("base")) {
+                base = PayCurrency.find(parts[1]);
+                if (base == null) {
+                    throw invalidLine(source, lineNumber);
+                }
+                continue;
+            }
+            PayCurrency currency = PayCurrency.find(parts[0]);
+            BigDecimal rate;
+            try {
+                rate = new BigDecimal(parts[1]);
+            } catch (NumberFormatException e) {
+                throw invalidLine(source, lineNumber);
+            }
+            if (currency == null || rate.signum() <= 0) {
+                throw invalidLine(source, lineNumber);
+            }
+            rates.put(currency, rate);
+        }
+        if (base == null) {
+            throw new ScheduleException(ScheduleException.Kind.RATE, source + " 缺少 base 行");
+        }
+        rates.put(base, BigDecimal.ONE);
+        return new RateTable(base, rates, source);
+    }
+
+    private static ScheduleException invalidLine(String source, int lineNumber) {
+        return new ScheduleException(ScheduleException.Kind.RATE, source + " 第 " + lineNumber + " 行格式不正确");
+    }
+
+    /**
+     * 按 {@link #parse} 的格式写出, 用于保存上次成功的汇率
+     */
+    public void write(Writer out) throws IOException {
+        out.write("# " + source + "\n");
+        out.write("base " + base.name() + "\n");
+        for (Map.Entry<PayCurrency, BigDecimal> entry : rates.entrySet()) {
+            if (entry.getKey() != base) {
+                out.write(entry.getKey().name() + " " + entry.getValue().toPlainString() + "\n");
+            }
+        }
+    }
+
+    public boolean supports(PayCurrency currency) {
+        return rates.containsKey(currency);
+    }
+
+    /**
+     * 把 from 货币的金额 (微单位) 换算成 to 货币, 四舍五入到微单位
+     *
+     * @throws ScheduleException 缺少其中一种货币的汇率
+     */
+    public long convert(long micros, PayCurrency from, PayCurrency to) {
+        if (from == to) {
+            return micros;
+        }
+        BigDecimal fromRate = rates.get(from);
+        BigDecimal toRate = rates.get(to);
+        if (fromRate == null || toRate == null) {
+            throw new ScheduleException(ScheduleException.Kind.RATE,
+                    source + " 缺少" + (fromRate == null ? from : to).getLabel() + "的汇率");
+        }
+        return BigDecimal.valueOf(micros).multiply(toRate)
+                .divide(fromRate, MathContext.DECIMAL64)
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    /**
+     * 来源说明, 如文件名
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RateTable)) {
+            return false;
+        }
+        RateTable other = (RateTable) o;
+        if (base != other.base || rates.size() != other.rates.size()) {
+            return false;
+        }
+        for (Map.Entry<PayCurrency, BigDecimal> entry : rates.entrySet()) {
+            BigDecimal rate = other.rates.get(entry.getKey());
+            if (rate == null || rate.compareTo(entry.getValue()) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return base.hashCode() * 31 + rates.keySet().hashCode();
+    }
+}
@@ -0,0 +1,191 @@
+package icu.spider007.core.shared;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 多个 IDE 进程共享的一小块内存映射状态, 由一个领导者写入, 其他进程无锁读取
+ * <p>
+ * 领导者通过旁边 .lock 文件上的 {@link FileChannel#tryLock()} 选出, 进程退出 (包括崩溃) 时锁由操作系统释放,
+ * 其他进程下次尝试时接任. 数据区用顺序锁 (seqlock) 保护: 写入前把序号加一变成奇数, 写完再加一;
+ * 读取方在序号为偶数且前后一致时才采用读到的值, 否则重读. 所有字段都是对齐的 long, 通过 {@link VarHandle} 访问.
+ * <p>
+ * 布局 (小端): 0 魔数和布局版本, 8 序号, 16 领导者进程号, 24 发布时刻 (毫秒), 32 起 {@link #VALUE_COUNT} 个数据.
+ * 同一进程内只应打开一次; 本类不是线程安全的, 读取方法除外
+ */
+public final class SharedStateFile implements Closeable {
+    public static final int VALUE_COUNT = 16;
+    private static final long MAGIC = 0x0000_0001_5050_5453L; // "PPTS", 布局版本 1
+    private static final int SEQUENCE = 8;
+    private static final int LEADER_PID = 16;
+    private static final int PUBLISHED_MILLIS = 24;
+    private static final int VALUES = 32;
+    private static final int SIZE = 4096;
+    // 读取时遇到写入中的序号最多重试的次数, 写入只有几十纳秒, 正常不会用完
+    private static final int MAX_READ_ATTEMPTS = 1000;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final FileChannel lockChannel;
+    private final MappedByteBuffer buffer;
+    private FileLock leadership;
+
+    private SharedStateFile(FileChannel channel, FileChannel lockChannel) throws IOException {
+        this.channel = channel;
+        this.lockChannel = lockChannel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+    }
+
+    /**
+     * 打开 (必要时创建) 状态文件, 不参与选举
+     */
+    public static SharedStateFile open(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel lockChannel = null;
+        try {
+            lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new SharedStateFile(channel, lockChannel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 尝试成为领导者, 已经是领导者时直接返回 true
+     */
+    public boolean tryLead(long pid) throws IOException {
+        if (leadership != null) {
+            return true;
+        }
+        leadership = lockChannel.tryLock();
+        if (leadership == null) {
+            return false;
+        }
+        // 上一任可能在写入中途退出, 序号停在奇数, 先恢复成偶数
+        long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE);
+        if ((sequence & 1) != 0) {
+            LONGS.setVolatile(buffer, SEQUENCE, sequence + 1);
+        }
+        LONGS.setVolatile(buffer, 0, MAGIC);
+        LONGS.setVolatile(buffer, LEADER_PID, pid);
+        return true;
+    }
+
+    public boolean isLeader() {
+        return leadership != null;
+    }
+
+    /**
+     * 放弃领导者身份, 其他进程随后可以接任
+     */
+    public void resign() throws IOException {
+        if (leadership != null) {
+            leadership.release();
+            leadership = null;
+        }
+    }
+
+    /**
+     * 发布一组数据, 只能由领导者调用
+     */
+    public void publish(long nowMillis, long[] values) {
+        if (leadership == null) {
+            throw new IllegalStateException("Not the leader");
+        }
+        long sequence = (long) LONGS.get(buffer, SEQUENCE);
+        // 奇数序号先于数据可见, 读取方看到任何新数据时一定也能看到写入中的标记
+        LONGS.setOpaque(buffer, SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+        LONGS.setOpaque(buffer, PUBLISHED_MILLIS, nowMillis);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            LONGS.setOpaque(buffer, VALUES + i * 8, i < values.length ? values[i] : 0L);
+        }
+        LONGS.setRelease(buffer, SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * 读取最近一次发布的数据, 不加锁, 可以在任意线程调用
+     *
+     * @return 是否读到了一致的数据; 还没有发布过或一直在写入中时返回 false
+     */
+    public boolean read(Snapshot into) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long before = (long) LONGS.getAcquire(buffer, SEQUENCE);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if ((long) LONGS.getOpaque(buffer, 0) != MAGIC || before == 0) {
+                return false;
+            }
+            long pid = (long) LONGS.getOpaque(buffer, LEADER_PID);
+            long published = (long) LONGS.getOpaque(buffer, PUBLISHED_MILLIS);
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                into.values[i] = (long) LONGS.getOpaque(buffer, VALUES + i * 8);
+            }
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(buffer, SEQUENCE) == before) {
+                into.leaderPid = pid;
+                into.publishedMillis = published;
+                into.sequence = before;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            resign();
+        } finally {
+            lockChannel.close();
+            channel.close();
+        }
+    }
+
+    /**
+     * 可以重复使用的读取结果
+     */
+    public static final class Snapshot {
+        private final long[] values = new long[VALUE_COUNT];
+        private long leaderPid;
+        private long publishedMillis;
+        private long sequence;
+
+        public long getValue(int index) {
+            return values[index];
+        }
+
+        public long getLeaderPid() {
+            return leaderPid;
+        }
+
+        public long getPublishedMillis() {
+            return publishedMillis;
+        }
+
+        /**
+         * 发布序号, 每次发布增加 2, 相同时数据没有变化
+         */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package icu.spider007.core.sim;
+
+import icu.spider007.core.Money;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.calendar.HolidayRules;
+import icu.spider007.core.clock.TickPlanner;
+import icu.spider007.core.clock.VirtualClock;
+import icu.spider007.core.overtime.OvertimeObserver;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.overtime.PayCurve;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * 在虚拟时钟上回放插件的节拍, 几毫秒内跑完一天、一个月或一年
+ * <p>
+ * 每次节拍按 {@link TickPlanner} 计算下一次唤醒的时刻, 与插件定时器的逻辑相同, 并像状态栏一样把收入舍入到货币最小单位.
+ * 模拟的 IDE 一直开着, 加班时段都由 {@link OvertimeObserver} 观察到.
+ * 回放过程中检查:
+ * <ul>
+ * <li>同一排班日内显示的收入不回退</li>
+ * <li>两次节拍之间显示的收入没有变化过 (即没有漏掉的节拍)</li>
+ * <li>每个日期都有节拍, 包括零点和夜班跨零点</li>
+ * <li>下班后不含加班费的收入正好等于日薪</li>
+ * </ul>
+ * 输出每天一行的收入轨迹, 以及所有节拍 (时刻, 显示金额) 的 CRC32, 用于与已知结果比较.
+ * <pre>
+ * TickSimulator [--config=file.properties] [--from=2026-01-01] [--to=2026-12-31 | --days=N]
+ *               [--calendar] [--holidays=file] [--auto-work-days] [--overtime=rules] [--countdown]
+ *               [--zone=Asia/Shanghai] [--trace=file] [--expect=crc] [--no-check]
+ * </pre>
+ * 配置文件的键与插件设置同名 (monthlySalary, startTime, roster, currency 等), 缺省时使用插件的默认值
+ */
+public final class TickSimulator {
+    // 每条违例都记录, 但结果里只保留前若干条
+    private static final int MAX_VIOLATIONS = 100;
+    private static final String[] FORM_KEYS = {
+            "monthlySalary", "monthlyWorkDays", "startTime", "morningEndTime",
+            "afternoonStartTime", "endTime", "lunchStart", "lunchEnd", "roster"
+    };
+    private static final String[] FORM_DEFAULTS = {
+            "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", ""
+    };
+
+    private final WorkRoster roster;
+    private final ZoneId zone;
+    private final boolean countdown;
+    private final boolean check;
+
+    /**
+     * @param countdown 是否模拟打开了分钟级倒计时视图
+     * @param check     是否检查不变量; 只测节拍开销时可以关闭
+     */
+    public TickSimulator(WorkRoster roster, ZoneId zone, boolean countdown, boolean check) {
+        this.roster = roster;
+        this.zone = zone;
+        this.countdown = countdown;
+        this.check = check;
+    }
+
+    /**
+     * 回放结果
+     */
+    public static final class Result {
+        private final long ticks;
+        private final long idleTicks;
+        private final int days;
+        private final long crc;
+        private final long elapsedNanos;
+        private final long violationCount;
+        private final List<String> violations;
+
+        Result(long ticks, long idleTicks, int days, long crc, long elapsedNanos,
+               long violationCount, List<String> violations) {
+            this.ticks = ticks;
+            this.idleTicks = idleTicks;
+            this.days = days;
+            this.crc = crc;
+            this.elapsedNanos = elapsedNanos;
+            this.violationCount = violationCount;
+            this.violations = violations;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * 显示内容没有变化的节拍数 (时段边界、倒计时和零点)
+         */
+        public long getIdleTicks() {
+            return idleTicks;
+        }
+
+        public int getDays() {
+            return days;
+        }
+
+        /**
+         * 所有节拍 (时刻, 显示金额) 的 CRC32
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getViolationCount() {
+            return violationCount;
+        }
+
+        /**
+         * 前 {@value #MAX_VIOLATIONS} 条违例说明
+         */
+        public List<String> getViolations() {
+            return violations;
+        }
+    }
+
+    /**
+     * 从 from 零点回放到 to 结束
+     *
+     * @param trace 每个排班日写一行 CSV 轨迹, 为 null 时不写
+     */
+    public Result run(LocalDate from, LocalDate to, Writer trace) throws IOException {
+        VirtualClock clock = new VirtualClock(from.atStartOfDay(zone).toInstant(), zone);
+        long endMillis = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        if (trace != null) {
+            trace.write("date,type,ticks,worked_seconds,earned,overtime\n");
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[16];
+        List<String> violations = new ArrayList<>();
+        long violationCount = 0;
+        long ticks = 0;
+        long idleTicks = 0;
+        int days = 0;
+        // 防止 JIT 把格式化当作无用代码消除
+        long sink = 0;
+
+        OvertimeObserver observer = new OvertimeObserver();
+        // 当前排班日的状态
+        WorkDay current = null;
+        long dayTicks = 0;
+        int lastSecond = 0;
+        long lastEarned = 0;
+        long lastUnits = -1;
+
+        long started = System.nanoTime();
+        while (clock.millis() < endMillis) {
+            long nowMillis = clock.millis();
+            LocalDateTime now = LocalDateTime.ofInstant(clock.instant(), zone);
+            long millisOfDay = now.toLocalTime().toNanoOfDay() / 1_000_000;
+            WorkDay resolved = roster.resolve(now);
+            int second = resolved.secondOf(now.toLocalTime());
+            WorkDay day = observer.observe(roster, resolved, second);
+            PayCurve curve = day.getCurve();
+            long earned = curve.earnedMicros(second);
+            MoneyFormat format = day.getSchedule().getMoneyFormat();
+            long unit = format.getCurrency().getDisplayUnitMicros();
+            long units = Money.roundToUnits(earned, unit);
+            sink += format.format(earned).length();
+
+            if (current == null || !current.getDate().equals(day.getDate())) {
+                if (current != null) {
+                    if (check) {
+                        violationCount += checkDayEnd(current, lastSecond, violations);
+                        if (!day.getDate().equals(current.getDate().plusDays(1))) {
+                            violationCount += violation(violations, current.getDate().plusDays(1) + " 没有节拍");
+                        }
+                    }
+                    writeDay(trace, current, dayTicks, lastSecond, lastEarned);
+                }
+                current = day;
+                dayTicks = 0;
+                days++;
+            } else if (check) {
+                if (earned < lastEarned) {
+                    violationCount += violation(violations, now + " 收入回退: " + lastEarned + " -> " + earned);
+                }
+                // 上一秒显示的金额应与上次节拍相同, 否则中间有一次变化没有刷新
+                if (second - 1 > lastSecond
+                        && Money.roundToUnits(curve.earnedMicros(second - 1), unit) != lastUnits) {
+                    violationCount += violation(violations, now + " 漏掉了 " + (second - 1) + " 秒的变化");
+                }
+            }
+            if (units == lastUnits) {
+                idleTicks++;
+            }
+            ticks++;
+            dayTicks++;
+            lastSecond = second;
+            lastEarned = earned;
+            lastUnits = units;
+            putLong(record, 0, nowMillis);
+            putLong(record, 8, units);
+            crc.update(record, 0, record.length);
+
+            clock.advance(TickPlanner.delayMillis(day, millisOfDay, countdown, false));
+        }
+        long elapsed = System.nanoTime() - started;
+        if (current != null) {
+            if (check) {
+                violationCount += checkDayEnd(current, lastSecond, violations);
+            }
+            writeDay(trace, current, dayTicks, lastSecond, lastEarned);
+        }
+        if (trace != null) {
+            trace.flush();
+        }
+        if (sink < 0) {
+            throw new AssertionError();
+        }
+        return new Result(ticks, idleTicks, days, crc.getValue(), elapsed, violationCount,
+                Collections.unmodifiableList(violations));
+    }
+
+    // 排班日的最后一次节拍已过下班时, 不含加班费的收入应正好等于日薪
+    private static int checkDayEnd(WorkDay day, int lastSecond, List<String> violations) {
+        WorkSchedule schedule = day.getSchedule();
+        if (schedule.isRestDay() || lastSecond < schedule.getShiftEnd()) {
+            return 0;
+        }
+        PayCurve curve = day.getCurve();
+        long regular = curve.earnedMicros(lastSecond) - curve.overtimeMicrosAt(lastSecond);
+        if (regular != schedule.getDailySalaryMicros()) {
+            return violation(violations, day.getDate() + " 全天收入 " + regular
+                    + " 不等于日薪 " + schedule.getDailySalaryMicros());
+        }
+        return 0;
+    }
+
+    private static int violation(List<String> violations, String message) {
+        if (violations.size() < MAX_VIOLATIONS) {
+            violations.add(message);
+        }
+        return 1;
+    }
+
+    private static void writeDay(Writer trace, WorkDay day, long ticks, int lastSecond, long earned)
+            throws IOException {
+        if (trace == null) {
+            return;
+        }
+        PayCurve curve = day.getCurve();
+        MoneyFormat format = day.getSchedule().getMoneyFormat();
+        StringBuilder line = new StringBuilder(64);
+        line.append(day.getDate()).append(',').append(curve.getType()).append(',').append(ticks)
+                .append(',').append(day.getSchedule().workedSeconds(lastSecond)).append(',');
+        format.appendAmount(line, earned);
+        line.append(',');
+        format.appendAmount(line, curve.overtimeMicrosAt(lastSecond));
+        line.append('\n');
+        trace.write(line.toString());
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * 按插件设置的键读取配置并编译成排班表
+     *
+     * @throws ScheduleException 配置不合法
+     */
+    public static WorkRoster loadRoster(Properties config) {
+        String[] values = new String[FORM_KEYS.length];
+        for (int i = 0; i < FORM_KEYS.length; i++) {
+            values[i] = config.getProperty(FORM_KEYS[i], FORM_DEFAULTS[i]);
+        }
+        ScheduleForm form = new ScheduleForm(values, config.getProperty("currency", "人民币"));
+        Map<ScheduleForm.Field, String> errors = form.validate();
+        if (!errors.isEmpty()) {
+            Map.Entry<ScheduleForm.Field, String> first = errors.entrySet().iterator().next();
+            throw new ScheduleException(ScheduleException.Kind.SALARY,
+                    FORM_KEYS[first.getKey().ordinal()] + ": " + first.getValue());
+        }
+        return form.compile();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties config = new Properties();
+        LocalDate from = LocalDate.now().withDayOfYear(1);
+        LocalDate to = null;
+        int days = 0;
+        HolidayRules holidays = null;
+        boolean autoWorkDays = false;
+        String overtime = null;
+        boolean countdown = false;
+        boolean check = true;
+        ZoneId zone = ZoneId.systemDefault();
+        String trace = null;
+        String expect = null;
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                try (Reader in = Files.newBufferedReader(Paths.get(arg.substring("--config=".length())),
+                        StandardCharsets.UTF_8)) {
+                    config.load(in);
+                }
+            } else if (arg.startsWith("--from=")) {
+                from = LocalDate.parse(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--to=")) {
+                to = LocalDate.parse(arg.substring("--to=".length()));
+            } else if (arg.startsWith("--days=")) {
+                days = Integer.parseInt(arg.substring("--days=".length()));
+            } else if (arg.equals("--calendar")) {
+                holidays = HolidayRules.bundled();
+            } else if (arg.startsWith("--holidays=")) {
+                holidays = HolidayRules.load(Paths.get(arg.substring("--holidays=".length())));
+            } else if (arg.equals("--auto-work-days")) {
+                autoWorkDays = true;
+            } else if (arg.startsWith("--overtime=")) {
+                overtime = arg.substring("--overtime=".length());
+            } else if (arg.equals("--countdown")) {
+                countdown = true;
+            } else if (arg.equals("--no-check")) {
+                check = false;
+            } else if (arg.startsWith("--zone=")) {
+                zone = ZoneId.of(arg.substring("--zone=".length()));
+            } else if (arg.startsWith("--trace=")) {
+                trace = arg.substring("--trace=".length());
+            } else if (arg.startsWith("--expect=")) {
+                expect = arg.substring("--expect=".length());
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (to == null) {
+            to = days > 0 ? from.plusDays(days - 1) : from.plusYears(1).minusDays(1);
+        }
+
+        WorkRoster roster;
+        try {
+            roster = loadRoster(config);
+            if (holidays != null) {
+                roster = roster.withCalendar(holidays, autoWorkDays);
+            }
+            if (overtime != null) {
+                roster = roster.withOvertime(OvertimeRules.parse(overtime));
+            }
+        } catch (ScheduleException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        TickSimulator simulator = new TickSimulator(roster, zone, countdown, check);
+        Result result;
+        if (trace == null) {
+            result = simulator.run(from, to, null);
+        } else {
+            try (Writer out = "-".equals(trace)
+                    ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                    : Files.newBufferedWriter(Paths.get(trace), StandardCharsets.UTF_8)) {
+                result = simulator.run(from, to, out);
+            }
+        }
+
+        for (String violation : result.getViolations()) {
+            System.err.println(violation);
+        }
+        String crc = String.format("%08x", result.getCrc());
+        System.err.printf("%s..%s: %d days, %d ticks (%d idle), %d violations, crc %s, %d ms, %.0f ns/tick%n",
+                from, to, result.getDays(), result.getTicks(), result.getIdleTicks(), result.getViolationCount(),
+                crc, result.getElapsedNanos() / 1_000_000, result.getElapsedNanos() / (double) result.getTicks());
+        if (result.getViolationCount() > 0) {
+            System.exit(1);
+        }
+        if (expect != null && !expect.equalsIgnoreCase(crc)) {
+            System.err.println("crc mismatch, expected " + expect);
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: TickSimulator [--config=file.properties] [--from=date] [--to=date | --days=N] "
+                + "[--calendar] [--holidays=file] [--auto-work-days] [--overtime=rules] [--countdown] "
+                + "[--zone=id] [--trace=file] [--expect=crc] [--no-check]");
+        System.exit(2);
+    }
+}
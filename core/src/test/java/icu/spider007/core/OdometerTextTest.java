@@ -0,0 +1,64 @@
+package icu.spider007.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OdometerTextTest {
+
+    private static String text(OdometerText odometer) {
+        return new String(odometer.chars(), 0, odometer.length());
+    }
+
+    @Test
+    void writesPrefixAndFraction() {
+        OdometerText odometer = new OdometerText(2);
+        odometer.setPrefix("¥");
+        assertTrue(odometer.set(12345));
+        assertEquals("¥123.45", text(odometer));
+        assertTrue(odometer.set(5));
+        assertEquals("¥0.05", text(odometer));
+        assertTrue(odometer.set(-5));
+        assertEquals("¥-0.05", text(odometer));
+    }
+
+    @Test
+    void unchangedValueIsSkipped() {
+        OdometerText odometer = new OdometerText(4);
+        assertTrue(odometer.set(0));
+        assertEquals("0.0000", text(odometer));
+        assertFalse(odometer.set(0));
+        odometer.setPrefix("$");
+        assertTrue(odometer.set(0));
+        assertEquals("$0.0000", text(odometer));
+    }
+
+    @Test
+    void extremesFitWithLongestPrefix() {
+        OdometerText odometer = new OdometerText(18);
+        // 超过 20 个字符的前缀被截断
+        odometer.setPrefix("Earned so far today: USD ");
+        // 第一次写入也不能被当作 "没有变化" 跳过
+        assertTrue(odometer.set(Long.MIN_VALUE));
+        assertEquals("Earned so far today:-9.223372036854775808", text(odometer));
+        assertTrue(odometer.set(Long.MAX_VALUE));
+        assertEquals("Earned so far today:9.223372036854775807", text(odometer));
+    }
+
+    @Test
+    void zeroFractionDigits() {
+        OdometerText odometer = new OdometerText(0);
+        odometer.setPrefix("¥");
+        assertTrue(odometer.set(Long.MIN_VALUE));
+        assertEquals("¥-9223372036854775808", text(odometer));
+    }
+
+    @Test
+    void rejectsFractionDigitsBeyondLong() {
+        assertThrows(IllegalArgumentException.class, () -> new OdometerText(19));
+        assertThrows(IllegalArgumentException.class, () -> new OdometerText(-1));
+    }
+}
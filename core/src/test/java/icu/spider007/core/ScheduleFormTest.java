@@ -0,0 +1,48 @@
+package icu.spider007.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduleFormTest {
+
+    private static ScheduleForm form(String start, String workDays) {
+        return new ScheduleForm(new String[]{
+                "10000", workDays, start, "12:00", "13:30", "18:00", "12:00", "13:30", ""}, "人民币");
+    }
+
+    @Test
+    void surroundingSpacesAreAcceptedLikeCompile() {
+        ScheduleForm form = form(" 09:00 ", " 22 ");
+        assertTrue(form.validate().isEmpty());
+        assertEquals(9 * 3600, form.compile().any().getShiftStart());
+    }
+
+    @Test
+    void errorsMatchCompile() {
+        Map<ScheduleForm.Field, String> errors = form("9点", "0").validate();
+        assertEquals("时间格式应为 HH:mm", errors.get(ScheduleForm.Field.START_TIME));
+        assertEquals("请输入正数", errors.get(ScheduleForm.Field.MONTHLY_WORK_DAYS));
+    }
+
+    @Test
+    void orderIsCheckedOnParsedTimes() {
+        Map<ScheduleForm.Field, String> errors = form("12:30", "22").validate();
+        assertEquals("不能早于上午上班", errors.get(ScheduleForm.Field.MORNING_END_TIME));
+    }
+
+    @Test
+    void digestDependsOnContentOnly() {
+        assertEquals(form("09:00", "22").digest(), form("09:00", "22").digest());
+        assertNotEquals(form("09:00", "22").digest(), form("09:30", "22").digest());
+        // String.hashCode 相同的两组内容 ("Aa" 与 "BB")
+        ScheduleForm aa = new ScheduleForm(new String[]{"10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", "Aa"}, "人民币");
+        ScheduleForm bb = new ScheduleForm(new String[]{"10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", "BB"}, "人民币");
+        assertEquals(aa.hashCode(), bb.hashCode());
+        assertNotEquals(aa.digest(), bb.digest());
+    }
+}
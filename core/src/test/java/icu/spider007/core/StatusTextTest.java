@@ -0,0 +1,116 @@
+package icu.spider007.core;
+
+import icu.spider007.core.metrics.AllocationCounter;
+import icu.spider007.core.overtime.OvertimeRules;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class StatusTextTest {
+    // 2026-10-19 是周一, 10-24 是周六
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 19, 0, 0);
+    private static final LocalDateTime SATURDAY = LocalDateTime.of(2026, 10, 24, 0, 0);
+    private static final long FRAME_MILLIS = 1000 / 30;
+
+    private static WorkRoster roster() {
+        return new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30",
+                "MON-FRI 09:00-12:00,13:30-18:00"}, "人民币")
+                .compile()
+                .withOvertime(OvertimeRules.parse("weekday 1.5; weekend 2"));
+    }
+
+    // IDE 从零点起一直开着, 加班时段都观察到了
+    private static WorkDay observed(WorkRoster roster, LocalDateTime now) {
+        return roster.observe(roster.resolve(now), 0, 0);
+    }
+
+    private static StatusText at(WorkRoster roster, LocalDateTime day, LocalTime time) {
+        StatusText status = new StatusText();
+        status.reset(observed(roster, day.with(time)), null, " | 本项目");
+        status.frame(time.toSecondOfDay() * 1000L);
+        return status;
+    }
+
+    @Test
+    void framesUseTheTickFormat() {
+        WorkRoster roster = roster();
+        assertEquals("今日: ¥0.00 | 本项目", at(roster, MONDAY, LocalTime.of(8, 0)).getText());
+        assertEquals("今日: ¥454.55 | 本项目", at(roster, MONDAY, LocalTime.of(18, 0)).getText());
+        // 下班一小时后, 时薪 454.55 / 7.5 的 1.5 倍
+        assertEquals("今日: ¥545.45 (加班 ¥90.91) | 本项目", at(roster, MONDAY, LocalTime.of(19, 0)).getText());
+        assertEquals("今日休息 | 本项目", at(roster, SATURDAY, LocalTime.of(8, 0)).getText());
+        assertEquals("今日加班: ¥121.21 | 本项目", at(roster, SATURDAY, LocalTime.of(10, 0)).getText());
+    }
+
+    @Test
+    void overtimeSuffixSurvivesFrames() {
+        StatusText status = at(roster(), MONDAY, LocalTime.of(19, 0));
+        long millis = LocalTime.of(19, 0).toSecondOfDay() * 1000L;
+        for (int i = 1; i <= 300; i++) {
+            if (status.frame(millis + i * FRAME_MILLIS)) {
+                assertTrue(status.getText().contains(" (加班 "), status.getText());
+            }
+        }
+    }
+
+    @Test
+    void holidayNameOnRestDay() {
+        StatusText status = new StatusText();
+        status.reset(roster().resolve(SATURDAY.withHour(8)), "国庆节", "");
+        assertTrue(status.frame(8 * 3600_000L));
+        assertEquals("今日休息 (国庆节)", status.getText());
+        assertFalse(status.frame(8 * 3600_000L + FRAME_MILLIS));
+    }
+
+    @Test
+    void unchangedFramesDoNotAllocate() {
+        assumeTrue(AllocationCounter.isSupported());
+        WorkRoster roster = roster();
+        StatusText status = at(roster, MONDAY, LocalTime.of(10, 0));
+        long millis = LocalTime.of(10, 0).toSecondOfDay() * 1000L;
+        // JIT 编译切换期间可能有少量分配, 取几轮中的最小值作为稳定状态
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = AllocationCounter.current();
+            for (int i = 0; i < 100_000; i++) {
+                status.frame(millis);
+            }
+            least = Math.min(least, AllocationCounter.since(start));
+        }
+        assertEquals(0, least);
+    }
+
+    @Test
+    void allocatesOnlyWhenTheAmountChanges() {
+        assumeTrue(AllocationCounter.isSupported());
+        WorkRoster roster = roster();
+        StatusText status = at(roster, MONDAY, LocalTime.of(9, 0));
+        long from = LocalTime.of(9, 0).toSecondOfDay() * 1000L;
+        long to = LocalTime.of(20, 0).toSecondOfDay() * 1000L;
+        for (long millis = from; millis < to; millis += FRAME_MILLIS) {
+            status.frame(millis);
+        }
+        // 30 帧/秒跑过一整个工作日加两小时加班, 大部分帧金额不变
+        status.reset(observed(roster, MONDAY.withHour(9)), null, " | 本项目");
+        int frames = 0;
+        int changes = 0;
+        long start = AllocationCounter.current();
+        for (long millis = from; millis < to; millis += FRAME_MILLIS) {
+            frames++;
+            if (status.frame(millis)) {
+                changes++;
+            }
+        }
+        long allocated = AllocationCounter.since(start);
+        assertTrue(changes > 0 && changes < frames / 10, changes + " changes in " + frames + " frames");
+        // 只有生成新文本时分配, 每次不超过几个字符串和拼接缓冲区
+        assertTrue(allocated <= changes * 512L, allocated + " bytes for " + changes + " changes");
+    }
+}
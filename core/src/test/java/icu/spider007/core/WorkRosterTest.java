@@ -0,0 +1,143 @@
+package icu.spider007.core;
+
+import icu.spider007.core.calendar.HolidayRules;
+import icu.spider007.core.metrics.AllocationCounter;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class WorkRosterTest {
+    // 2026-10-19 是周一
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    private static WorkRoster roster(String roster) {
+        return new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", roster}, "人民币")
+                .compile();
+    }
+
+    @Test
+    void autoWorkDaysKeepBothMonthsAcrossTheFirst() {
+        WorkRoster roster = roster("MON-FRI 22:00-06:00").withCalendar(HolidayRules.bundled(), true);
+        // 2026-10-30 周五的夜班跨进 10-31, 2026-12-01 是周二
+        LocalDate september = LocalDate.of(2026, 9, 30);
+        LocalDate october = LocalDate.of(2026, 10, 30);
+        LocalDate november = LocalDate.of(2026, 11, 30);
+        LocalDate december = LocalDate.of(2026, 12, 1);
+        int octoberDays = roster.getCalendar().workdaysInMonth(october);
+        int novemberDays = roster.getCalendar().workdaysInMonth(november);
+        assertEquals(octoberDays, roster.scheduleFor(october).getMonthlyWorkDays());
+        assertEquals(novemberDays, roster.scheduleFor(november).getMonthlyWorkDays());
+        assertEquals(roster.getCalendar().workdaysInMonth(december), roster.scheduleFor(december).getMonthlyWorkDays());
+
+        // 12-01 凌晨还在 11-30 的夜班里, 前一天和今天交替查找时两个月的时间表都保留
+        WorkSchedule lastNight = roster.scheduleFor(november);
+        WorkSchedule today = roster.scheduleFor(december);
+        WorkDay day = roster.resolve(december.atTime(3, 0));
+        assertEquals(november, day.getDate());
+        assertSame(lastNight, day.getSchedule());
+        assertSame(today, roster.resolve(december.atTime(12, 0)).getSchedule());
+        assertSame(lastNight, roster.scheduleFor(november));
+
+        // 后台逐日扫过一整年后当前月份的时间表不变
+        WorkSchedule current = roster.scheduleFor(october);
+        for (LocalDate date = september.withDayOfYear(1); date.getYear() == 2026; date = date.plusDays(1)) {
+            roster.scheduleFor(date);
+        }
+        assertSame(current, roster.scheduleFor(october));
+        assertSame(lastNight, roster.scheduleFor(november));
+    }
+
+    @Test
+    void monthBoundaryLookupsDoNotAllocate() {
+        assumeTrue(AllocationCounter.isSupported());
+        WorkRoster roster = roster("").withCalendar(HolidayRules.bundled(), true);
+        LocalDate last = LocalDate.of(2026, 10, 31);
+        LocalDate first = LocalDate.of(2026, 11, 1);
+        LocalDateTime morning = first.atTime(9, 0);
+        roster.resolve(morning);
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = AllocationCounter.current();
+            for (int i = 0; i < 10_000; i++) {
+                roster.scheduleFor(last);
+                roster.scheduleFor(first);
+            }
+            least = Math.min(least, AllocationCounter.since(start));
+        }
+        assertEquals(0, least);
+    }
+
+    @Test
+    void perWeekdayRulesShareSchedules() {
+        WorkRoster roster = roster("TUE-WED 09:00-17:00; THU,FRI 10:00-16:00\nSUN-MON 09:00-17:00");
+        // 内容相同的规则跨行也共享时间表, SUN-MON 跨过周末
+        assertSame(roster.getSchedule(DayOfWeek.MONDAY), roster.getSchedule(DayOfWeek.TUESDAY));
+        assertSame(roster.getSchedule(DayOfWeek.MONDAY), roster.getSchedule(DayOfWeek.SUNDAY));
+        assertSame(roster.getSchedule(DayOfWeek.THURSDAY), roster.getSchedule(DayOfWeek.FRIDAY));
+        assertNotSame(roster.getSchedule(DayOfWeek.WEDNESDAY), roster.getSchedule(DayOfWeek.THURSDAY));
+        assertEquals(6 * 3600, roster.getSchedule(DayOfWeek.FRIDAY).getTotalSeconds());
+        assertTrue(roster.getSchedule(DayOfWeek.SATURDAY).isRestDay());
+        assertSame(roster.getSchedule(DayOfWeek.THURSDAY), roster.resolve(MONDAY.plusDays(3).atTime(12, 0)).getSchedule());
+        assertEquals(0, roster.resolve(MONDAY.plusDays(5).atTime(12, 0)).getCurve().earnedMicros(12 * 3600));
+    }
+
+    @Test
+    void invalidRostersAreRejected() {
+        // 重复设置同一天
+        assertThrows(ScheduleException.class, () -> roster("MON-FRI 09:00-17:00; FRI 10:00-12:00"));
+        // 周一的夜班盖住周二的早班
+        assertThrows(ScheduleException.class, () -> roster("MON 22:00-08:00; TUE 07:00-12:00"));
+        assertThrows(ScheduleException.class, () -> roster("MON"));
+        assertThrows(ScheduleException.class, () -> roster("XYZ 09:00-12:00"));
+        assertThrows(ScheduleException.class, () -> roster("MON !12:00-13:00"));
+    }
+
+    @Test
+    void overnightShiftBelongsToTheDayItStarted() {
+        WorkRoster roster = roster("MON-FRI 22:00-06:00,!02:00-02:30");
+        WorkSchedule night = roster.getSchedule(DayOfWeek.MONDAY);
+        // 零点之后的休息按次日计
+        assertEquals(2, night.getSegmentCount());
+        assertEquals(26 * 3600, night.getSegmentEnd(0));
+        assertEquals(30 * 3600, night.getShiftEnd());
+        assertEquals(7 * 3600 + 1800, night.getTotalSeconds());
+
+        // 周二凌晨还在周一的夜班里
+        WorkDay day = roster.resolve(MONDAY.plusDays(1).atTime(3, 0));
+        assertEquals(MONDAY, day.getDate());
+        assertEquals(24 * 3600, day.getOffsetSeconds());
+        assertEquals(27 * 3600, day.secondOf(LocalTime.of(3, 0)));
+        assertEquals(4 * 3600 + 1800, night.workedSeconds(day.secondOf(LocalTime.of(3, 0))));
+        assertEquals(MONDAY, roster.resolve(MONDAY.plusDays(1).atTime(5, 59, 59)).getDate());
+        // 夜班结束后属于今天
+        day = roster.resolve(MONDAY.plusDays(1).atTime(6, 0));
+        assertEquals(MONDAY.plusDays(1), day.getDate());
+        assertEquals(0, day.getOffsetSeconds());
+        // 周六凌晨是周五夜班的尾巴, 周一凌晨前一天周日没有夜班
+        assertEquals(MONDAY.plusDays(4), roster.resolve(MONDAY.plusDays(5).atTime(3, 0)).getDate());
+        assertEquals(MONDAY, roster.resolve(MONDAY.atTime(3, 0)).getDate());
+        assertEquals(0, roster.resolve(MONDAY.atTime(3, 0)).getCurve().earnedMicros(3 * 3600));
+    }
+
+    @Test
+    void holidaysRestAndMakeupDaysUseTheFirstWorkdaySchedule() {
+        WorkRoster roster = roster("MON-WED 09:00-17:00; THU,FRI 10:00-16:00")
+                .withCalendar(HolidayRules.bundled(), false);
+        // 2026-10-01 周四国庆放假, 10-10 周六调休上班
+        assertTrue(roster.scheduleFor(LocalDate.of(2026, 10, 1)).isRestDay());
+        assertSame(roster.getSchedule(DayOfWeek.MONDAY), roster.scheduleFor(LocalDate.of(2026, 10, 10)));
+        assertSame(roster.getSchedule(DayOfWeek.THURSDAY), roster.scheduleFor(LocalDate.of(2026, 10, 22)));
+        assertTrue(roster.scheduleFor(LocalDate.of(2026, 10, 24)).isRestDay());
+    }
+}
@@ -0,0 +1,131 @@
+package icu.spider007.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkScheduleTest {
+    private static final long SALARY = Money.parseMicros("10000");
+
+    private static int second(int hour, int minute) {
+        return LocalTime.of(hour, minute).toSecondOfDay();
+    }
+
+    private static int[] seconds(int... hours) {
+        int[] values = new int[hours.length];
+        for (int i = 0; i < hours.length; i++) {
+            values[i] = hours[i] * 3600;
+        }
+        return values;
+    }
+
+    // 08:00-10:00, 11:00-12:00, 14:00-17:00, 共 6 小时
+    private static WorkSchedule threeSegments() {
+        return WorkSchedule.of(SALARY, 22, PayCurrency.CNY, seconds(8, 11, 14), seconds(10, 12, 17));
+    }
+
+    @Test
+    void multiSegmentDayCountsOnlyWorkedTime() {
+        WorkSchedule schedule = threeSegments();
+        assertEquals(6 * 3600, schedule.getTotalSeconds());
+        assertEquals(0, schedule.workedSeconds(second(7, 0)));
+        assertEquals(-1, schedule.segmentIndex(second(7, 0)));
+        assertEquals(2 * 3600, schedule.workedSeconds(second(10, 30)));
+        assertEquals(0, schedule.segmentIndex(second(10, 30)));
+        assertFalse(schedule.isWorking(second(10, 30)));
+        assertEquals(2 * 3600 + 1800, schedule.workedSeconds(second(11, 30)));
+        assertTrue(schedule.isWorking(second(11, 30)));
+        assertEquals(6 * 3600, schedule.workedSeconds(second(23, 0)));
+        assertEquals(0.5, schedule.progress(second(12, 0)));
+        assertEquals(schedule.getDailySalaryMicros() / 2, schedule.earnedMicros(second(13, 0)));
+        assertEquals(schedule.getDailySalaryMicros(), schedule.earnedMicros(second(17, 0)));
+
+        assertEquals(second(11, 0), schedule.nextBoundary(second(10, 0)));
+        assertEquals(second(12, 0), schedule.nextBoundary(second(11, 0)));
+        assertEquals(-1, schedule.nextBoundary(second(17, 0)));
+        assertEquals(second(8, 0), schedule.getShiftStart());
+        assertEquals(second(17, 0), schedule.getShiftEnd());
+    }
+
+    @Test
+    void segmentsMustBeOrderedAndDisjoint() {
+        assertThrows(ScheduleException.class, () -> WorkSchedule.of(SALARY, 22, PayCurrency.CNY,
+                seconds(8, 9), seconds(10, 12)));
+        assertThrows(ScheduleException.class, () -> WorkSchedule.of(SALARY, 22, PayCurrency.CNY,
+                seconds(11, 8), seconds(12, 10)));
+        assertThrows(ScheduleException.class, () -> WorkSchedule.of(SALARY, 22, PayCurrency.CNY,
+                seconds(22), seconds(49)));
+    }
+
+    @Test
+    void subtractCutsEveryOverlappingBreak() {
+        // 一个休息跨两个时段, 另一个整个落在时段里, 第三个与时段首尾相接
+        int[][] segments = WorkSchedule.subtract(seconds(8, 13), seconds(12, 18),
+                seconds(7, 11, 15), seconds(8, 14, 16));
+        assertArrayEquals(seconds(8, 14, 16), segments[0]);
+        assertArrayEquals(seconds(11, 15, 18), segments[1]);
+        // 休息盖住整个时段时时段消失
+        segments = WorkSchedule.subtract(seconds(9, 13), seconds(10, 18), seconds(9), seconds(10));
+        assertArrayEquals(seconds(13), segments[0]);
+        assertArrayEquals(seconds(18), segments[1]);
+        // 没有休息
+        segments = WorkSchedule.subtract(seconds(9), seconds(10), new int[0], new int[0]);
+        assertArrayEquals(seconds(9), segments[0]);
+    }
+
+    @Test
+    void lunchOverlappingTheGapIsNotDeductedTwice() {
+        // 上午到 12:30、下午从 13:00 开始, 午休 12:00-13:30 与间隔重叠
+        WorkSchedule schedule = WorkSchedule.compile("10000", "22", "09:00", "12:30", "13:00", "18:00",
+                "12:00", "13:30", "人民币");
+        assertEquals(2, schedule.getSegmentCount());
+        assertEquals(second(12, 0), schedule.getSegmentEnd(0));
+        assertEquals(second(13, 30), schedule.getSegmentStart(1));
+        assertEquals(7 * 3600 + 1800, schedule.getTotalSeconds());
+    }
+
+    @Test
+    void nextEarningsChangeIsTheFirstSecondTheDisplayMoves() {
+        WorkSchedule schedule = threeSegments();
+        long unit = schedule.getCurrency().getDisplayUnitMicros();
+        for (int second = second(8, 0); second < second(17, 0); second += 7) {
+            int next = schedule.nextEarningsChange(second);
+            if (!schedule.isWorking(second)) {
+                assertEquals(-1, next, "at " + second);
+                continue;
+            }
+            assertTrue(next > second, "at " + second);
+            long shown = Money.roundToUnits(schedule.earnedMicros(second), unit);
+            if (next < schedule.getSegmentEnd(schedule.segmentIndex(second))) {
+                assertTrue(Money.roundToUnits(schedule.earnedMicros(next), unit) > shown, "at " + second);
+            } else {
+                // 时段结束前不再进位时停在时段末尾
+                assertEquals(schedule.getSegmentEnd(schedule.segmentIndex(second)), next);
+            }
+            assertEquals(shown, Money.roundToUnits(schedule.earnedMicros(next - 1), unit), "at " + second);
+        }
+        assertEquals(-1, schedule.nextEarningsChange(second(7, 0)));
+        assertEquals(-1, schedule.nextEarningsChange(second(12, 0)));
+        assertEquals(-1, schedule.nextEarningsChange(second(17, 0)));
+        // 休息日收入不变
+        WorkSchedule rest = WorkSchedule.of(SALARY, 22, PayCurrency.CNY, new int[0], new int[0]);
+        assertEquals(-1, rest.nextEarningsChange(second(9, 0)));
+    }
+
+    @Test
+    void repricingKeepsSegments() {
+        WorkSchedule schedule = threeSegments();
+        assertTrue(schedule == schedule.withMonthlyWorkDays(22));
+        WorkSchedule shorter = schedule.withMonthlyWorkDays(20);
+        assertEquals(Money.divide(SALARY, 20), shorter.getDailySalaryMicros());
+        assertEquals(schedule.getTotalSeconds(), shorter.getTotalSeconds());
+        // 工作天数至少按 1 天算
+        assertEquals(SALARY, schedule.withMonthlyWorkDays(0).getDailySalaryMicros());
+    }
+}
@@ -0,0 +1,87 @@
+package icu.spider007.core.batch;
+
+import icu.spider007.core.calendar.HolidayRules;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchCalculatorTest {
+    // 列顺序与文档不同, 还多一列无关的 team; 2026-10-19 是周一
+    private static final String HEADER = "\uFEFFat,Team,roster,currency,employee_id,monthly_work_days,monthly_salary";
+
+    private static String[] run(BatchCalculator calculator, String input, long expectedErrors) throws IOException {
+        StringWriter out = new StringWriter();
+        BatchCalculator.Summary summary = calculator.run(new BufferedReader(new StringReader(input)), out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(RowCalculator.OUTPUT_HEADER, lines[0]);
+        assertEquals(lines.length - 1, summary.getRows());
+        assertEquals(expectedErrors, summary.getErrors());
+        return Arrays.copyOfRange(lines, 1, lines.length);
+    }
+
+    @Test
+    void rowsKeepInputOrderAcrossChunks() throws IOException {
+        StringBuilder input = new StringBuilder(HEADER).append('\n');
+        int rows = BatchCalculator.CHUNK_ROWS * 3 + 17;
+        for (int i = 0; i < rows; i++) {
+            // 每 1000 行有一行日期写错
+            String at = i % 1000 == 999 ? "yesterday" : "2026-10-19T1" + i % 10 + ":00";
+            input.append(at).append(",ops,,人民币,e").append(i).append(",22,10000\n");
+            if (i % 500 == 0) {
+                input.append('\n');
+            }
+        }
+        String[] lines = run(new BatchCalculator(4, null, false), input.toString(), rows / 1000);
+        assertEquals(rows, lines.length);
+        for (int i = 0; i < rows; i++) {
+            assertEquals("e" + i, Csv.parse(lines[i]).get(0), "row " + i);
+        }
+        assertEquals("e0,2026-10-19,60.61,3600,0,5515.15,CNY,", lines[0]);
+        assertEquals("e999,,,,,,,Text 'yesterday' could not be parsed at index 0", lines[999]);
+    }
+
+    @Test
+    void figuresAndRowErrors() throws IOException {
+        String input = HEADER + "\n"
+                + "2026-10-19T20:30,ops,,人民币,late,22,10000\n"
+                + "2026-10-20T03:00,ops,MON-FRI 22:00-06:00,人民币,night,22,10000\n"
+                + "2026-10-19T12:00,ops,\"MON-FRI 09:00-12:00,13:30-18:00\",美元,\"Doe, \"\"JD\"\" Jane\",22,10000\n"
+                + "2026-10-19T12:00,ops,,peso,bad currency,22,10000\n"
+                + "2026-10-19T12:00,ops,,人民币,bad salary,22,-5\n"
+                + "2026-10-19T12:00,ops,MON 25:00-26:00,人民币,bad roster,22,10000\n";
+        String[] lines = run(new BatchCalculator(2, null, false), input, 3);
+        // 下班 2.5 小时后: 当天收入封顶, 加班秒数只是计数, 不计加班费
+        assertEquals("late,2026-10-19,454.55,27000,9000,5909.09,CNY,", lines[0]);
+        // 夜班跨零点, 属于周一
+        assertEquals("night,2026-10-19,284.09,18000,0,5738.64,CNY,", lines[1]);
+        assertEquals("\"Doe, \"\"JD\"\" Jane\",2026-10-19,181.82,10800,0,5636.36,USD,", lines[2]);
+        assertEquals("bad currency,,,,,,,unknown currency: peso", lines[3]);
+        assertEquals("bad salary,,,,,,,请输入正数", lines[4]);
+        assertEquals("bad roster,,,,,,,时间格式应为 HH:mm", lines[5]);
+    }
+
+    @Test
+    void calendarAndAutoWorkDaysChangeMonthToDate() throws IOException {
+        // 10-01 至 10-07 国庆放假, 10-10 周六调休上班; 10 月按日历共 18 个工作日
+        String input = HEADER + "\n2026-10-19T10:00,ops,,人民币,e1,22,10000\n";
+        assertEquals("e1,2026-10-19,60.61,3600,0,3696.97,CNY,",
+                run(new BatchCalculator(1, HolidayRules.bundled(), false), input, 0)[0]);
+        assertEquals("e1,2026-10-19,74.07,3600,0,4518.52,CNY,",
+                run(new BatchCalculator(1, HolidayRules.bundled(), true), input, 0)[0]);
+    }
+
+    @Test
+    void missingColumnsFailTheBatch() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchCalculator(1, null, false)
+                .run(new BufferedReader(new StringReader("employee_id,at\n")), new StringWriter()));
+        assertThrows(IOException.class, () -> new BatchCalculator(1, null, false)
+                .run(new BufferedReader(new StringReader("")), new StringWriter()));
+    }
+}
@@ -0,0 +1,92 @@
+package icu.spider007.core.calendar;
+
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.overtime.OvertimeRules;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+
+import static icu.spider007.core.overtime.OvertimeRules.DayType.HOLIDAY;
+import static icu.spider007.core.overtime.OvertimeRules.DayType.WEEKEND;
+import static icu.spider007.core.overtime.OvertimeRules.DayType.WORKDAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HolidayRulesTest {
+
+    private static HolidayRules parse(String text) throws IOException {
+        return HolidayRules.parse(new BufferedReader(new StringReader(text)), "test");
+    }
+
+    private static WorkRoster roster(HolidayRules rules) {
+        return new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", ""}, "人民币")
+                .compile()
+                .withCalendar(rules, false)
+                .withOvertime(OvertimeRules.parse("weekday 1.5; weekend 2; holiday 3"));
+    }
+
+    @Test
+    void statutoryMarkerIsAnOffDay() throws IOException {
+        HolidayRules rules = parse("2025-10-01..2025-10-03 holiday 国庆节\n"
+                + "2025-10-04..2025-10-08 休 国庆节\n"
+                + "2025-10-06 法定 中秋节\n"
+                + "2025-10-11 work\n");
+        assertEquals(HolidayRules.Type.OFF, rules.typeOf(LocalDate.of(2025, 10, 1)));
+        assertTrue(rules.isStatutory(LocalDate.of(2025, 10, 1)));
+        assertFalse(rules.isStatutory(LocalDate.of(2025, 10, 5)));
+        // 后面的行覆盖前面的行
+        assertTrue(rules.isStatutory(LocalDate.of(2025, 10, 6)));
+        assertEquals("中秋节", rules.nameOf(LocalDate.of(2025, 10, 6)));
+        assertEquals(HolidayRules.Type.WORK, rules.typeOf(LocalDate.of(2025, 10, 11)));
+        assertFalse(rules.isStatutory(LocalDate.of(2025, 10, 11)));
+        assertThrows(ScheduleException.class, () -> parse("2025-10-01 statutory"));
+    }
+
+    @Test
+    void onlyStatutoryDaysPayAsHoliday() {
+        WorkRoster roster = roster(HolidayRules.bundled());
+        // 国庆节 3 天和中秋节当天为法定节假日
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 10, 1)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 10, 3)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 10, 6)));
+        // 长假中的周末和调休来的休息日按休息日计
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2025, 10, 5)));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2025, 10, 7)));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2025, 10, 8)));
+        // 调休上班按工作日计
+        assertEquals(WORKDAY, roster.dayType(LocalDate.of(2025, 10, 11)));
+        // 春节只有除夕至初三是法定节假日
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2026, 2, 15)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2026, 2, 16)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2026, 2, 19)));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2026, 2, 20)));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2026, 2, 23)));
+    }
+
+    @Test
+    void classifiedByTypeNotName() throws IOException {
+        WorkRoster roster = roster(parse("2025-03-03 off\n2025-03-04 holiday\n2025-03-08 work 调休\n"));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2025, 3, 3)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 3, 4)));
+        assertEquals(WORKDAY, roster.dayType(LocalDate.of(2025, 3, 5)));
+        assertEquals(WORKDAY, roster.dayType(LocalDate.of(2025, 3, 8)));
+    }
+
+    @Test
+    void fileWithoutMarkersTreatsOffDaysAsStatutory() throws IOException {
+        // 没有名称的放假日也按节假日计
+        WorkRoster roster = roster(parse("2025-03-03..2025-03-04 off\n2025-03-08 work\n"));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 3, 3)));
+        assertEquals(HOLIDAY, roster.dayType(LocalDate.of(2025, 3, 4)));
+        assertEquals(WORKDAY, roster.dayType(LocalDate.of(2025, 3, 8)));
+        assertEquals(WEEKEND, roster.dayType(LocalDate.of(2025, 3, 9)));
+    }
+}
@@ -0,0 +1,199 @@
+package icu.spider007.core.clock;
+
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.calendar.HolidayRules;
+import icu.spider007.core.overtime.OvertimeObserver;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.overtime.PayCurve;
+import icu.spider007.core.sim.TickSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在虚拟时钟上按 {@link TickPlanner} 回放节拍, 检查各时刻状态栏显示的金额
+ */
+class TickReplayTest {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+    // 2026-10-19 是周一
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    private static WorkRoster roster(String roster) {
+        return new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30", roster}, "人民币")
+                .compile();
+    }
+
+    /**
+     * 与插件的定时器相同: 每次节拍解析当前的排班日并记下观察到的加班, 再等到显示内容下一次变化的时刻
+     */
+    private static final class Replay {
+        final VirtualClock clock;
+        final WorkRoster roster;
+        final OvertimeObserver observer = new OvertimeObserver();
+        // 发生过节拍的时刻
+        final Set<LocalDateTime> ticks = new HashSet<>();
+        long nextMillis;
+        WorkDay day;
+        long earned;
+        long overtime;
+
+        Replay(WorkRoster roster, LocalDateTime start) {
+            this.roster = roster;
+            clock = new VirtualClock(start.atZone(ZONE).toInstant(), ZONE);
+            tick();
+        }
+
+        // 推进到 until, 其间的节拍都执行; 停下时显示的仍是最后一次节拍的金额
+        Replay runUntil(LocalDateTime until) {
+            long end = until.atZone(ZONE).toInstant().toEpochMilli();
+            while (nextMillis <= end) {
+                clock.advance(nextMillis - clock.millis());
+                tick();
+            }
+            clock.advance(end - clock.millis());
+            // 两次节拍之间显示的金额不会过期
+            WorkDay actual = roster.resolve(until);
+            int second = actual.secondOf(until.toLocalTime());
+            assertEquals(actual.getDate(), day.getDate(), "排班日 " + until);
+            assertEquals(text(day.getCurve().earnedMicros(second)), text(earned), "收入 " + until);
+            assertEquals(text(day.getCurve().overtimeMicrosAt(second)), text(overtime), "加班费 " + until);
+            return this;
+        }
+
+        private void tick() {
+            LocalDateTime now = LocalDateTime.ofInstant(clock.instant(), ZONE);
+            WorkDay resolved = roster.resolve(now);
+            int second = resolved.secondOf(now.toLocalTime());
+            WorkDay current = observer.observe(roster, resolved, second);
+            PayCurve curve = current.getCurve();
+            long value = curve.earnedMicros(second);
+            if (day != null && day.getDate().equals(current.getDate())) {
+                assertTrue(value >= earned, "收入回退 " + now);
+            }
+            day = current;
+            earned = value;
+            overtime = curve.overtimeMicrosAt(second);
+            ticks.add(now);
+            long millisOfDay = now.toLocalTime().toNanoOfDay() / 1_000_000;
+            nextMillis = clock.millis() + TickPlanner.delayMillis(current, millisOfDay, false, false);
+        }
+
+        String text(long micros) {
+            return day.getSchedule().getMoneyFormat().format(micros);
+        }
+
+        String earned() {
+            return text(earned);
+        }
+
+        String overtime() {
+            return text(overtime);
+        }
+    }
+
+    @Test
+    void rolloverResetsAtMidnight() {
+        Replay replay = new Replay(roster(""), MONDAY.atTime(8, 0));
+        assertEquals("¥0.00", replay.runUntil(MONDAY.atTime(8, 59, 59)).earned());
+        assertEquals("¥181.82", replay.runUntil(MONDAY.atTime(12, 0)).earned());
+        assertEquals("¥181.82", replay.runUntil(MONDAY.atTime(13, 30)).earned());
+        assertEquals("¥454.55", replay.runUntil(MONDAY.atTime(23, 59, 59)).earned());
+        replay.runUntil(MONDAY.plusDays(1).atStartOfDay());
+        // 零点一定有一次节拍, 换成新的排班日并从 0 开始
+        assertTrue(replay.ticks.contains(MONDAY.plusDays(1).atStartOfDay()));
+        assertEquals(MONDAY.plusDays(1), replay.day.getDate());
+        assertEquals("¥0.00", replay.earned());
+        assertEquals("¥90.91", replay.runUntil(MONDAY.plusDays(1).atTime(10, 30)).earned());
+    }
+
+    @Test
+    void overtimeRoundsToBlocksAndStopsAtCap() {
+        WorkRoster roster = roster("").withOvertime(OvertimeRules.parse("weekday 1.5; after 30; round 30; cap 1h"));
+        Replay replay = new Replay(roster, MONDAY.atTime(17, 0));
+        assertEquals("¥0.00", replay.runUntil(MONDAY.atTime(18, 30)).overtime());
+        // 不足一块不计
+        assertEquals("¥0.00", replay.runUntil(MONDAY.atTime(18, 59, 59)).overtime());
+        assertEquals("¥45.45", replay.runUntil(MONDAY.atTime(19, 0)).overtime());
+        assertEquals("¥45.45", replay.runUntil(MONDAY.atTime(19, 29, 59)).overtime());
+        assertEquals("¥90.91", replay.runUntil(MONDAY.atTime(19, 30)).overtime());
+        assertEquals("¥545.45", replay.earned());
+        // 达到上限后不再增加, 也不再按分钱节拍
+        int before = replay.ticks.size();
+        assertEquals("¥90.91", replay.runUntil(MONDAY.atTime(23, 0)).overtime());
+        assertEquals("¥545.45", replay.earned());
+        assertTrue(replay.ticks.size() - before <= 2, replay.ticks.size() - before + " ticks after the cap");
+    }
+
+    @Test
+    void nightShiftStaysOnItsStartDay() {
+        Replay replay = new Replay(roster("MON-FRI 22:00-06:00"), MONDAY.atTime(21, 0));
+        assertEquals("¥0.00", replay.runUntil(MONDAY.atTime(22, 0)).earned());
+        assertEquals("¥113.62", replay.runUntil(MONDAY.atTime(23, 59, 59)).earned());
+        // 跨零点后仍是周一的排班日, 收入不归零
+        replay.runUntil(MONDAY.plusDays(1).atStartOfDay());
+        assertEquals(MONDAY, replay.day.getDate());
+        assertEquals("¥113.64", replay.earned());
+        assertEquals("¥284.09", replay.runUntil(MONDAY.plusDays(1).atTime(3, 0)).earned());
+        assertEquals("¥454.53", replay.runUntil(MONDAY.plusDays(1).atTime(5, 59, 59)).earned());
+        assertEquals(MONDAY, replay.day.getDate());
+        // 下班时刻换成周二的排班日, 周二的夜班从 22:00 重新计
+        replay.runUntil(MONDAY.plusDays(1).atTime(6, 0));
+        assertTrue(replay.ticks.contains(MONDAY.plusDays(1).atTime(6, 0)));
+        assertEquals(MONDAY.plusDays(1), replay.day.getDate());
+        replay.runUntil(MONDAY.plusDays(1).atTime(22, 0));
+        assertEquals(MONDAY.plusDays(1), replay.day.getDate());
+        assertEquals("¥0.00", replay.earned());
+        assertEquals("¥56.82", replay.runUntil(MONDAY.plusDays(1).atTime(23, 0)).earned());
+    }
+
+    @Test
+    void holidaysAndMakeUpDays() {
+        WorkRoster roster = roster("").withCalendar(HolidayRules.bundled(), false)
+                .withOvertime(OvertimeRules.parse("weekday 1.5; weekend 2; holiday 3"));
+        // 2026-10-01 国庆节是法定节假日, 按 3 倍计
+        Replay holiday = new Replay(roster, LocalDateTime.of(2026, 10, 1, 8, 0));
+        assertTrue(holiday.day.getSchedule().isRestDay());
+        assertEquals("¥545.45", holiday.runUntil(LocalDateTime.of(2026, 10, 1, 12, 0)).overtime());
+        assertEquals(OvertimeRules.DayType.HOLIDAY, holiday.day.getCurve().getType());
+        // 2026-10-05 周一是调休来的休息日, 按 2 倍计
+        Replay swapped = new Replay(roster, LocalDateTime.of(2026, 10, 5, 8, 0));
+        assertTrue(swapped.day.getSchedule().isRestDay());
+        assertEquals("¥363.64", swapped.runUntil(LocalDateTime.of(2026, 10, 5, 12, 0)).overtime());
+        assertEquals(OvertimeRules.DayType.WEEKEND, swapped.day.getCurve().getType());
+        // 2026-10-10 周六调休上班, 按工作日计薪
+        Replay makeUp = new Replay(roster, LocalDateTime.of(2026, 10, 10, 8, 0));
+        assertFalse(makeUp.day.getSchedule().isRestDay());
+        assertEquals("¥181.82", makeUp.runUntil(LocalDateTime.of(2026, 10, 10, 12, 0)).earned());
+        assertEquals("¥0.00", makeUp.overtime());
+        assertEquals("¥545.45", makeUp.runUntil(LocalDateTime.of(2026, 10, 10, 19, 0)).earned());
+    }
+
+    @Test
+    void simulatorReplaysHolidayMonthWithoutViolations() throws IOException {
+        WorkRoster roster = roster("MON-THU 09:00-12:00,13:30-18:00; FRI 22:00-06:00")
+                .withCalendar(HolidayRules.bundled(), false)
+                .withOvertime(OvertimeRules.parse("weekday 1.5; weekend 2; holiday 3; round 30; cap 4h"));
+        StringWriter trace = new StringWriter();
+        TickSimulator.Result result = new TickSimulator(roster, ZONE, true, true)
+                .run(LocalDate.of(2026, 9, 28), LocalDate.of(2026, 10, 11), trace);
+        assertEquals(0, result.getViolationCount(), String.join("\n", result.getViolations()));
+        assertEquals(14, result.getDays());
+        String lines = trace.toString();
+        assertTrue(lines.contains("\n2026-10-01,HOLIDAY,"), lines);
+        assertTrue(lines.contains("\n2026-10-05,WEEKEND,"), lines);
+        assertTrue(lines.contains("\n2026-10-10,WORKDAY,"), lines);
+    }
+}
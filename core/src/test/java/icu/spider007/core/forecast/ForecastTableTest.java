@@ -0,0 +1,123 @@
+package icu.spider007.core.forecast;
+
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.ledger.LedgerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForecastTableTest {
+    private static final long MILLION = 1_000_000;
+    // 周一至周五上班, 不用节假日日历
+    private static final WorkRoster ROSTER = new ScheduleForm(new String[]{
+            "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30",
+            "MON-FRI 09:00-12:00,13:30-18:00"}, "人民币").compile();
+    private static final long DAILY = ROSTER.any().getDailySalaryMicros();
+
+    private static LedgerRecord record(LocalDate date, long earnedMicros) {
+        return new LedgerRecord((int) date.toEpochDay(), 0, earnedMicros, 0, 0);
+    }
+
+    @Test
+    void advanceAcrossAMonthBoundary() {
+        List<LedgerRecord> records = new ArrayList<>();
+        // 10-19 周一早退, 10-20 加班, 10-24 周六上班; 去年和今天的记录不计
+        records.add(record(LocalDate.of(2026, 10, 19), 100 * MILLION));
+        records.add(record(LocalDate.of(2026, 10, 20), 600 * MILLION));
+        records.add(record(LocalDate.of(2026, 10, 24), 50 * MILLION));
+        records.add(record(LocalDate.of(2025, 10, 20), 999 * MILLION));
+        records.add(record(LocalDate.of(2026, 10, 30), 999 * MILLION));
+        ForecastTable table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 30), 10, records);
+
+        // 10 月 30 日之前有 21 个工作日, 其中两天按记录
+        long before = 19 * DAILY + 750 * MILLION;
+        assertEquals(before, table.getMonthToDate());
+        table.setTodayEarned(DAILY / 2);
+        assertEquals(before + DAILY / 2, table.getMonthToDate());
+        // 10-31 是周六, 本月只剩今天没挣到的一半
+        assertEquals(before + DAILY, table.getMonthProjected());
+        long yearBefore = table.getYearToDate() - DAILY / 2;
+
+        // 周五加班后进入周六, 周六没有排班
+        table.setTodayEarned(DAILY + 10 * MILLION);
+        assertTrue(table.advance(LocalDate.of(2026, 10, 31)));
+        assertEquals(before + DAILY + 10 * MILLION, table.getMonthToDate());
+        assertEquals(table.getMonthToDate(), table.getMonthProjected());
+
+        assertTrue(table.advance(LocalDate.of(2026, 11, 1)));
+        assertEquals(LocalDate.of(2026, 11, 1), table.getDate());
+        assertEquals(0, table.getMonthToDate());
+        // 11 月有 21 个工作日
+        assertEquals(21 * DAILY, table.getMonthProjected());
+        assertEquals(yearBefore + DAILY + 10 * MILLION, table.getYearToDate());
+        // 跳过了一天时需要重新建立
+        assertFalse(table.advance(LocalDate.of(2026, 11, 3)));
+        assertEquals(LocalDate.of(2026, 11, 1), table.getDate());
+    }
+
+    @Test
+    void yearEndCannotAdvance() {
+        ForecastTable table = new ForecastTable(ROSTER, LocalDate.of(2026, 12, 31), 26, Collections.emptyList());
+        // 没有记录的日子按排班计算, 全年 261 个工作日
+        assertEquals(260 * DAILY, table.getYearToDate());
+        assertEquals(261 * DAILY, table.getYearProjected());
+        assertEquals(23 * DAILY, table.getMonthProjected());
+        table.setTodayEarned(DAILY);
+        assertFalse(table.advance(LocalDate.of(2027, 1, 1)));
+        assertEquals(LocalDate.of(2026, 12, 31), table.getDate());
+        // 12-26 周六发薪提前到 12-25 周五, 已经过了; 下一次是 2027-01-26 周二
+        assertEquals(26, table.getDaysUntilPayday());
+        assertEquals(LocalDate.of(2027, 1, 26), table.getNextPayday());
+    }
+
+    @Test
+    void projectionStopsAddingTodayOnceOvertimeExceedsTheDailyRate() {
+        ForecastTable table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 19), 10, Collections.emptyList());
+        // 10-19 之前 12 个工作日, 之后到月底 9 个
+        long before = 12 * DAILY;
+        long after = 9 * DAILY;
+        table.setTodayEarned(DAILY / 4);
+        assertEquals(before + DAILY + after, table.getMonthProjected());
+        assertEquals(261 * DAILY, table.getYearProjected());
+        // 今天的收入超过日薪后, 预测只多出超过的部分, 不再加上今天剩余的日薪
+        table.setTodayEarned(DAILY + 200 * MILLION);
+        assertEquals(before + DAILY + 200 * MILLION, table.getMonthToDate());
+        assertEquals(before + DAILY + 200 * MILLION + after, table.getMonthProjected());
+        assertEquals(261 * DAILY + 200 * MILLION, table.getYearProjected());
+    }
+
+    @Test
+    void paydayMovesBackFromRestDaysAndClampsToMonthEnd() {
+        // 10-24 是周六, 提前到 10-23 周五
+        ForecastTable table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 19), 24, Collections.emptyList());
+        assertEquals(4, table.getDaysUntilPayday());
+        assertEquals(LocalDate.of(2026, 10, 23), table.getNextPayday());
+        // 发薪当天是 0
+        table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 23), 24, Collections.emptyList());
+        assertEquals(0, table.getDaysUntilPayday());
+        // 过了发薪日算下个月: 11-24 是周二
+        table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 26), 24, Collections.emptyList());
+        assertEquals(LocalDate.of(2026, 11, 24), table.getNextPayday());
+        assertEquals(29, table.getDaysUntilPayday());
+
+        // 31 号发薪: 10 月 31 日是周六, 提前到 30 日; 11 月没有 31 日, 按月末 30 日周一
+        table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 19), 31, Collections.emptyList());
+        assertEquals(LocalDate.of(2026, 10, 30), table.getNextPayday());
+        table = new ForecastTable(ROSTER, LocalDate.of(2026, 11, 2), 31, Collections.emptyList());
+        assertEquals(LocalDate.of(2026, 11, 30), table.getNextPayday());
+        assertEquals(28, table.getDaysUntilPayday());
+        // 进入下个月后发薪日跟着换
+        table = new ForecastTable(ROSTER, LocalDate.of(2026, 10, 31), 31, Collections.emptyList());
+        assertEquals(LocalDate.of(2026, 11, 30), table.getNextPayday());
+        assertTrue(table.advance(LocalDate.of(2026, 11, 1)));
+        assertEquals(29, table.getDaysUntilPayday());
+    }
+}
@@ -0,0 +1,149 @@
+package icu.spider007.core.git;
+
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkRoster;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommitIndexTest {
+    // 2026-10-19 是周一
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 19, 0, 0);
+    private static final long ME = CommitIndex.authorKey("Me@Example.com");
+    private static final long OTHER = CommitIndex.authorKey("other@example.com");
+
+    @TempDir
+    Path directory;
+
+    private static byte[] hash(int n) {
+        byte[] hash = new byte[CommitIndex.HASH_SIZE];
+        hash[0] = (byte) (n >>> 8);
+        hash[1] = (byte) n;
+        hash[19] = (byte) 0xAB;
+        return hash;
+    }
+
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static String money(WorkRoster roster, long micros) {
+        return roster.scheduleFor(MONDAY.toLocalDate()).getMoneyFormat().format(micros);
+    }
+
+    @Test
+    void addedCommitsAreVisibleOnlyAfterCommit() throws IOException {
+        Path path = directory.resolve("commits.bin");
+        try (CommitIndex index = CommitIndex.open(path)) {
+            assertNull(index.getHead());
+            assertTrue(index.add(hash(1), 100, ME, "first"));
+            assertTrue(index.add(hash(2), 200, ME, "second"));
+            // 同一批里重复的提交只记一次
+            assertFalse(index.add(hash(1), 100, ME, "first"));
+            assertEquals(0, index.view().size());
+            index.commit(hash(2));
+
+            assertTrue(index.add(hash(3), 300, ME, "rolled back"));
+            index.rollback();
+            assertEquals(2, index.size());
+            // 回滚后同一个提交可以重新追加
+            assertTrue(index.add(hash(3), 300, OTHER, "third"));
+            assertFalse(index.add(hash(2), 200, ME, "second"));
+            index.commit(hash(3));
+        }
+        try (CommitIndex index = CommitIndex.open(path)) {
+            CommitView view = index.view();
+            assertEquals(3, view.size());
+            assertArrayEquals(hash(3), index.getHead());
+            assertEquals("second", view.getSubject(1));
+            assertEquals("third", view.getSubject(2));
+            assertEquals(OTHER, view.getAuthorKey(2));
+            assertEquals(300, view.getCommitSeconds(2));
+            assertEquals(CommitIndex.formatHash(hash(1), 40), view.getHash(0, 40));
+            assertArrayEquals(hash(1), CommitIndex.parseHash(view.getHash(0, 40), 0));
+            // 重新打开后已提交的提交仍然去重
+            assertFalse(index.add(hash(1), 100, ME, "first"));
+            assertTrue(index.add(hash(4), 400, ME, "fourth"));
+        }
+    }
+
+    @Test
+    void uncommittedTailIsTruncatedOnOpen() throws IOException {
+        Path path = directory.resolve("commits.bin");
+        Path messages = directory.resolve("commits.bin.msg");
+        try (CommitIndex index = CommitIndex.open(path)) {
+            index.add(hash(1), 100, ME, "first");
+            index.commit(hash(1));
+        }
+        long recordSize = Files.size(path);
+        long messageSize = Files.size(messages);
+        assertEquals(CommitIndex.HEADER_SIZE + CommitIndex.RECORD_SIZE, recordSize);
+        // 写完数据但没来得及更新文件头
+        for (Path file : new Path[]{path, messages}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[CommitIndex.RECORD_SIZE + 5]));
+            }
+        }
+        try (CommitIndex index = CommitIndex.open(path)) {
+            assertEquals(1, index.view().size());
+            assertEquals("first", index.view().getSubject(0));
+        }
+        assertEquals(recordSize, Files.size(path));
+        assertEquals(messageSize, Files.size(messages));
+
+        // 文件比文件头记录的短说明损坏了, 不能当作空索引
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(CommitIndex.HEADER_SIZE + CommitIndex.RECORD_SIZE / 2);
+        }
+        assertThrows(IOException.class, () -> CommitIndex.open(path));
+    }
+
+    @Test
+    void pricesCoverRegularPaySinceThePreviousCommitThatDay() throws IOException {
+        WorkRoster roster = new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30",
+                "MON-FRI 09:00-12:00,13:30-18:00"}, "人民币").compile();
+        try (CommitIndex index = CommitIndex.open(directory.resolve("commits.bin"))) {
+            // 按扫描顺序 (新的在前) 追加, 标价时按时间排序
+            index.add(hash(1), seconds(MONDAY.plusDays(1).withHour(9).withMinute(30)), ME, "tuesday");
+            index.add(hash(2), seconds(MONDAY.withHour(12)), ME, "noon");
+            index.add(hash(3), seconds(MONDAY.withHour(11)), OTHER, "someone else");
+            index.add(hash(4), seconds(MONDAY.withHour(10)), ME, "morning");
+            index.add(hash(5), seconds(MONDAY.withHour(21)), ME, "evening");
+            index.commit(hash(1));
+
+            CommitPrices prices = new CommitPrices(index.view(), ME, roster, ZoneOffset.UTC);
+            assertEquals(4, prices.size());
+            assertEquals("morning", index.view().getSubject(prices.getRow(0)));
+            // 时薪 454.55 / 7.5: 上班到 10:00 一小时, 10:00 到 12:00 两小时
+            assertEquals("¥60.61", money(roster, prices.getPriceMicros(0)));
+            assertEquals("¥121.21", money(roster, prices.getPriceMicros(1)));
+            // 下班后的提交只补上 12:00 之后的正常工资, 不计加班费
+            assertEquals("¥272.73", money(roster, prices.getPriceMicros(2)));
+            // 第二天从上班开始算
+            assertEquals("¥30.30", money(roster, prices.getPriceMicros(3)));
+
+            long[] monday = prices.total(seconds(MONDAY), seconds(MONDAY.plusDays(1)));
+            assertEquals(3, monday[0]);
+            assertEquals("¥454.55", money(roster, monday[1]));
+            long[] none = prices.total(seconds(MONDAY.withHour(13)), seconds(MONDAY.withHour(20)));
+            assertEquals(0, none[0]);
+            assertEquals(0, none[1]);
+        }
+    }
+}
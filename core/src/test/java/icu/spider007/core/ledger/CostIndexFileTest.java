@@ -0,0 +1,91 @@
+package icu.spider007.core.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CostIndexFileTest {
+    @TempDir
+    Path directory;
+
+    private static CostMap changed(long key, long micros, int seconds) {
+        CostMap map = new CostMap();
+        map.put(key, micros, seconds);
+        return map;
+    }
+
+    @Test
+    void latestValuePerKeySurvivesReopenAndTornTail() throws IOException {
+        Path path = directory.resolve("costs.bin");
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            index.append(changed(11, 100, 60));
+            index.append(changed(12, 200, 120));
+            index.append(changed(11, 300, 180));
+        }
+        // 崩溃时写了一半的记录
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[CostIndexFile.RECORD_SIZE - 1]));
+        }
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            assertEquals(2, index.getEntries().size());
+            assertEquals(300, index.getEntries().getMicros(11));
+            assertEquals(180, index.getEntries().getSeconds(11));
+            assertEquals(200, index.getEntries().getMicros(12));
+        }
+        assertEquals(16 + 3 * CostIndexFile.RECORD_SIZE, Files.size(path));
+    }
+
+    @Test
+    void appendAfterFailedWriteStaysAligned() throws IOException {
+        Path path = directory.resolve("costs.bin");
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            index.append(changed(11, 100, 60));
+            // 上一次追加只写了一部分就失败, 残余留在文件末尾
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[CostIndexFile.RECORD_SIZE / 2]));
+            }
+            index.append(changed(12, 200, 120));
+        }
+        assertEquals(16 + 2 * CostIndexFile.RECORD_SIZE, Files.size(path));
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            assertEquals(2, index.getEntries().size());
+            assertEquals(100, index.getEntries().getMicros(11));
+            assertEquals(200, index.getEntries().getMicros(12));
+        }
+    }
+
+    @Test
+    void compactionKeepsLatestValues() throws IOException {
+        Path path = directory.resolve("costs.bin");
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            for (int i = 0; i < 1000; i++) {
+                index.append(changed(1 + i % 5, i, i));
+            }
+            assertTrue(Files.size(path) < 100 * CostIndexFile.RECORD_SIZE);
+            // 压缩后仍可以继续追加
+            index.append(changed(6, 1, 1));
+        }
+        try (CostIndexFile index = CostIndexFile.open(path)) {
+            assertEquals(6, index.getEntries().size());
+            assertEquals(999, index.getEntries().getMicros(5));
+            assertEquals(1, index.getEntries().getMicros(6));
+        }
+    }
+
+    @Test
+    void rejectsOtherRecordFiles() throws IOException {
+        Path path = directory.resolve("ledger.bin");
+        LedgerFile.open(path).close();
+        assertThrows(IOException.class, () -> CostIndexFile.open(path));
+    }
+}
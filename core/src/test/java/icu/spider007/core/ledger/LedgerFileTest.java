@@ -0,0 +1,82 @@
+package icu.spider007.core.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerFileTest {
+    @TempDir
+    Path directory;
+
+    private static LedgerRecord record(int day, long micros) {
+        return new LedgerRecord(day, 3600, micros, 0, 7);
+    }
+
+    @Test
+    void latestRecordPerDaySurvivesReopen() throws IOException {
+        Path path = directory.resolve("ledger.bin");
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            ledger.append(List.of(record(20000, 1), record(20001, 2)));
+            ledger.append(Collections.singletonList(record(20000, 3)));
+            assertEquals(3, ledger.get(20000).getEarnedMicros());
+        }
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            assertEquals(3, ledger.get(20000).getEarnedMicros());
+            assertEquals(2, ledger.get(20001).getEarnedMicros());
+            assertNull(ledger.get(19999));
+            assertEquals(2, ledger.range(19990, 20010).size());
+        }
+    }
+
+    @Test
+    void tornTailIsTruncated() throws IOException {
+        Path path = directory.resolve("ledger.bin");
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            ledger.append(List.of(record(20000, 1), record(20001, 2)));
+        }
+        long size = Files.size(path);
+        // 崩溃时写了一半的记录
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[LedgerFile.RECORD_SIZE / 2]));
+        }
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            assertEquals(2, ledger.get(20001).getEarnedMicros());
+            ledger.append(Collections.singletonList(record(20002, 5)));
+        }
+        assertEquals(size + LedgerFile.RECORD_SIZE, Files.size(path));
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            assertEquals(5, ledger.get(20002).getEarnedMicros());
+        }
+    }
+
+    @Test
+    void compactionKeepsAppending() throws IOException {
+        Path path = directory.resolve("ledger.bin");
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            for (int i = 0; i < 1000; i++) {
+                ledger.append(Collections.singletonList(record(20000 + i % 3, i)));
+            }
+            // 每天一条, 冗余记录已被压缩
+            assertTrue(Files.size(path) < 100 * LedgerFile.RECORD_SIZE);
+        }
+        try (LedgerFile ledger = LedgerFile.open(path)) {
+            List<LedgerRecord> records = new ArrayList<>(ledger.range(20000, 20002));
+            assertEquals(3, records.size());
+            assertEquals(999, ledger.get(20000).getEarnedMicros());
+            assertEquals(998, ledger.get(20002).getEarnedMicros());
+        }
+    }
+}
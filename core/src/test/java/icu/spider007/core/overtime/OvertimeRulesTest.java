@@ -0,0 +1,142 @@
+package icu.spider007.core.overtime;
+
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OvertimeRulesTest {
+    // 2026-10-19 是周一, 10-24 是周六
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 19, 0, 0);
+    private static final LocalDateTime SATURDAY = LocalDateTime.of(2026, 10, 24, 0, 0);
+
+    private static WorkRoster roster(String rules) {
+        return new ScheduleForm(new String[]{
+                "10000", "22", "09:00", "12:00", "13:30", "18:00", "12:00", "13:30",
+                "MON-FRI 09:00-12:00,13:30-18:00"}, "人民币")
+                .compile()
+                .withOvertime(OvertimeRules.parse(rules));
+    }
+
+    private static int second(LocalTime time) {
+        return time.toSecondOfDay();
+    }
+
+    private static String overtime(WorkDay day, LocalTime time) {
+        return day.getSchedule().getMoneyFormat().format(day.getCurve().overtimeMicrosAt(second(time)));
+    }
+
+    // 从 from 到 to 每分钟一次节拍, 返回最后一次节拍时的排班日
+    private static WorkDay ticks(OvertimeObserver observer, WorkRoster roster, LocalDateTime from, LocalDateTime to) {
+        WorkDay day = null;
+        for (LocalDateTime now = from; !now.isAfter(to); now = now.plusMinutes(1)) {
+            WorkDay resolved = roster.resolve(now);
+            day = observer.observe(roster, resolved, resolved.secondOf(now.toLocalTime()));
+        }
+        return day;
+    }
+
+    @Test
+    void unobservedDayPaysNoOvertime() {
+        WorkDay day = roster("weekday 1.5; weekend 2").resolve(SATURDAY.withHour(17));
+        assertEquals(OvertimeRules.DayType.WEEKEND, day.getCurve().getType());
+        assertTrue(day.getCurve().getOvertimeMicrosPerHour() > 0);
+        assertEquals("¥0.00", overtime(day, LocalTime.of(17, 0)));
+        assertFalse(day.getCurve().isAccruing(second(LocalTime.of(17, 0))));
+    }
+
+    @Test
+    void restDayCountsOnlyFromWhenTheIdeOpened() {
+        WorkRoster roster = roster("weekday 1.5; weekend 2");
+        OvertimeObserver observer = new OvertimeObserver();
+        WorkDay day = ticks(observer, roster, SATURDAY.withHour(17), SATURDAY.withHour(17));
+        // 17:00 打开 IDE, 标准工作时段只剩一小时, 时薪 454.55 / 7.5 的 2 倍
+        assertEquals("¥0.00", overtime(day, LocalTime.of(17, 0)));
+        assertEquals("¥121.21", overtime(day, LocalTime.of(18, 0)));
+        assertEquals("¥121.21", overtime(day, LocalTime.of(22, 0)));
+        assertEquals(3600, day.getCurve().creditedOvertimeSeconds(second(LocalTime.of(22, 0))));
+    }
+
+    @Test
+    void restDayWindowsFollowTheStandardSchedule() {
+        WorkRoster roster = roster("weekday 1.5; weekend 2");
+        WorkDay day = roster.observe(roster.resolve(SATURDAY.withHour(8)), 0, 0);
+        assertEquals("¥0.00", overtime(day, LocalTime.of(9, 0)));
+        assertEquals("¥363.64", overtime(day, LocalTime.of(12, 0)));
+        // 午休不计
+        assertFalse(day.getCurve().isAccruing(second(LocalTime.of(12, 30))));
+        assertEquals("¥363.64", overtime(day, LocalTime.of(13, 30)));
+        assertEquals("¥909.09", overtime(day, LocalTime.of(18, 0)));
+        assertEquals("¥909.09", overtime(day, LocalTime.of(23, 0)));
+        assertEquals(7 * 3600 + 1800, day.getCurve().overtimeWindowSeconds(0, 24 * 3600));
+    }
+
+    @Test
+    void roundingPaysWholeBlocksUpToTheCap() {
+        WorkRoster roster = roster("weekday 1.5; after 30; round 30; cap 1h");
+        WorkDay day = roster.observe(roster.resolve(MONDAY.withHour(17)), 0, 0);
+        PayCurve curve = day.getCurve();
+        assertEquals("¥0.00", overtime(day, LocalTime.of(18, 30)));
+        assertEquals("¥0.00", overtime(day, LocalTime.of(18, 59, 59)));
+        assertEquals(0, curve.creditedOvertimeSeconds(second(LocalTime.of(18, 59, 59))));
+        assertEquals("¥45.45", overtime(day, LocalTime.of(19, 0)));
+        assertEquals(1800, curve.creditedOvertimeSeconds(second(LocalTime.of(19, 0))));
+        assertEquals("¥90.91", overtime(day, LocalTime.of(19, 30)));
+        // 达到上限后不再增长, 也没有后续的断点
+        assertEquals("¥90.91", overtime(day, LocalTime.of(23, 0)));
+        assertEquals(3600, curve.creditedOvertimeSeconds(second(LocalTime.of(23, 0))));
+        assertFalse(curve.isAccruing(second(LocalTime.of(19, 30))));
+        assertEquals(-1, curve.nextEarningsChange(second(LocalTime.of(20, 0))));
+        // 正常工资不受影响
+        assertEquals(454_545_455, curve.earnedMicros(second(LocalTime.of(23, 0))) - curve.overtimeMicrosAt(
+                second(LocalTime.of(23, 0))), 1);
+    }
+
+    @Test
+    void gapsAreNotCredited() {
+        WorkRoster roster = roster("weekday 1.5");
+        OvertimeObserver observer = new OvertimeObserver();
+        ticks(observer, roster, MONDAY.withHour(18), MONDAY.withHour(19));
+        // 19:00 到 21:00 电脑休眠, 没有节拍
+        WorkDay day = ticks(observer, roster, MONDAY.withHour(21), MONDAY.withHour(21).withMinute(30));
+        assertEquals("¥136.36", overtime(day, LocalTime.of(21, 30)));
+        assertEquals(5400, day.getCurve().creditedOvertimeSeconds(second(LocalTime.of(21, 30))));
+        // 休眠前观察到的加班费在之后保持不变
+        assertEquals("¥90.91", overtime(day, LocalTime.of(21, 0)));
+    }
+
+    @Test
+    void roundingAndCapAddUpAcrossGaps() {
+        WorkRoster roster = roster("weekday 1.5; round 30; cap 40m");
+        OvertimeObserver observer = new OvertimeObserver();
+        WorkDay day = ticks(observer, roster, MONDAY.withHour(18), MONDAY.withHour(18).withMinute(20));
+        assertEquals("¥0.00", overtime(day, LocalTime.of(18, 20)));
+        day = ticks(observer, roster, MONDAY.withHour(21), MONDAY.withHour(21));
+        // 两段合计凑满 30 分钟时计入一块, 合计到 40 分钟上限为止
+        assertEquals("¥0.00", overtime(day, LocalTime.of(21, 9, 59)));
+        assertEquals("¥45.45", overtime(day, LocalTime.of(21, 10)));
+        assertEquals(1800, day.getCurve().creditedOvertimeSeconds(second(LocalTime.of(23, 0))));
+        assertFalse(day.getCurve().isAccruing(second(LocalTime.of(21, 20))));
+    }
+
+    @Test
+    void restoredOvertimeCarriesOverARestart() {
+        WorkRoster roster = roster("weekday 1.5");
+        OvertimeObserver observer = new OvertimeObserver();
+        // 上次运行时已计 1 小时加班
+        observer.restore(MONDAY.toLocalDate(), 3600);
+        WorkDay day = ticks(observer, roster, MONDAY.withHour(20), MONDAY.withHour(20));
+        assertEquals("¥90.91", overtime(day, LocalTime.of(20, 0)));
+        assertEquals("¥136.36", overtime(day, LocalTime.of(20, 30)));
+        // 第二天重新开始
+        day = ticks(observer, roster, MONDAY.plusDays(1).withHour(20), MONDAY.plusDays(1).withHour(20));
+        assertEquals("¥0.00", overtime(day, LocalTime.of(20, 0)));
+    }
+}
@@ -0,0 +1,105 @@
+package icu.spider007.core.shared;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedStateFileTest {
+    @TempDir
+    Path directory;
+
+    private static long[] filled(long value) {
+        long[] values = new long[SharedStateFile.VALUE_COUNT];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    @Test
+    void readerNeverSeesATornWrite() throws Exception {
+        Path path = directory.resolve("shared.bin");
+        try (SharedStateFile leader = SharedStateFile.open(path);
+             SharedStateFile follower = SharedStateFile.open(path)) {
+            assertTrue(leader.tryLead(1));
+            assertFalse(follower.read(new SharedStateFile.Snapshot()));
+            leader.publish(0, filled(0));
+
+            AtomicBoolean done = new AtomicBoolean();
+            Thread writer = new Thread(() -> {
+                long[] values = new long[SharedStateFile.VALUE_COUNT];
+                for (long i = 1; i <= 200_000; i++) {
+                    Arrays.fill(values, i);
+                    leader.publish(i, values);
+                }
+                done.set(true);
+            });
+            writer.start();
+            SharedStateFile.Snapshot snapshot = new SharedStateFile.Snapshot();
+            long reads = 0;
+            long lastSequence = 0;
+            while (!done.get() || reads == 0) {
+                if (!follower.read(snapshot)) {
+                    continue;
+                }
+                reads++;
+                // 同一次读取的所有字段来自同一次发布
+                long published = snapshot.getPublishedMillis();
+                for (int i = 0; i < SharedStateFile.VALUE_COUNT; i++) {
+                    assertEquals(published, snapshot.getValue(i), "value " + i + " at sequence " + snapshot.getSequence());
+                }
+                assertEquals(0, snapshot.getSequence() & 1);
+                assertTrue(snapshot.getSequence() >= lastSequence);
+                lastSequence = snapshot.getSequence();
+            }
+            writer.join();
+            assertTrue(follower.read(snapshot));
+            assertEquals(200_000, snapshot.getValue(SharedStateFile.VALUE_COUNT - 1));
+            assertEquals(1, snapshot.getLeaderPid());
+        }
+    }
+
+    @Test
+    void newLeaderRecoversFromAnOddSequence() throws IOException {
+        Path path = directory.resolve("shared.bin");
+        try (SharedStateFile first = SharedStateFile.open(path)) {
+            assertTrue(first.tryLead(1));
+            first.publish(100, filled(7));
+        }
+        // 上一任在写入中途退出: 序号停在奇数, 数据只写了一半
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer sequence = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(sequence, 8);
+            long odd = sequence.getLong(0) + 1;
+            sequence.clear();
+            sequence.putLong(odd).flip();
+            channel.write(sequence, 8);
+        }
+
+        try (SharedStateFile follower = SharedStateFile.open(path)) {
+            SharedStateFile.Snapshot snapshot = new SharedStateFile.Snapshot();
+            assertFalse(follower.read(snapshot));
+            try (SharedStateFile next = SharedStateFile.open(path)) {
+                assertTrue(next.tryLead(2));
+                // 序号恢复成偶数后可以读取, 新领导者的发布随后覆盖残留的数据
+                assertTrue(follower.read(snapshot));
+                assertEquals(0, snapshot.getSequence() & 1);
+                next.publish(200, filled(9));
+                assertTrue(follower.read(snapshot));
+                assertEquals(200, snapshot.getPublishedMillis());
+                assertEquals(9, snapshot.getValue(0));
+                assertEquals(2, snapshot.getLeaderPid());
+            }
+        }
+    }
+}
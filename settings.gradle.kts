@@ -1 +1,3 @@
 rootProject.name = "PayPerTick"
+
+include("core")
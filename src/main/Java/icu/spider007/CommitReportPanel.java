@@ -0,0 +1,183 @@
+package icu.spider007;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import icu.spider007.config.ConfigListener;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.git.CommitPrices;
+import icu.spider007.core.git.CommitView;
+import icu.spider007.service.CommitHistory;
+import icu.spider007.service.PluginClock;
+import icu.spider007.service.SalaryEngine;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 工具窗口的"提交"页: 按当前排班和薪资给自己在本项目仓库中的每个提交标价
+ * <p>
+ * 提交历史由 {@link CommitHistory} 在后台增量索引, 本页只在 EDT 上读取结果;
+ * 表格按需计算看得到的行, 几十万个提交的仓库也能立即打开
+ */
+public class CommitReportPanel implements Disposable {
+    private static final String[] COLUMNS = {"时间", "提交", "说明", "收入"};
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Project project;
+    private final JPanel mainPanel = new JPanel(new BorderLayout());
+    private final JBLabel summaryLabel = new JBLabel();
+    private final JButton refreshButton = new JButton("刷新");
+    private final CommitTableModel model = new CommitTableModel();
+    // 刷新进行中又收到刷新请求时, 完成后再刷新一次
+    private boolean refreshing;
+    private boolean pending;
+    private volatile boolean disposed;
+
+    public CommitReportPanel(Project project) {
+        this.project = project;
+        refreshButton.addActionListener(e -> refresh());
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        header.add(summaryLabel);
+        header.add(refreshButton);
+
+        JBTable table = new JBTable(model);
+        table.setAutoCreateRowSorter(false);
+        mainPanel.add(header, BorderLayout.NORTH);
+        mainPanel.add(new JBScrollPane(table), BorderLayout.CENTER);
+        mainPanel.setBorder(JBUI.Borders.empty(4));
+
+        // 排班或薪资变化后重新标价, HEAD 没有变化时不会重新扫描历史
+        ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(ConfigListener.TOPIC,
+                snapshot -> ApplicationManager.getApplication().invokeLater(this::refresh));
+        refresh();
+    }
+
+    private void refresh() {
+        if (disposed) {
+            return;
+        }
+        if (refreshing) {
+            pending = true;
+            return;
+        }
+        String basePath = project.getBasePath();
+        WorkRoster roster = SalaryCalculatorConfig.getInstance().getSnapshot().getSalaryRoster();
+        if (basePath == null || roster == null) {
+            summaryLabel.setText(basePath == null ? "项目没有本地目录" : "请先填写正确的薪资和排班");
+            return;
+        }
+        refreshing = true;
+        refreshButton.setEnabled(false);
+        summaryLabel.setText("正在读取提交历史…");
+        CommitHistory.getInstance().refresh(basePath, roster, PluginClock.getInstance().zone(), report -> {
+            if (disposed) {
+                return;
+            }
+            refreshing = false;
+            refreshButton.setEnabled(true);
+            if (report.getError() != null) {
+                summaryLabel.setText(report.getError());
+                model.setPrices(null);
+            } else {
+                model.setPrices(report.getPrices());
+                summaryLabel.setText(summary(report));
+            }
+            if (pending) {
+                pending = false;
+                refresh();
+            }
+        });
+    }
+
+    // 如 "me@example.com 的提交 1204 个 (仓库共 5310 个), 本月 37 个 ¥8,120.00, 今日 3 个 ¥560.00"
+    private String summary(CommitHistory.Report report) {
+        CommitPrices prices = report.getPrices();
+        ZoneId zone = PluginClock.getInstance().zone();
+        LocalDate today = PluginClock.getInstance().now().toLocalDate();
+        long dayStart = today.atStartOfDay(zone).toEpochSecond();
+        long monthStart = today.withDayOfMonth(1).atStartOfDay(zone).toEpochSecond();
+        long[] day = prices.total(dayStart, Long.MAX_VALUE);
+        long[] month = prices.total(monthStart, Long.MAX_VALUE);
+        String added = report.getAdded() > 0 ? String.format(", 新索引 %d 个", report.getAdded()) : "";
+        return String.format("%s 的提交 %d 个 (仓库共 %d 个%s), 本月 %d 个 %s, 今日 %d 个 %s",
+                report.getEmail(), prices.size(), report.getCommitCount(), added,
+                month[0], money(month[1]), day[0], money(day[1]));
+    }
+
+    // 价格按薪资货币计算, 换算成显示货币
+    private static String money(long micros) {
+        WorkDay day = SalaryEngine.getInstance().today();
+        if (day == null) {
+            return "-";
+        }
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        MoneyFormat format = day.getSchedule().getMoneyFormat();
+        return format.format(config.toDisplayMicros(micros));
+    }
+
+    public JComponent getContent() {
+        return mainPanel;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+
+    // 最新的提交在最上面, 单元格在绘制时才读取和标价
+    private static final class CommitTableModel extends AbstractTableModel {
+        private CommitPrices prices;
+
+        void setPrices(CommitPrices prices) {
+            this.prices = prices;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return prices == null ? 0 : prices.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            int i = prices.size() - 1 - row;
+            CommitView view = prices.getView();
+            switch (column) {
+                case 0:
+                    return TIME_FORMAT.format(Instant.ofEpochSecond(prices.getCommitSeconds(i))
+                            .atZone(PluginClock.getInstance().zone()));
+                case 1:
+                    return view.getHash(prices.getRow(i), 8);
+                case 2:
+                    return view.getSubject(prices.getRow(i));
+                default:
+                    return money(prices.getPriceMicros(i));
+            }
+        }
+    }
+}
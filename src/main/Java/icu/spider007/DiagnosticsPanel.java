@@ -0,0 +1,117 @@
+package icu.spider007;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.JBUI;
+import icu.spider007.core.metrics.ProbeStats;
+import icu.spider007.service.PluginClock;
+import icu.spider007.service.PluginMetrics;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.List;
+
+/**
+ * 工具窗口的"诊断"页: 插件各热点路径的调用次数、耗时分布、EDT 耗时和分配
+ * <p>
+ * 只在页面可见时每隔几秒刷新一次, 数据来自 {@link PluginMetrics}.
+ * 页头的时钟偏移用于手动检查零点、午休等边界, 只影响插件显示的时刻, 不保存
+ */
+public class DiagnosticsPanel implements Disposable {
+    private static final int REFRESH_MILLIS = 2000;
+    // 时钟偏移最多前后一周
+    private static final int MAX_OFFSET_MINUTES = 7 * 24 * 60;
+    private static final String[] COLUMNS = {
+            "方法", "次数", "平均(µs)", "P50(µs)", "P90(µs)", "P99(µs)", "最大(µs)", "EDT 合计(ms)", "分配(B/次)"
+    };
+
+    private final JPanel mainPanel = new JPanel(new BorderLayout());
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JBLabel summaryLabel = new JBLabel();
+    private final Alarm refreshAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+
+    public DiagnosticsPanel() {
+        JButton resetButton = new JButton("重置");
+        resetButton.addActionListener(e -> {
+            PluginMetrics.getInstance().reset();
+            refresh();
+        });
+        PluginClock clock = PluginClock.getInstance();
+        JSpinner offsetSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) clock.getOffsetMinutes(), -MAX_OFFSET_MINUTES, MAX_OFFSET_MINUTES, 1));
+        offsetSpinner.addChangeListener(e -> clock.setOffsetMinutes((Integer) offsetSpinner.getValue()));
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        header.add(summaryLabel);
+        header.add(resetButton);
+        header.add(new JBLabel("时钟偏移(分钟):"));
+        header.add(offsetSpinner);
+
+        JBTable table = new JBTable(model);
+        table.setAutoCreateRowSorter(false);
+        mainPanel.add(header, BorderLayout.NORTH);
+        mainPanel.add(new JBScrollPane(table), BorderLayout.CENTER);
+        mainPanel.setBorder(JBUI.Borders.empty(4));
+
+        refresh();
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        refreshAlarm.addRequest(() -> {
+            if (mainPanel.isShowing()) {
+                refresh();
+            }
+            scheduleRefresh();
+        }, REFRESH_MILLIS);
+    }
+
+    private void refresh() {
+        PluginMetrics metrics = PluginMetrics.getInstance();
+        List<ProbeStats.Snapshot> probes = metrics.getProbes();
+        long edtNanos = 0;
+        model.setRowCount(probes.size());
+        for (int row = 0; row < probes.size(); row++) {
+            ProbeStats.Snapshot probe = probes.get(row);
+            if (PluginMetrics.Probe.values()[row].isTopLevel()) {
+                edtNanos += probe.getEdtNanos();
+            }
+            model.setValueAt(probe.getName(), row, 0);
+            model.setValueAt(probe.getCount(), row, 1);
+            model.setValueAt(micros(probe.getMeanNanos()), row, 2);
+            model.setValueAt(micros(probe.getP50Nanos()), row, 3);
+            model.setValueAt(micros(probe.getP90Nanos()), row, 4);
+            model.setValueAt(micros(probe.getP99Nanos()), row, 5);
+            model.setValueAt(micros(probe.getMaxNanos()), row, 6);
+            model.setValueAt(String.format("%.1f", probe.getEdtNanos() / 1e6), row, 7);
+            model.setValueAt(probe.getAllocatedBytesPerCall() < 0 ? "-" : probe.getAllocatedBytesPerCall(), row, 8);
+        }
+        // 入口级调用在 EDT 上的总耗时占比, 用来确认插件的开销在预算之内
+        long elapsedMillis = Math.max(System.currentTimeMillis() - metrics.getSinceMillis(), 1);
+        summaryLabel.setText(String.format("统计 %d 分钟, EDT 占用 %.1f ms (%.3f%%)%s",
+                elapsedMillis / 60_000, edtNanos / 1e6, edtNanos / 1e4 / elapsedMillis,
+                metrics.isAllocationSupported() ? "" : ", 当前虚拟机不支持统计分配"));
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1e3);
+    }
+
+    public JComponent getContent() {
+        return mainPanel;
+    }
+
+    @Override
+    public void dispose() {
+        // 刷新任务由 Alarm 随面板一起释放
+    }
+}
@@ -0,0 +1,289 @@
+package icu.spider007;
+
+import com.intellij.ui.JBColor;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.chart.SampleRing;
+import icu.spider007.service.EarningsHistory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * 今日收入曲线, 与昨日曲线和本月日均收入对比
+ * <p>
+ * 曲线画在离屏图像上: 网格、昨日曲线和日均线只在尺寸、日期或对比数据变化时整体重绘,
+ * 之后每个节拍只把新采样的线段接到图像上, 并只重绘变化的那几列
+ */
+public class EarningsChart extends JComponent {
+    private static final Color TODAY_COLOR = new JBColor(new Color(0, 128, 0), new Color(98, 180, 98));
+    private static final Color YESTERDAY_COLOR = new JBColor(new Color(160, 160, 160), new Color(110, 110, 110));
+    private static final Color AVERAGE_COLOR = new JBColor(new Color(230, 140, 0), new Color(200, 130, 40));
+    private static final Color GRID_COLOR = new JBColor(new Color(230, 230, 230), new Color(70, 70, 70));
+    private static final Stroke GRID = new BasicStroke(1f);
+    private static final Stroke LINE = new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke DASHED = new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+            10f, new float[]{4f, 4f}, 0f);
+    // 曲线两端留出的时间
+    private static final int MARGIN_SECONDS = 30 * 60;
+    private static final int GRID_LINES = 4;
+
+    private BufferedImage image;
+    private Graphics2D canvas;
+    // 图像的逻辑尺寸, HiDPI 下与像素尺寸不同
+    private int imageWidth;
+    private int imageHeight;
+    // 已画到图像上的对比数据版本和采样序号
+    private long drawnRevision = -1;
+    private long drawnSequence;
+    // 坐标范围: 排班日时间轴上的秒数和金额
+    private int fromSecond;
+    private int toSecond;
+    private long maxMicros;
+    // 右边界时刻的收入, 之后仍在增长 (加班) 时需要延伸时间轴
+    private long rangeEndMicros;
+    // 最后一个已画采样的像素位置
+    private int lastX = -1;
+    private int lastY;
+    private int dirtyFrom;
+    private int dirtyTo;
+
+    public EarningsChart() {
+        setPreferredSize(JBUI.size(320, 140));
+        setMinimumSize(JBUI.size(120, 80));
+    }
+
+    /**
+     * 节拍时调用: 记录采样, 可见时把新的线段画上去
+     */
+    public void update() {
+        EarningsHistory history = EarningsHistory.getInstance();
+        history.sample();
+        if (!isShowing() || image == null) {
+            // 不可见时只记录, 下次绘制时一次补齐
+            return;
+        }
+        if (needsFullRedraw(history)) {
+            repaint();
+            return;
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = -1;
+        if (!appendSamples(history)) {
+            repaint();
+        } else if (dirtyTo >= dirtyFrom) {
+            repaint(dirtyFrom - 2, 0, dirtyTo - dirtyFrom + 5, getHeight());
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        EarningsHistory history = EarningsHistory.getInstance();
+        if (needsFullRedraw(history) || !appendSamples(history)) {
+            redraw(history);
+        }
+        UIUtil.drawImage(g, image, 0, 0, null);
+    }
+
+    private boolean needsFullRedraw(EarningsHistory history) {
+        return image == null || imageWidth != getWidth() || imageHeight != getHeight()
+                || drawnRevision != history.getRevision();
+    }
+
+    // 整体重绘: 坐标范围、网格、对比数据和已有的全部采样
+    private void redraw(EarningsHistory history) {
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        if (image == null || imageWidth != width || imageHeight != height) {
+            if (canvas != null) {
+                canvas.dispose();
+            }
+            image = UIUtil.createImage(this, width, height, BufferedImage.TYPE_INT_ARGB);
+            imageWidth = width;
+            imageHeight = height;
+            canvas = image.createGraphics();
+            canvas.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+        Graphics2D g = canvas;
+        g.setColor(getBackground() != null ? getBackground() : UIUtil.getPanelBackground());
+        g.fillRect(0, 0, width, height);
+        drawnRevision = history.getRevision();
+        drawnSequence = history.getToday().getSequence();
+        lastX = -1;
+
+        WorkDay day = history.getDay();
+        if (day == null) {
+            return;
+        }
+        WorkSchedule schedule = day.getSchedule();
+        WorkSchedule yesterday = history.getYesterday();
+        computeRange(day, yesterday, history);
+
+        // 网格和坐标标签
+        MoneyFormat format = schedule.getMoneyFormat();
+        g.setFont(JBUI.Fonts.miniFont());
+        FontMetrics metrics = g.getFontMetrics();
+        g.setStroke(GRID);
+        for (int i = 0; i <= GRID_LINES; i++) {
+            int y = yOf(maxMicros * i / GRID_LINES);
+            g.setColor(GRID_COLOR);
+            g.drawLine(0, y, width, y);
+        }
+        g.setColor(UIUtil.getContextHelpForeground());
+        g.drawString(format.format(maxMicros), 2, metrics.getAscent());
+        g.drawString(WorkSchedule.formatTime(fromSecond), 2, height - 2);
+        String end = WorkSchedule.formatTime(toSecond);
+        g.drawString(end, width - metrics.stringWidth(end) - 2, height - 2);
+        drawLegend(g, metrics, width);
+
+        // 本月日均线
+        long average = history.getMonthAverageMicros();
+        if (average > 0) {
+            g.setColor(AVERAGE_COLOR);
+            g.setStroke(DASHED);
+            int y = yOf(average);
+            g.drawLine(0, y, width, y);
+        }
+
+        // 昨日曲线, 有账本记录时不超过昨天的实际收入
+        if (yesterday != null && !yesterday.isRestDay()) {
+            long cap = history.getYesterdayEarnedMicros();
+            g.setColor(YESTERDAY_COLOR);
+            g.setStroke(LINE);
+            int previousY = -1;
+            for (int x = 0; x < width; x++) {
+                long value = yesterday.earnedMicros(secondOf(x));
+                int y = yOf(cap >= 0 ? Math.min(value, cap) : value);
+                if (previousY >= 0) {
+                    g.drawLine(x - 1, previousY, x, y);
+                }
+                previousY = y;
+            }
+        }
+
+        // 今日已有的采样
+        SampleRing samples = history.getToday();
+        g.setColor(TODAY_COLOR);
+        g.setStroke(LINE);
+        for (int i = 0; i < samples.size(); i++) {
+            drawSample(g, samples.secondAt(i), samples.valueAt(i));
+        }
+    }
+
+    private void computeRange(WorkDay day, WorkSchedule yesterday, EarningsHistory history) {
+        WorkSchedule schedule = day.getSchedule();
+        int from = Integer.MAX_VALUE;
+        int to = Integer.MIN_VALUE;
+        long max = 1;
+        if (!schedule.isRestDay()) {
+            from = schedule.getShiftStart();
+            to = schedule.getShiftEnd();
+            max = schedule.earnedMicros(to);
+        }
+        SampleRing samples = history.getToday();
+        int last = samples.size() - 1;
+        if (last >= 0 && samples.valueAt(last) > schedule.earnedMicros(schedule.getShiftEnd())) {
+            // 加班时曲线超过日薪, 时间轴延伸到现在; 休息日加班从第一笔收入开始
+            int first = 0;
+            while (samples.valueAt(first) == 0) {
+                first++;
+            }
+            from = Math.min(from, samples.secondAt(Math.max(first - 1, 0)));
+            to = Math.max(to, samples.secondAt(last));
+            max = Math.max(max, samples.valueAt(last));
+        }
+        if (yesterday != null && !yesterday.isRestDay()) {
+            from = Math.min(from, yesterday.getShiftStart());
+            to = Math.max(to, yesterday.getShiftEnd());
+            max = Math.max(max, yesterday.earnedMicros(yesterday.getShiftEnd()));
+        }
+        if (from > to) {
+            // 今天和昨天都休息
+            from = 9 * 3600;
+            to = 18 * 3600;
+        }
+        fromSecond = Math.max(from - MARGIN_SECONDS, 0);
+        toSecond = to + MARGIN_SECONDS;
+        // 留出到右边界为止可能增加的加班费, 避免加班时每个节拍都整体重绘
+        rangeEndMicros = day.getCurve().earnedMicros(toSecond);
+        max = Math.max(max, rangeEndMicros);
+        max = Math.max(max, history.getMonthAverageMicros());
+        maxMicros = max + max / 10;
+    }
+
+    private void drawLegend(Graphics2D g, FontMetrics metrics, int width) {
+        String[] labels = {"今日", "昨日", "本月日均"};
+        Color[] colors = {TODAY_COLOR, YESTERDAY_COLOR, AVERAGE_COLOR};
+        int x = width - 4;
+        int y = metrics.getAscent();
+        for (int i = labels.length - 1; i >= 0; i--) {
+            x -= metrics.stringWidth(labels[i]);
+            g.setColor(colors[i]);
+            g.drawString(labels[i], x, y);
+            x -= 8;
+        }
+    }
+
+    // 把上次绘制之后的新采样接到图像上, 需要整体重绘时返回 false
+    private boolean appendSamples(EarningsHistory history) {
+        SampleRing samples = history.getToday();
+        long added = samples.getSequence() - drawnSequence;
+        if (added <= 0) {
+            return true;
+        }
+        if (added > samples.size()) {
+            return false;
+        }
+        Graphics2D g = canvas;
+        g.setColor(TODAY_COLOR);
+        g.setStroke(LINE);
+        for (int i = samples.size() - (int) added; i < samples.size(); i++) {
+            long value = samples.valueAt(i);
+            if (value > maxMicros || samples.secondAt(i) > toSecond && value > rangeEndMicros) {
+                // 超出坐标范围 (加班到右边界之外), 换一个比例整体重绘
+                return false;
+            }
+            drawSample(g, samples.secondAt(i), value);
+        }
+        drawnSequence = samples.getSequence();
+        return true;
+    }
+
+    private void drawSample(Graphics2D g, int second, long value) {
+        if (second < fromSecond || second > toSecond) {
+            return;
+        }
+        int x = xOf(second);
+        int y = yOf(value);
+        if (x == lastX && y == lastY) {
+            return;
+        }
+        if (lastX >= 0) {
+            g.drawLine(lastX, lastY, x, y);
+        }
+        dirtyFrom = Math.min(dirtyFrom, Math.min(lastX < 0 ? x : lastX, x));
+        dirtyTo = Math.max(dirtyTo, x);
+        lastX = x;
+        lastY = y;
+    }
+
+    private int xOf(int second) {
+        return (int) ((long) (second - fromSecond) * (imageWidth - 1) / Math.max(toSecond - fromSecond, 1));
+    }
+
+    private int secondOf(int x) {
+        return fromSecond + (int) ((long) x * (toSecond - fromSecond) / Math.max(imageWidth - 1, 1));
+    }
+
+    private int yOf(long micros) {
+        int height = imageHeight;
+        // 上下各留出一行文字的空间
+        int top = JBUI.scale(14);
+        int bottom = height - JBUI.scale(14);
+        return bottom - (int) ((bottom - top) * (double) micros / Math.max(maxMicros, 1));
+    }
+}
@@ -1,25 +1,74 @@
 package icu.spider007;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.Balloon;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.*;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.util.Consumer;
+import icu.spider007.config.ConfigSnapshot;
 import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.StatusText;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.calendar.WorkCalendar;
+import icu.spider007.core.forecast.ForecastTable;
+import icu.spider007.core.metrics.AllocationCounter;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.overtime.PayCurve;
+import icu.spider007.core.shared.SharedStateFile;
+import icu.spider007.service.ActivityTracker;
+import icu.spider007.service.EarningsForecast;
+import icu.spider007.service.PluginClock;
+import icu.spider007.service.PluginMetrics;
+import icu.spider007.service.ProjectCosts;
+import icu.spider007.service.SalaryEngine;
+import icu.spider007.service.SalaryTickListener;
+import icu.spider007.service.SharedEarnings;
+import icu.spider007.service.TickService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.time.Duration;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.math.BigDecimal;
 
+/**
+ * 状态栏收入显示
+ * <p>
+ * 文本只在节拍和帧回调里生成, 缓存时记下配置版本号, 文本真正变化时才请求状态栏更新;
+ * 状态栏布局和重绘调用 {@link #getText()} 时只返回缓存. 详情弹框的内容同样按节拍缓存.
+ * 每个项目窗口各有一个实例, 全局收入之后附上本项目今日和本周的收入 (见 {@link ProjectCosts}).
+ * 状态栏、节拍和帧回调都在 EDT 上调用, 字段不加锁
+ */
 public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
-    private final SalaryCalculatorConfig config = SalaryCalculatorConfig.getInstance();
-    private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+    private final Project project;
+    private StatusBar statusBar;
+    // 当前显示的文本, 以及生成它时的配置版本号
+    private String text;
+    private long textVersion = -1;
+    // 节拍序号, 详情弹框缓存用它判断是否过期
+    private long tickCount;
+    private String details;
+    private long detailsTick = -1;
+    private long detailsVersion = -1;
+    // 最近一次节拍解析出的排班日
+    private WorkDay day;
+    // 节拍和帧回调共用的文本格式, 帧回调中金额不变时不分配对象
+    private final StatusText status = new StatusText();
+    // 本项目收入部分的文本, 按节拍生成
+    private String projectText = "";
+    // 帧回调是否刷新文本, 按节拍决定: 活跃时间模式或显示其他 IDE 发布的收入时不逐帧刷新
+    private boolean framed;
+
+    public EarningsStatusWidget(@NotNull Project project) {
+        this.project = project;
+    }
 
     // 唯一标识符
     @NotNull
@@ -30,12 +79,39 @@ public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.Te
 
     @Override
     public void install(@NotNull StatusBar statusBar) {
-        // 不需要特殊安装逻辑
+        this.statusBar = statusBar;
+        // 订阅全局节拍, 连接随 widget 释放
+        TickService.getInstance().addFrameListener(this::updateOdometer, this);
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SalaryTickListener.TOPIC, this::tick);
+    }
+
+    private void tick() {
+        tickCount++;
+        long version = SalaryEngine.getInstance().getVersion();
+        day = SalaryEngine.getInstance().today();
+        show(render(), version);
+    }
+
+    // 实时跳动模式的帧回调, 金额没有变化时既不生成文本也不触发状态栏更新
+    private void updateOdometer(long millisOfDay) {
+        if (framed && status.frame(millisOfDay)) {
+            show(status.getText(), textVersion);
+        }
+    }
+
+    // 显示的字符串真正变化时才请求状态栏更新
+    private void show(String rendered, long version) {
+        textVersion = version;
+        if (!rendered.equals(text)) {
+            text = rendered;
+            statusBar.updateWidget(ID());
+        }
     }
 
     @Override
     public void dispose() {
-        // 不需要特殊清理逻辑
+        // 节拍订阅由 MessageBusConnection 随 widget 一起释放
     }
 
     @NotNull
@@ -44,38 +120,84 @@ public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.Te
         return this;
     }
 
-    // 状态栏显示的文本
+    // 状态栏显示的文本, 只在第一次节拍之前或配置版本变化后重新生成
     @NotNull
     @Override
     public String getText() {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
         try {
-            double monthlySalary = Double.parseDouble(config.getState().monthlySalary);
-            int workDays = Integer.parseInt(config.getState().monthlyWorkDays);
-            double dailySalary = monthlySalary / workDays;
-
-            // 计算当日收入比例
-            LocalTime startTime = LocalTime.parse(config.getState().startTime, timeFormatter);
-            LocalTime endTime = LocalTime.parse(config.getState().endTime, timeFormatter);
-            LocalTime now = LocalTime.now();
-
-            double progress = calculateWorkProgress(startTime, endTime, now);
-            double todayEarnings = dailySalary * progress;
+            long version = SalaryEngine.getInstance().getVersion();
+            if (text == null || textVersion != version) {
+                day = SalaryEngine.getInstance().today();
+                text = render();
+                textVersion = version;
+            }
+            return text;
+        } finally {
+            PluginMetrics.getInstance().record(PluginMetrics.Probe.GET_TEXT, start, allocated);
+        }
+    }
 
-            return String.format("今日: ¥%.2f", todayEarnings);
-        } catch (Exception e) {
+    // 按最近一次解析的排班日生成文本; 其他 IDE 在计算时直接使用它发布的值
+    private String render() {
+        framed = false;
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        SharedStateFile.Snapshot leader = SharedEarnings.getInstance().getLeaderSnapshot();
+        if (leader != null) {
+            return sharedText(config, leader);
+        }
+        WorkDay day = this.day;
+        if (day == null) {
             return "薪资: 未配置";
         }
+        WorkSchedule schedule = day.getSchedule();
+        MoneyFormat format = schedule.getMoneyFormat();
+        projectText = projectText(config, format);
+        if (config.isActiveTimeMode() && !schedule.isRestDay()) {
+            // 活跃时间模式按节拍聚合, 不参与逐帧刷新
+            long activeEarnings = ActivityTracker.getInstance().getActiveEarnedMicros(schedule);
+            return "今日(活跃): " + format.format(activeEarnings) + projectText;
+        }
+        status.reset(day, holidayName(config.getRoster(), day), projectText);
+        status.frame(PluginClock.getInstance().millisOfDay());
+        framed = true;
+        return status.getText();
     }
 
-    // 计算工作进度 (0.0 - 1.0)
-    private double calculateWorkProgress(LocalTime start, LocalTime end, LocalTime now) {
-        if (now.isBefore(start)) return 0.0;
-        if (now.isAfter(end)) return 1.0;
+    // 与领导者的状态栏文本一致, 本项目部分仍按本 IDE 的记录
+    private String sharedText(ConfigSnapshot config, SharedStateFile.Snapshot leader) {
+        long now = System.currentTimeMillis();
+        MoneyFormat format = MoneyFormat.of(SharedEarnings.currencyOf(leader));
+        projectText = projectText(config, format);
+        return StatusText.format(format, (leader.getValue(SharedEarnings.FLAGS) & SharedEarnings.FLAG_REST_DAY) != 0,
+                null, SharedEarnings.earnedMicros(leader, now), SharedEarnings.overtimeMicros(leader, now), projectText);
+    }
+
+    // 本项目今日/本周的收入, 账本按薪资货币记录, 换算成显示货币; 还没读取到历史记录时为空
+    private String projectText(ConfigSnapshot config, MoneyFormat format) {
+        ProjectCosts costs = ProjectCosts.getInstance();
+        long today = costs.getTodayMicros(project);
+        long week = costs.getWeekMicros(project);
+        if (today < 0 || week < 0) {
+            return "";
+        }
+        return " | 本项目 " + format.format(config.toDisplayMicros(today))
+                + " / 本周 " + format.format(config.toDisplayMicros(week));
+    }
 
-        long totalMinutes = Duration.between(start, end).toMinutes();
-        long passedMinutes = Duration.between(start, now).toMinutes();
+    // 加班倍数, 如 1.5
+    private static String multiplier(@Nullable WorkRoster roster, PayCurve curve) {
+        OvertimeRules rules = roster == null ? null : roster.getOvertime();
+        int permille = rules == null ? 0 : rules.getMultiplierPermille(curve.getType());
+        return BigDecimal.valueOf(permille, 3).stripTrailingZeros().toPlainString();
+    }
 
-        return (double) passedMinutes / totalMinutes;
+    // 节假日名称, 没有日历或不是节假日时返回 null
+    @Nullable
+    private static String holidayName(@Nullable WorkRoster roster, WorkDay day) {
+        WorkCalendar calendar = roster == null ? null : roster.getCalendar();
+        return calendar == null ? null : calendar.holidayName(day.getDate());
     }
 
     // 文本对齐方式
@@ -102,31 +224,8 @@ public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.Te
 
     // 显示详细信息的弹出框
     private void showDetailsPopup(JComponent component) {
-        try {
-            double monthlySalary = Double.parseDouble(config.getState().monthlySalary);
-            int workDays = Integer.parseInt(config.getState().monthlyWorkDays);
-            double dailySalary = monthlySalary / workDays;
-
-            LocalTime startTime = LocalTime.parse(config.getState().startTime, timeFormatter);
-            LocalTime endTime = LocalTime.parse(config.getState().endTime, timeFormatter);
-            LocalTime now = LocalTime.now();
-            double progress = calculateWorkProgress(startTime, endTime, now);
-
-            String details = String.format(
-                "<html><div style='padding:5px;width:200px;'>" +
-                "<b>薪资详情</b><br>" +
-                "月薪: ¥%.2f<br>" +
-                "工作天数: %d天<br>" +
-                "日薪: ¥%.2f<br>" +
-                "今日进度: %.1f%%<br>" +
-                "已赚: ¥%.2f<br>" +
-                "下班时间: %s" +
-                "</div></html>",
-                monthlySalary, workDays, dailySalary,
-                progress * 100, dailySalary * progress,
-                config.getState().endTime
-            );
-
+        String details = detailsSnapshot();
+        if (details != null) {
             JBPopupFactory.getInstance()
                 .createHtmlTextBalloonBuilder(details, null,
                         new Color(240, 248, 255), null)
@@ -134,7 +233,7 @@ public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.Te
                 .createBalloon()
                 .show(RelativePoint.getNorthWestOf(component), Balloon.Position.atRight);
 
-        } catch (Exception e) {
+        } else {
             JBPopupFactory.getInstance()
                 .createHtmlTextBalloonBuilder("薪资配置错误", null,
                         new Color(255, 200, 200), null)
@@ -143,12 +242,87 @@ public class EarningsStatusWidget implements StatusBarWidget, StatusBarWidget.Te
         }
     }
 
+    // 详情弹框的内容, 同一节拍和配置版本内直接复用, 配置错误时返回 null
+    @Nullable
+    private String detailsSnapshot() {
+        long version = SalaryEngine.getInstance().getVersion();
+        if (detailsTick == tickCount && detailsVersion == version) {
+            return details;
+        }
+        detailsTick = tickCount;
+        detailsVersion = version;
+        details = null;
+        WorkDay day = SalaryEngine.getInstance().today();
+        if (day == null) {
+            return null;
+        }
+        WorkSchedule schedule = day.getSchedule();
+        PayCurve curve = day.getCurve();
+        int now = day.secondOf(PluginClock.getInstance().time());
+        MoneyFormat format = schedule.getMoneyFormat();
+        double progress = schedule.progress(now);
+        ActivityTracker activity = ActivityTracker.getInstance();
+        long activeMinutes = activity.getActiveWorkedMillis() / 60_000;
+        WorkRoster roster = SalaryEngine.getInstance().getRoster();
+        WorkCalendar calendar = roster == null ? null : roster.getCalendar();
+        String workdays = calendar == null ? "" : String.format("本月工作日: %d天 (剩余%d天)<br>",
+                calendar.workdaysInMonth(day.getDate()), calendar.workdaysRemaining(day.getDate()));
+        int overtimeMinutes = curve.creditedOvertimeSeconds(now) / 60;
+        String overtime = curve.getOvertimeMicrosPerHour() == 0 ? "" : String.format(
+                "加班: %s (%d小时%d分钟, %s倍, 时薪 %s)<br>",
+                format.format(curve.overtimeMicrosAt(now)), overtimeMinutes / 60, overtimeMinutes % 60,
+                multiplier(roster, curve), format.format(curve.getOvertimeMicrosPerHour()));
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        long projectToday = ProjectCosts.getInstance().getTodayMicros(project);
+        long projectWeek = ProjectCosts.getInstance().getWeekMicros(project);
+        String projectLine = projectToday < 0 || projectWeek < 0 ? "" : String.format(
+                "本项目 (%s): 今日 %s, 本周 %s<br>", StringUtil.escapeXmlEntities(project.getName()),
+                format.format(config.toDisplayMicros(projectToday)), format.format(config.toDisplayMicros(projectWeek)));
+        ForecastTable forecast = EarningsForecast.getInstance().getTable();
+        String forecastLine = forecast == null ? "" : String.format(
+                "本月: %s (预计 %s)<br>今年: %s (预计 %s)<br>距发薪日: %d天 (%s)<br>",
+                format.format(config.toDisplayMicros(forecast.getMonthToDate())),
+                format.format(config.toDisplayMicros(forecast.getMonthProjected())),
+                format.format(config.toDisplayMicros(forecast.getYearToDate())),
+                format.format(config.toDisplayMicros(forecast.getYearProjected())),
+                forecast.getDaysUntilPayday(), forecast.getNextPayday());
+
+        SharedStateFile.Snapshot leader = SharedEarnings.getInstance().getLeaderSnapshot();
+        String sharedLine = leader == null ? "" : String.format("状态栏数据来自另一个 IDE (进程 %d)<br>",
+                leader.getLeaderPid());
+
+        details = String.format(
+            "<html><div style='padding:5px;width:200px;'>" +
+            "<b>薪资详情</b><br>" +
+            "月薪: %s<br>" +
+            "工作天数: %d天<br>" +
+            "日薪: %s<br>" +
+            "%s" +
+            "今日进度: %.1f%%<br>" +
+            "已赚: %s<br>" +
+            "%s" +
+            "活跃收入: %s (%d小时%d分钟)<br>" +
+            "%s" +
+            "%s" +
+            "%s" +
+            "下班时间: %s" +
+            "</div></html>",
+            format.format(schedule.getMonthlySalaryMicros()), schedule.getMonthlyWorkDays(),
+            format.format(schedule.getDailySalaryMicros()), workdays,
+            progress * 100, format.format(curve.earnedMicros(now)), overtime,
+            format.format(activity.getActiveEarnedMicros(schedule)), activeMinutes / 60, activeMinutes % 60,
+            projectLine, forecastLine, sharedLine,
+            schedule.isRestDay() ? "今日休息" : WorkSchedule.formatTime(schedule.getShiftEnd())
+        );
+        return details;
+    }
+
     // 提供者类
     public static class Provider implements StatusBarWidgetProvider {
         @Nullable
         @Override
         public StatusBarWidget getWidget(@NotNull Project project) {
-            return new EarningsStatusWidget();
+            return new EarningsStatusWidget(project);
         }
     }
 }
@@ -0,0 +1,55 @@
+package icu.spider007;
+
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import icu.spider007.core.OdometerText;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * 实时跳动模式的金额显示组件
+ * <p>
+ * 直接从 {@link OdometerText} 的 char 缓冲区绘制, 数值不变时不重绘, 更新路径不创建字符串
+ */
+public class OdometerLabel extends JComponent {
+    private final OdometerText text;
+
+    public OdometerLabel(int fractionDigits) {
+        this.text = new OdometerText(fractionDigits);
+        setFont(JBUI.Fonts.label(18).asBold());
+        setForeground(new Color(0, 128, 0));
+    }
+
+    public void setPrefix(String prefix) {
+        text.setPrefix(prefix);
+    }
+
+    /**
+     * 更新金额 (10^-fractionDigits 为单位), 只有显示内容变化时才重绘
+     */
+    public void setValue(long scaledValue) {
+        if (text.set(scaledValue)) {
+            repaint();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        FontMetrics metrics = getFontMetrics(getFont());
+        Insets insets = getInsets();
+        // 预留足够宽度, 避免数字位数变化时布局抖动
+        return new Dimension(metrics.charWidth('0') * 20 + insets.left + insets.right,
+                metrics.getHeight() + insets.top + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        UIUtil.applyRenderingHints(g);
+        g.setFont(getFont());
+        g.setColor(getForeground());
+        FontMetrics metrics = g.getFontMetrics();
+        Insets insets = getInsets();
+        g.drawChars(text.chars(), 0, text.length(), insets.left, insets.top + metrics.getAscent());
+    }
+}
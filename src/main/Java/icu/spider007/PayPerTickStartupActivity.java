@@ -0,0 +1,21 @@
+package icu.spider007;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import icu.spider007.service.ActivityTracker;
+import icu.spider007.service.EarningsLedger;
+import icu.spider007.service.TickService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 项目打开后确保应用级服务已启动, 即使状态栏和工具窗口都没有显示
+ */
+public class PayPerTickStartupActivity implements StartupActivity, DumbAware {
+    @Override
+    public void runActivity(@NotNull Project project) {
+        TickService.getInstance();
+        EarningsLedger.getInstance();
+        ActivityTracker.getInstance();
+    }
+}
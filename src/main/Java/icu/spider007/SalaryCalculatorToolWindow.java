@@ -1,23 +1,59 @@
 package icu.spider007;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBTextField;
+import com.intellij.util.Alarm;
+import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.FormBuilder;
+import icu.spider007.config.ConfigListener;
+import icu.spider007.config.ConfigSnapshot;
 import icu.spider007.config.SalaryCalculatorConfig;
-import java.awt.Color;
-import java.awt.Font;
+import icu.spider007.core.CountdownMessages;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.PayCurrency;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.calendar.WorkCalendar;
+import icu.spider007.core.forecast.ForecastTable;
+import icu.spider007.core.message.MessageCatalog;
+import icu.spider007.core.metrics.AllocationCounter;
+import icu.spider007.core.overtime.PayCurve;
+import icu.spider007.service.EarningsForecast;
+import icu.spider007.service.ExchangeRates;
+import icu.spider007.service.PluginClock;
+import icu.spider007.service.PluginMetrics;
+import icu.spider007.service.SalaryEngine;
+import icu.spider007.service.SalaryTickListener;
+import icu.spider007.service.TickService;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import javax.swing.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
-import java.text.DecimalFormat;
-import java.time.Duration;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import javax.swing.event.DocumentEvent;
+import java.util.Map;
 import java.util.Random;
 import com.intellij.icons.AllIcons;
-public class SalaryCalculatorToolWindow {
+import org.jetbrains.annotations.NotNull;
+public class SalaryCalculatorToolWindow implements Disposable {
+    // 连续输入合并的等待时间
+    private static final int EDIT_DEBOUNCE_MILLIS = 300;
+    private static final String ROSTER_HELP = "<html>每条规则: 星期 时段列表, 多条用分号分隔<br>"
+            + "结束早于开始表示跨零点的夜班, 以 ! 开头的时段是休息<br>"
+            + "填写后按排班计算, 没有列出的星期为休息日</html>";
+    private static final String SAME_CURRENCY = "同薪资货币";
+    private static final String OVERTIME_HELP = "<html>工作日下班后、休息日和法定节假日的加班倍数, 以及开始时间、每日上限和计薪单位 (分钟)<br>"
+            + "例: weekday 1.5; weekend 2; holiday 3; after 30; cap 4h; round 30<br>"
+            + "休息日只在标准工作时段内计加班</html>";
+
     private JPanel mainPanel;
     private JBTextField monthlySalaryField = new JBTextField();
     private JBTextField monthlyWorkDaysField = new JBTextField();
@@ -27,18 +63,58 @@ public class SalaryCalculatorToolWindow {
     private JBTextField afternoonStartField = new JBTextField();
     private JBTextField lunchStartField = new JBTextField();
     private JBTextField lunchEndField = new JBTextField();
+    private JBTextField rosterField = new JBTextField();
     private JBLabel resultLabel = new JBLabel("每日工资: 0.00元");
     private JBLabel todayEarningsLabel = new JBLabel("今日已赚: 0.00元");
     private JBLabel workingHoursLabel = new JBLabel("有效工作时间: 0小时0分钟");
     private JBLabel timeLeftLabel = new JBLabel("距离下班: --");
     private ComboBox<String> currencyComboBox = new ComboBox<>(new String[]{"人民币", "美元", "欧元", "日元"});
+    private ComboBox<String> displayCurrencyComboBox =
+            new ComboBox<>(new String[]{SAME_CURRENCY, "人民币", "美元", "欧元", "日元"});
+    private JBLabel conversionLabel = new JBLabel();
+    private final JBTextField[] formFields = {
+            monthlySalaryField, monthlyWorkDaysField,
+            startTimeField, morningEndField,
+            afternoonStartField, endTimeField,
+            lunchStartField, lunchEndField,
+            rosterField
+    };
+    private JBLabel validationLabel = new JBLabel();
+    private JBCheckBox useCalendarCheckBox = new JBCheckBox("节假日休息、调休上班");
+    private JBCheckBox autoWorkDaysCheckBox = new JBCheckBox("按日历自动计算每月工作天数");
+    private JBTextField holidayFileField = new JBTextField();
+    private JBLabel workdaysLabel = new JBLabel();
+    private JBCheckBox overtimePayCheckBox = new JBCheckBox("加班计薪");
+    private JBTextField overtimeRulesField = new JBTextField();
+    private JBLabel overtimeLabel = new JBLabel();
+    private JSpinner paydaySpinner = new JSpinner(new SpinnerNumberModel(10, 1, 31, 1));
+    private JBLabel forecastLabel = new JBLabel();
+    private JBCheckBox liveOdometerCheckBox = new JBCheckBox("实时跳动");
+    private JBCheckBox activeTimeModeCheckBox = new JBCheckBox("按活跃时间计算 (状态栏)");
+    private JBCheckBox fileCostsCheckBox = new JBCheckBox("按文件统计编码收入");
+    private JBCheckBox fileCostsByDeclarationCheckBox = new JBCheckBox("细分到顶层声明");
+    private JBCheckBox sharedEarningsCheckBox = new JBCheckBox("多个 IDE 共享今日收入 (由其中一个计算)");
+    private OdometerLabel odometerLabel = new OdometerLabel(4);
+    private EarningsChart earningsChart = new EarningsChart();
 
-    private Timer refreshTimer;
-    private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
     private final Random random = new Random();
+    // 提示文案和样式, 自定义文案文件修改后在配置变化或重新打开窗口时生效
+    private MessageCatalog catalog;
+    private CountdownMessages countdownMessages;
+    private TipStyles styles;
+    // 倒计时标签当前的样式, 相同时不重复设置字体和颜色
+    private TipStyles.Style appliedStyle;
+    private final StringBuilder tipText = new StringBuilder(160);
+    private final Alarm editAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    private long editSequence;
+    private ScheduleForm committedForm;
+    // 最近一次节拍解析出的排班日, 帧回调直接使用
+    private WorkDay frameDay;
+    private volatile boolean disposed;
 
     public SalaryCalculatorToolWindow() {
         // 初始化UI和监听器
+        loadMessages();
         initializeComponents();
         setupListeners();
         startAutoRefresh();
@@ -51,49 +127,241 @@ public class SalaryCalculatorToolWindow {
 
     private void initializeComponents() {
         // 加载保存的设置
-        SalaryCalculatorConfig.State config = SalaryCalculatorConfig.getInstance().getState();
-
-        monthlySalaryField.setText(config.monthlySalary);
-        monthlyWorkDaysField.setText(config.monthlyWorkDays);
-        startTimeField.setText(config.startTime);
-        endTimeField.setText(config.endTime);
-        morningEndField.setText(config.morningEndTime);
-        afternoonStartField.setText(config.afternoonStartTime);
-        lunchStartField.setText(config.lunchStart);
-        lunchEndField.setText(config.lunchEnd);
-        currencyComboBox.setSelectedItem(config.currency);
+        loadFields(SalaryCalculatorConfig.getInstance().getSnapshot());
+        rosterField.getEmptyText().setText("可选, 例: MON-FRI 09:00-12:00,13:30-18:00; SAT 22:00-06:00");
+        rosterField.setToolTipText(ROSTER_HELP);
+        holidayFileField.getEmptyText().setText("留空使用内置的中国节假日");
+        overtimeRulesField.getEmptyText().setText("例: weekday 1.5; weekend 2; holiday 3");
+        validationLabel.setForeground(JBColor.RED);
+        validationLabel.setVisible(false);
+    }
+
+    // 用配置快照填充表单, 与当前输入一致的字段保持不动
+    private void loadFields(ConfigSnapshot config) {
+        liveOdometerCheckBox.setSelected(config.isLiveOdometer());
+        odometerLabel.setVisible(config.isLiveOdometer());
+        activeTimeModeCheckBox.setSelected(config.isActiveTimeMode());
+        fileCostsCheckBox.setSelected(config.isFileCosts());
+        fileCostsByDeclarationCheckBox.setSelected(config.isFileCostsByDeclaration());
+        fileCostsByDeclarationCheckBox.setEnabled(config.isFileCosts());
+        sharedEarningsCheckBox.setSelected(config.isSharedEarnings());
+        loadCalendarSettings(config);
+        loadOvertimeSettings(config);
+        loadCurrencySettings(config);
+        if ((Integer) paydaySpinner.getValue() != config.getPayday()) {
+            paydaySpinner.setValue(config.getPayday());
+        }
+        ScheduleForm form = config.getScheduleForm();
+        if (form.equals(committedForm)) {
+            // 本窗口自己提交的修改, 不覆盖之后继续输入的内容
+            return;
+        }
+        for (ScheduleForm.Field field : ScheduleForm.Field.values()) {
+            JBTextField component = formFields[field.ordinal()];
+            if (!form.get(field).equals(component.getText())) {
+                component.setText(form.get(field));
+            }
+        }
+        if (!form.getCurrency().equals(currencyComboBox.getSelectedItem())) {
+            currencyComboBox.setSelectedItem(form.getCurrency());
+        }
+    }
+
+    // 显示货币和日薪折合, 只在配置或汇率变化时更新
+    private void loadCurrencySettings(ConfigSnapshot config) {
+        String display = config.getDisplayCurrencySetting().isEmpty() ? SAME_CURRENCY : config.getDisplayCurrencySetting();
+        if (!display.equals(displayCurrencyComboBox.getSelectedItem())) {
+            displayCurrencyComboBox.setSelectedItem(display);
+        }
+        StringBuilder text = new StringBuilder("日薪折合: ");
+        int shown = 0;
+        for (PayCurrency currency : PayCurrency.values()) {
+            long micros = config.getDailySalaryMicros(currency);
+            if (micros < 0) {
+                continue;
+            }
+            if (shown++ > 0) {
+                text.append(" | ");
+            }
+            text.append(MoneyFormat.of(currency).format(micros)).append(' ').append(currency.name());
+        }
+        conversionLabel.setVisible(shown > 1);
+        conversionLabel.setText(text.toString());
+        ScheduleException rateError = config.getRateError();
+        String sourceError = ExchangeRates.getInstance().getError();
+        conversionLabel.setForeground(rateError != null || sourceError != null ? JBColor.RED : null);
+        conversionLabel.setToolTipText(rateError != null ? rateError.getMessage()
+                : sourceError != null ? sourceError : "汇率来源: " + config.getRates().getSource());
+    }
+
+    private void loadCalendarSettings(ConfigSnapshot config) {
+        useCalendarCheckBox.setSelected(config.isUseCalendar());
+        autoWorkDaysCheckBox.setSelected(config.isAutoWorkDays());
+        autoWorkDaysCheckBox.setEnabled(config.isUseCalendar());
+        holidayFileField.setEnabled(config.isUseCalendar());
+        monthlyWorkDaysField.setEnabled(!config.isUseCalendar() || !config.isAutoWorkDays());
+        if (!holidayFileField.hasFocus() && !config.getHolidayFile().equals(holidayFileField.getText().trim())) {
+            holidayFileField.setText(config.getHolidayFile());
+        }
+        ScheduleException error = config.getCalendarError();
+        holidayFileField.putClientProperty("JComponent.outline", error == null ? null : "error");
+        holidayFileField.setToolTipText(error == null ? "每行: 日期或日期范围 holiday/off/work [名称]" : error.getMessage());
+        holidayFileField.repaint();
+    }
+
+    private void loadOvertimeSettings(ConfigSnapshot config) {
+        overtimePayCheckBox.setSelected(config.isOvertimePay());
+        overtimeRulesField.setEnabled(config.isOvertimePay());
+        if (!overtimeRulesField.hasFocus() && !config.getOvertimeRules().equals(overtimeRulesField.getText().trim())) {
+            overtimeRulesField.setText(config.getOvertimeRules());
+        }
+        ScheduleException error = config.getOvertimeError();
+        overtimeRulesField.putClientProperty("JComponent.outline", error == null ? null : "error");
+        overtimeRulesField.setToolTipText(error == null ? OVERTIME_HELP : error.getMessage());
+        overtimeRulesField.repaint();
+    }
+
+    // 加班规则有误时由配置快照忽略, 不影响正常工资
+    private void applyOvertimeSettings() {
+        SalaryCalculatorConfig.getInstance().setOvertime(overtimePayCheckBox.isSelected(),
+                overtimeRulesField.getText().trim());
+    }
+
+    private void applyFileCostSettings() {
+        fileCostsByDeclarationCheckBox.setEnabled(fileCostsCheckBox.isSelected());
+        SalaryCalculatorConfig.getInstance().setFileCosts(fileCostsCheckBox.isSelected(),
+                fileCostsByDeclarationCheckBox.isSelected());
+    }
+
+    // 日历设置不经过表单校验, 文件错误时由配置快照退回内置节假日
+    private void applyCalendarSettings() {
+        SalaryCalculatorConfig.getInstance().setCalendar(useCalendarCheckBox.isSelected(),
+                autoWorkDaysCheckBox.isSelected(), holidayFileField.getText().trim());
     }
 
     private void setupListeners() {
-        KeyAdapter calculationAdapter = new KeyAdapter() {
+        // 文本变化只记录一次输入快照, 连续输入合并成一次校验
+        DocumentAdapter editListener = new DocumentAdapter() {
             @Override
-            public void keyReleased(KeyEvent e) {
-                calculateSalary();
-                saveSettings();
+            protected void textChanged(@NotNull DocumentEvent e) {
+                scheduleValidation();
             }
         };
+        for (JBTextField field : formFields) {
+            field.getDocument().addDocumentListener(editListener);
+        }
+        currencyComboBox.addActionListener(e -> scheduleValidation());
+        displayCurrencyComboBox.addActionListener(e -> {
+            Object selected = displayCurrencyComboBox.getSelectedItem();
+            SalaryCalculatorConfig.getInstance().setDisplayCurrency(SAME_CURRENCY.equals(selected) ? "" : (String) selected);
+        });
 
-        monthlySalaryField.addKeyListener(calculationAdapter);
-        monthlyWorkDaysField.addKeyListener(calculationAdapter);
-        startTimeField.addKeyListener(calculationAdapter);
-        endTimeField.addKeyListener(calculationAdapter);
-        morningEndField.addKeyListener(calculationAdapter);
-        afternoonStartField.addKeyListener(calculationAdapter);
-        lunchStartField.addKeyListener(calculationAdapter);
-        lunchEndField.addKeyListener(calculationAdapter);
-
-        currencyComboBox.addActionListener(e -> {
-            calculateSalary();
-            saveSettings();
+        liveOdometerCheckBox.addActionListener(e -> {
+            odometerLabel.setVisible(liveOdometerCheckBox.isSelected());
+            SalaryCalculatorConfig.getInstance().setLiveOdometer(liveOdometerCheckBox.isSelected());
+        });
+        activeTimeModeCheckBox.addActionListener(e ->
+                SalaryCalculatorConfig.getInstance().setActiveTimeMode(activeTimeModeCheckBox.isSelected()));
+        fileCostsCheckBox.addActionListener(e -> applyFileCostSettings());
+        fileCostsByDeclarationCheckBox.addActionListener(e -> applyFileCostSettings());
+        sharedEarningsCheckBox.addActionListener(e ->
+                SalaryCalculatorConfig.getInstance().setSharedEarnings(sharedEarningsCheckBox.isSelected()));
+        useCalendarCheckBox.addActionListener(e -> applyCalendarSettings());
+        autoWorkDaysCheckBox.addActionListener(e -> applyCalendarSettings());
+        holidayFileField.addActionListener(e -> applyCalendarSettings());
+        holidayFileField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                applyCalendarSettings();
+            }
+        });
+        overtimePayCheckBox.addActionListener(e -> applyOvertimeSettings());
+        overtimeRulesField.addActionListener(e -> applyOvertimeSettings());
+        paydaySpinner.addChangeListener(e ->
+                SalaryCalculatorConfig.getInstance().setPayday((Integer) paydaySpinner.getValue()));
+        overtimeRulesField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                applyOvertimeSettings();
+            }
         });
     }
 
+    // 在 EDT 上读取表单, 延迟到后台线程校验, 新的输入会取消尚未执行的校验
+    private void scheduleValidation() {
+        String[] values = new String[formFields.length];
+        for (int i = 0; i < formFields.length; i++) {
+            values[i] = formFields[i].getText();
+        }
+        ScheduleForm form = new ScheduleForm(values, (String) currencyComboBox.getSelectedItem());
+        long sequence = ++editSequence;
+        editAlarm.cancelAllRequests();
+        editAlarm.addRequest(() -> {
+            Map<ScheduleForm.Field, String> errors = form.validate();
+            ApplicationManager.getApplication().invokeLater(
+                    () -> applyValidation(sequence, form, errors), ModalityState.any());
+        }, EDIT_DEBOUNCE_MILLIS);
+    }
+
+    private void applyValidation(long sequence, ScheduleForm form, Map<ScheduleForm.Field, String> errors) {
+        if (sequence != editSequence) {
+            // 期间又有新的输入, 以最新的为准
+            return;
+        }
+        for (ScheduleForm.Field field : ScheduleForm.Field.values()) {
+            JBTextField component = formFields[field.ordinal()];
+            String error = errors.get(field);
+            component.putClientProperty("JComponent.outline", error == null ? null : "error");
+            component.setToolTipText(error == null && field == ScheduleForm.Field.ROSTER ? ROSTER_HELP : error);
+            component.repaint();
+        }
+        if (!errors.isEmpty()) {
+            validationLabel.setText(errors.values().iterator().next());
+            validationLabel.setVisible(true);
+            return;
+        }
+        validationLabel.setVisible(false);
+        // 表单合法且确有变化时才保存, 配置变化通知会一次性刷新所有依赖视图
+        committedForm = form;
+        SalaryCalculatorConfig.getInstance().applyScheduleForm(form);
+    }
+
     private void startAutoRefresh() {
-        refreshTimer = new Timer(60000, e -> {
+        // 订阅全局节拍, 工具窗口关闭时随 dispose 退订
+        TickService.getInstance().registerCountdownView(this);
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(SalaryTickListener.TOPIC, () -> {
             calculateSalary();
             updateCountdown();
+            earningsChart.update();
         });
-        refreshTimer.start();
+        // 设置同步等外部修改后, 表单跟着更新
+        connection.subscribe(ConfigListener.TOPIC, snapshot -> ApplicationManager.getApplication().invokeLater(
+                () -> {
+                    loadFields(SalaryCalculatorConfig.getInstance().getSnapshot());
+                    loadMessages();
+                },
+                ModalityState.any(), o -> disposed));
+        TickService.getInstance().addFrameListener(this::updateOdometer, this);
+    }
+
+    // 重新读取提示文案, 目录没有变化时保留已编译的模板和样式
+    private void loadMessages() {
+        MessageCatalog loaded = TipStyles.loadCatalog();
+        if (loaded != catalog) {
+            catalog = loaded;
+            countdownMessages = new CountdownMessages(loaded, random);
+            styles = TipStyles.of(loaded);
+            appliedStyle = null;
+        }
+    }
+
+    // 实时跳动模式的帧回调, 只做整数计算和缓冲区写入
+    private void updateOdometer(long millisOfDay) {
+        WorkDay day = frameDay;
+        if (day != null) {
+            odometerLabel.setValue(day.getCurve().earningsScaled(day.millisOf(millisOfDay), 4));
+        }
     }
 
     private void buildUI() {
@@ -106,270 +374,178 @@ public class SalaryCalculatorToolWindow {
                 .addLabeledComponent("下午下班:", endTimeField)
                 .addLabeledComponent("午休开始:", lunchStartField)
                 .addLabeledComponent("午休结束:", lunchEndField)
-                .addLabeledComponent("货币:", currencyComboBox)
+                .addLabeledComponent("排班:", rosterField)
+                .addLabeledComponent("薪资货币:", currencyComboBox)
+                .addLabeledComponent("显示货币:", displayCurrencyComboBox)
+                .addComponent(validationLabel)
+                .addComponent(useCalendarCheckBox)
+                .addComponent(autoWorkDaysCheckBox)
+                .addLabeledComponent("节假日文件:", holidayFileField)
+                .addComponent(overtimePayCheckBox)
+                .addLabeledComponent("加班规则:", overtimeRulesField)
+                .addLabeledComponent("发薪日:", paydaySpinner)
+                .addComponent(liveOdometerCheckBox)
+                .addComponent(activeTimeModeCheckBox)
+                .addComponent(fileCostsCheckBox)
+                .addComponent(fileCostsByDeclarationCheckBox)
+                .addComponent(sharedEarningsCheckBox)
+                .addComponent(odometerLabel)
                 .addComponent(resultLabel)
+                .addComponent(conversionLabel)
+                .addComponent(workdaysLabel)
+                .addComponent(forecastLabel)
                 .addComponent(todayEarningsLabel)
+                .addComponent(overtimeLabel)
                 .addComponent(workingHoursLabel)
                 .addComponent(timeLeftLabel)
+                .addComponent(earningsChart)
                 .addComponentFillVertically(new JPanel(), 0)
                 .getPanel();
     }
 
     private void calculateSalary() {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
         try {
-            // 基础薪资计算
-            double monthlySalary = Double.parseDouble(monthlySalaryField.getText());
-            int monthlyWorkDays = Integer.parseInt(monthlyWorkDaysField.getText());
-
-            if (monthlySalary <= 0 || monthlyWorkDays <= 0) {
-                resultLabel.setText("请输入正数");
+            SalaryEngine engine = SalaryEngine.getInstance();
+            WorkDay day = engine.today();
+            frameDay = day;
+            if (day == null) {
+                ScheduleException error = engine.getError();
+                if (error != null && error.getKind() == ScheduleException.Kind.SALARY) {
+                    resultLabel.setText(error.getMessage());
+                } else if (error != null) {
+                    todayEarningsLabel.setText(error.getMessage());
+                }
                 return;
             }
 
-            // 计算每日固定工资
-            double dailySalary = monthlySalary / monthlyWorkDays;
-
-            String currencySymbol = getCurrencySymbol();
-            DecimalFormat df = new DecimalFormat("0.00");
-            resultLabel.setText(String.format("每日工资: %s%s", currencySymbol, df.format(dailySalary)));
-
-            // 计算当日收入比例
-            LocalTime startTime = LocalTime.parse(startTimeField.getText(), timeFormatter);
-            LocalTime morningEnd = LocalTime.parse(morningEndField.getText(), timeFormatter);
-            LocalTime afternoonStart = LocalTime.parse(afternoonStartField.getText(), timeFormatter);
-            LocalTime endTime = LocalTime.parse(endTimeField.getText(), timeFormatter);
-            LocalTime lunchStart = LocalTime.parse(lunchStartField.getText(), timeFormatter);
-            LocalTime lunchEnd = LocalTime.parse(lunchEndField.getText(), timeFormatter);
-
-            // 验证时间合理性
-            if (morningEnd.isBefore(startTime) || afternoonStart.isBefore(morningEnd) || endTime.isBefore(afternoonStart)) {
-                todayEarningsLabel.setText("时间顺序不正确");
-                return;
+            WorkSchedule schedule = day.getSchedule();
+            MoneyFormat format = schedule.getMoneyFormat();
+            resultLabel.setText("每日工资: " + format.format(schedule.getDailySalaryMicros()));
+            WorkRoster roster = engine.getRoster();
+            WorkCalendar calendar = roster == null ? null : roster.getCalendar();
+            workdaysLabel.setVisible(calendar != null);
+            if (calendar != null) {
+                String holiday = calendar.holidayName(day.getDate());
+                workdaysLabel.setText(String.format("本月工作日: %d天, 剩余%d天%s",
+                        calendar.workdaysInMonth(day.getDate()), calendar.workdaysRemaining(day.getDate()),
+                        holiday == null ? "" : " (今天: " + holiday + ")"));
             }
 
-            // 计算总工作时间和已完成工作时间
-            Duration totalWorkDuration = calculateTotalWorkDuration(startTime, morningEnd, afternoonStart, endTime, lunchStart, lunchEnd);
-            LocalTime now = LocalTime.now();
-            Duration completedWorkDuration = calculateCompletedWorkDuration(startTime, morningEnd, afternoonStart, endTime, lunchStart, lunchEnd, now);
+            ForecastTable forecast = EarningsForecast.getInstance().getTable();
+            forecastLabel.setVisible(forecast != null);
+            if (forecast != null) {
+                // 预测按薪资货币计算, 换算成显示货币
+                ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+                forecastLabel.setText(String.format("本月已赚 %s, 预计 %s; 今年已赚 %s, 预计 %s; 距发薪日 %d天",
+                        format.format(config.toDisplayMicros(forecast.getMonthToDate())),
+                        format.format(config.toDisplayMicros(forecast.getMonthProjected())),
+                        format.format(config.toDisplayMicros(forecast.getYearToDate())),
+                        format.format(config.toDisplayMicros(forecast.getYearProjected())),
+                        forecast.getDaysUntilPayday()));
+            }
 
-            // 计算当日收入 (按比例)
-            double todayEarnings = dailySalary * (completedWorkDuration.toMinutes() / (double) totalWorkDuration.toMinutes());
+            // 计算当日收入 (按有效工作时间比例, 加上已计薪的加班)
+            PayCurve curve = day.getCurve();
+            int now = day.secondOf(PluginClock.getInstance().time());
+            int workedSeconds = schedule.workedSeconds(now);
+            long todayEarnings = curve.earnedMicros(now);
+            overtimeLabel.setVisible(curve.getOvertimeMicrosPerHour() > 0);
+            if (curve.getOvertimeMicrosPerHour() > 0) {
+                int overtimeMinutes = curve.creditedOvertimeSeconds(now) / 60;
+                overtimeLabel.setText(String.format("加班收入: %s (%d小时%d分钟, 时薪 %s)",
+                        format.format(curve.overtimeMicrosAt(now)), overtimeMinutes / 60, overtimeMinutes % 60,
+                        format.format(curve.getOvertimeMicrosPerHour())));
+            }
 
             // 工作时间统计
-            long hours = completedWorkDuration.toHours();
-            long minutes = completedWorkDuration.minusHours(hours).toMinutes();
+            long hours = workedSeconds / 3600;
+            long minutes = workedSeconds % 3600 / 60;
 
-            todayEarningsLabel.setText(String.format("今日已赚: %s%s",
-                    currencySymbol, df.format(todayEarnings)));
+            todayEarningsLabel.setText("今日已赚: " + format.format(todayEarnings));
+            odometerLabel.setPrefix(schedule.getCurrency().getSymbol());
+            odometerLabel.setValue(curve.earningsScaled(day.millisOf(PluginClock.getInstance().millisOfDay()), 4));
             workingHoursLabel.setText(String.format("有效工作时间: %d小时%d分钟", hours, minutes));
-
-        } catch (NumberFormatException e) {
-            resultLabel.setText("请输入有效数字");
-        } catch (DateTimeParseException e) {
-            todayEarningsLabel.setText("时间格式应为 HH:mm");
-        }
-    }
-
-    private Duration calculateTotalWorkDuration(LocalTime start, LocalTime morningEnd, LocalTime afternoonStart,
-                                                LocalTime end, LocalTime lunchStart, LocalTime lunchEnd) {
-        Duration morning = Duration.between(start, morningEnd);
-        Duration afternoon = Duration.between(afternoonStart, end);
-
-        // 扣除午休时间
-        if (lunchStart.isAfter(start) && lunchEnd.isBefore(end)) {
-            Duration lunch = Duration.between(lunchStart, lunchEnd);
-            return morning.plus(afternoon).minus(lunch);
-        }
-        return morning.plus(afternoon);
-    }
-
-    private Duration calculateCompletedWorkDuration(LocalTime start, LocalTime morningEnd, LocalTime afternoonStart,
-                                                    LocalTime end, LocalTime lunchStart, LocalTime lunchEnd, LocalTime now) {
-        if (now.isBefore(start)) {
-            return Duration.ZERO;
-        } else if (now.isBefore(morningEnd)) {
-            return Duration.between(start, now);
-        } else if (now.isBefore(afternoonStart)) {
-            return Duration.between(start, morningEnd);
-        } else if (now.isBefore(end)) {
-            Duration morning = Duration.between(start, morningEnd);
-            Duration afternoon = Duration.between(afternoonStart, now);
-            return morning.plus(afternoon);
-        } else {
-            return calculateTotalWorkDuration(start, morningEnd, afternoonStart, end, lunchStart, lunchEnd);
+        } finally {
+            PluginMetrics.getInstance().record(PluginMetrics.Probe.CALCULATE_SALARY, start, allocated);
         }
     }
 
     private void updateCountdown() {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
         try {
-            LocalTime now = LocalTime.now();
-            LocalTime morningEnd = LocalTime.parse(morningEndField.getText(), timeFormatter);
-            LocalTime afternoonStart = LocalTime.parse(afternoonStartField.getText(), timeFormatter);
-            LocalTime endTime = LocalTime.parse(endTimeField.getText(), timeFormatter);
-
-            if (now.isBefore(morningEnd)) {
-                // 上午工作时间
-                String message = getFunCountdownMessage(now, morningEnd, true);
-                setCountdownUI(message, new Color(0, 100, 0)); // 绿色
-            } else if (now.isBefore(afternoonStart)) {
-                // 午休时间
-                if (now.isBefore(morningEnd.plusMinutes(30))) {
-                    setCountdownUI("🍚 午饭时间！\n😋 好好享受美食吧~", new Color(150, 0, 150)); // 紫色
-                } else {
-                    String message = getFunCountdownMessage(now, afternoonStart, true);
-                    setCountdownUI("💤 午休中...\n" + message, new Color(150, 0, 150)); // 紫色
-                }
-            } else if (now.isBefore(endTime)) {
-                // 下午工作时间
-                String message = getFunCountdownMessage(now, endTime, false);
-                setCountdownUI(message, new Color(0, 0, 150)); // 蓝色
-            } else {
-                // 加班时间
-                String message = getWarmOvertimeMessage(Duration.between(endTime, now), false);
-                setWarmOvertimeUI(message);
+            WorkDay day = SalaryEngine.getInstance().today();
+            if (day == null) {
+                timeLeftLabel.setText("时间格式错误(应为HH:mm)");
+                return;
             }
-
-        } catch (DateTimeParseException e) {
-            timeLeftLabel.setText("时间格式错误(应为HH:mm)");
-        }
-    }
-
-    private void setWarmOvertimeUI(String message) {
-        timeLeftLabel.setText(String.format("<html><div style='text-align:center;'>%s</div></html>",
-                message.replace("\n", "<br>")));
-
-        // 使用温暖的色调
-        timeLeftLabel.setForeground(new Color(150, 80, 0)); // 暖橙色
-        timeLeftLabel.setFont(new Font("Microsoft YaHei", Font.PLAIN, 14));
-
-        // 添加柔和的背景
-        timeLeftLabel.setOpaque(true);
-        timeLeftLabel.setBackground(new Color(255, 248, 225)); // 淡米黄色背景
-        timeLeftLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-    }
-
-    private String getWarmOvertimeMessage(Duration overtime, boolean isMorning) {
-        long hours = overtime.toHours();
-        long minutes = overtime.minusHours(hours).toMinutes();
-
-        String[] warmEmojis = {"🌙", "✨", "🕯️", "🍵", "📚", "🛋️", "🌃", "🌠"};
-        String randomEmoji = warmEmojis[random.nextInt(warmEmojis.length)];
-
-        if (isMorning) {
-            // 上午加班提醒
-            if (hours >= 1) {
-                return String.format("%s 已经工作 %d小时%d分钟了\n" +
-                                "🍲 记得按时吃午饭哦，身体最重要~",
-                        randomEmoji, hours, minutes);
-            } else {
-                return String.format("%s 已经超时 %d分钟\n" +
-                                "☕ 喝杯热饮休息一下吧，别让胃等太久~",
-                        randomEmoji, minutes);
+            WorkSchedule schedule = day.getSchedule();
+            beginTip();
+            if (schedule.isRestDay()) {
+                catalog.template("tip.restDay").appendTo(tipText, true);
+                showTip(styles.rest);
+                return;
             }
-        } else {
-            // 下午/晚上加班提醒
-            if (hours >= 3) {
-                return String.format("%s 已经加班 %d小时%d分钟\n" +
-                                "🌙 夜深了，今天的努力已经足够\n" +
-                                "请为明天的自己保留些精力~",
-                        randomEmoji, hours, minutes);
-            } else if (hours >= 2) {
-                return String.format("%s 加班 %d小时%d分钟了\n" +
-                                "🏠 家人朋友都在等你回家\n" +
-                                "工作永远做不完，但相聚的时光很珍贵~",
-                        randomEmoji, hours, minutes);
-            } else if (hours >= 1) {
-                return String.format("%s 已超时 %d小时%d分钟\n" +
-                                "📖 今天的任务完成得很棒了\n" +
-                                "给自己一个放松的夜晚吧~",
-                        randomEmoji, hours, minutes);
+            int now = day.secondOf(PluginClock.getInstance().time());
+            int last = schedule.getSegmentCount() - 1;
+            int index = schedule.segmentIndex(now);
+
+            if (index < 0 || (index < last && now < schedule.getSegmentEnd(index))) {
+                // 最后一个时段之前的工作时间, 倒计时到下一次休息
+                int breakStart = schedule.getSegmentEnd(Math.max(index, 0));
+                countdownMessages.appendCountdown(tipText, breakStart - now, true, true);
+                showTip(styles.work);
+            } else if (index < last) {
+                // 两个时段之间的休息
+                int breakStart = schedule.getSegmentEnd(index);
+                if (now < breakStart + 30 * 60) {
+                    catalog.template("tip.lunch").appendTo(tipText, true);
+                } else {
+                    catalog.template("tip.nap").appendTo(tipText, true);
+                    countdownMessages.appendCountdown(tipText, schedule.getSegmentStart(index + 1) - now, true, true);
+                }
+                showTip(styles.rest);
+            } else if (now < schedule.getShiftEnd()) {
+                // 最后一个时段
+                countdownMessages.appendCountdown(tipText, schedule.getShiftEnd() - now, false, true);
+                showTip(styles.end);
             } else {
-                return String.format("%s 加班 %d分钟\n" +
-                                "🛋️ 收拾心情准备回家吧\n" +
-                                "温暖的被窝和好梦在等着你~",
-                        randomEmoji, minutes);
+                // 加班时间, 使用温暖的色调和柔和的背景
+                countdownMessages.appendOvertime(tipText, now - schedule.getShiftEnd(), false, true);
+                showTip(styles.overtime);
             }
+        } finally {
+            PluginMetrics.getInstance().record(PluginMetrics.Probe.UPDATE_COUNTDOWN, start, allocated);
         }
     }
 
-    private void setCountdownUI(String message, Color color) {
-        timeLeftLabel.setText(String.format("<html><div style='text-align:center;'>%s</div></html>",
-                message.replace("\n", "<br>")));
-        timeLeftLabel.setForeground(color);
-        timeLeftLabel.setFont(new Font("Microsoft YaHei", Font.PLAIN, 14));
+    private void beginTip() {
+        tipText.setLength(0);
+        tipText.append("<html><div style='text-align:center;'>");
     }
 
-    private String getFunCountdownMessage(LocalTime now, LocalTime endTime, boolean isMorning) {
-        Duration duration = Duration.between(now, endTime);
-        long hours = duration.toHours();
-        long minutes = duration.minusHours(hours).toMinutes();
-
-        String[] emojis = {"🐶", "🐱", "🐭", "🐹", "🐰", "🦊", "🐻", "🐼"};
-        String randomEmoji = emojis[random.nextInt(emojis.length)];
-
-        if (isMorning) {
-            // 上午下班倒计时提示
-            if (hours >= 1) {
-                return String.format("%s 距离午饭还有 %d小时%d分钟\n🍚 想好吃什么了吗？",
-                        randomEmoji, hours, minutes);
-            } else if (minutes >= 30) {
-                return String.format("%s 还有 %d分钟就能干饭啦~\n🍜 坚持就是胜利！",
-                        randomEmoji, minutes);
-            } else if (minutes >= 10) {
-                return String.format("%s 只剩 %d分钟就解放了！\n🍔 外卖可以点起来了~",
-                        randomEmoji, minutes);
-            } else {
-                return String.format("%s 最后 %d分钟！\n🍱 筷子已备好，准备冲刺！",
-                        randomEmoji, minutes);
-            }
-        } else {
-            // 下午下班倒计时提示
-            if (hours >= 2) {
-                return String.format("%s 距离下班还有 %d小时%d分钟\n🎮 今天的任务完成多少啦？",
-                        randomEmoji, hours, minutes);
-            } else if (hours >= 1) {
-                return String.format("%s 再坚持 %d小时%d分钟\n☕ 需要来杯咖啡提神吗？",
-                        randomEmoji, hours, minutes);
-            } else if (minutes >= 30) {
-                return String.format("%s 只剩 %d分钟啦~\n🏃‍ 收拾包包准备开溜~",
-                        randomEmoji, minutes);
-            } else if (minutes >= 10) {
-                return String.format("%s 最后 %d分钟！\n🚪 手指放在打卡机上方待命！",
-                        randomEmoji, minutes);
-            } else {
-                return String.format("%s 倒计时 %d分钟！\n🎉 准备迎接自由时光！",
-                        randomEmoji, minutes);
-            }
+    // 文本或样式变化时才更新标签
+    private void showTip(TipStyles.Style style) {
+        tipText.append("</div></html>");
+        String html = tipText.toString();
+        if (!html.equals(timeLeftLabel.getText())) {
+            timeLeftLabel.setText(html);
         }
-    }
-    private void saveSettings() {
-        SalaryCalculatorConfig.State config = SalaryCalculatorConfig.getInstance().getState();
-
-        config.monthlySalary = monthlySalaryField.getText();
-        config.monthlyWorkDays = monthlyWorkDaysField.getText();
-        config.startTime = startTimeField.getText();
-        config.endTime = endTimeField.getText();
-        config.morningEndTime = morningEndField.getText();
-        config.afternoonStartTime = afternoonStartField.getText();
-        config.lunchStart = lunchStartField.getText();
-        config.lunchEnd = lunchEndField.getText();
-        config.currency = (String) currencyComboBox.getSelectedItem();
-    }
-
-    private String getCurrencySymbol() {
-        switch (currencyComboBox.getSelectedItem().toString()) {
-            case "美元":
-                return "$";
-            case "欧元":
-                return "€";
-            case "日元":
-                return "¥";
-            default:
-                return "¥";
+        if (style != appliedStyle) {
+            style.apply(timeLeftLabel);
+            appliedStyle = style;
         }
     }
 
     public JPanel getContent() {
         return mainPanel;
     }
+
+    @Override
+    public void dispose() {
+        // 节拍和配置订阅由 MessageBusConnection 随工具窗口一起释放
+        disposed = true;
+    }
 }
@@ -21,9 +21,31 @@ public class SalaryCalculatorToolWindowFactory implements ToolWindowFactory {
         SalaryCalculatorToolWindow window = new SalaryCalculatorToolWindow();
         Content content = ContentFactory.getInstance().createContent(
                 window.getContent(),
-                "",  // 显示名称由toolWindow控制
+                "薪资",
                 false
         );
+        // 内容移除时释放窗口, 退订全局节拍
+        content.setDisposer(window);
         toolWindow.getContentManager().addContent(content);
+
+        // 本项目仓库中自己的提交及其价格
+        CommitReportPanel commits = new CommitReportPanel(project);
+        Content commitsContent = ContentFactory.getInstance().createContent(
+                commits.getContent(),
+                "提交",
+                false
+        );
+        commitsContent.setDisposer(commits);
+        toolWindow.getContentManager().addContent(commitsContent);
+
+        // 插件自身的性能统计
+        DiagnosticsPanel diagnostics = new DiagnosticsPanel();
+        Content diagnosticsContent = ContentFactory.getInstance().createContent(
+                diagnostics.getContent(),
+                "诊断",
+                false
+        );
+        diagnosticsContent.setDisposer(diagnostics);
+        toolWindow.getContentManager().addContent(diagnosticsContent);
     }
 }
@@ -0,0 +1,105 @@
+package icu.spider007;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import icu.spider007.core.message.MessageCatalog;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.Color;
+import java.awt.Font;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * 倒计时提示的字体和颜色, 按文案目录中的 style.* 条目创建一次后复用
+ * <p>
+ * 标签记住上一次应用的 {@link Style}, 样式没有变化时不再设置字体和颜色
+ */
+final class TipStyles {
+    private static final Logger LOG = Logger.getInstance(TipStyles.class);
+
+    /**
+     * 一种提示样式, 背景为 null 时透明
+     */
+    static final class Style {
+        private final Font font;
+        private final Color foreground;
+        private final Color background;
+        private final Border border;
+
+        private Style(Font font, Color foreground, Color background) {
+            this.font = font;
+            this.foreground = foreground;
+            this.background = background;
+            this.border = background == null ? null : BorderFactory.createEmptyBorder(5, 10, 5, 10);
+        }
+
+        void apply(JLabel label) {
+            label.setFont(font);
+            label.setForeground(foreground);
+            label.setOpaque(background != null);
+            label.setBackground(background);
+            label.setBorder(border);
+        }
+    }
+
+    // 最近一次创建的样式, 文案目录不变时直接复用
+    private static volatile TipStyles last;
+
+    private final MessageCatalog catalog;
+    final Style work;
+    final Style rest;
+    final Style end;
+    final Style overtime;
+
+    private TipStyles(MessageCatalog catalog) {
+        this.catalog = catalog;
+        Font font = new Font(catalog.text("style.font"), Font.PLAIN, parseSize(catalog.text("style.fontSize")));
+        work = new Style(font, parseColor(catalog.text("style.work.color"), Color.BLACK), null);
+        rest = new Style(font, parseColor(catalog.text("style.break.color"), Color.BLACK), null);
+        end = new Style(font, parseColor(catalog.text("style.end.color"), Color.BLACK), null);
+        overtime = new Style(font, parseColor(catalog.text("style.overtime.color"), Color.BLACK),
+                parseColor(catalog.text("style.overtime.background"), null));
+    }
+
+    static TipStyles of(MessageCatalog catalog) {
+        TipStyles styles = last;
+        if (styles == null || styles.catalog != catalog) {
+            styles = new TipStyles(catalog);
+            last = styles;
+        }
+        return styles;
+    }
+
+    /**
+     * 当前语言的提示文案, 叠加 IDE 配置目录下 payPerTick/messages.properties 中的自定义条目
+     */
+    static MessageCatalog loadCatalog() {
+        Path override = Paths.get(PathManager.getConfigPath(), "payPerTick", "messages.properties");
+        try {
+            return MessageCatalog.load(Locale.getDefault(), override);
+        } catch (IOException e) {
+            LOG.warn("Failed to read PayPerTick messages from " + override, e);
+            return MessageCatalog.bundled(Locale.getDefault());
+        }
+    }
+
+    private static int parseSize(String text) {
+        try {
+            return Math.max(8, Integer.parseInt(text.trim()));
+        } catch (NumberFormatException e) {
+            return 14;
+        }
+    }
+
+    private static Color parseColor(String text, Color fallback) {
+        try {
+            return text.trim().isEmpty() ? fallback : Color.decode(text.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package icu.spider007.config;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 配置变化通知, 包括工具窗口中的修改和设置同步触发的 loadState
+ */
+public interface ConfigListener {
+    Topic<ConfigListener> TOPIC = Topic.create("PayPerTick config", ConfigListener.class);
+
+    void configChanged(@NotNull ConfigSnapshot snapshot);
+}
@@ -0,0 +1,299 @@
+package icu.spider007.config;
+
+import icu.spider007.core.PayCurrency;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.overtime.OvertimeRules;
+import icu.spider007.core.rates.RateTable;
+import icu.spider007.service.HolidayCalendars;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 某一版本配置的不可变快照, 发布时已编译成 {@link WorkRoster}, 读取方无需再解析字符串
+ * <p>
+ * 显示货币与薪资货币不同时, 发布时按当时的汇率把月薪换算好再编译, 节拍路径上不查汇率.
+ * 节假日规则由 {@link HolidayCalendars} 在后台读好后传入, 构造快照时不读文件
+ */
+public final class ConfigSnapshot {
+    private final long version;
+    private final ScheduleForm scheduleForm;
+    private final int scheduleId;
+    private final WorkRoster roster;
+    private final WorkRoster salaryRoster;
+    private final ScheduleException error;
+    private final boolean useCalendar;
+    private final boolean autoWorkDays;
+    private final String holidayFile;
+    private final ScheduleException calendarError;
+    private final boolean overtimePay;
+    private final String overtimeRules;
+    private final ScheduleException overtimeError;
+    private final boolean liveOdometer;
+    private final int odometerFps;
+    private final boolean activeTimeMode;
+    private final boolean fileCosts;
+    private final boolean fileCostsByDeclaration;
+    private final int payday;
+    private final boolean sharedEarnings;
+    private final String displayCurrencySetting;
+    private final PayCurrency displayCurrency;
+    private final RateTable rates;
+    private final ScheduleException rateError;
+    // 日薪按各种货币折算的结果, 下标为 PayCurrency.ordinal(), 无法换算时为 -1
+    private final long[] dailySalaryMicros = new long[PayCurrency.values().length];
+
+    /**
+     * @param holidays 已经读好的节假日规则; 不使用日历或启动后还没有读好时为 null, 此时暂不附加日历
+     */
+    ConfigSnapshot(long version, SalaryCalculatorConfig.State state, RateTable rates,
+                   @Nullable HolidayCalendars.Loaded holidays) {
+        this.version = version;
+        this.scheduleForm = SalaryCalculatorConfig.toScheduleForm(state);
+        this.scheduleId = scheduleForm.digest();
+        WorkRoster compiled = null;
+        ScheduleException failure = null;
+        try {
+            compiled = scheduleForm.compile();
+        } catch (ScheduleException e) {
+            failure = e;
+        }
+        this.useCalendar = state.useCalendar;
+        this.autoWorkDays = state.autoWorkDays;
+        this.holidayFile = holidayFileOf(state);
+        ScheduleException calendarFailure = null;
+        if (compiled != null && useCalendar && holidays != null) {
+            // 用户文件有问题时已退回内置节假日, 错误单独提示, 不影响收入显示
+            calendarFailure = holidays.getError();
+            compiled = compiled.withCalendar(holidays.getRules(), autoWorkDays);
+        }
+        this.overtimePay = state.overtimePay;
+        this.overtimeRules = state.overtimeRules == null ? "" : state.overtimeRules.trim();
+        ScheduleException overtimeFailure = null;
+        if (compiled != null && overtimePay) {
+            // 规则有误时不计加班, 错误单独提示
+            try {
+                compiled = compiled.withOvertime(OvertimeRules.parse(overtimeRules));
+            } catch (ScheduleException e) {
+                overtimeFailure = e;
+            }
+        }
+        this.overtimeError = overtimeFailure;
+        this.salaryRoster = compiled;
+        this.rates = rates;
+        this.displayCurrencySetting = state.displayCurrency == null ? "" : state.displayCurrency.trim();
+        PayCurrency display = PayCurrency.find(displayCurrencySetting);
+        ScheduleException rateFailure = null;
+        Arrays.fill(dailySalaryMicros, -1);
+        if (compiled != null) {
+            WorkSchedule pay = compiled.any();
+            PayCurrency salaryCurrency = pay.getCurrency();
+            for (PayCurrency currency : PayCurrency.values()) {
+                if (rates.supports(salaryCurrency) && rates.supports(currency)) {
+                    dailySalaryMicros[currency.ordinal()] =
+                            rates.convert(pay.getDailySalaryMicros(), salaryCurrency, currency);
+                }
+            }
+            if (display != null && display != salaryCurrency) {
+                // 缺少汇率时按薪资货币显示, 错误单独提示
+                try {
+                    long salary = rates.convert(pay.getMonthlySalaryMicros(), salaryCurrency, display);
+                    compiled = compiled.withPay(salary, pay.getMonthlyWorkDays(), display);
+                } catch (ScheduleException e) {
+                    rateFailure = e;
+                    display = null;
+                }
+            }
+            if (display == null) {
+                display = salaryCurrency;
+            }
+        }
+        this.displayCurrency = display;
+        this.rateError = rateFailure;
+        this.roster = compiled;
+        this.error = failure;
+        this.calendarError = calendarFailure;
+        this.liveOdometer = state.liveOdometer;
+        this.odometerFps = state.odometerFps;
+        this.activeTimeMode = state.activeTimeMode;
+        this.fileCosts = state.fileCosts;
+        this.fileCostsByDeclaration = state.fileCostsByDeclaration;
+        this.payday = Math.min(Math.max(state.payday, 1), 31);
+        this.sharedEarnings = state.sharedEarnings;
+    }
+
+    static String holidayFileOf(SalaryCalculatorConfig.State state) {
+        return state.holidayFile == null ? "" : state.holidayFile.trim();
+    }
+
+    /**
+     * 单调递增的版本号, 每次配置变化加一
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @NotNull
+    public ScheduleForm getScheduleForm() {
+        return scheduleForm;
+    }
+
+    /**
+     * 时间表标识 (表单内容的摘要), 写入账本记录
+     */
+    public int getScheduleId() {
+        return scheduleId;
+    }
+
+    /**
+     * 编译后的排班表, 配置不合法时返回 null
+     */
+    @Nullable
+    public WorkRoster getRoster() {
+        return roster;
+    }
+
+    /**
+     * 按薪资货币编译的排班表, 账本按它记录, 不受汇率变化影响. 配置不合法时返回 null
+     */
+    @Nullable
+    public WorkRoster getSalaryRoster() {
+        return salaryRoster;
+    }
+
+    /**
+     * 把薪资货币的金额换算成显示货币, 如账本中的记录
+     */
+    public long toDisplayMicros(long salaryMicros) {
+        if (salaryRoster == null || salaryRoster.any().getCurrency() == displayCurrency) {
+            return salaryMicros;
+        }
+        return rates.convert(salaryMicros, salaryRoster.any().getCurrency(), displayCurrency);
+    }
+
+    /**
+     * 配置中的显示货币名称, 为空表示与薪资货币相同
+     */
+    @NotNull
+    public String getDisplayCurrencySetting() {
+        return displayCurrencySetting;
+    }
+
+    /**
+     * 实际显示的货币, 配置不合法时返回 null
+     */
+    @Nullable
+    public PayCurrency getDisplayCurrency() {
+        return displayCurrency;
+    }
+
+    /**
+     * 日薪折合成 currency 的金额, 配置不合法或缺少汇率时返回 -1
+     */
+    public long getDailySalaryMicros(PayCurrency currency) {
+        return dailySalaryMicros[currency.ordinal()];
+    }
+
+    /**
+     * 编译时使用的汇率
+     */
+    @NotNull
+    public RateTable getRates() {
+        return rates;
+    }
+
+    /**
+     * 显示货币缺少汇率时的错误信息, 此时按薪资货币显示, 没有错误时返回 null
+     */
+    @Nullable
+    public ScheduleException getRateError() {
+        return rateError;
+    }
+
+    /**
+     * 配置的错误信息, 配置合法时返回 null
+     */
+    @Nullable
+    public ScheduleException getError() {
+        return error;
+    }
+
+    public boolean isUseCalendar() {
+        return useCalendar;
+    }
+
+    public boolean isAutoWorkDays() {
+        return autoWorkDays;
+    }
+
+    @NotNull
+    public String getHolidayFile() {
+        return holidayFile;
+    }
+
+    /**
+     * 节假日文件的错误信息, 此时已退回内置节假日, 没有错误时返回 null
+     */
+    @Nullable
+    public ScheduleException getCalendarError() {
+        return calendarError;
+    }
+
+    public boolean isOvertimePay() {
+        return overtimePay;
+    }
+
+    @NotNull
+    public String getOvertimeRules() {
+        return overtimeRules;
+    }
+
+    /**
+     * 加班规则的错误信息, 此时不计加班, 没有错误时返回 null
+     */
+    @Nullable
+    public ScheduleException getOvertimeError() {
+        return overtimeError;
+    }
+
+    public boolean isLiveOdometer() {
+        return liveOdometer;
+    }
+
+    public int getOdometerFps() {
+        return odometerFps;
+    }
+
+    public boolean isActiveTimeMode() {
+        return activeTimeMode;
+    }
+
+    public boolean isFileCosts() {
+        return fileCosts;
+    }
+
+    /**
+     * 按文件统计时是否再细分到顶层声明
+     */
+    public boolean isFileCostsByDeclaration() {
+        return fileCostsByDeclaration;
+    }
+
+    /**
+     * 每月发薪日, 1 到 31
+     */
+    public int getPayday() {
+        return payday;
+    }
+
+    /**
+     * 是否与同时打开的其他 IDE 共享今日收入
+     */
+    public boolean isSharedEarnings() {
+        return sharedEarnings;
+    }
+}
@@ -5,6 +5,16 @@ import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import groovyjarjarantlr4.v4.runtime.misc.Nullable;
+import icu.spider007.core.ScheduleForm;
+import icu.spider007.core.metrics.AllocationCounter;
+import icu.spider007.service.ExchangeRates;
+import icu.spider007.service.HolidayCalendars;
+import icu.spider007.service.PluginMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicReference;
 
 @State(
         name = "SalaryCalculatorConfig",
@@ -22,9 +32,64 @@ public class SalaryCalculatorConfig implements PersistentStateComponent<SalaryCa
         public String lunchStart = "12:00";
         public String lunchEnd = "13:30";
         public String currency = "人民币";
+        // 显示货币, 为空时与薪资货币相同, 否则按汇率换算后显示
+        public String displayCurrency = "";
+        // 按星期排班, 为空时每天使用上面的上午/下午/午休设置, 语法见 WorkRoster
+        public String roster = "";
+        // 节假日日历: 法定节假日休息、调休日上班; holidayFile 为空时使用内置的中国节假日
+        public boolean useCalendar = true;
+        public boolean autoWorkDays = false;
+        public String holidayFile = "";
+        // 实时跳动模式: 收入按帧刷新
+        public boolean liveOdometer = false;
+        public int odometerFps = 20;
+        // 按活跃时间计算收入 (状态栏显示活跃收入)
+        public boolean activeTimeMode = false;
+        // 加班计薪, 规则语法见 OvertimeRules
+        public boolean overtimePay = false;
+        public String overtimeRules = "weekday 1.5; weekend 2; holiday 3";
+        // 按文件 (以及顶层声明) 统计编码收入, 在编辑器顶部显示
+        public boolean fileCosts = false;
+        public boolean fileCostsByDeclaration = false;
+        // 每月发薪日, 超过当月天数时为月末, 遇到休息日提前
+        public int payday = 10;
+        // 同时打开的多个 IDE 共享今日收入, 由其中一个计算
+        public boolean sharedEarnings = false;
+
+        State copy() {
+            State copy = new State();
+            copy.monthlySalary = monthlySalary;
+            copy.monthlyWorkDays = monthlyWorkDays;
+            copy.startTime = startTime;
+            copy.endTime = endTime;
+            copy.morningEndTime = morningEndTime;
+            copy.afternoonStartTime = afternoonStartTime;
+            copy.lunchStart = lunchStart;
+            copy.lunchEnd = lunchEnd;
+            copy.currency = currency;
+            copy.displayCurrency = displayCurrency;
+            copy.roster = roster;
+            copy.useCalendar = useCalendar;
+            copy.autoWorkDays = autoWorkDays;
+            copy.holidayFile = holidayFile;
+            copy.liveOdometer = liveOdometer;
+            copy.odometerFps = odometerFps;
+            copy.activeTimeMode = activeTimeMode;
+            copy.overtimePay = overtimePay;
+            copy.overtimeRules = overtimeRules;
+            copy.fileCosts = fileCosts;
+            copy.fileCostsByDeclaration = fileCostsByDeclaration;
+            copy.payday = payday;
+            copy.sharedEarnings = sharedEarnings;
+            return copy;
+        }
     }
 
-    private State state = new State();
+    // 已发布的 State 不再修改, 每次变更都基于副本并整体替换
+    private volatile State state = new State();
+    private final AtomicLong versions = new AtomicLong();
+    // 第一次读取时才发布, 构造时不获取其他服务
+    private final AtomicReference<ConfigSnapshot> snapshot = new AtomicReference<>();
 
     @Nullable
     @Override
@@ -34,7 +99,166 @@ public class SalaryCalculatorConfig implements PersistentStateComponent<SalaryCa
 
     @Override
     public void loadState(State state) {
-        this.state = state;
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
+        ConfigSnapshot published;
+        synchronized (this) {
+            this.state = state;
+            published = publishLocked(state);
+        }
+        fireChanged(published, start, allocated);
+    }
+
+    /**
+     * 当前配置快照, 无锁读取
+     */
+    public ConfigSnapshot getSnapshot() {
+        ConfigSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot.get();
+            return current != null ? current : publishLocked(state);
+        }
+    }
+
+    static ScheduleForm toScheduleForm(State state) {
+        String[] values = {
+                state.monthlySalary, state.monthlyWorkDays,
+                state.startTime, state.morningEndTime,
+                state.afternoonStartTime, state.endTime,
+                state.lunchStart, state.lunchEnd,
+                state.roster == null ? "" : state.roster
+        };
+        return new ScheduleForm(values, state.currency);
+    }
+
+    /**
+     * 保存已校验的表单, 内容没有变化时返回 false
+     */
+    public boolean applyScheduleForm(ScheduleForm form) {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
+        ConfigSnapshot published;
+        synchronized (this) {
+            if (form.equals(toScheduleForm(state))) {
+                return false;
+            }
+            State updated = state.copy();
+            updated.monthlySalary = form.get(ScheduleForm.Field.MONTHLY_SALARY);
+            updated.monthlyWorkDays = form.get(ScheduleForm.Field.MONTHLY_WORK_DAYS);
+            updated.startTime = form.get(ScheduleForm.Field.START_TIME);
+            updated.morningEndTime = form.get(ScheduleForm.Field.MORNING_END_TIME);
+            updated.afternoonStartTime = form.get(ScheduleForm.Field.AFTERNOON_START_TIME);
+            updated.endTime = form.get(ScheduleForm.Field.END_TIME);
+            updated.lunchStart = form.get(ScheduleForm.Field.LUNCH_START);
+            updated.lunchEnd = form.get(ScheduleForm.Field.LUNCH_END);
+            updated.roster = form.get(ScheduleForm.Field.ROSTER);
+            updated.currency = form.getCurrency();
+            state = updated;
+            published = publishLocked(updated);
+        }
+        fireChanged(published, start, allocated);
+        return true;
+    }
+
+    public void setLiveOdometer(boolean liveOdometer) {
+        update(state -> state.liveOdometer != liveOdometer, state -> state.liveOdometer = liveOdometer);
+    }
+
+    public void setActiveTimeMode(boolean activeTimeMode) {
+        update(state -> state.activeTimeMode != activeTimeMode, state -> state.activeTimeMode = activeTimeMode);
+    }
+
+    public void setCalendar(boolean useCalendar, boolean autoWorkDays, String holidayFile) {
+        update(state -> state.useCalendar != useCalendar || state.autoWorkDays != autoWorkDays
+                        || !holidayFile.equals(state.holidayFile),
+                state -> {
+                    state.useCalendar = useCalendar;
+                    state.autoWorkDays = autoWorkDays;
+                    state.holidayFile = holidayFile;
+                });
+    }
+
+    public void setOvertime(boolean overtimePay, String overtimeRules) {
+        update(state -> state.overtimePay != overtimePay || !overtimeRules.equals(state.overtimeRules),
+                state -> {
+                    state.overtimePay = overtimePay;
+                    state.overtimeRules = overtimeRules;
+                });
+    }
+
+    public void setFileCosts(boolean fileCosts, boolean byDeclaration) {
+        update(state -> state.fileCosts != fileCosts || state.fileCostsByDeclaration != byDeclaration,
+                state -> {
+                    state.fileCosts = fileCosts;
+                    state.fileCostsByDeclaration = byDeclaration;
+                });
+    }
+
+    public void setSharedEarnings(boolean sharedEarnings) {
+        update(state -> state.sharedEarnings != sharedEarnings, state -> state.sharedEarnings = sharedEarnings);
+    }
+
+    public void setPayday(int payday) {
+        update(state -> state.payday != payday, state -> state.payday = payday);
+    }
+
+    public void setDisplayCurrency(String displayCurrency) {
+        update(state -> !displayCurrency.equals(state.displayCurrency),
+                state -> state.displayCurrency = displayCurrency);
+    }
+
+    /**
+     * 汇率或节假日文件变化后用相同的 State 重新发布一个版本, 让结果生效
+     */
+    public void republish() {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
+        ConfigSnapshot published;
+        synchronized (this) {
+            published = publishLocked(state);
+        }
+        fireChanged(published, start, allocated);
+    }
+
+    // 基于当前 State 的副本做修改并发布, changed 为 false 时什么也不做
+    private void update(Predicate<State> changed, Consumer<State> change) {
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
+        ConfigSnapshot published;
+        synchronized (this) {
+            if (!changed.test(state)) {
+                return;
+            }
+            State updated = state.copy();
+            change.accept(updated);
+            state = updated;
+            published = publishLocked(updated);
+        }
+        fireChanged(published, start, allocated);
+    }
+
+    // 在写锁内生成新版本快照, 保证版本号顺序与 State 的替换顺序一致.
+    // 汇率和节假日都只引用后台已经读好的结果, 不在这里读文件
+    private ConfigSnapshot publishLocked(State published) {
+        HolidayCalendars.Loaded holidays = published.useCalendar
+                ? HolidayCalendars.getInstance().get(ConfigSnapshot.holidayFileOf(published)) : null;
+        ConfigSnapshot next = new ConfigSnapshot(versions.incrementAndGet(), published,
+                ExchangeRates.getInstance().getTable(), holidays);
+        snapshot.set(next);
+        return next;
+    }
+
+    // 通知订阅方, 从 startNanos 开始的整个保存过程 (编译快照和通知) 计入保存耗时
+    private static void fireChanged(ConfigSnapshot published, long startNanos, long allocatedAtStart) {
+        try {
+            ApplicationManager.getApplication().getMessageBus()
+                    .syncPublisher(ConfigListener.TOPIC).configChanged(published);
+        } finally {
+            PluginMetrics.getInstance().record(PluginMetrics.Probe.CONFIG_SAVE, startNanos, allocatedAtStart);
+        }
     }
 
     public static SalaryCalculatorConfig getInstance() {
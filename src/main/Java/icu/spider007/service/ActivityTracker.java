@@ -0,0 +1,145 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ex.AnActionListener;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.event.EditorEventMulticaster;
+import com.intellij.util.messages.MessageBusConnection;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.activity.ActivitySlices;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据编辑器事件统计活跃时间
+ * <p>
+ * 文档修改、光标移动和 action 调用都只做一次计数和一次时间片标记, 不加锁也不分配对象;
+ * 活跃时间在节拍时按时间片聚合, 只统计落在工作时段内的部分.
+ * 光标移动和 action 调用同时记到所在项目上, 供 {@link ProjectCosts} 按项目拆分收入;
+ * 光标移动还记到所在文件上, 供 {@link FileCosts} 按文件拆分.
+ * 事件计数可以在任意线程上进行; 活跃时间只在 EDT 上的节拍回调里聚合, 也只应在 EDT 上读取
+ */
+public final class ActivityTracker implements Disposable {
+    // 最后一次活动后 2 分钟内仍算作活跃
+    private static final int IDLE_SLICES = (int) (120_000 / ActivitySlices.SLICE_MILLIS);
+
+    private final LongAdder documentEvents = new LongAdder();
+    private final LongAdder caretEvents = new LongAdder();
+    private final LongAdder actionEvents = new LongAdder();
+    private final ActivitySlices slices = new ActivitySlices(IDLE_SLICES);
+    // 事件时刻与排班日使用同一个时钟, 编辑器事件路径上不再查找服务
+    private final PluginClock clock = PluginClock.getInstance();
+    private final ProjectCosts projectCosts = ProjectCosts.getInstance();
+    private final FileCosts fileCosts = FileCosts.getInstance();
+
+    private long currentDay = Long.MIN_VALUE;
+    private long dayStartMillis;
+    private long activeMillis;
+    private long activeWorkedMillis;
+
+    public ActivityTracker() {
+        EditorEventMulticaster multicaster = EditorFactory.getInstance().getEventMulticaster();
+        multicaster.addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                documentEvents.increment();
+                slices.mark(clock.millis());
+            }
+        }, this);
+        multicaster.addCaretListener(new CaretListener() {
+            @Override
+            public void caretPositionChanged(@NotNull CaretEvent event) {
+                caretEvents.increment();
+                slices.mark(clock.millis());
+                // 打字时光标也会移动, 文档事件不再单独查找所属项目
+                projectCosts.mark(event.getEditor().getProject());
+                fileCosts.mark(event.getEditor());
+            }
+        }, this);
+
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(AnActionListener.TOPIC, new AnActionListener() {
+            @Override
+            public void beforeActionPerformed(@NotNull AnAction action, @NotNull AnActionEvent event) {
+                actionEvents.increment();
+                slices.mark(clock.millis());
+                projectCosts.mark(event.getProject());
+            }
+        });
+        connection.subscribe(SalaryTickListener.TOPIC, this::aggregate);
+    }
+
+    public static ActivityTracker getInstance() {
+        return ApplicationManager.getApplication().getService(ActivityTracker.class);
+    }
+
+    // 节拍回调, 把已结束的时间片累加到当日活跃时间
+    private void aggregate() {
+        WorkDay day = SalaryEngine.getInstance().today();
+        LocalDate date = day == null ? LocalDate.now(clock.getClock()) : day.getDate();
+        if (date.toEpochDay() != currentDay) {
+            currentDay = date.toEpochDay();
+            dayStartMillis = date.atStartOfDay(clock.zone()).toInstant().toEpochMilli();
+            activeMillis = 0;
+            activeWorkedMillis = 0;
+        }
+        WorkSchedule schedule = day == null ? null : day.getSchedule();
+        slices.aggregate(clock.millis(), (from, to) -> addSpan(schedule, from, to));
+    }
+
+    private void addSpan(WorkSchedule schedule, long fromMillis, long toMillis) {
+        // 换算到排班日零点起的毫秒数, 夜班跨零点后超过 24 小时; 排班日之前的部分不统计
+        long to = toMillis - dayStartMillis;
+        if (to <= 0) {
+            return;
+        }
+        long from = Math.max(fromMillis - dayStartMillis, 0);
+        activeMillis += to - from;
+        if (schedule != null) {
+            activeWorkedMillis += schedule.workedMillis(to) - schedule.workedMillis(from);
+        }
+    }
+
+    /**
+     * 今日活跃总时长 (毫秒), 包括工作时段之外
+     */
+    public long getActiveMillis() {
+        return activeMillis;
+    }
+
+    /**
+     * 今日落在工作时段内的活跃时长 (毫秒)
+     */
+    public long getActiveWorkedMillis() {
+        return activeWorkedMillis;
+    }
+
+    /**
+     * 按活跃时间计算的今日收入 (微单位)
+     */
+    public long getActiveEarnedMicros(@NotNull WorkSchedule schedule) {
+        return schedule.earnedMicrosForWorkedMillis(activeWorkedMillis);
+    }
+
+    /**
+     * 累计的编辑器事件数
+     */
+    public long getEventCount() {
+        return documentEvents.sum() + caretEvents.sum() + actionEvents.sum();
+    }
+
+    @Override
+    public void dispose() {
+        // 监听器和订阅都已绑定到本服务, 随服务释放
+    }
+}
@@ -0,0 +1,81 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ThrowableRunnable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计服务共用的后台文件读写
+ * <p>
+ * 文件只在一个单线程执行器上按提交顺序读写; 节拍在 EDT 上累计, 每隔几分钟落盘一次;
+ * 服务释放时把关闭文件排在最后一次写入之后, 并等待它完成.
+ * {@link #isFlushDue()} 和 {@link #flushed()} 只在 EDT 上调用
+ */
+final class BackgroundWriter {
+    private static final long FLUSH_INTERVAL_MILLIS = 5 * 60_000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService executor;
+    private final Logger log;
+    private long lastFlushMillis = System.currentTimeMillis();
+
+    BackgroundWriter(String name, Logger log) {
+        executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(name, 1);
+        this.log = log;
+    }
+
+    /**
+     * 在后台执行并取得结果, 如打开文件或读取记录
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * 在后台执行, 失败时记录 failure 和异常
+     */
+    void execute(ThrowableRunnable<? extends Exception> task, String failure) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn(failure, e);
+            }
+        });
+    }
+
+    /**
+     * 距离上次落盘是否已经超过间隔
+     */
+    boolean isFlushDue() {
+        return System.currentTimeMillis() - lastFlushMillis >= FLUSH_INTERVAL_MILLIS;
+    }
+
+    /**
+     * 记下落盘的时刻, 无论这次有没有需要写入的内容
+     */
+    void flushed() {
+        lastFlushMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 在之前提交的写入都完成后执行 close, 最多等待几秒
+     */
+    void close(ThrowableRunnable<? extends Exception> close, String failure) {
+        // 单线程执行器保证关闭排在最后一次写入之后
+        Future<?> closed = executor.submit(() -> {
+            close.run();
+            return null;
+        });
+        try {
+            closed.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn(failure, e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package icu.spider007.service;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.execution.util.ExecUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.git.CommitIndex;
+import icu.spider007.core.git.CommitLog;
+import icu.spider007.core.git.CommitPrices;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 本地 git 仓库的提交索引, 用于按提交计价
+ * <p>
+ * 每个仓库一个 {@link CommitIndex}, 第一次打开时扫描全部历史, 之后只读取上次索引的 HEAD 之后的新提交.
+ * 历史通过本机的 git 命令逐行流式读取, 内存占用与历史长度无关; 所有 git 调用和文件读写都在单线程的后台执行器上,
+ * 不访问网络. HEAD 没有变化时刷新只需要几次 rev-parse 和一次文件映射
+ */
+public final class CommitHistory implements Disposable {
+    private static final Logger LOG = Logger.getInstance(CommitHistory.class);
+    private static final int GIT_TIMEOUT_MILLIS = 10_000;
+
+    private final BackgroundWriter writer = new BackgroundWriter("PayPerTick Commit History", LOG);
+    private final Path directory = Paths.get(PathManager.getConfigPath(), "payPerTick", "git");
+    // 只在后台执行器上访问, 键为仓库根目录
+    private final Map<String, CommitIndex> indexes = new HashMap<>();
+
+    public static CommitHistory getInstance() {
+        return ApplicationManager.getApplication().getService(CommitHistory.class);
+    }
+
+    /**
+     * 在后台更新 basePath 所在仓库的索引并给当前 git 用户的提交标价, 完成后在 EDT 上回调
+     *
+     * @param roster 标价使用的排班 (薪资货币)
+     */
+    public void refresh(@NotNull String basePath, @NotNull WorkRoster roster, @NotNull ZoneId zone,
+                        @NotNull Consumer<Report> callback) {
+        writer.execute(() -> {
+            Report report;
+            try {
+                report = update(basePath, roster, zone);
+            } catch (Exception e) {
+                LOG.warn("Failed to index git history", e);
+                report = Report.failed("读取提交历史失败: " + e.getMessage());
+            }
+            Report result = report;
+            ApplicationManager.getApplication().invokeLater(() -> callback.accept(result));
+        }, "Failed to report git history");
+    }
+
+    private Report update(String basePath, WorkRoster roster, ZoneId zone) throws Exception {
+        String root = git(basePath, "rev-parse", "--show-toplevel");
+        if (root == null) {
+            return Report.failed("项目不在 git 仓库中");
+        }
+        byte[] head = CommitIndex.parseHash(String.valueOf(git(root, "rev-parse", "HEAD")), 0);
+        if (head == null) {
+            return Report.failed("仓库还没有提交");
+        }
+        String email = git(root, "config", "user.email");
+        if (email == null || email.isEmpty()) {
+            return Report.failed("没有设置 git user.email, 无法区分自己的提交");
+        }
+
+        CommitIndex index = indexes.get(root);
+        if (index == null) {
+            String name = Paths.get(root).getFileName() + "-" + Integer.toHexString(root.hashCode()) + ".idx";
+            index = CommitIndex.open(directory.resolve(name));
+            indexes.put(root, index);
+        }
+        int added = 0;
+        byte[] indexed = index.getHead();
+        if (!Arrays.equals(head, indexed)) {
+            // 只读取上次索引的 HEAD 之后的提交; 它已经不存在 (如 gc 之后) 时退回全量扫描, 重复的提交由索引跳过
+            added = indexed == null ? -1 : scan(root, index, "^" + CommitIndex.formatHash(indexed, 40));
+            if (added < 0) {
+                added = scan(root, index, null);
+            }
+            if (added < 0) {
+                return Report.failed("git log 执行失败");
+            }
+            index.commit(head);
+        }
+        CommitPrices prices = new CommitPrices(index.view(), CommitIndex.authorKey(email), roster, zone);
+        return new Report(root, email, index.view().size(), added, prices, null);
+    }
+
+    // 流式读取 git log 追加到索引, 失败时回滚并返回 -1
+    private static int scan(String root, CommitIndex index, @Nullable String exclude) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "git", "-C", root, "log", "--encoding=UTF-8", "--format=" + CommitLog.FORMAT, "HEAD"));
+        if (exclude != null) {
+            command.add(exclude);
+        }
+        Process process = new GeneralCommandLine(command)
+                .withCharset(StandardCharsets.UTF_8)
+                .withRedirectErrorStream(true)
+                .createProcess();
+        int added;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            added = CommitLog.read(in, index);
+        } catch (Exception e) {
+            process.destroy();
+            index.rollback();
+            throw e;
+        }
+        if (process.waitFor() != 0) {
+            index.rollback();
+            return -1;
+        }
+        return added;
+    }
+
+    // 执行一条输出很短的 git 命令, 失败时返回 null
+    @Nullable
+    private static String git(String directory, String... args) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-C", directory));
+        command.addAll(Arrays.asList(args));
+        ProcessOutput output = ExecUtil.execAndGetOutput(
+                new GeneralCommandLine(command).withCharset(StandardCharsets.UTF_8), GIT_TIMEOUT_MILLIS);
+        return output.getExitCode() == 0 && !output.isTimeout() ? output.getStdout().trim() : null;
+    }
+
+    @Override
+    public void dispose() {
+        writer.close(() -> {
+            for (CommitIndex index : indexes.values()) {
+                try {
+                    index.close();
+                } catch (Exception e) {
+                    LOG.warn("Failed to close PayPerTick commit index", e);
+                }
+            }
+        }, "Failed to close PayPerTick commit history");
+    }
+
+    /**
+     * 一次刷新的结果, 不可变
+     */
+    public static final class Report {
+        private final String root;
+        private final String email;
+        private final int commitCount;
+        private final int added;
+        private final CommitPrices prices;
+        private final String error;
+
+        private Report(String root, String email, int commitCount, int added, CommitPrices prices, String error) {
+            this.root = root;
+            this.email = email;
+            this.commitCount = commitCount;
+            this.added = added;
+            this.prices = prices;
+            this.error = error;
+        }
+
+        static Report failed(String error) {
+            return new Report(null, null, 0, 0, null, error);
+        }
+
+        public String getRoot() {
+            return root;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * 索引中全部作者的提交数
+         */
+        public int getCommitCount() {
+            return commitCount;
+        }
+
+        /**
+         * 本次新索引的提交数
+         */
+        public int getAdded() {
+            return added;
+        }
+
+        /**
+         * 当前用户的提交和价格, 只在 EDT 上读取
+         */
+        public CommitPrices getPrices() {
+            return prices;
+        }
+
+        /**
+         * 失败原因, 成功时返回 null
+         */
+        @Nullable
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package icu.spider007.service;
+
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+
+import java.time.LocalDateTime;
+
+/**
+ * 两次节拍之间新增的收入 (薪资货币), 供按项目、按文件拆分收入使用
+ * <p>
+ * 刚启动、休眠醒来、改了配置或时钟回拨时只重新对齐, 不给出这段差额, 避免把与编码无关的收入拆分出去.
+ * 只在 EDT 上使用
+ */
+final class EarningsDelta {
+    // 两次节拍间隔超过这个值 (如电脑休眠) 时, 这段时间的收入不拆分
+    private static final long MAX_TICK_GAP_MILLIS = 10 * 60_000;
+
+    private int epochDay = Integer.MIN_VALUE;
+    private long micros;
+    private int seconds;
+    // 上次的当日收入和工作秒数, 以及当时的配置版本和时刻; lastEarned 为 -1 表示需要重新对齐
+    private long lastEarned = -1;
+    private int lastWorked;
+    private long lastVersion = -1;
+    private long lastMillis;
+
+    /**
+     * 按当前时刻更新
+     *
+     * @return 是否有可以拆分的差额 (可能为 0); 配置不合法时返回 false
+     */
+    boolean update(ConfigSnapshot config, PluginClock clock) {
+        WorkRoster roster = config.getSalaryRoster();
+        if (roster == null) {
+            lastEarned = -1;
+            return false;
+        }
+        LocalDateTime now = clock.now();
+        long nowMillis = clock.millis();
+        WorkDay day = SalaryEngine.getInstance().resolve(roster, now);
+        int second = day.secondOf(now.toLocalTime());
+        long earned = day.getCurve().earnedMicros(second);
+        int worked = day.getSchedule().workedSeconds(second);
+        int today = (int) day.getDate().toEpochDay();
+        if (today != epochDay) {
+            // 第一次节拍时 lastMillis 还是 0, 下面的间隔检查会让它只对齐
+            epochDay = today;
+            lastEarned = 0;
+            lastWorked = 0;
+        }
+
+        boolean valid = lastEarned >= 0 && nowMillis - lastMillis <= MAX_TICK_GAP_MILLIS
+                && lastVersion == config.getVersion() && earned >= lastEarned && worked >= lastWorked;
+        micros = valid ? earned - lastEarned : 0;
+        seconds = valid ? worked - lastWorked : 0;
+        lastEarned = earned;
+        lastWorked = worked;
+        lastVersion = config.getVersion();
+        lastMillis = nowMillis;
+        return valid;
+    }
+
+    /**
+     * 当前排班日, 自 1970-01-01 起的天数, 还没有成功更新过时为 Integer.MIN_VALUE
+     */
+    int getEpochDay() {
+        return epochDay;
+    }
+
+    long getMicros() {
+        return micros;
+    }
+
+    int getSeconds() {
+        return seconds;
+    }
+}
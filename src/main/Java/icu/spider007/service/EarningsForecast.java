@@ -0,0 +1,97 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.forecast.ForecastTable;
+import icu.spider007.core.ledger.LedgerRecord;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 本月、本年的收入和预测, 以及距离发薪日的天数
+ * <p>
+ * 配置变化或跳过了几天 (如 IDE 关闭) 时, 在后台读取账本建立 {@link ForecastTable};
+ * 之后每个节拍只更新今天的收入, 跨天时在原表上追加一天, 状态栏和工具窗口的查询都是常数时间.
+ * 除账本读取外都在 EDT 上执行
+ */
+public final class EarningsForecast implements Disposable {
+    private ForecastTable table;
+    private long configVersion = -1;
+    // 每次重建递增, 丢弃过时的后台结果
+    private long generation;
+    private LocalDate building;
+
+    public EarningsForecast() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SalaryTickListener.TOPIC, this::update);
+    }
+
+    public static EarningsForecast getInstance() {
+        return ApplicationManager.getApplication().getService(EarningsForecast.class);
+    }
+
+    /**
+     * 当前的预测表 (薪资货币), 还没有建立好或配置不合法时返回 null; 只在 EDT 上读取
+     */
+    @Nullable
+    public ForecastTable getTable() {
+        return table;
+    }
+
+    private void update() {
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        // 与账本一致, 按薪资货币计算
+        WorkRoster roster = config.getSalaryRoster();
+        if (roster == null) {
+            table = null;
+            configVersion = -1;
+            return;
+        }
+        LocalDateTime now = PluginClock.getInstance().now();
+        WorkDay day = SalaryEngine.getInstance().resolve(roster, now);
+        LocalDate date = day.getDate();
+        if (config.getVersion() != configVersion) {
+            rebuild(config, roster, date);
+        } else if (table != null && !table.getDate().equals(date) && !table.advance(date)) {
+            rebuild(config, roster, date);
+        } else if (table == null && !date.equals(building)) {
+            rebuild(config, roster, date);
+        }
+        if (table != null && table.getDate().equals(date)) {
+            table.setTodayEarned(day.getCurve().earnedMicros(day.secondOf(now.toLocalTime())));
+        }
+    }
+
+    private void rebuild(ConfigSnapshot config, WorkRoster roster, LocalDate date) {
+        table = null;
+        configVersion = config.getVersion();
+        building = date;
+        long current = ++generation;
+        int payday = config.getPayday();
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            // 今年今天之前的实际收入, 最多一年的记录
+            List<LedgerRecord> records = date.getDayOfYear() == 1 ? List.of()
+                    : EarningsLedger.getInstance().getRange(date.withDayOfYear(1), date.minusDays(1));
+            ForecastTable built = new ForecastTable(roster, date, payday, records);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (generation == current) {
+                    table = built;
+                }
+            }, ModalityState.any());
+        });
+    }
+
+    @Override
+    public void dispose() {
+        // 订阅随服务释放
+    }
+}
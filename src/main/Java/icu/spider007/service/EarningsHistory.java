@@ -0,0 +1,165 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.chart.SampleRing;
+import icu.spider007.core.ledger.LedgerRecord;
+import icu.spider007.core.overtime.PayCurve;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 今日收入曲线的采样, 以及昨日曲线和本月日均收入等对比数据
+ * <p>
+ * 每个节拍按秒采样一次写入 {@link SampleRing}, 容量固定, 跑满一整天也不会增长堆内存.
+ * 排班日或配置变化时清空重来, 已经过去的部分按排班每分钟补一个采样, 并在后台从账本读取对比数据.
+ * 除账本读取外都在 EDT 上执行
+ */
+public final class EarningsHistory implements Disposable {
+    // 打开时补齐已过去部分的采样间隔
+    private static final int BACKFILL_STEP_SECONDS = 60;
+
+    private final SampleRing today = new SampleRing();
+    private WorkDay day;
+    private long configVersion = -1;
+    // 对比数据, 每次清空或后台读取完成时递增, 图表据此整体重绘
+    private long revision;
+    private WorkSchedule yesterday;
+    private long yesterdayEarnedMicros = -1;
+    private long monthAverageMicros = -1;
+
+    public EarningsHistory() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SalaryTickListener.TOPIC, this::sample);
+    }
+
+    public static EarningsHistory getInstance() {
+        return ApplicationManager.getApplication().getService(EarningsHistory.class);
+    }
+
+    /**
+     * 记录当前时刻的收入, 同一秒内重复调用只记一次
+     */
+    public void sample() {
+        SalaryEngine engine = SalaryEngine.getInstance();
+        WorkDay current = engine.today();
+        if (current == null) {
+            return;
+        }
+        long version = engine.getVersion();
+        if (day == null || !day.getDate().equals(current.getDate()) || version != configVersion) {
+            reset(current, version, engine.getRoster());
+        }
+        int second = current.secondOf(PluginClock.getInstance().time());
+        today.add(second, current.getCurve().earnedMicros(second));
+    }
+
+    private void reset(WorkDay current, long version, WorkRoster roster) {
+        day = current;
+        configVersion = version;
+        today.clear();
+        WorkSchedule schedule = current.getSchedule();
+        PayCurve curve = current.getCurve();
+        int now = current.secondOf(PluginClock.getInstance().time());
+        // 从上班 (休息日从零点) 补到现在, 包括已经过去的加班
+        for (int second = schedule.getShiftStart(); second < now; second += BACKFILL_STEP_SECONDS) {
+            today.add(second, curve.earnedMicros(second));
+        }
+        LocalDate date = current.getDate();
+        yesterday = roster == null ? null : roster.scheduleFor(date.minusDays(1));
+        yesterdayEarnedMicros = -1;
+        monthAverageMicros = -1;
+        revision++;
+        AppExecutorUtil.getAppExecutorService().execute(() -> loadLedger(date, version));
+    }
+
+    // 后台读取昨天的实际收入和本月此前有收入的日子的日均收入
+    private void loadLedger(LocalDate date, long version) {
+        LocalDate yesterdayDate = date.minusDays(1);
+        LocalDate monthStart = date.withDayOfMonth(1);
+        LocalDate from = yesterdayDate.isBefore(monthStart) ? yesterdayDate : monthStart;
+        List<LedgerRecord> records = EarningsLedger.getInstance().getRange(from, yesterdayDate);
+        int yesterdayEpoch = (int) yesterdayDate.toEpochDay();
+        int monthStartEpoch = (int) monthStart.toEpochDay();
+        long yesterdayEarned = -1;
+        long total = 0;
+        int days = 0;
+        for (LedgerRecord record : records) {
+            if (record.getEpochDay() == yesterdayEpoch) {
+                yesterdayEarned = record.getEarnedMicros();
+            }
+            if (record.getEpochDay() >= monthStartEpoch && record.getEarnedMicros() > 0) {
+                total += record.getEarnedMicros();
+                days++;
+            }
+        }
+        // 账本按薪资货币记录, 换算成曲线使用的显示货币; 快照版本不一致时结果会被丢弃
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        long earned = yesterdayEarned < 0 ? -1 : config.toDisplayMicros(yesterdayEarned);
+        long average = days == 0 ? -1 : config.toDisplayMicros(total / days);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (configVersion != version || day == null || !day.getDate().equals(date)) {
+                // 读取期间已经换了一天或改了配置
+                return;
+            }
+            yesterdayEarnedMicros = earned;
+            monthAverageMicros = average;
+            revision++;
+        }, ModalityState.any());
+    }
+
+    /**
+     * 今日的采样, 只在 EDT 上读取
+     */
+    public SampleRing getToday() {
+        return today;
+    }
+
+    /**
+     * 采样所属的排班日, 还没有采样时返回 null
+     */
+    @Nullable
+    public WorkDay getDay() {
+        return day;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * 昨天的排班, 用于画昨日曲线
+     */
+    @Nullable
+    public WorkSchedule getYesterday() {
+        return yesterday;
+    }
+
+    /**
+     * 账本中昨天的实际收入, 没有记录时返回 -1
+     */
+    public long getYesterdayEarnedMicros() {
+        return yesterdayEarnedMicros;
+    }
+
+    /**
+     * 本月此前有收入的日子的日均收入, 没有记录时返回 -1
+     */
+    public long getMonthAverageMicros() {
+        return monthAverageMicros;
+    }
+
+    @Override
+    public void dispose() {
+        // 节拍订阅由 MessageBusConnection 随服务一起释放
+    }
+}
@@ -0,0 +1,152 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.ledger.LedgerFile;
+import icu.spider007.core.ledger.LedgerRecord;
+import icu.spider007.core.overtime.PayCurve;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按天持久化的收入账本
+ * <p>
+ * 每个节拍在 EDT 上只记录当天最新的统计值, 每隔几分钟或跨天时把记录交给单线程的后台执行器
+ * 批量追加到 {@link LedgerFile}, 读写文件都不会阻塞 EDT.
+ * 当天的统计状态只由 EDT 上的节拍回调读写, 不加锁; 文件只在后台执行器上访问
+ */
+public final class EarningsLedger implements Disposable {
+    private static final Logger LOG = Logger.getInstance(EarningsLedger.class);
+
+    private final BackgroundWriter writer = new BackgroundWriter("PayPerTick Ledger", LOG);
+    private final Future<LedgerFile> ledger;
+
+    // 当天最新的记录, 落盘后仍保留, 跨天时据此补齐前一天
+    private LedgerRecord latest;
+    // latest 是否还没有交给后台线程
+    private boolean dirty;
+    private WorkSchedule currentSchedule;
+    private int currentDay = Integer.MIN_VALUE;
+
+    public EarningsLedger() {
+        Path path = Paths.get(PathManager.getConfigPath(), "payPerTick", "ledger.bin");
+        ledger = writer.submit(() -> LedgerFile.open(path));
+        writer.execute(this::restoreOvertime, "Failed to read PayPerTick ledger");
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SalaryTickListener.TOPIC, this::record);
+    }
+
+    public static EarningsLedger getInstance() {
+        return ApplicationManager.getApplication().getService(EarningsLedger.class);
+    }
+
+    // 重启 IDE 后, 当天之前观察到的加班接着计
+    private void restoreOvertime() throws Exception {
+        WorkRoster roster = SalaryCalculatorConfig.getInstance().getSnapshot().getSalaryRoster();
+        if (roster == null) {
+            return;
+        }
+        LocalDate date = roster.resolve(PluginClock.getInstance().now()).getDate();
+        int epochDay = (int) date.toEpochDay();
+        List<LedgerRecord> records = ledger.get().range(epochDay, epochDay);
+        if (!records.isEmpty() && records.get(0).getOvertimeSeconds() > 0) {
+            SalaryEngine.getInstance().restoreOvertime(date, records.get(0).getOvertimeSeconds());
+        }
+    }
+
+    // 节拍回调, 只更新内存中的当日记录
+    private void record() {
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        // 账本按薪资货币记录, 切换显示货币或汇率变化不影响历史数据
+        WorkRoster roster = config.getSalaryRoster();
+        if (roster == null) {
+            return;
+        }
+        // 夜班跨零点后仍记在开始那一天
+        LocalDateTime now = PluginClock.getInstance().now();
+        WorkDay day = SalaryEngine.getInstance().resolve(roster, now);
+        WorkSchedule schedule = day.getSchedule();
+        int today = (int) day.getDate().toEpochDay();
+        int second = day.secondOf(now.toLocalTime());
+        if (today != currentDay) {
+            // 跨天, 前一天一直在计时, 按整天补齐后立即落盘; 已计入的加班费不会少于整天的正常工资.
+            // 即使前一天的最后一条记录已经定期落盘, 也要补齐
+            if (latest != null && currentSchedule != null) {
+                int total = currentSchedule.getTotalSeconds();
+                latest = new LedgerRecord(latest.getEpochDay(), total,
+                        Math.max(latest.getEarnedMicros(), currentSchedule.earnedMicrosForWorkedMillis(total * 1000L)),
+                        latest.getOvertimeSeconds(), latest.getScheduleId());
+                dirty = true;
+            }
+            flush();
+            latest = null;
+            currentDay = today;
+        }
+        currentSchedule = schedule;
+
+        // 加班时长与收入中的加班费一致: 只计观察到的时间, 已按上限和取整规则计算
+        PayCurve curve = day.getCurve();
+        latest = new LedgerRecord(today, schedule.workedSeconds(second), curve.earnedMicros(second),
+                curve.creditedOvertimeSeconds(second), config.getScheduleId());
+        dirty = true;
+        if (writer.isFlushDue()) {
+            flush();
+        }
+    }
+
+    // 把还没落盘的当天记录交给后台线程追加
+    private void flush() {
+        LedgerRecord record = latest;
+        writer.flushed();
+        if (!dirty || record == null) {
+            return;
+        }
+        dirty = false;
+        writer.execute(() -> ledger.get().append(Collections.singletonList(record)),
+                "Failed to write PayPerTick ledger");
+    }
+
+    /**
+     * 某一天的记录, 在后台线程读取, 不要在 EDT 上调用
+     */
+    @Nullable
+    public LedgerRecord getDay(LocalDate date) {
+        List<LedgerRecord> records = getRange(date, date);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * [from, to] 范围内每天的记录, 在后台线程读取, 不要在 EDT 上调用
+     */
+    public List<LedgerRecord> getRange(LocalDate from, LocalDate to) {
+        try {
+            return writer.submit(() -> ledger.get().range((int) from.toEpochDay(), (int) to.toEpochDay()))
+                    .get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            LOG.warn("Failed to read PayPerTick ledger", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        flush();
+        writer.close(() -> ledger.get().close(), "Failed to close PayPerTick ledger");
+    }
+}
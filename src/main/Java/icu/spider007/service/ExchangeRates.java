@@ -0,0 +1,84 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.rates.FileRateProvider;
+import icu.spider007.core.rates.RateCache;
+import icu.spider007.core.rates.RateTable;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 显示货币换算用的汇率
+ * <p>
+ * 默认从 {@code <配置目录>/payPerTick/rates.txt} 读取 (格式见 {@link RateTable}), 没有时使用上次成功的汇率或内置参考汇率.
+ * 后台定期刷新, 汇率变化时重新发布配置快照, 换算结果在快照中预先算好, 节拍路径上不查汇率
+ */
+public final class ExchangeRates implements Disposable {
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // 检查汇率文件是否被修改的间隔, 修改后不等缓存过期立即生效
+    private static final long POLL_SECONDS = 60;
+
+    private final FileRateProvider provider;
+    private final RateCache cache;
+    private final ScheduledFuture<?> future;
+    // 只在刷新任务中访问
+    private long fileModifiedMillis = -1;
+
+    public ExchangeRates() {
+        Path directory = Paths.get(PathManager.getConfigPath(), "payPerTick");
+        provider = new FileRateProvider(directory.resolve("rates.txt"));
+        cache = new RateCache(provider, directory.resolve("rates-last-good.txt"), TTL_MILLIS);
+        future = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::refresh, 0, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static ExchangeRates getInstance() {
+        return ApplicationManager.getApplication().getService(ExchangeRates.class);
+    }
+
+    /**
+     * 当前汇率, 不阻塞
+     */
+    public RateTable getTable() {
+        return cache.get();
+    }
+
+    /**
+     * 最近一次读取汇率文件失败的原因, 没有错误时返回 null
+     */
+    @Nullable
+    public String getError() {
+        return cache.getError();
+    }
+
+    private void refresh() {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(provider.getPath()).toMillis();
+        } catch (IOException e) {
+            modified = -1;
+        }
+        if (modified != fileModifiedMillis) {
+            fileModifiedMillis = modified;
+            cache.invalidate();
+        }
+        if (cache.refresh(System.currentTimeMillis())) {
+            SalaryCalculatorConfig.getInstance().republish();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        future.cancel(false);
+    }
+}
@@ -0,0 +1,327 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.DefaultLanguageHighlighterColors;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorCustomElementRenderer;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.editor.Inlay;
+import com.intellij.openapi.editor.colors.EditorFontType;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.ui.JBColor;
+import com.intellij.util.messages.MessageBusConnection;
+import icu.spider007.config.ConfigListener;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.MoneyFormat;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.activity.FileCostTable;
+import icu.spider007.core.ledger.CostIndexFile;
+import icu.spider007.core.ledger.CostMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Future;
+
+/**
+ * 按文件 (以及顶层声明) 累计的编码收入, 在编辑器顶部显示 "这段代码花了多少钱"
+ * <p>
+ * 光标所在的文件按编辑活动分得每个节拍的收入 (拆分规则见 {@link FileCostTable}), 细分模式下
+ * 最后编辑的文件分到的部分再记到光标所在的顶层声明上. 文件的键是路径的哈希, 重启后仍然对应同一个文件.
+ * 累计值只在 EDT 上的基本类型哈希表里更新, 每隔几分钟把变化过的键交给单线程的后台执行器,
+ * 追加到 {@link CostIndexFile}. 金额按薪资货币记录, 显示时再换算.
+ * 关闭时不读取索引也不监听编辑器之外的事件.
+ * 编辑器事件和节拍都在 EDT 上, 配置变化也转到 EDT 处理, 因此除索引文件外的状态都不加锁
+ */
+public final class FileCosts implements Disposable {
+    private static final Logger LOG = Logger.getInstance(FileCosts.class);
+    private static final Key<Long> FILE_KEY = Key.create("PayPerTick.FileCosts.Key");
+    private static final Key<Inlay<CostRenderer>> INLAY = Key.create("PayPerTick.FileCosts.Inlay");
+
+    private final BackgroundWriter writer = new BackgroundWriter("PayPerTick File Costs", LOG);
+    private final Path path = Paths.get(PathManager.getConfigPath(), "payPerTick", "file-costs.bin");
+    private final PluginClock clock = PluginClock.getInstance();
+
+    private final FileCostTable table = new FileCostTable();
+    private EarningsDelta delta = new EarningsDelta();
+    private boolean enabled;
+    private boolean byDeclaration;
+    // 索引在第一次开启时打开, 历史累计值合并进 table 之前不落盘
+    private Future<CostIndexFile> index;
+    private boolean loaded;
+    @Nullable
+    private Editor lastEditor;
+
+    public FileCosts() {
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(SalaryTickListener.TOPIC, this::settle);
+        // 配置可能在后台线程发布, 统一回到 EDT 处理
+        connection.subscribe(ConfigListener.TOPIC, snapshot ->
+                ApplicationManager.getApplication().invokeLater(this::applyConfig));
+        EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+            @Override
+            public void editorCreated(@NotNull EditorFactoryEvent event) {
+                if (enabled) {
+                    attach(event.getEditor());
+                }
+            }
+
+            @Override
+            public void editorReleased(@NotNull EditorFactoryEvent event) {
+                if (event.getEditor() == lastEditor) {
+                    lastEditor = null;
+                }
+            }
+        }, this);
+        ApplicationManager.getApplication().invokeLater(this::applyConfig);
+    }
+
+    public static FileCosts getInstance() {
+        return ApplicationManager.getApplication().getService(FileCosts.class);
+    }
+
+    /**
+     * 记录一次发生在 editor 中的编辑活动, 在 EDT 上调用
+     */
+    public void mark(@NotNull Editor editor) {
+        if (!enabled) {
+            return;
+        }
+        long key = keyOf(FileDocumentManager.getInstance().getFile(editor.getDocument()));
+        if (key != 0) {
+            table.mark(key, clock.millis());
+            lastEditor = editor;
+        }
+    }
+
+    // 文件的键缓存在 VirtualFile 上, 打字路径上只做一次查找
+    private static long keyOf(@Nullable VirtualFile file) {
+        if (file == null) {
+            return 0;
+        }
+        Long key = file.getUserData(FILE_KEY);
+        if (key == null) {
+            key = FileCostTable.fileKey(file.getUrl());
+            file.putUserData(FILE_KEY, key);
+        }
+        return key;
+    }
+
+    private void applyConfig() {
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        byDeclaration = config.isFileCostsByDeclaration();
+        if (config.isFileCosts() == enabled) {
+            refreshInlays();
+            return;
+        }
+        enabled = config.isFileCosts();
+        if (enabled) {
+            // 关闭期间的收入不拆分, 重新对齐
+            delta = new EarningsDelta();
+            if (index == null) {
+                load();
+            }
+            for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+                attach(editor);
+            }
+        } else {
+            flush();
+            for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+                detach(editor);
+            }
+            lastEditor = null;
+        }
+    }
+
+    // 在后台打开索引, 读到的副本回到 EDT 合并
+    private void load() {
+        Future<CostIndexFile> file = writer.submit(() -> CostIndexFile.open(path));
+        index = file;
+        writer.execute(() -> {
+            CostMap stored = file.get().getEntries().copy();
+            ApplicationManager.getApplication().invokeLater(() -> {
+                table.merge(stored);
+                loaded = true;
+                refreshInlays();
+            });
+        }, "Failed to read PayPerTick file costs");
+    }
+
+    // 节拍回调, 把上次节拍以来的收入拆分到各文件
+    private void settle() {
+        if (!enabled) {
+            return;
+        }
+        if (delta.update(SalaryCalculatorConfig.getInstance().getSnapshot(), clock)
+                && table.settle(delta.getMicros(), delta.getSeconds(), clock.millis())) {
+            if (byDeclaration) {
+                settleDeclaration();
+            }
+            refreshInlays();
+        }
+        if (writer.isFlushDue()) {
+            flush();
+        }
+    }
+
+    // 最后编辑的文件分到的收入再记给光标所在的顶层声明
+    private void settleDeclaration() {
+        Editor editor = lastEditor;
+        if (editor == null || editor.isDisposed()) {
+            return;
+        }
+        long fileKey = keyOf(FileDocumentManager.getInstance().getFile(editor.getDocument()));
+        String name = declarationAt(editor);
+        if (fileKey == 0 || name == null) {
+            return;
+        }
+        for (int i = 0; i < table.getShareCount(); i++) {
+            if (table.getShareKey(i) == fileKey) {
+                table.add(FileCostTable.declarationKey(fileKey, name), table.getShareMicros(i), table.getShareSeconds(i));
+            }
+        }
+    }
+
+    // 光标所在的顶层声明 (PsiFile 的直接子元素) 的名字, 只使用已解析的 PSI
+    @Nullable
+    private static String declarationAt(@NotNull Editor editor) {
+        Project project = editor.getProject();
+        if (project == null || project.isDisposed()) {
+            return null;
+        }
+        PsiFile file = PsiDocumentManager.getInstance(project).getCachedPsiFile(editor.getDocument());
+        if (file == null) {
+            return null;
+        }
+        PsiElement element = file.findElementAt(editor.getCaretModel().getOffset());
+        while (element != null && element.getParent() != file) {
+            element = element.getParent();
+        }
+        return element instanceof PsiNamedElement ? ((PsiNamedElement) element).getName() : null;
+    }
+
+    // 把变化过的键一次交给后台线程追加
+    private void flush() {
+        writer.flushed();
+        if (!loaded) {
+            return;
+        }
+        CostMap changed = table.drainDirty();
+        if (changed == null) {
+            return;
+        }
+        Future<CostIndexFile> file = index;
+        writer.execute(() -> file.get().append(changed), "Failed to write PayPerTick file costs");
+    }
+
+    // 只给打开文件的主编辑器加提示, 差异视图、控制台等不显示
+    private void attach(@NotNull Editor editor) {
+        if (editor.getEditorKind() != EditorKind.MAIN_EDITOR || editor.getUserData(INLAY) != null
+                || FileDocumentManager.getInstance().getFile(editor.getDocument()) == null) {
+            return;
+        }
+        CostRenderer renderer = new CostRenderer();
+        renderer.text = text(editor);
+        Inlay<CostRenderer> inlay = editor.getInlayModel().addBlockElement(0, false, true, 0, renderer);
+        editor.putUserData(INLAY, inlay);
+    }
+
+    private static void detach(@NotNull Editor editor) {
+        Inlay<CostRenderer> inlay = editor.getUserData(INLAY);
+        if (inlay != null) {
+            Disposer.dispose(inlay);
+            editor.putUserData(INLAY, null);
+        }
+    }
+
+    // 文本有变化的提示才重新布局和重绘
+    private void refreshInlays() {
+        if (!enabled) {
+            return;
+        }
+        for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+            Inlay<CostRenderer> inlay = editor.getUserData(INLAY);
+            if (inlay == null || !inlay.isValid()) {
+                continue;
+            }
+            String text = text(editor);
+            if (!text.equals(inlay.getRenderer().text)) {
+                inlay.getRenderer().text = text;
+                inlay.update();
+            }
+        }
+    }
+
+    // 如 "本文件: ¥12.30 (25分钟) · SalaryEngine: ¥8.00"
+    private String text(@NotNull Editor editor) {
+        WorkDay day = SalaryEngine.getInstance().today();
+        if (!loaded || day == null) {
+            return "本文件: …";
+        }
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        MoneyFormat format = day.getSchedule().getMoneyFormat();
+        long fileKey = keyOf(FileDocumentManager.getInstance().getFile(editor.getDocument()));
+        String text = "本文件: " + format.format(config.toDisplayMicros(table.getMicros(fileKey)))
+                + " (" + table.getSeconds(fileKey) / 60 + "分钟)";
+        String name = byDeclaration ? declarationAt(editor) : null;
+        if (name == null) {
+            return text;
+        }
+        long key = FileCostTable.declarationKey(fileKey, name);
+        return text + " · " + name + ": " + format.format(config.toDisplayMicros(table.getMicros(key)));
+    }
+
+    @Override
+    public void dispose() {
+        if (index == null) {
+            return;
+        }
+        flush();
+        Future<CostIndexFile> file = index;
+        writer.close(() -> file.get().close(), "Failed to close PayPerTick file costs");
+    }
+
+    // 注释颜色的斜体单行文字
+    private static final class CostRenderer implements EditorCustomElementRenderer {
+        String text = "";
+
+        @Override
+        public int calcWidthInPixels(@NotNull Inlay inlay) {
+            Editor editor = inlay.getEditor();
+            return editor.getContentComponent().getFontMetrics(font(editor)).stringWidth(text);
+        }
+
+        @Override
+        public void paint(@NotNull Inlay inlay, @NotNull Graphics g, @NotNull Rectangle targetRegion,
+                          @NotNull TextAttributes textAttributes) {
+            Editor editor = inlay.getEditor();
+            TextAttributes comment = editor.getColorsScheme().getAttributes(DefaultLanguageHighlighterColors.LINE_COMMENT);
+            Color color = comment == null ? null : comment.getForegroundColor();
+            g.setColor(color == null ? JBColor.GRAY : color);
+            g.setFont(font(editor));
+            g.drawString(text, targetRegion.x, targetRegion.y + editor.getAscent());
+        }
+
+        private static Font font(Editor editor) {
+            return editor.getColorsScheme().getFont(EditorFontType.ITALIC);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.calendar.HolidayRules;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置中使用的节假日规则
+ * <p>
+ * 内置节假日和用户的节假日文件都在后台读取, 读好后重新发布配置快照; 发布快照时只引用已经读好的规则,
+ * 不在发布路径 (可能在 EDT 上) 读文件. 后台定期检查用户文件的修改时间, 修改后重新读取
+ */
+public final class HolidayCalendars implements Disposable {
+    // 检查节假日文件是否被修改的间隔
+    private static final long POLL_SECONDS = 60;
+
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("PayPerTick Holidays", 1);
+    private final ScheduledFuture<?> future;
+    private volatile Loaded loaded;
+
+    /**
+     * 读好的一份节假日规则
+     */
+    public static final class Loaded {
+        private final String file;
+        private final long modifiedMillis;
+        private final HolidayRules rules;
+        private final ScheduleException error;
+
+        private Loaded(String file, long modifiedMillis, HolidayRules rules, @Nullable ScheduleException error) {
+            this.file = file;
+            this.modifiedMillis = modifiedMillis;
+            this.rules = rules;
+            this.error = error;
+        }
+
+        /**
+         * 节假日规则, 用户文件有问题时是内置节假日
+         */
+        @NotNull
+        public HolidayRules getRules() {
+            return rules;
+        }
+
+        /**
+         * 读取用户文件失败的原因, 没有错误时返回 null
+         */
+        @Nullable
+        public ScheduleException getError() {
+            return error;
+        }
+    }
+
+    public HolidayCalendars() {
+        future = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(() -> executor.execute(this::refresh), POLL_SECONDS, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static HolidayCalendars getInstance() {
+        return ApplicationManager.getApplication().getService(HolidayCalendars.class);
+    }
+
+    /**
+     * 已经读好的节假日规则, 不阻塞; file 为空表示内置节假日. 换了文件时先返回上一份规则并在后台读取,
+     * 读好后重新发布配置快照; 启动后还没有读好任何规则时返回 null
+     */
+    @Nullable
+    public Loaded get(String file) {
+        Loaded current = loaded;
+        if (current == null || !current.file.equals(file)) {
+            executor.execute(this::refresh);
+        }
+        return current;
+    }
+
+    // 按当前配置读取节假日规则, 结果变化时重新发布配置快照; 只在单线程执行器上运行
+    private void refresh() {
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        if (!config.isUseCalendar()) {
+            return;
+        }
+        String file = config.getHolidayFile();
+        Loaded current = loaded;
+        long modified = modifiedMillis(file);
+        if (current != null && current.file.equals(file) && current.modifiedMillis == modified) {
+            return;
+        }
+        HolidayRules rules = HolidayRules.bundled();
+        ScheduleException error = null;
+        if (!file.isEmpty()) {
+            // 用户文件有问题时退回内置节假日, 错误单独提示, 不影响收入显示
+            try {
+                rules = HolidayRules.load(Paths.get(file));
+            } catch (ScheduleException e) {
+                error = e;
+            } catch (InvalidPathException e) {
+                error = new ScheduleException(ScheduleException.Kind.CALENDAR, "无效的文件路径: " + file);
+            }
+        }
+        loaded = new Loaded(file, modified, rules, error);
+        SalaryCalculatorConfig.getInstance().republish();
+    }
+
+    private static long modifiedMillis(String file) {
+        if (file.isEmpty()) {
+            return 0;
+        }
+        try {
+            Path path = Paths.get(file);
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException | InvalidPathException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        future.cancel(false);
+    }
+}
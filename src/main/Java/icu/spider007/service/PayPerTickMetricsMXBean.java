@@ -0,0 +1,31 @@
+package icu.spider007.service;
+
+import icu.spider007.core.metrics.ProbeStats;
+
+import java.util.List;
+
+/**
+ * 通过 JMX 暴露插件自身的性能统计, 对象名为 {@link PluginMetrics#OBJECT_NAME}
+ */
+public interface PayPerTickMetricsMXBean {
+
+    /**
+     * 每个被测方法的统计快照, 时间单位为纳秒
+     */
+    List<ProbeStats.Snapshot> getProbes();
+
+    /**
+     * 开始统计 (启动或上次重置) 的时刻, epoch 毫秒
+     */
+    long getSinceMillis();
+
+    /**
+     * 是否支持统计分配字节数
+     */
+    boolean isAllocationSupported();
+
+    /**
+     * 清空所有统计
+     */
+    void reset();
+}
@@ -0,0 +1,92 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * 插件统一使用的时钟
+ * <p>
+ * 所有与排班相关的时刻 (当前排班日、收入、倒计时、活跃时间) 都从这里读取, 不直接调用 {@code now()},
+ * 这样可以整体偏移时间来检查零点、午休、夜班等边界, 也可以换成 {@code VirtualClock} 回放.
+ * 统计耗时、汇率缓存等与排班无关的计时仍使用系统时钟
+ */
+public final class PluginClock {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private volatile Clock clock = Clock.systemDefaultZone();
+    private volatile long offsetMinutes;
+
+    public static PluginClock getInstance() {
+        return ApplicationManager.getApplication().getService(PluginClock.class);
+    }
+
+    @NotNull
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * 替换时钟并立即按新时刻刷新
+     */
+    public void setClock(@NotNull Clock clock) {
+        this.clock = clock;
+        TickService.getInstance().reschedule();
+    }
+
+    /**
+     * 在系统时钟上偏移若干分钟, 0 表示恢复系统时钟
+     */
+    public void setOffsetMinutes(long minutes) {
+        offsetMinutes = minutes;
+        Clock system = Clock.systemDefaultZone();
+        setClock(minutes == 0 ? system : Clock.offset(system, Duration.ofMinutes(minutes)));
+    }
+
+    public long getOffsetMinutes() {
+        return offsetMinutes;
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    public LocalTime time() {
+        return LocalTime.now(clock);
+    }
+
+    public long millis() {
+        return clock.millis();
+    }
+
+    /**
+     * 今天零点起的毫秒数
+     */
+    public long millisOfDay() {
+        return time().toNanoOfDay() / 1_000_000;
+    }
+
+    /**
+     * 当前时区相对 UTC 的毫秒数, 帧路径用它换算当天毫秒数而不分配对象
+     */
+    public long zoneOffsetMillis() {
+        Clock current = clock;
+        return current.getZone().getRules().getOffset(current.instant()).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * 按 {@link #zoneOffsetMillis()} 换算的今天零点起的毫秒数, 不分配对象
+     */
+    public long millisOfDay(long zoneOffsetMillis) {
+        return Math.floorMod(clock.millis() + zoneOffsetMillis, DAY_MILLIS);
+    }
+
+    public ZoneId zone() {
+        return clock.getZone();
+    }
+}
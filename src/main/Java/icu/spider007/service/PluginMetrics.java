@@ -0,0 +1,144 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import icu.spider007.core.metrics.AllocationCounter;
+import icu.spider007.core.metrics.ProbeStats;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 插件热点路径的自我度量
+ * <p>
+ * 调用方式:
+ * <pre>
+ * long start = System.nanoTime();
+ * long allocated = AllocationCounter.current();
+ * try { ... } finally { PluginMetrics.getInstance().record(Probe.GET_TEXT, start, allocated); }
+ * </pre>
+ * 记录时不加锁也不分配对象. 统计在工具窗口的"诊断"页和 JMX ({@link #OBJECT_NAME}) 中查看
+ */
+public final class PluginMetrics implements PayPerTickMetricsMXBean, Disposable {
+    private static final Logger LOG = Logger.getInstance(PluginMetrics.class);
+    public static final String OBJECT_NAME = "icu.spider007:type=PayPerTickMetrics";
+
+    public enum Probe {
+        // 工具窗口刷新收入, 通常在节拍内调用
+        CALCULATE_SALARY("calculateSalary", false),
+        // 工具窗口刷新倒计时, 通常在节拍内调用
+        UPDATE_COUNTDOWN("updateCountdown", false),
+        // 状态栏取显示文本
+        GET_TEXT("getText", true),
+        // 一次节拍在 EDT 上通知所有订阅方的耗时
+        TICK("tick", true),
+        // 定时器触发到节拍在 EDT 上开始执行的排队延迟
+        TICK_DELAY("tickDelay", false),
+        // 保存配置: 编译快照并通知订阅方
+        CONFIG_SAVE("configSave", true);
+
+        private final String label;
+        private final boolean topLevel;
+
+        Probe(String label, boolean topLevel) {
+            this.label = label;
+            this.topLevel = topLevel;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * 是否是入口级的调用, 入口之间不互相包含, 它们的 EDT 耗时相加即插件的总占用
+         */
+        public boolean isTopLevel() {
+            return topLevel;
+        }
+    }
+
+    private final ProbeStats[] stats = new ProbeStats[Probe.values().length];
+    private volatile long sinceMillis = System.currentTimeMillis();
+    private ObjectName registered;
+
+    public PluginMetrics() {
+        for (Probe probe : Probe.values()) {
+            stats[probe.ordinal()] = new ProbeStats(probe.getLabel());
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registered = name;
+            }
+        } catch (JMException | RuntimeException e) {
+            LOG.warn("Failed to register PayPerTick metrics MBean", e);
+        }
+    }
+
+    public static PluginMetrics getInstance() {
+        return ApplicationManager.getApplication().getService(PluginMetrics.class);
+    }
+
+    /**
+     * 记录一次从 startNanos (System.nanoTime) 开始的调用, allocatedAtStart 为
+     * {@link AllocationCounter#current()} 的返回值, 传 -1 表示不统计分配
+     */
+    public void record(Probe probe, long startNanos, long allocatedAtStart) {
+        long nanos = System.nanoTime() - startNanos;
+        stats[probe.ordinal()].record(nanos, AllocationCounter.since(allocatedAtStart),
+                ApplicationManager.getApplication().isDispatchThread());
+    }
+
+    /**
+     * 记录从 startNanos 到现在的等待时间, 如任务排队, 不计入 EDT 耗时
+     */
+    public void recordDelay(Probe probe, long startNanos) {
+        stats[probe.ordinal()].record(System.nanoTime() - startNanos, -1, false);
+    }
+
+    @Override
+    public List<ProbeStats.Snapshot> getProbes() {
+        List<ProbeStats.Snapshot> snapshots = new ArrayList<>(stats.length);
+        for (ProbeStats probe : stats) {
+            snapshots.add(probe.snapshot());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public long getSinceMillis() {
+        return sinceMillis;
+    }
+
+    @Override
+    public boolean isAllocationSupported() {
+        return AllocationCounter.isSupported();
+    }
+
+    @Override
+    public void reset() {
+        for (ProbeStats probe : stats) {
+            probe.reset();
+        }
+        sinceMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public void dispose() {
+        if (registered == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException e) {
+            LOG.warn("Failed to unregister PayPerTick metrics MBean", e);
+        }
+    }
+}
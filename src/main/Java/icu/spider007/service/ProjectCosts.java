@@ -0,0 +1,240 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.wm.IdeFocusManager;
+import com.intellij.openapi.wm.IdeFrame;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.activity.ProjectShares;
+import icu.spider007.core.ledger.LedgerFile;
+import icu.spider007.core.ledger.LedgerRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * 按项目拆分的收入
+ * <p>
+ * 每个节拍把上次节拍以来的收入按编辑活动拆分到各个打开的项目, 没有编辑活动时记给最后获得焦点的窗口所在的项目
+ * (拆分规则见 {@link ProjectShares}). 累计值只在 EDT 上的基本类型数组里更新,
+ * 每隔几分钟或跨天时一次性交给单线程的后台执行器, 追加到每个项目各自的 {@link LedgerFile}.
+ * 金额按薪资货币记录, 显示时再换算.
+ * 节拍回调、{@link #mark} 和项目关闭都在 EDT 上, 拆分状态不加锁; 后台读到的历史值放在 volatile 字段里
+ */
+public final class ProjectCosts implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ProjectCosts.class);
+    private static final Key<Account> ACCOUNT = Key.create("PayPerTick.ProjectCosts.Account");
+
+    private final BackgroundWriter writer = new BackgroundWriter("PayPerTick Project Costs", LOG);
+    private final Path directory = Paths.get(PathManager.getConfigPath(), "payPerTick", "projects");
+    private final PluginClock clock = PluginClock.getInstance();
+
+    private final ProjectShares shares = new ProjectShares();
+    private final List<Account> accounts = new ArrayList<>();
+    private final EarningsDelta delta = new EarningsDelta();
+    private int currentDay = Integer.MIN_VALUE;
+
+    public ProjectCosts() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SalaryTickListener.TOPIC, this::settle);
+    }
+
+    public static ProjectCosts getInstance() {
+        return ApplicationManager.getApplication().getService(ProjectCosts.class);
+    }
+
+    /**
+     * 记录一次发生在 project 中的编辑活动, 在 EDT 上调用
+     */
+    public void mark(@Nullable Project project) {
+        Account account = account(project);
+        if (account != null) {
+            shares.mark(account.slot, clock.millis());
+        }
+    }
+
+    /**
+     * 本项目今日的收入 (薪资货币的微单位), 还没读取到历史记录时返回 -1
+     */
+    public long getTodayMicros(@NotNull Project project) {
+        Account account = account(project);
+        if (account == null || account.baseDay != currentDay) {
+            return -1;
+        }
+        return account.baseMicros + shares.getMicros(account.slot);
+    }
+
+    /**
+     * 本项目本周 (周一起) 的收入 (薪资货币的微单位), 还没读取到历史记录时返回 -1
+     */
+    public long getWeekMicros(@NotNull Project project) {
+        long today = getTodayMicros(project);
+        return today < 0 ? -1 : today + account(project).weekBeforeMicros;
+    }
+
+    // 节拍回调, 把上次节拍以来的收入拆分到各项目
+    private void settle() {
+        boolean valid = delta.update(SalaryCalculatorConfig.getInstance().getSnapshot(), clock);
+        int today = delta.getEpochDay();
+        if (today == Integer.MIN_VALUE) {
+            return;
+        }
+        if (today != currentDay) {
+            flush();
+            currentDay = today;
+            shares.resetDay();
+            for (Account account : accounts) {
+                account.flushedMicros = 0;
+                account.flushedSeconds = 0;
+                load(account, today);
+            }
+        }
+        if (valid) {
+            shares.settle(delta.getMicros(), delta.getSeconds(), slotOf(focusedProject()));
+        }
+        if (writer.isFlushDue()) {
+            flush();
+        }
+    }
+
+    // 最后获得焦点的窗口所在的项目, IDE 不在前台时也保持不变
+    @Nullable
+    private static Project focusedProject() {
+        IdeFrame frame = IdeFocusManager.getGlobalInstance().getLastFocusedFrame();
+        return frame == null ? null : frame.getProject();
+    }
+
+    private int slotOf(@Nullable Project project) {
+        Account account = account(project);
+        return account == null ? -1 : account.slot;
+    }
+
+    // 项目对应的账户, 第一次用到时创建, 项目关闭时随之释放
+    @Nullable
+    private Account account(@Nullable Project project) {
+        if (project == null || project.isDefault() || project.isDisposed()) {
+            return null;
+        }
+        Account account = project.getUserData(ACCOUNT);
+        if (account == null) {
+            Path path = directory.resolve(project.getLocationHash() + ".bin");
+            account = new Account(shares.register(), writer.submit(() -> LedgerFile.open(path)));
+            project.putUserData(ACCOUNT, account);
+            accounts.add(account);
+            if (currentDay != Integer.MIN_VALUE) {
+                load(account, currentDay);
+            }
+            Account created = account;
+            Disposer.register(project, () -> close(project, created));
+        }
+        return account;
+    }
+
+    // 在后台读取当天已记录的收入和本周之前几天的合计
+    private void load(Account account, int epochDay) {
+        writer.execute(() -> {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            int monday = (int) date.with(DayOfWeek.MONDAY).toEpochDay();
+            long week = 0;
+            LedgerRecord todayRecord = null;
+            for (LedgerRecord record : account.file.get().range(monday, epochDay)) {
+                if (record.getEpochDay() == epochDay) {
+                    todayRecord = record;
+                } else {
+                    week += record.getEarnedMicros();
+                }
+            }
+            account.weekBeforeMicros = week;
+            account.baseSeconds = todayRecord == null ? 0 : todayRecord.getWorkedSeconds();
+            account.baseMicros = todayRecord == null ? 0 : todayRecord.getEarnedMicros();
+            account.baseDay = epochDay;
+        }, "Failed to read PayPerTick project costs");
+    }
+
+    // 把有变化的累计值交给后台线程, 逐个项目追加
+    private void flush() {
+        writer.flushed();
+        for (Account account : accounts) {
+            flushAccount(account);
+        }
+    }
+
+    // 项目关闭: 先写入累计值, 再在写入之后关闭文件
+    private void close(Project project, Account account) {
+        flushAccount(account);
+        accounts.remove(account);
+        shares.release(account.slot);
+        project.putUserData(ACCOUNT, null);
+        writer.execute(account::close, "Failed to close PayPerTick project costs");
+    }
+
+    private void flushAccount(Account account) {
+        long micros = shares.getMicros(account.slot);
+        int seconds = shares.getSeconds(account.slot);
+        int day = currentDay;
+        if (day == Integer.MIN_VALUE || micros == account.flushedMicros && seconds == account.flushedSeconds) {
+            return;
+        }
+        int scheduleId = SalaryCalculatorConfig.getInstance().getSnapshot().getScheduleId();
+        account.flushedMicros = micros;
+        account.flushedSeconds = seconds;
+        writer.execute(() -> account.write(day, micros, seconds, scheduleId),
+                "Failed to write PayPerTick project costs");
+    }
+
+    @Override
+    public void dispose() {
+        flush();
+        List<Account> open = new ArrayList<>(accounts);
+        writer.close(() -> open.forEach(Account::close), "Failed to close PayPerTick project costs");
+    }
+
+    private static final class Account {
+        final int slot;
+        final Future<LedgerFile> file;
+        // 后台读取的历史: 当天已记录的值 (内存中的累计值从 0 开始, 两者相加) 和本周之前几天的合计
+        volatile long baseMicros;
+        volatile int baseSeconds;
+        volatile long weekBeforeMicros;
+        // baseMicros 对应的日期, 读取完成前与当天不一致
+        volatile int baseDay = Integer.MIN_VALUE;
+        // 最近一次交给后台写入的累计值
+        long flushedMicros;
+        int flushedSeconds;
+
+        Account(int slot, Future<LedgerFile> file) {
+            this.slot = slot;
+            this.file = file;
+        }
+
+        // 在后台线程调用; 同一执行器先读取历史再写入, 写入时历史值已经就绪
+        void write(int epochDay, long micros, int seconds, int scheduleId) throws Exception {
+            long base = baseDay == epochDay ? baseMicros : 0;
+            int baseWorked = baseDay == epochDay ? baseSeconds : 0;
+            file.get().append(Collections.singletonList(
+                    new LedgerRecord(epochDay, baseWorked + seconds, base + micros, 0, scheduleId)));
+        }
+
+        // 在后台线程调用, 一个项目关闭失败不影响其它项目
+        void close() {
+            try {
+                file.get().close();
+            } catch (Exception e) {
+                LOG.warn("Failed to close PayPerTick project costs", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.ScheduleException;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkRoster;
+import icu.spider007.core.overtime.OvertimeObserver;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 应用级薪资计算引擎
+ * <p>
+ * 配置每发布一个新版本只编译一次 (见 {@link ConfigSnapshot}), 状态栏和工具窗口共享同一份
+ * {@link WorkRoster}, 读取是一次无锁的引用读取.
+ * <p>
+ * 加班只计 IDE 实际观察到的时间: {@link TickService} 每次节拍先在节拍线程上调用 {@link #observe()},
+ * 显示货币和薪资货币的排班表各有一个 {@link OvertimeObserver}, 观察结果用 volatile 字段发布,
+ * {@link #resolve} 可以在任意线程上调用
+ */
+public final class SalaryEngine {
+    private final OvertimeObserver displayObserver = new OvertimeObserver();
+    private final OvertimeObserver salaryObserver = new OvertimeObserver();
+    // 最近一次节拍观察到的排班日
+    private volatile WorkDay displayDay;
+    private volatile WorkDay salaryDay;
+
+    public static SalaryEngine getInstance() {
+        return ApplicationManager.getApplication().getService(SalaryEngine.class);
+    }
+
+    /**
+     * 当前配置对应的排班表, 配置不合法时返回 null
+     */
+    @Nullable
+    public WorkRoster getRoster() {
+        return snapshot().getRoster();
+    }
+
+    /**
+     * 当前时刻所属的排班日, 配置不合法时返回 null
+     */
+    @Nullable
+    public WorkDay today() {
+        WorkRoster roster = getRoster();
+        return roster == null ? null : resolve(roster, PluginClock.getInstance().now());
+    }
+
+    /**
+     * roster 在 now 所属的排班日, 计入节拍观察到的加班
+     *
+     * @param roster 当前配置的显示货币或薪资货币排班表; 还没有节拍观察过时返回不计加班的排班日
+     */
+    public WorkDay resolve(WorkRoster roster, LocalDateTime now) {
+        WorkDay day = roster.resolve(now);
+        WorkDay observed = displayDay;
+        if (matches(observed, day)) {
+            return observed;
+        }
+        observed = salaryDay;
+        return matches(observed, day) ? observed : day;
+    }
+
+    // 观察结果与排班日是同一份配置的同一天
+    private static boolean matches(@Nullable WorkDay observed, WorkDay day) {
+        return observed != null && observed.getSchedule() == day.getSchedule()
+                && observed.getDate().equals(day.getDate()) && observed.getOffsetSeconds() == day.getOffsetSeconds();
+    }
+
+    /**
+     * 节拍时在节拍线程上调用, 记下这一刻 IDE 在运行
+     */
+    synchronized void observe() {
+        ConfigSnapshot config = snapshot();
+        LocalDateTime now = PluginClock.getInstance().now();
+        displayDay = observe(displayObserver, config.getRoster(), now);
+        salaryDay = observe(salaryObserver, config.getSalaryRoster(), now);
+    }
+
+    @Nullable
+    private static WorkDay observe(OvertimeObserver observer, @Nullable WorkRoster roster, LocalDateTime now) {
+        if (roster == null) {
+            return null;
+        }
+        WorkDay day = roster.resolve(now);
+        return observer.observe(roster, day, day.secondOf(now.toLocalTime()));
+    }
+
+    /**
+     * 恢复上次运行时账本记下的 date 当天的加班秒数
+     */
+    synchronized void restoreOvertime(LocalDate date, int overtimeSeconds) {
+        displayObserver.restore(date, overtimeSeconds);
+        salaryObserver.restore(date, overtimeSeconds);
+        // 下一次节拍前也使用恢复后的结果
+        observe();
+    }
+
+    /**
+     * 当前配置的错误信息, 配置合法时返回 null
+     */
+    @Nullable
+    public ScheduleException getError() {
+        return snapshot().getError();
+    }
+
+    /**
+     * 当前配置版本号
+     */
+    public long getVersion() {
+        return snapshot().getVersion();
+    }
+
+    private static ConfigSnapshot snapshot() {
+        return SalaryCalculatorConfig.getInstance().getSnapshot();
+    }
+}
@@ -0,0 +1,12 @@
+package icu.spider007.service;
+
+import com.intellij.util.messages.Topic;
+
+/**
+ * 应用级刷新节拍, 由 {@link TickService} 在 EDT 上统一发布
+ */
+public interface SalaryTickListener {
+    Topic<SalaryTickListener> TOPIC = Topic.create("PayPerTick tick", SalaryTickListener.class);
+
+    void tick();
+}
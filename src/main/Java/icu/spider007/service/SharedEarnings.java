@@ -0,0 +1,191 @@
+package icu.spider007.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import icu.spider007.config.ConfigListener;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.PayCurrency;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.WorkSchedule;
+import icu.spider007.core.clock.TickPlanner;
+import icu.spider007.core.overtime.PayCurve;
+import icu.spider007.core.shared.SharedStateFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 同时打开的多个 IDE 共享同一份今日收入
+ * <p>
+ * 各 IDE 的配置目录互不相同, 共享文件放在用户目录下. 通过 {@link SharedStateFile} 选出一个领导者,
+ * 它每个节拍计算今日收入并发布; 其他 IDE 的状态栏直接读取发布的值, 不再自己解析排班和计算,
+ * 所有 IDE 显示同一个数字. 领导者在后台或节能模式下几分钟才节拍一次, 因此同时发布下一次节拍的时刻和那时的金额:
+ * 两次节拍之间收入曲线是线性的, 其他 IDE 按当前时刻插值, 与领导者自己计算的结果一致.
+ * 领导者退出后文件锁释放, 其他 IDE 在几秒内接任; 过了发布的下一次节拍时刻还没有新数据时退回自己计算.
+ * 账本、按项目和按文件的统计仍由各 IDE 自己记录. 只在 EDT 上访问
+ */
+public final class SharedEarnings implements Disposable {
+    private static final Logger LOG = Logger.getInstance(SharedEarnings.class);
+    // 发布数据的下标
+    public static final int EPOCH_DAY = 0;
+    public static final int EARNED = 1;
+    public static final int OVERTIME = 2;
+    public static final int DAILY_SALARY = 3;
+    public static final int CURRENCY = 4;
+    public static final int FLAGS = 5;
+    // 领导者下一次节拍的时刻 (毫秒), 以及那时的收入和加班费
+    public static final int NEXT_TICK_MILLIS = 6;
+    public static final int EARNED_AT_NEXT_TICK = 7;
+    public static final int OVERTIME_AT_NEXT_TICK = 8;
+    public static final long FLAG_VALID = 1;
+    public static final long FLAG_REST_DAY = 2;
+    // 节拍在 EDT 上发布, 可能排队一会儿; 过了下一次节拍时刻这么久还没有新数据视为失效
+    private static final long STALE_GRACE_MILLIS = 30_000;
+    private static final long ELECTION_INTERVAL_MILLIS = 5_000;
+
+    private final Path path = Paths.get(System.getProperty("user.home"), ".payPerTick", "shared-earnings.bin");
+    private final long pid = ProcessHandle.current().pid();
+    private final long[] values = new long[SharedStateFile.VALUE_COUNT];
+    private final SharedStateFile.Snapshot snapshot = new SharedStateFile.Snapshot();
+    private SharedStateFile file;
+    private long lastElectionMillis;
+
+    public SharedEarnings() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(ConfigListener.TOPIC, config -> ApplicationManager.getApplication().invokeLater(this::applyConfig));
+        ApplicationManager.getApplication().invokeLater(this::applyConfig);
+    }
+
+    public static SharedEarnings getInstance() {
+        return ApplicationManager.getApplication().getService(SharedEarnings.class);
+    }
+
+    private void applyConfig() {
+        boolean enabled = SalaryCalculatorConfig.getInstance().getSnapshot().isSharedEarnings();
+        if (enabled && file == null) {
+            try {
+                file = SharedStateFile.open(path);
+                lastElectionMillis = 0;
+            } catch (Exception e) {
+                LOG.warn("Failed to open PayPerTick shared state", e);
+            }
+        } else if (!enabled && file != null) {
+            close();
+        }
+    }
+
+    /**
+     * 由 {@link TickService} 在通知订阅方之前调用: 参加选举, 是领导者时发布今日收入
+     */
+    public void tick() {
+        if (file == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            if (!file.isLeader() && now - lastElectionMillis >= ELECTION_INTERVAL_MILLIS) {
+                lastElectionMillis = now;
+                if (file.tryLead(pid)) {
+                    LOG.info("PayPerTick shared earnings: process " + pid + " is now the leader");
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to elect PayPerTick shared earnings leader", e);
+        }
+        if (file.isLeader()) {
+            publish(now);
+        }
+    }
+
+    // 与状态栏的计算一致, 金额为显示货币
+    private void publish(long now) {
+        WorkDay day = SalaryEngine.getInstance().today();
+        if (day == null) {
+            values[FLAGS] = 0;
+        } else {
+            WorkSchedule schedule = day.getSchedule();
+            PayCurve curve = day.getCurve();
+            long millisOfDay = PluginClock.getInstance().millisOfDay();
+            long millis = day.millisOf(millisOfDay);
+            // 按本 IDE 的节拍规则算出下一次节拍, 中间没有时段边界, 收入按固定速率增长
+            long delay = TickPlanner.delayMillis(day, millisOfDay, false, TickService.isBackground());
+            values[EPOCH_DAY] = day.getDate().toEpochDay();
+            values[EARNED] = curve.earnedMicrosAtMillis(millis);
+            values[OVERTIME] = curve.overtimeMicrosAt((int) (millis / 1000));
+            values[NEXT_TICK_MILLIS] = now + delay;
+            values[EARNED_AT_NEXT_TICK] = curve.earnedMicrosAtMillis(millis + delay);
+            values[OVERTIME_AT_NEXT_TICK] = curve.overtimeMicrosAt((int) ((millis + delay) / 1000));
+            values[DAILY_SALARY] = schedule.getDailySalaryMicros();
+            values[CURRENCY] = schedule.getCurrency().ordinal();
+            values[FLAGS] = FLAG_VALID | (schedule.isRestDay() ? FLAG_REST_DAY : 0);
+        }
+        file.publish(now, values);
+    }
+
+    /**
+     * 其他 IDE 发布的今日收入; 本 IDE 是领导者、没有开启共享或数据失效时返回 null.
+     * 返回的对象会被下一次调用覆盖
+     */
+    @Nullable
+    public SharedStateFile.Snapshot getLeaderSnapshot() {
+        if (file == null || file.isLeader() || !file.read(snapshot)) {
+            return null;
+        }
+        if ((snapshot.getValue(FLAGS) & FLAG_VALID) == 0
+                || System.currentTimeMillis() > snapshot.getValue(NEXT_TICK_MILLIS) + STALE_GRACE_MILLIS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 发布的数据在 nowMillis 时的今日收入
+     */
+    public static long earnedMicros(SharedStateFile.Snapshot snapshot, long nowMillis) {
+        return interpolate(snapshot, EARNED, EARNED_AT_NEXT_TICK, nowMillis);
+    }
+
+    /**
+     * 发布的数据在 nowMillis 时的加班费
+     */
+    public static long overtimeMicros(SharedStateFile.Snapshot snapshot, long nowMillis) {
+        return interpolate(snapshot, OVERTIME, OVERTIME_AT_NEXT_TICK, nowMillis);
+    }
+
+    // 在发布时刻和领导者下一次节拍之间线性插值, 超出范围时取端点
+    private static long interpolate(SharedStateFile.Snapshot snapshot, int at, int atNext, long nowMillis) {
+        long from = snapshot.getPublishedMillis();
+        long span = snapshot.getValue(NEXT_TICK_MILLIS) - from;
+        long elapsed = Math.max(0, Math.min(nowMillis - from, span));
+        long value = snapshot.getValue(at);
+        return span <= 0 ? value : value + (snapshot.getValue(atNext) - value) * elapsed / span;
+    }
+
+    /**
+     * 发布数据的货币
+     */
+    public static PayCurrency currencyOf(SharedStateFile.Snapshot snapshot) {
+        int ordinal = (int) snapshot.getValue(CURRENCY);
+        PayCurrency[] currencies = PayCurrency.values();
+        return ordinal >= 0 && ordinal < currencies.length ? currencies[ordinal] : currencies[0];
+    }
+
+    private void close() {
+        try {
+            file.close();
+        } catch (Exception e) {
+            LOG.warn("Failed to close PayPerTick shared state", e);
+        }
+        file = null;
+    }
+
+    @Override
+    public void dispose() {
+        if (file != null) {
+            // 释放文件锁, 其他 IDE 随后接任
+            close();
+        }
+    }
+}
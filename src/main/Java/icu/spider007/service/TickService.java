@@ -0,0 +1,249 @@
+package icu.spider007.service;
+
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationActivationListener;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.IdeFrame;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import icu.spider007.config.ConfigListener;
+import icu.spider007.config.ConfigSnapshot;
+import icu.spider007.config.SalaryCalculatorConfig;
+import icu.spider007.core.WorkDay;
+import icu.spider007.core.clock.TickPlanner;
+import icu.spider007.core.metrics.AllocationCounter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 全局唯一的刷新定时器
+ * <p>
+ * 不再固定轮询, 而是算出界面上显示的内容下一次会变化的时刻再唤醒:
+ * 工作时段内是收入的下一分钱, 有倒计时视图时是下一个整分钟, 另外还有各时段的起止和零点等边界.
+ * 节能模式或 IDE 不在前台时只保留边界和低频刷新, 重新获得焦点时立即补一次.
+ * <p>
+ * 通过 {@link SalaryTickListener#TOPIC} 通知所有项目的状态栏和工具窗口,
+ * 订阅方用 Disposable 绑定的 MessageBusConnection 订阅, 释放时自动退订
+ * <p>
+ * 开启实时跳动模式时, 工作时段内另有一个 10-30 帧/秒的帧任务, 直接回调 {@link FrameListener},
+ * 不经过消息总线, 帧路径上不分配对象
+ */
+public final class TickService implements Disposable {
+    // 避免因时钟精度在阈值前一刻被唤醒
+    private static final long SLACK_MILLIS = 5;
+
+    private static final int MIN_FPS = 10;
+    private static final int MAX_FPS = 30;
+
+    /**
+     * 实时跳动模式的帧回调, 在 EDT 上调用, 实现中不应分配对象
+     */
+    public interface FrameListener {
+        void frame(long millisOfDay);
+    }
+
+    private ScheduledFuture<?> future;
+    private boolean disposed;
+    // 需要分钟级倒计时的视图数量 (工具窗口)
+    private int countdownViews;
+
+    private volatile FrameListener[] frameListeners = new FrameListener[0];
+    private ScheduledFuture<?> frameFuture;
+    private long framePeriodMillis;
+    // 上一帧还没在 EDT 上执行时跳过新帧, 避免堆积
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private final Runnable publishFrame = this::publishFrame;
+    private volatile long zoneOffsetMillis;
+
+    public TickService() {
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(ApplicationActivationListener.TOPIC, new ApplicationActivationListener() {
+            @Override
+            public void applicationActivated(@NotNull IdeFrame ideFrame) {
+                // 回到前台, 立即追上最新数值
+                reschedule();
+            }
+
+            @Override
+            public void applicationDeactivated(@NotNull IdeFrame ideFrame) {
+                reschedule();
+            }
+        });
+        // 配置变化后下一次变化时刻也会变, 立即刷新并重新安排
+        connection.subscribe(ConfigListener.TOPIC, snapshot -> reschedule());
+        connection.subscribe(PowerSaveMode.TOPIC, new PowerSaveMode.Listener() {
+            @Override
+            public void powerSaveStateChanged() {
+                reschedule();
+            }
+        });
+        // 从启动时起观察加班, 第一次节拍的时刻也按计入加班后的排班日计算
+        SalaryEngine.getInstance().observe();
+        scheduleNext();
+    }
+
+    public static TickService getInstance() {
+        return ApplicationManager.getApplication().getService(TickService.class);
+    }
+
+    /**
+     * 注册一个显示分钟级倒计时的视图, parent 释放时自动注销
+     */
+    public void registerCountdownView(@NotNull Disposable parent) {
+        synchronized (this) {
+            countdownViews++;
+        }
+        Disposer.register(parent, () -> {
+            synchronized (this) {
+                countdownViews--;
+            }
+        });
+        reschedule();
+    }
+
+    /**
+     * 注册实时跳动模式的帧回调, parent 释放时自动注销
+     */
+    public void addFrameListener(@NotNull FrameListener listener, @NotNull Disposable parent) {
+        synchronized (this) {
+            FrameListener[] listeners = Arrays.copyOf(frameListeners, frameListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            frameListeners = listeners;
+        }
+        Disposer.register(parent, () -> removeFrameListener(listener));
+        reschedule();
+    }
+
+    private synchronized void removeFrameListener(FrameListener listener) {
+        frameListeners = Arrays.stream(frameListeners)
+                .filter(l -> l != listener)
+                .toArray(FrameListener[]::new);
+        updateFrameTask();
+    }
+
+    /**
+     * 立即发布一次节拍并重新计算下一次唤醒时刻, 用于配置变化或焦点恢复
+     */
+    public void reschedule() {
+        synchronized (this) {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+        tick();
+    }
+
+    private synchronized void scheduleNext() {
+        if (disposed) {
+            return;
+        }
+        zoneOffsetMillis = PluginClock.getInstance().zoneOffsetMillis();
+        // reschedule 可能与线程池中正在执行的节拍交错, 两边都会走到这里;
+        // 先取消上一个再替换, 任何时刻都只有一个待执行的节拍
+        if (future != null) {
+            future.cancel(false);
+        }
+        future = AppExecutorUtil.getAppScheduledExecutorService()
+                .schedule(this::tick, computeDelay() + SLACK_MILLIS, TimeUnit.MILLISECONDS);
+        updateFrameTask();
+    }
+
+    // 按当前状态启动、调整或停止帧任务, 每次常规节拍时检查一次
+    private synchronized void updateFrameTask() {
+        long period = 0;
+        ConfigSnapshot config = SalaryCalculatorConfig.getInstance().getSnapshot();
+        if (!disposed && config.isLiveOdometer() && frameListeners.length > 0
+                && ApplicationManager.getApplication().isActive() && !PowerSaveMode.isEnabled()) {
+            WorkDay day = SalaryEngine.getInstance().today();
+            if (day != null && day.getCurve().isAccruing(day.secondOf(PluginClock.getInstance().time()))) {
+                int fps = Math.max(MIN_FPS, Math.min(MAX_FPS, config.getOdometerFps()));
+                period = 1000 / fps;
+            }
+        }
+        if (period == framePeriodMillis) {
+            return;
+        }
+        if (frameFuture != null) {
+            frameFuture.cancel(false);
+            frameFuture = null;
+        }
+        framePeriodMillis = period;
+        if (period > 0) {
+            frameFuture = AppExecutorUtil.getAppScheduledExecutorService()
+                    .scheduleWithFixedDelay(this::requestFrame, 0, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void requestFrame() {
+        if (framePending.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(publishFrame, ModalityState.any());
+        }
+    }
+
+    private void publishFrame() {
+        framePending.set(false);
+        long millisOfDay = PluginClock.getInstance().millisOfDay(zoneOffsetMillis);
+        FrameListener[] listeners = frameListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].frame(millisOfDay);
+        }
+    }
+
+    // 距离显示内容下一次变化的毫秒数, 规则见 TickPlanner
+    private long computeDelay() {
+        return TickPlanner.delayMillis(SalaryEngine.getInstance().today(), PluginClock.getInstance().millisOfDay(),
+                countdownViews > 0, isBackground());
+    }
+
+    /**
+     * 是否处于后台或节能模式, 此时只保留边界和低频刷新
+     */
+    static boolean isBackground() {
+        return PowerSaveMode.isEnabled() || !ApplicationManager.getApplication().isActive();
+    }
+
+    private void tick() {
+        long fired = System.nanoTime();
+        // 先记下观察到的时刻, 下面的订阅方和下一次节拍的时刻都按计入加班后的排班日计算
+        SalaryEngine.getInstance().observe();
+        ApplicationManager.getApplication().invokeLater(
+                () -> publishTick(fired),
+                ModalityState.any(),
+                ApplicationManager.getApplication().getDisposed());
+        scheduleNext();
+    }
+
+    // 在 EDT 上通知所有订阅方, 同时记录排队延迟和通知耗时
+    private static void publishTick(long firedNanos) {
+        PluginMetrics metrics = PluginMetrics.getInstance();
+        metrics.recordDelay(PluginMetrics.Probe.TICK_DELAY, firedNanos);
+        long start = System.nanoTime();
+        long allocated = AllocationCounter.current();
+        try {
+            // 先发布给其他 IDE, 再通知本 IDE 的订阅方
+            SharedEarnings.getInstance().tick();
+            ApplicationManager.getApplication().getMessageBus()
+                    .syncPublisher(SalaryTickListener.TOPIC).tick();
+        } finally {
+            metrics.record(PluginMetrics.Probe.TICK, start, allocated);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+        if (frameFuture != null) {
+            frameFuture.cancel(false);
+        }
+    }
+}